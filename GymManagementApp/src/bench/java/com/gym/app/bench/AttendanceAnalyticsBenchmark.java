@@ -0,0 +1,162 @@
+package com.gym.app.bench;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+import com.gym.app.db.DatabaseManager;
+import com.gym.app.service.AttendanceAnalytics;
+import com.gym.app.service.AttendanceHistoryFeed;
+import com.gym.app.util.AttendanceColumns;
+
+/**
+ * Latency benchmark for the columnar attendance analytics.
+ * <p>
+ * Builds synthetic attendance (by default 10 million check-ins over two years by 5,000
+ * members) straight into the columns, or with {@code --source db} inserts it into a
+ * throw-away database and measures the startup load too, plus the same heatmap as an SQL
+ * query over the string timestamps for comparison. Each query is run {@code --warmup}
+ * times untimed, then {@code --iterations} times; the mean and best times are reported.
+ * <p>
+ * Run with:
+ * <pre>
+ * mvn -Pbench compile exec:java -Dexec.mainClass=com.gym.app.bench.AttendanceAnalyticsBenchmark -Dexec.args="--rows 10000000"
+ * </pre>
+ * Options: {@code --rows N}, {@code --members N}, {@code --source memory|db}, {@code --warmup N},
+ * {@code --iterations N}, {@code --dir PATH}. Give the JVM about 1 GB of heap for 10M rows
+ * from the database ({@code MAVEN_OPTS=-Xmx1g}); the columns themselves take about 50 MB.
+ */
+public class AttendanceAnalyticsBenchmark {
+
+    private static final int DAYS = 2 * 365;
+    private static final int INSERT_BATCH = 10_000;
+
+    public static void main(String[] args) throws Exception {
+        int rowCount = 10_000_000;
+        int memberCount = 5000;
+        String source = "memory";
+        int warmup = 5;
+        int iterations = 20;
+        Path workDir = null;
+
+        for (int i = 0; i < args.length - 1; i += 2) {
+            switch (args[i]) {
+                case "--rows" -> rowCount = Integer.parseInt(args[i + 1]);
+                case "--members" -> memberCount = Integer.parseInt(args[i + 1]);
+                case "--source" -> source = args[i + 1];
+                case "--warmup" -> warmup = Integer.parseInt(args[i + 1]);
+                case "--iterations" -> iterations = Integer.parseInt(args[i + 1]);
+                case "--dir" -> workDir = Path.of(args[i + 1]);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (workDir == null) {
+            workDir = Files.createTempDirectory("gym-analytics-bench");
+        }
+        // Must be set before AppPaths is first used so the real database is never touched.
+        System.setProperty("gym.app.dataDir", workDir.resolve("data").toString());
+        System.out.printf("Work dir: %s (%d check-ins, %d members, %s, %d fork-join threads)%n",
+                workDir, rowCount, memberCount, source, ForkJoinPool.commonPool().getParallelism());
+
+        AttendanceAnalytics analytics = AttendanceAnalytics.getInstance();
+        LocalDate today = LocalDate.now();
+        LocalDate first = today.minusDays(DAYS - 1);
+        long start = System.nanoTime();
+        if (source.equals("db")) {
+            DatabaseManager.initializeDatabase();
+            insertAttendance(rowCount, memberCount, first);
+            System.out.printf("Inserted %d rows in %.2f s%n", rowCount, (System.nanoTime() - start) / 1e9);
+            start = System.nanoTime();
+            analytics.start();
+            AttendanceHistoryFeed.getInstance().load();
+            System.out.printf("Loaded into columns in %.2f s%n", (System.nanoTime() - start) / 1e9);
+        } else {
+            generate(analytics, rowCount, memberCount, first);
+            System.out.printf("Generated in %.2f s%n", (System.nanoTime() - start) / 1e9);
+        }
+        System.out.printf("Columns: %d rows in %d MB (%.1f bytes/row)%n", analytics.getRowCount(),
+                analytics.getEncodedBytes() / (1024 * 1024), analytics.getEncodedBytes() / (double) analytics.getRowCount());
+
+        LocalDate lastMonth = today.minusDays(29);
+        run("heatmap, all", warmup, iterations, () -> analytics.getHourOfWeekHeatmap(first, today));
+        run("heatmap, 30 days", warmup, iterations, () -> analytics.getHourOfWeekHeatmap(lastMonth, today));
+        run("per member, all", warmup, iterations, () -> analytics.getVisitsPerMember(first, today));
+        run("daily trend, all", warmup, iterations, () -> analytics.getDailyVisits(first, today));
+        run("visits/week, 90 days", warmup, iterations, () -> analytics.getAverageVisitsPerWeek(today.minusDays(89), today));
+
+        if (source.equals("db")) {
+            String sql = "SELECT strftime('%w %H', timestamp), COUNT(*) FROM attendance GROUP BY 1";
+            run("heatmap, SQL", 1, Math.min(iterations, 3), () -> {
+                try (Connection conn = DatabaseManager.getConnection();
+                     Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery(sql)) {
+                    long total = 0;
+                    while (rs.next()) {
+                        total += rs.getLong(2);
+                    }
+                    return total;
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        }
+    }
+
+    private static void run(String label, int warmup, int iterations, Supplier<Object> query) {
+        for (int i = 0; i < warmup; i++) {
+            query.get();
+        }
+        long total = 0;
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            query.get();
+            long elapsed = System.nanoTime() - start;
+            total += elapsed;
+            best = Math.min(best, elapsed);
+        }
+        System.out.printf("[%-20s] mean %8.2f ms, best %8.2f ms (%d runs)%n",
+                label, total / 1e6 / iterations, best / 1e6, iterations);
+    }
+
+    // Spread evenly over the days, in time order like real check-ins
+    private static void generate(AttendanceAnalytics analytics, int rowCount, int memberCount, LocalDate first) {
+        Random random = new Random(42);
+        int firstMinute = AttendanceColumns.toMinute(first.atStartOfDay());
+        long span = (long) DAYS * AttendanceColumns.MINUTES_PER_DAY;
+        for (int i = 0; i < rowCount; i++) {
+            int minute = firstMinute + (int) (span * i / rowCount);
+            analytics.append(1 + random.nextInt(memberCount), minute);
+        }
+    }
+
+    private static void insertAttendance(int rowCount, int memberCount, LocalDate first) throws Exception {
+        String sql = "INSERT INTO attendance (member_id, timestamp) VALUES (?, ?)";
+        Random random = new Random(42);
+        LocalDateTime start = first.atStartOfDay();
+        long spanSeconds = (long) DAYS * 24 * 3600;
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            conn.setAutoCommit(false);
+            for (int i = 0; i < rowCount; i++) {
+                pstmt.setInt(1, 1 + random.nextInt(memberCount));
+                pstmt.setString(2, start.plusSeconds(spanSeconds * i / rowCount).toString());
+                pstmt.addBatch();
+                if ((i + 1) % INSERT_BATCH == 0) {
+                    pstmt.executeBatch();
+                }
+            }
+            pstmt.executeBatch();
+            conn.commit();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.gym.app.bench;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import com.gym.app.model.Member;
+import com.gym.app.service.CardBatchGenerator;
+
+/**
+ * Throughput benchmark for bulk card generation.
+ * <p>
+ * Uses synthetic in-memory members (no database) and a throw-away data directory, then
+ * measures cold QR rendering on one thread and on all threads, a warm run where every
+ * value is already cached, and full A4 card sheets.
+ * <p>
+ * Run with:
+ * <pre>
+ * mvn -Pbench compile exec:java -Dexec.mainClass=com.gym.app.bench.CardBatchBenchmark -Dexec.args="--cards 2000"
+ * </pre>
+ * Options: {@code --cards N}, {@code --threads N}, {@code --dir PATH}.
+ */
+public class CardBatchBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int cardCount = 1000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Path workDir = null;
+
+        for (int i = 0; i < args.length - 1; i += 2) {
+            switch (args[i]) {
+                case "--cards" -> cardCount = Integer.parseInt(args[i + 1]);
+                case "--threads" -> threads = Integer.parseInt(args[i + 1]);
+                case "--dir" -> workDir = Path.of(args[i + 1]);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (workDir == null) {
+            workDir = Files.createTempDirectory("gym-card-bench");
+        }
+        // Must be set before AppPaths is first used so the real QR folder is never touched.
+        System.setProperty("gym.app.dataDir", workDir.resolve("data").toString());
+        System.out.printf("Work dir: %s (%d cards, %d threads)%n", workDir, cardCount, threads);
+
+        // Fresh values per cold run, so the cache cannot help
+        run("cold, 1 thread", new CardBatchGenerator(1), members(cardCount), null);
+        List<Member> members = members(cardCount);
+        run("cold, pool of " + threads, new CardBatchGenerator(threads), members, null);
+        run("warm (cached)", new CardBatchGenerator(threads), members, null);
+        run("A4 sheets", new CardBatchGenerator(threads), members, workDir.resolve("sheets"));
+    }
+
+    private static List<Member> members(int count) {
+        List<Member> members = new ArrayList<>(count);
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < count; i++) {
+            members.add(new Member(i + 1, "Bench Member " + i, "0600000" + i, today.minusMonths(2),
+                    today.plusMonths(1), UUID.randomUUID().toString(), null, null));
+        }
+        return members;
+    }
+
+    private static void run(String label, CardBatchGenerator generator, List<Member> members, Path sheetDir) throws Exception {
+        CardBatchGenerator.Result result = generator.generate(members, sheetDir, null);
+        double seconds = result.getElapsedNanos() / 1e9;
+        System.out.printf("[%-16s] %d cards in %.2f s -> %.0f cards/s (rendered %d, cached %d%s)%n",
+                label, members.size(), seconds, members.size() / seconds, result.getRendered(), result.getCached(),
+                sheetDir == null ? "" : ", " + result.getSheets().size() + " sheets");
+    }
+}
@@ -0,0 +1,208 @@
+package com.gym.app.bench;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.bytedeco.ffmpeg.global.avcodec;
+import org.bytedeco.ffmpeg.global.avutil;
+import org.bytedeco.javacv.FFmpegFrameRecorder;
+import org.bytedeco.javacv.Frame;
+import org.bytedeco.javacv.FrameGrabber;
+
+import com.gym.app.db.DatabaseManager;
+import com.gym.app.model.CheckInResult;
+import com.gym.app.model.Member;
+import com.gym.app.service.CheckInMetrics;
+import com.gym.app.service.CheckInService;
+import com.gym.app.service.MemberService;
+import com.gym.app.util.FrameSources;
+import com.gym.app.util.LatencyHistogram;
+import com.gym.app.util.QRFrameDecoder;
+import com.gym.app.util.QRGenerator;
+
+/**
+ * End-to-end check-in benchmark that runs without a camera.
+ * <p>
+ * Creates a throw-away database with synthetic members, renders camera-like frames
+ * carrying their QR codes with {@link QRGenerator}, then replays them through the same
+ * decode and {@link CheckInService} path the check-in view uses.
+ * <p>
+ * Run with:
+ * <pre>
+ * mvn -Pbench compile exec:java -Dexec.mainClass=com.gym.app.bench.CheckInReplayBenchmark -Dexec.args="--frames 600 --source both"
+ * </pre>
+ * Options: {@code --frames N}, {@code --members N}, {@code --source images|video|both}, {@code --dir PATH}.
+ */
+public class CheckInReplayBenchmark {
+
+    private static final int FRAME_WIDTH = 640;
+    private static final int FRAME_HEIGHT = 480;
+    private static final int QR_SIZE = 260;
+
+    public static void main(String[] args) throws Exception {
+        int frameCount = 300;
+        int memberCount = 50;
+        String source = "images";
+        Path workDir = null;
+
+        for (int i = 0; i < args.length - 1; i += 2) {
+            switch (args[i]) {
+                case "--frames" -> frameCount = Integer.parseInt(args[i + 1]);
+                case "--members" -> memberCount = Integer.parseInt(args[i + 1]);
+                case "--source" -> source = args[i + 1];
+                case "--dir" -> workDir = Path.of(args[i + 1]);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (workDir == null) {
+            workDir = Files.createTempDirectory("gym-checkin-bench");
+        }
+
+        // Must be set before AppPaths/ErrorLogger are first used so nothing touches the real database.
+        System.setProperty("gym.app.dataDir", workDir.resolve("data").toString());
+        DatabaseManager.initializeDatabase();
+
+        List<String> qrValues = createMembers(memberCount);
+        Path framesDir = workDir.resolve("frames");
+        renderFrames(qrValues, frameCount, framesDir);
+        System.out.printf("Work dir: %s (%d members, %d frames)%n", workDir, memberCount, frameCount);
+
+        if (source.equals("images") || source.equals("both")) {
+            replay("images", FrameSources.imageDirectory(framesDir, false));
+        }
+        if (source.equals("video") || source.equals("both")) {
+            avutil.av_log_set_level(avutil.AV_LOG_ERROR);
+            Path clip = workDir.resolve("clip.avi");
+            encodeClip(framesDir, clip);
+            replay("video", FrameSources.videoFile(clip));
+        }
+    }
+
+    private static List<String> createMembers(int count) {
+        MemberService memberService = new MemberService();
+        List<String> qrValues = new ArrayList<>();
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < count; i++) {
+            // Every fifth member is expired so the denial branch is exercised too
+            LocalDate expiry = i % 5 == 4 ? today.minusDays(3) : today.plusMonths(1);
+            Member member = memberService.addMember(new Member("Bench Member " + i, "0600000" + i,
+                    today.minusMonths(2), expiry, null, null, null));
+            qrValues.add(member.getQrCodeValue());
+        }
+        return qrValues;
+    }
+
+    private static void renderFrames(List<String> qrValues, int frameCount, Path framesDir) throws Exception {
+        Files.createDirectories(framesDir);
+        Random random = new Random(42);
+        for (int i = 0; i < frameCount; i++) {
+            BufferedImage frame = new BufferedImage(FRAME_WIDTH, FRAME_HEIGHT, BufferedImage.TYPE_3BYTE_BGR);
+            Graphics2D g = frame.createGraphics();
+            // Grey, slightly varying background like a front-desk counter
+            int shade = 150 + random.nextInt(60);
+            g.setColor(new Color(shade, shade, shade));
+            g.fillRect(0, 0, FRAME_WIDTH, FRAME_HEIGHT);
+            BufferedImage qr = QRGenerator.generateQRBufferedImage(qrValues.get(i % qrValues.size()), QR_SIZE, QR_SIZE);
+            int x = random.nextInt(FRAME_WIDTH - QR_SIZE);
+            int y = random.nextInt(FRAME_HEIGHT - QR_SIZE);
+            g.drawImage(qr, x, y, null);
+            g.dispose();
+            ImageIO.write(frame, "png", framesDir.resolve(String.format("frame_%06d.png", i)).toFile());
+        }
+    }
+
+    private static void encodeClip(Path framesDir, Path clip) throws Exception {
+        FrameGrabber images = FrameSources.imageDirectory(framesDir, false);
+        images.start();
+        // MJPEG keeps the QR modules sharp and is available in every FFmpeg build
+        try (FFmpegFrameRecorder recorder = new FFmpegFrameRecorder(clip.toFile(), FRAME_WIDTH, FRAME_HEIGHT)) {
+            recorder.setFormat("avi");
+            recorder.setVideoCodec(avcodec.AV_CODEC_ID_MJPEG);
+            recorder.setFrameRate(30);
+            recorder.setVideoQuality(2);
+            recorder.start();
+            Frame frame;
+            while ((frame = images.grab()) != null) {
+                recorder.record(frame);
+            }
+            recorder.stop();
+        } finally {
+            images.stop();
+            images.release();
+        }
+    }
+
+    private static void replay(String label, FrameGrabber grabber) throws IOException {
+        QRFrameDecoder decoder = new QRFrameDecoder();
+        CheckInService checkInService = new CheckInService();
+        CheckInMetrics metrics = CheckInMetrics.getInstance();
+        metrics.reset();
+
+        LatencyHistogram scanToDecision = new LatencyHistogram();
+        int frames = 0;
+        int decoded = 0;
+        int admitted = 0;
+        int denied = 0;
+
+        grabber.start();
+        long start = System.nanoTime();
+        try {
+            while (true) {
+                long frameStart = System.nanoTime();
+                Frame frame = grabber.grab();
+                if (frame == null) {
+                    break;
+                }
+                if (frame.image == null) {
+                    continue; // audio or empty packet
+                }
+                frames++;
+                long grabbed = System.nanoTime();
+                metrics.record(CheckInMetrics.Stage.GRAB, grabbed - frameStart);
+                BufferedImage image = decoder.toBufferedImage(frame);
+                long converted = System.nanoTime();
+                metrics.record(CheckInMetrics.Stage.CONVERT, converted - grabbed);
+                String qrCodeValue = decoder.decode(image);
+                metrics.record(CheckInMetrics.Stage.DECODE, System.nanoTime() - converted);
+                if (qrCodeValue == null) {
+                    continue;
+                }
+                decoded++;
+                CheckInResult result = checkInService.processScan(qrCodeValue);
+                if (result.isAdmitted()) {
+                    admitted++;
+                } else {
+                    denied++;
+                }
+                scanToDecision.record(System.nanoTime() - frameStart);
+            }
+        } finally {
+            grabber.stop();
+            grabber.release();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        LatencyHistogram.Snapshot latency = scanToDecision.snapshot();
+        System.out.printf("%n[%s] %d frames in %.2f s -> %.1f frames/s%n", label, frames, seconds, frames / seconds);
+        System.out.printf("[%s] decode success: %d/%d (%.1f%%), admitted %d, denied %d%n",
+                label, decoded, frames, frames == 0 ? 0.0 : 100.0 * decoded / frames, admitted, denied);
+        System.out.printf("[%s] scan-to-decision latency ms: p50 %.2f  p90 %.2f  p99 %.2f  max %.2f%n",
+                label, toMillis(latency.getValueAtPercentile(50)), toMillis(latency.getValueAtPercentile(90)),
+                toMillis(latency.getValueAtPercentile(99)), toMillis(latency.getMax()));
+        System.out.println(metrics.formatSummary());
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
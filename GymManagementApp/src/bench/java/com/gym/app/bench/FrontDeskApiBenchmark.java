@@ -0,0 +1,219 @@
+package com.gym.app.bench;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.gym.app.db.DatabaseManager;
+import com.gym.app.model.Member;
+import com.gym.app.service.AttendanceBatcher;
+import com.gym.app.service.FrontDeskApi;
+import com.gym.app.service.MemberService;
+import com.gym.app.util.Json;
+import com.gym.app.util.LatencyHistogram;
+
+/**
+ * Check-in throughput of the front-desk API, measured over HTTP like a real terminal.
+ * <p>
+ * Seeds a throw-away database with members, starts the API on a free port and has several
+ * clients send check-ins back to back, each on one kept-alive connection and waiting for its
+ * answer before sending the next. Reports check-ins per second, latency percentiles seen
+ * by the clients, and how many check-ins shared each attendance commit. The clients speak
+ * just enough HTTP/1.1 over a socket, so that on a small machine the numbers measure the
+ * server rather than a full HTTP client running next to it.
+ * <p>
+ * Run with:
+ * <pre>
+ * mvn -Pbench compile exec:java -Dexec.mainClass=com.gym.app.bench.FrontDeskApiBenchmark -Dexec.args="--clients 64"
+ * </pre>
+ * Options: {@code --members N}, {@code --requests N}, {@code --clients N},
+ * {@code --batch N} (scans per request), {@code --dir PATH}.
+ */
+public class FrontDeskApiBenchmark {
+
+    private static final String TOKEN = "bench-token";
+
+    public static void main(String[] args) throws Exception {
+        int memberCount = 200;
+        int requestCount = 20_000;
+        int clients = 32;
+        int batch = 1;
+        Path workDir = null;
+
+        for (int i = 0; i < args.length - 1; i += 2) {
+            switch (args[i]) {
+                case "--members" -> memberCount = Integer.parseInt(args[i + 1]);
+                case "--requests" -> requestCount = Integer.parseInt(args[i + 1]);
+                case "--clients" -> clients = Integer.parseInt(args[i + 1]);
+                case "--batch" -> batch = Integer.parseInt(args[i + 1]);
+                case "--dir" -> workDir = Path.of(args[i + 1]);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (workDir == null) {
+            workDir = Files.createTempDirectory("gym-api-bench");
+        }
+
+        // Must be set before AppPaths/ErrorLogger are first used so nothing touches the real database.
+        System.setProperty("gym.app.dataDir", workDir.resolve("data").toString());
+        DatabaseManager.initializeDatabase();
+        List<String> qrValues = createMembers(memberCount);
+
+        FrontDeskApi api = FrontDeskApi.getInstance();
+        api.start(0, TOKEN);
+        int port = api.getPort();
+        System.out.printf("Work dir: %s (%d members, %d clients, %d scans per request)%n",
+                workDir, memberCount, clients, batch);
+
+        run("warm-up", port, qrValues, Math.min(requestCount, 2000), clients, batch);
+        run("check-ins", port, qrValues, requestCount, clients, batch);
+
+        try (Terminal terminal = new Terminal(port)) {
+            System.out.println("Server metrics: " + terminal.send("GET", "/api/metrics", null));
+        }
+        api.stop();
+    }
+
+    private static List<String> createMembers(int count) {
+        MemberService memberService = new MemberService();
+        List<String> qrValues = new ArrayList<>();
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < count; i++) {
+            Member member = memberService.addMember(new Member("Bench Member " + i, "0600000" + i,
+                    today.minusMonths(2), today.plusMonths(1), null, null, null));
+            qrValues.add(member.getQrCodeValue());
+        }
+        return qrValues;
+    }
+
+    private static void run(String label, int port, List<String> qrValues,
+                            int requestCount, int clients, int batch) throws Exception {
+        long commitsBefore = AttendanceBatcher.getInstance().getCommitCount();
+        long rowsBefore = AttendanceBatcher.getInstance().getRowCount();
+        LatencyHistogram latency = new LatencyHistogram();
+        AtomicInteger next = new AtomicInteger();
+
+        ExecutorService workers = Executors.newFixedThreadPool(clients);
+        long start = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            futures.add(workers.submit(() -> {
+                try (Terminal terminal = new Terminal(port)) {
+                    int n;
+                    while ((n = next.getAndIncrement()) < requestCount) {
+                        String body = checkInBody(qrValues, n * batch, batch);
+                        long sent = System.nanoTime();
+                        terminal.send("POST", "/api/checkins", body);
+                        latency.record(System.nanoTime() - sent);
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        workers.shutdown();
+
+        LatencyHistogram.Snapshot snapshot = latency.snapshot();
+        long commits = AttendanceBatcher.getInstance().getCommitCount() - commitsBefore;
+        long rows = AttendanceBatcher.getInstance().getRowCount() - rowsBefore;
+        System.out.printf("[%-9s] %d check-ins in %.2f s -> %.0f check-ins/s, p50 %.2f ms, p99 %.2f ms, max %.2f ms,"
+                        + " %d commits (%.1f rows each)%n",
+                label, requestCount * batch, seconds, requestCount * batch / seconds,
+                toMillis(snapshot.getValueAtPercentile(50)), toMillis(snapshot.getValueAtPercentile(99)),
+                toMillis(snapshot.getMax()), commits, commits > 0 ? (double) rows / commits : 0);
+    }
+
+    private static String checkInBody(List<String> qrValues, int first, int count) {
+        if (count == 1) {
+            return "{\"qr\":" + Json.quote(qrValues.get(first % qrValues.size())) + "}";
+        }
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"qr\":").append(Json.quote(qrValues.get((first + i) % qrValues.size()))).append('}');
+        }
+        return sb.append(']').toString();
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    /**
+     * One terminal's connection. Requests must succeed; anything but 200 ends the run.
+     */
+    private static final class Terminal implements Closeable {
+        private final Socket socket;
+        private final OutputStream out;
+        private final InputStream in;
+
+        Terminal(int port) throws IOException {
+            socket = new Socket("localhost", port);
+            socket.setTcpNoDelay(true);
+            out = new BufferedOutputStream(socket.getOutputStream());
+            in = new BufferedInputStream(socket.getInputStream());
+        }
+
+        String send(String method, String path, String body) throws IOException {
+            byte[] content = body != null ? body.getBytes(StandardCharsets.UTF_8) : new byte[0];
+            String head = method + " " + path + " HTTP/1.1\r\nHost: localhost\r\nAuthorization: Bearer " + TOKEN
+                    + "\r\nContent-Length: " + content.length + "\r\n\r\n";
+            out.write(head.getBytes(StandardCharsets.US_ASCII));
+            out.write(content);
+            out.flush();
+
+            String status = readLine();
+            int length = 0;
+            String line;
+            while (!(line = readLine()).isEmpty()) {
+                if (line.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+                    length = Integer.parseInt(line.substring(15).trim());
+                }
+            }
+            String response = new String(in.readNBytes(length), StandardCharsets.UTF_8);
+            if (!status.startsWith("HTTP/1.1 200")) {
+                throw new IOException(status + ": " + response);
+            }
+            return response;
+        }
+
+        private String readLine() throws IOException {
+            StringBuilder sb = new StringBuilder();
+            int c;
+            while ((c = in.read()) != '\n') {
+                if (c < 0) {
+                    throw new EOFException("Connection closed by the server");
+                }
+                if (c != '\r') {
+                    sb.append((char) c);
+                }
+            }
+            return sb.toString();
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.gym.app.bench;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.gym.app.db.DatabaseManager;
+import com.gym.app.util.CsvExporter;
+import com.gym.app.util.ReportExporter;
+
+/**
+ * Throughput and memory benchmark for the attendance Excel, PDF and CSV exports.
+ * <p>
+ * Fills a throw-away database with synthetic attendance, then times the streaming exports
+ * (SXSSF workbook and {@code PdfReportWriter}, both fed by a database cursor, and the
+ * chunked {@code CsvExporter} on one thread and on all threads, plain and gzip) while a
+ * sampler thread records the peak heap in use.
+ * <p>
+ * Run with:
+ * <pre>
+ * mvn -Pbench compile exec:java -Dexec.mainClass=com.gym.app.bench.ReportExportBenchmark -Dexec.args="--rows 1000000 --format all"
+ * </pre>
+ * Options: {@code --rows N}, {@code --format excel,pdf,csv|all}, {@code --dir PATH}.
+ */
+public class ReportExportBenchmark {
+
+    private static final int INSERT_BATCH = 10_000;
+    private static final long SAMPLE_MILLIS = 10;
+
+    public static void main(String[] args) throws Exception {
+        int rowCount = 200_000;
+        String format = "all";
+        Path workDir = null;
+
+        for (int i = 0; i < args.length - 1; i += 2) {
+            switch (args[i]) {
+                case "--rows" -> rowCount = Integer.parseInt(args[i + 1]);
+                case "--format" -> format = args[i + 1];
+                case "--dir" -> workDir = Path.of(args[i + 1]);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (workDir == null) {
+            workDir = Files.createTempDirectory("gym-export-bench");
+        }
+        // Must be set before AppPaths is first used so the real database is never touched.
+        System.setProperty("gym.app.dataDir", workDir.resolve("data").toString());
+        System.out.printf("Work dir: %s (%d attendance rows, max heap %d MB)%n",
+                workDir, rowCount, Runtime.getRuntime().maxMemory() / (1024 * 1024));
+
+        DatabaseManager.initializeDatabase();
+        long start = System.nanoTime();
+        insertAttendance(rowCount);
+        System.out.printf("Inserted %d rows in %.2f s%n", rowCount, (System.nanoTime() - start) / 1e9);
+
+        List<String> formats = format.equals("all") ? List.of("excel", "pdf", "csv") : List.of(format.split(","));
+        if (formats.contains("csv")) {
+            int threads = Runtime.getRuntime().availableProcessors();
+            for (boolean gzip : new boolean[] {false, true}) {
+                Path csv = workDir.resolve(gzip ? "attendance.csv.gz" : "attendance.csv");
+                String suffix = gzip ? " gz" : "";
+                run("csv x1" + suffix, () -> new CsvExporter(1).export(CsvExporter.Table.ATTENDANCE, csv, gzip,
+                        ReportExporter.ExportProgress.NONE), rowCount, csv);
+                run("csv x" + threads + suffix, () -> new CsvExporter(threads).export(CsvExporter.Table.ATTENDANCE, csv, gzip,
+                        ReportExporter.ExportProgress.NONE), rowCount, csv);
+            }
+        }
+        if (formats.contains("pdf")) {
+            Path pdf = workDir.resolve("streamed.pdf");
+            int[] pages = new int[1];
+            run("pdf", () -> pages[0] = ReportExporter.streamAttendanceToPDF(pdf.toString()), rowCount, pdf);
+            System.out.printf("[%-12s] %d pages, %d render threads%n", "pdf", pages[0], Runtime.getRuntime().availableProcessors());
+        }
+        if (formats.contains("excel")) {
+            Path streamed = workDir.resolve("streamed.xlsx");
+            run("excel", () -> ReportExporter.streamAttendanceToExcel(streamed.toString()), rowCount, streamed);
+        }
+    }
+
+    private interface Export {
+        void run() throws Exception;
+    }
+
+    private static void run(String label, Export export, int rowCount, Path output) throws Exception {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long baseline = memory.getHeapMemoryUsage().getUsed();
+        AtomicLong peak = new AtomicLong(baseline);
+
+        Thread sampler = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                peak.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+                try {
+                    Thread.sleep(SAMPLE_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "heap-sampler");
+        sampler.setDaemon(true);
+        sampler.start();
+
+        long start = System.nanoTime();
+        try {
+            export.run();
+        } catch (OutOfMemoryError e) {
+            // Report it instead of dying, e.g. when run with a deliberately small heap
+            System.out.printf("[%-12s] out of memory after %.2f s (peak heap %d MB)%n",
+                    label, (System.nanoTime() - start) / 1e9, peak.get() / (1024 * 1024));
+            return;
+        } finally {
+            sampler.interrupt();
+            sampler.join();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("[%-12s] %d rows in %.2f s -> %.0f rows/s, peak heap %d MB (+%d MB over baseline), file %d KB%n",
+                label, rowCount, seconds, rowCount / seconds, peak.get() / (1024 * 1024),
+                (peak.get() - baseline) / (1024 * 1024), Files.size(output) / 1024);
+    }
+
+    private static void insertAttendance(int rowCount) throws Exception {
+        String sql = "INSERT INTO attendance (member_id, timestamp) VALUES (?, ?)";
+        Random random = new Random(42);
+        LocalDateTime first = LocalDateTime.now().minusYears(1).withNano(0);
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            conn.setAutoCommit(false);
+            for (int i = 0; i < rowCount; i++) {
+                pstmt.setInt(1, 1 + random.nextInt(2000));
+                pstmt.setString(2, first.plusSeconds(i * 3L + random.nextInt(3)).toString());
+                pstmt.addBatch();
+                if ((i + 1) % INSERT_BATCH == 0) {
+                    pstmt.executeBatch();
+                }
+            }
+            pstmt.executeBatch();
+            conn.commit();
+        }
+    }
+}
@@ -2,22 +2,40 @@ package com.gym.app;
 
 import com.gym.app.db.DatabaseManager;
 import com.gym.app.util.ErrorLogger;
+import com.gym.app.util.QRGenerator;
 import com.gym.app.util.ViewManager;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.scene.control.Alert;
+import com.gym.app.service.ArrivalPrefetcher;
+import com.gym.app.service.AttendanceAnalytics;
+import com.gym.app.service.AttendanceBatcher;
+import com.gym.app.service.AttendanceHistoryFeed;
+import com.gym.app.service.DashboardStats;
+import com.gym.app.service.FrontDeskApi;
+import com.gym.app.service.MemberTimelines;
+import com.gym.app.service.OccupancyTracker;
+import com.gym.app.service.OvernightReports;
+import com.gym.app.service.PhotoStore;
+import com.gym.app.service.QrSigningService;
+import com.gym.app.service.RetentionIndex;
+import com.gym.app.service.RevenueIndex;
 import com.gym.app.service.SystemInfoService;
+import com.gym.app.service.VisitorSketches;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 
 import java.io.IOException;
+import java.sql.SQLException;
 import java.util.Locale;
 import java.util.ResourceBundle;
 
 public class MainApp extends Application {
 
+    private static final long SHUTDOWN_FLUSH_MS = 5000;
+
     @Override
     public void start(Stage primaryStage) {
         try {
@@ -26,6 +44,7 @@ public class MainApp extends Application {
 
             // 2. License Protection Check
             SystemInfoService licenseService = new SystemInfoService();
+            QRGenerator.setErrorCorrectionLevel(licenseService.getQrErrorCorrectionLevel());
             if (!licenseService.checkLicense()) {
                 // If mismatch → App must exit with message
                 Alert alert = new Alert(Alert.AlertType.ERROR);
@@ -37,24 +56,30 @@ public class MainApp extends Application {
                 return;
             }
 
+            // Background services, only once licensed (once: a language change only reloads the view)
+            QrSigningService.getInstance().warmUp();
+            PhotoStore.getInstance().startLegacyMigration();
+            loadRevenueIndex();
+            DashboardStats.getInstance().start();
+            OccupancyTracker.getInstance().start();
+            AttendanceAnalytics.getInstance().start();
+            RetentionIndex.getInstance().start();
+            MemberTimelines.getInstance().start();
+            // One attendance read for all of the above, once they have registered
+            AttendanceHistoryFeed.getInstance().start();
+            loadVisitorSketches();
+            ArrivalPrefetcher.getInstance().start();
+            OvernightReports.getInstance().start();
+            // So other terminals cannot use an unlicensed copy either
+            FrontDeskApi.getInstance().start();
+
             // 3. Set up Resource Bundle for Multi-Language Support (Default to English)
             Locale defaultLocale = new Locale("en", "US");
             ResourceBundle bundle = ResourceBundle.getBundle("com.gym.app.i18n.messages", defaultLocale);
             ViewManager.setResourceBundle(bundle);
 
-            // 3. Load the Main Application Layout
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/com/gym/app/view/MainLayout.fxml"), bundle);
-            Parent root = loader.load();
-
-            Scene scene = new Scene(root);
-            // Store the resource bundle in the scene properties
-            scene.getProperties().put("resources", bundle);
-            
-            primaryStage.setTitle(bundle.getString("app.title"));
-            primaryStage.setScene(scene);
-            primaryStage.setMinHeight(650);
-            primaryStage.setMinWidth(900);
-            primaryStage.show();
+            // 4. Load the Main Application Layout
+            showMainWindow(primaryStage, bundle);
 
         } catch (IOException e) {
             ErrorLogger.log(e, "Failed to load the main application view (MainLayout.fxml) or resource bundle. Check FXML file path and structure.");
@@ -63,6 +88,65 @@ public class MainApp extends Application {
         }
     }
 
+    /**
+     * Loads the main layout into the stage with the given resource bundle. Used at startup
+     * and again when the language changes; the background services keep running.
+     */
+    public static void showMainWindow(Stage stage, ResourceBundle bundle) throws IOException {
+        FXMLLoader loader = new FXMLLoader(MainApp.class.getResource("/com/gym/app/view/MainLayout.fxml"), bundle);
+        Parent root = loader.load();
+
+        Scene scene = new Scene(root);
+        // Store the resource bundle in the scene properties
+        scene.getProperties().put("resources", bundle);
+
+        stage.setTitle(bundle.getString("app.title"));
+        stage.setScene(scene);
+        stage.setMinHeight(650);
+        stage.setMinWidth(900);
+        stage.show();
+    }
+
+    @Override
+    public void stop() {
+        FrontDeskApi.getInstance().stop();
+        // Check-ins admitted from signed cards may still be waiting to be written
+        if (!AttendanceBatcher.getInstance().flush(SHUTDOWN_FLUSH_MS)) {
+            System.err.println("Some check-ins could not be saved before exit: database unavailable.");
+        }
+        // Saves check-ins since startup so the next start has less to catch up on
+        RetentionIndex.getInstance().save();
+        VisitorSketches.getInstance().flush();
+    }
+
+    // Revenue totals are answered by SQL queries until the index is loaded, so it loads in the background
+    private static void loadRevenueIndex() {
+        Thread thread = new Thread(() -> {
+            try {
+                RevenueIndex.getInstance().load();
+            } catch (SQLException e) {
+                // Revenue totals fall back to SQL queries until the next start
+                System.err.println("Could not load the revenue index: " + e.getMessage());
+            }
+        }, "revenue-index");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // The first run folds in all past attendance, so it loads in the background
+    private static void loadVisitorSketches() {
+        Thread thread = new Thread(() -> {
+            try {
+                VisitorSketches.getInstance().load();
+            } catch (SQLException e) {
+                // Unique-visitor counts fall back to SQL queries until the next start
+                System.err.println("Could not load visitor sketches: " + e.getMessage());
+            }
+        }, "visitor-sketches");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
     public static void main(String[] args) {
         launch(args);
     }
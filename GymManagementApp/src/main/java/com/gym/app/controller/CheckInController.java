@@ -1,50 +1,45 @@
 package com.gym.app.controller;
 
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.File;
-import java.io.IOException;
 import java.net.URL;
-import java.time.LocalDate;
-import java.time.temporal.ChronoUnit;
 import java.util.ResourceBundle;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
-import javax.imageio.ImageIO;
-
 import org.bytedeco.javacv.Frame;
 import org.bytedeco.javacv.FrameGrabber;
-import org.bytedeco.javacv.Java2DFrameConverter;
-import org.bytedeco.javacv.OpenCVFrameConverter;
-import org.bytedeco.javacv.VideoInputFrameGrabber;
-import org.bytedeco.opencv.global.opencv_imgproc;
-import org.bytedeco.opencv.opencv_core.Mat;
-
-import com.google.zxing.BinaryBitmap;
-import com.google.zxing.MultiFormatReader;
-import com.google.zxing.NotFoundException;
-import com.google.zxing.Result;
-import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
-import com.google.zxing.common.HybridBinarizer;
+
+import com.gym.app.model.CheckInResult;
 import com.gym.app.model.Member;
-import com.gym.app.service.AttendanceService;
-import com.gym.app.service.MemberService;
+import com.gym.app.service.CheckInMetrics;
+import com.gym.app.service.CheckInService;
+import com.gym.app.service.OccupancyTracker;
+import com.gym.app.service.PhotoService;
 import com.gym.app.util.ErrorLogger;
+import com.gym.app.util.FrameSources;
+import com.gym.app.util.KeyboardWedgeDetector;
+import com.gym.app.util.QRFrameDecoder;
 
+import javafx.animation.KeyFrame;
+import javafx.animation.PauseTransition;
+import javafx.animation.Timeline;
 import javafx.application.Platform;
+import javafx.embed.swing.SwingFXUtils;
+import javafx.event.Event;
+import javafx.event.EventHandler;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
+import javafx.scene.Node;
+import javafx.scene.Scene;
 import javafx.scene.control.Label;
+import javafx.scene.control.ToggleButton;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
-import javafx.scene.layout.VBox;
-import javafx.scene.layout.HBox;
-import javafx.scene.layout.BorderPane;
-import javafx.scene.layout.StackPane;
-import javafx.scene.control.Button;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.util.Duration;
 
 public class CheckInController implements Initializable {
 
@@ -60,20 +55,47 @@ public class CheckInController implements Initializable {
     private Label memberExpiryLabel;
     @FXML
     private Label memberPhoneLabel;
+    @FXML
+    private Label metricsOverlayLabel;
+    @FXML
+    private ToggleButton scannerModeToggle;
+    @FXML
+    private ToggleButton checkOutModeToggle;
 
     private FrameGrabber grabber = null;
     private ScheduledExecutorService timer;
-    private OpenCVFrameConverter.ToMat converter = new OpenCVFrameConverter.ToMat();
-    private MemberService memberService = new MemberService();
-    private AttendanceService attendanceService = new AttendanceService();
-    private MultiFormatReader qrReader = new MultiFormatReader();
+    private QRFrameDecoder qrDecoder = new QRFrameDecoder();
+    private CheckInService checkInService = new CheckInService();
+    private final PhotoService photoService = PhotoService.getInstance();
+    private final CheckInMetrics metrics = CheckInMetrics.getInstance();
+    private Timeline metricsOverlayTimeline;
     private long lastCheckInTime = 0;
     private final long CHECK_IN_COOLDOWN_MS = 5000; // 5 seconds cooldown
 
+    // Keyboard-wedge (USB HID) scanner mode
+    private final KeyboardWedgeDetector wedgeDetector = new KeyboardWedgeDetector(this::onScannerScan, this::replayTyping);
+    private final EventHandler<KeyEvent> scannerKeyFilter = this::handleScannerKey;
+    private final PauseTransition scannerIdleTimer = new PauseTransition(Duration.millis(KeyboardWedgeDetector.IDLE_MS));
+    private boolean replayingTyping;
+    private ExecutorService scannerExecutor;
+    private String lastScannerValue;
+    private long lastScannerTime = 0;
+    private final long SCANNER_REPEAT_COOLDOWN_MS = 3000; // same card scanned twice in a row
+
+    // Read by the camera and scanner threads
+    private volatile boolean checkOutMode;
+
     @Override
     public void initialize(URL url, ResourceBundle rb) {
         // Set initial placeholder text
         updateStatusDisplay(null, "Awaiting Scan", "status-expiring");
+
+        // Live p50/p99/max per stage, refreshed twice a second on the FX thread
+        metricsOverlayTimeline = new Timeline(new KeyFrame(Duration.millis(500),
+                e -> metricsOverlayLabel.setText(metrics.formatSummary())));
+        metricsOverlayTimeline.setCycleCount(Timeline.INDEFINITE);
+        metricsOverlayTimeline.play();
+        metrics.startSnapshotWriter();
     }
 
     @FXML
@@ -83,9 +105,16 @@ public class CheckInController implements Initializable {
             return;
         }
 
+        String sourceSpec = System.getProperty(FrameSources.SOURCE_PROPERTY, FrameSources.DEFAULT_SOURCE);
+        try {
+            // Use default camera (index 0), or the recorded source given by -Dgym.checkin.source
+            grabber = FrameSources.fromSpec(sourceSpec);
+        } catch (IllegalArgumentException e) {
+            ErrorLogger.log(e, "Invalid -D" + FrameSources.SOURCE_PROPERTY + " value: " + e.getMessage());
+            updateStatusDisplay(null, "Camera Error", "status-expired");
+            return;
+        }
         try {
-            // Use default camera (index 0)
-            grabber = new VideoInputFrameGrabber(0);
             grabber.start();
 
             // Start a scheduled executor to grab frames periodically
@@ -96,10 +125,15 @@ public class CheckInController implements Initializable {
             ErrorLogger.log(e, "Failed to start camera. Check if camera is connected and drivers are installed (JavaCV dependency issue)." +
                     " Error details: " + e.getMessage());
             updateStatusDisplay(null, "Camera Error", "status-expired");
-            
+            grabber = null;
+
+            if (!FrameSources.isCameraSpec(sourceSpec)) {
+                return;
+            }
+
             // Try alternative camera index
             try {
-                grabber = new VideoInputFrameGrabber(1);
+                grabber = FrameSources.camera(1);
                 grabber.start();
                 
                 timer = Executors.newSingleThreadScheduledExecutor();
@@ -109,54 +143,45 @@ public class CheckInController implements Initializable {
             } catch (FrameGrabber.Exception ex) {
                 ErrorLogger.log(ex, "Failed to start camera on alternative index as well.");
                 updateStatusDisplay(null, "Camera Error", "status-expired");
+                grabber = null;
             }
         }
     }
 
     private void grabAndProcessFrame() {
         try {
+            long scanStart = System.nanoTime();
             Frame frame = grabber.grab();
-            if (frame != null) {
-                Mat mat = converter.convert(frame);
-                
-                // Convert to grayscale for better QR detection
-                Mat grayMat = new Mat();
-                opencv_imgproc.cvtColor(mat, grayMat, opencv_imgproc.COLOR_BGR2GRAY);
-
-                // Convert Mat to BufferedImage
-                BufferedImage image = matToBufferedImage(mat);
+            long grabbed = System.nanoTime();
+            metrics.record(CheckInMetrics.Stage.GRAB, grabbed - scanStart);
+            if (frame != null && frame.image != null) {
+                // Convert once; the same image feeds both the decoder and the preview
+                BufferedImage image = qrDecoder.toBufferedImage(frame);
+                long converted = System.nanoTime();
+                metrics.record(CheckInMetrics.Stage.CONVERT, converted - grabbed);
 
                 // Decode QR Code
-                String qrCodeValue = decodeQRCode(image);
+                String qrCodeValue = qrDecoder.decode(image);
+                metrics.record(CheckInMetrics.Stage.DECODE, System.nanoTime() - converted);
 
-                // Update camera feed on UI thread
-                Platform.runLater(() -> cameraFeedView.setImage(matToImage(mat)));
+                // Update camera feed on UI thread (copied here because the converter reuses its buffer)
+                Image preview = SwingFXUtils.toFXImage(image, null);
+                Platform.runLater(() -> cameraFeedView.setImage(preview));
 
                 if (qrCodeValue != null) {
-                    processCheckIn(qrCodeValue);
+                    processCheckIn(qrCodeValue, scanStart);
                 }
             }
         } catch (FrameGrabber.Exception e) {
             ErrorLogger.log(e, "Error grabbing frame from camera.");
             stopCamera();
-        }
-    }
-
-    private String decodeQRCode(BufferedImage bufferedImage) {
-        try {
-            BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(new BufferedImageLuminanceSource(bufferedImage)));
-            Result result = qrReader.decode(bitmap);
-            return result.getText();
-        } catch (NotFoundException e) {
-            // QR code not found in this frame, this is normal
-            return null;
         } catch (Exception e) {
-            ErrorLogger.log(e, "Error decoding QR code.");
-            return null;
+            // Never let an exception cancel the scheduled grab task silently
+            ErrorLogger.log(e, "Error processing camera frame.");
         }
     }
 
-    private void processCheckIn(String qrCodeValue) {
+    private void processCheckIn(String qrCodeValue, long scanStartNanos) {
         long currentTime = System.currentTimeMillis();
         if (currentTime - lastCheckInTime < CHECK_IN_COOLDOWN_MS) {
             // Ignore scan due to cooldown
@@ -164,46 +189,201 @@ public class CheckInController implements Initializable {
         }
         lastCheckInTime = currentTime;
 
-        Member member = memberService.getMemberByQrCodeValue(qrCodeValue);
+        showCheckInResult(decide(qrCodeValue), scanStartNanos);
+    }
 
-        if (member != null) {
-            String status = member.getStatus();
-            
-            if ("Active".equals(status) || "Expiring".equals(status)) {
+    private CheckInResult decide(String qrCodeValue) {
+        return checkOutMode ? checkInService.processCheckOut(qrCodeValue) : checkInService.processScan(qrCodeValue);
+    }
+
+    @FXML
+    private void handleToggleCheckOutMode() {
+        // Optional: scans on the way out make the occupancy count exact
+        checkOutMode = checkOutModeToggle.isSelected();
+        updateStatusDisplay(null, checkOutMode ? "Check-Out: Scan on the Way Out" : "Awaiting Scan", "status-expiring");
+    }
+
+    @FXML
+    private void handleToggleScannerMode() {
+        if (scannerModeToggle.isSelected()) {
+            startScannerMode();
+        } else {
+            stopScannerMode();
+        }
+    }
+
+    private void startScannerMode() {
+        if (scannerExecutor != null) {
+            return;
+        }
+        // Decisions run off the FX thread, one at a time and in scan order, so bursts queue up
+        // instead of blocking key delivery while the database answers.
+        scannerExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "checkin-scanner");
+            t.setDaemon(true);
+            return t;
+        });
+        wedgeDetector.reset();
+        scannerIdleTimer.setOnFinished(e -> wedgeDetector.onIdle(System.nanoTime()));
+        scannerModeToggle.getScene().addEventFilter(KeyEvent.KEY_TYPED, scannerKeyFilter);
+        updateStatusDisplay(null, "Scanner Ready", "status-active");
+    }
+
+    private void stopScannerMode() {
+        if (scannerModeToggle.getScene() != null) {
+            scannerModeToggle.getScene().removeEventFilter(KeyEvent.KEY_TYPED, scannerKeyFilter);
+        }
+        scannerIdleTimer.stop();
+        wedgeDetector.flush();
+        if (scannerExecutor != null) {
+            scannerExecutor.shutdown();
+            scannerExecutor = null;
+        }
+    }
+
+    // Scene-level filter: sees every key before any focused control does
+    private void handleScannerKey(KeyEvent event) {
+        if (replayingTyping) {
+            return;
+        }
+        String typed = event.getCharacter();
+        if (typed.length() == 1 && wedgeDetector.onCharacter(typed.charAt(0), System.nanoTime())) {
+            event.consume();
+            scannerIdleTimer.playFromStart();
+        }
+    }
+
+    // Keys the detector held back that turned out to be typing: delivered as if just typed
+    private void replayTyping(String text) {
+        Scene scene = scannerModeToggle.getScene();
+        if (scene == null) {
+            return;
+        }
+        Node focusOwner = scene.getFocusOwner();
+        replayingTyping = true;
+        try {
+            for (int i = 0; i < text.length(); i++) {
+                KeyEvent replay = new KeyEvent(KeyEvent.KEY_TYPED, String.valueOf(text.charAt(i)), "",
+                        KeyCode.UNDEFINED, false, false, false, false);
+                Event.fireEvent(focusOwner != null ? focusOwner : scene, replay);
+            }
+        } finally {
+            replayingTyping = false;
+        }
+    }
+
+    // Called on the FX thread by the detector once a full burst ends with Enter/Tab
+    private void onScannerScan(String qrCodeValue, long burstStartNanos) {
+        ExecutorService executor = scannerExecutor;
+        if (executor != null) {
+            executor.execute(() -> processScannerCheckIn(qrCodeValue, burstStartNanos));
+        }
+    }
+
+    private void processScannerCheckIn(String qrCodeValue, long scanStartNanos) {
+        // Unlike the camera, which sees the same card in many frames, each scanner burst is a
+        // deliberate scan: only an immediate repeat of the same card is ignored.
+        long currentTime = System.currentTimeMillis();
+        if (qrCodeValue.equals(lastScannerValue) && currentTime - lastScannerTime < SCANNER_REPEAT_COOLDOWN_MS) {
+            return;
+        }
+        lastScannerValue = qrCodeValue;
+        lastScannerTime = currentTime;
+
+        try {
+            showCheckInResult(decide(qrCodeValue), scanStartNanos);
+        } catch (Exception e) {
+            ErrorLogger.log(e, "Error processing scanner check-in.");
+        }
+    }
+
+    private void showCheckInResult(CheckInResult result, long scanStartNanos) {
+        Member member = result.getMember();
+
+        switch (result.getOutcome()) {
+            case ADMITTED -> {
                 // IF membership Active
                 // Play short pip pip (Placeholder)
                 System.out.println("ACTION: Play short pip pip sound.");
-                
-                // Log attendance
-                attendanceService.logAttendance(member.getMemberId());
-                
+
                 // Show popup with details
-                long daysRemaining = ChronoUnit.DAYS.between(LocalDate.now(), member.getExpiryDate());
-                String statusClassFinal = "Expiring".equals(status) ? "status-expiring" : "status-active";
-                
-                Platform.runLater(() -> {
-                    updateStatusDisplay(member, "Welcome, " + member.getFullName() + "!", statusClassFinal);
-                    memberExpiryLabel.setText("Expiry: " + member.getExpiryDate() + " (" + daysRemaining + " days remaining)");
-                });
+                long daysRemaining = result.getDaysRemaining();
+                String statusClassFinal = daysRemaining < 7 ? "status-expiring" : "status-active";
+                // Signed cards can be admitted while the database is unavailable; then only the ID is known
+                String displayName = member != null ? member.getFullName() : "Member #" + result.getMemberId();
+                // Admission is never refused for capacity; the desk decides, so just warn
+                OccupancyTracker.Snapshot occupancy = OccupancyTracker.getInstance().snapshot();
+                String welcome = occupancy.isAtCapacity()
+                        ? "Welcome, " + displayName + "! (At capacity: " + occupancy.current() + "/" + occupancy.capacity() + ")"
+                        : "Welcome, " + displayName + "!";
 
-            } else if ("Expired".equals(status)) {
+                paintResult(() -> {
+                    updateStatusDisplay(member, welcome, statusClassFinal);
+                    memberNameLabel.setText(displayName);
+                    memberExpiryLabel.setText("Expiry: " + result.getExpiryDate() + " (" + daysRemaining + " days remaining)");
+                }, scanStartNanos);
+                if (member == null && result.isVerifiedOffline()) {
+                    fillInMember(result.getMemberId(), displayName);
+                }
+            }
+            case EXPIRED -> {
                 // IF membership Expired
                 // Play long piiiip piiip (Placeholder)
                 System.out.println("ACTION: Play long piiiip piiip sound.");
-                
+
                 // Show red alert
-                Platform.runLater(() -> {
+                paintResult(() -> {
                     updateStatusDisplay(member, "Membership Expired!", "status-expired");
                     // Suggest renewal (via a separate dialog or a button on the UI)
                     // For now, the UI update is the alert.
-                });
+                }, scanStartNanos);
+            }
+            case CHECKED_OUT -> {
+                String displayName = member != null ? member.getFullName() : "Member #" + result.getMemberId();
+                paintResult(() -> {
+                    updateStatusDisplay(member, "Goodbye, " + displayName + "!", "status-active");
+                    memberNameLabel.setText(displayName);
+                }, scanStartNanos);
+            }
+            default -> {
+                // QR code not recognized
+                paintResult(() -> {
+                    updateStatusDisplay(null, "QR Code Not Recognized", "status-expired");
+                }, scanStartNanos);
+            }
+        }
+    }
+
+    // A signed card was admitted before its member was loaded: add name and photo once they
+    // arrive, unless the screen has moved on to another scan meanwhile
+    private void fillInMember(int memberId, String placeholderName) {
+        checkInService.loadMemberForDisplay(memberId).thenAccept(loaded -> {
+            if (loaded == null) {
+                return;
             }
-        } else {
-            // QR code not recognized
             Platform.runLater(() -> {
-                updateStatusDisplay(null, "QR Code Not Recognized", "status-expired");
+                if (placeholderName.equals(memberNameLabel.getText())) {
+                    memberNameLabel.setText(loaded.getFullName());
+                    memberPhoneLabel.setText("Phone: " + loaded.getPhone());
+                    memberPhotoView.setImage(photoService.getPhoto(loaded.getPhotoPath()));
+                    memberStatusLabel.setText(memberStatusLabel.getText().replace(placeholderName, loaded.getFullName()));
+                }
             });
-        }
+        });
+    }
+
+    /**
+     * Applies the decision on the FX thread and records how long it waited there (paint)
+     * and the full time since the frame was grabbed (scan-to-screen).
+     */
+    private void paintResult(Runnable update, long scanStartNanos) {
+        long decidedAt = System.nanoTime();
+        Platform.runLater(() -> {
+            update.run();
+            long painted = System.nanoTime();
+            metrics.record(CheckInMetrics.Stage.PAINT, painted - decidedAt);
+            metrics.record(CheckInMetrics.Stage.SCAN_TO_SCREEN, painted - scanStartNanos);
+        });
     }
 
     private void updateStatusDisplay(Member member, String statusText, String statusClass) {
@@ -211,17 +391,8 @@ public class CheckInController implements Initializable {
             memberNameLabel.setText(member.getFullName());
             memberPhoneLabel.setText("Phone: " + member.getPhone());
             
-            // Load photo
-            if (member.getPhotoPath() != null && !member.getPhotoPath().isEmpty()) {
-                try {
-                    Image image = new Image(new File(member.getPhotoPath()).toURI().toString());
-                    memberPhotoView.setImage(image);
-                } catch (Exception e) {
-                    memberPhotoView.setImage(null); // Clear image on error
-                }
-            } else {
-                memberPhotoView.setImage(null);
-            }
+            // Thumbnail loads in the background (usually already prefetched during the lookup)
+            memberPhotoView.setImage(photoService.getPhoto(member.getPhotoPath()));
         } else {
             memberNameLabel.setText("Scan QR Code");
             memberPhoneLabel.setText("Phone: N/A");
@@ -250,33 +421,12 @@ public class CheckInController implements Initializable {
         Platform.runLater(() -> cameraFeedView.setImage(null));
     }
 
-    // Utility to convert Mat to JavaFX Image
-    private Image matToImage(Mat mat) {
-        try {
-            BufferedImage bufferedImage = matToBufferedImage(mat);
-            ByteArrayOutputStream os = new ByteArrayOutputStream();
-            ImageIO.write(bufferedImage, "png", os);
-            return new Image(new ByteArrayInputStream(os.toByteArray()));
-        } catch (IOException e) {
-            ErrorLogger.log(e, "Error converting Mat to Image.");
-            return null;
-        }
-    }
-    
-    // Utility to convert Mat to BufferedImage (required for ZXing)
-    private BufferedImage matToBufferedImage(Mat mat) {
-        try {
-            Java2DFrameConverter java2dConverter = new Java2DFrameConverter();
-            Frame frame = converter.convert(mat);
-            return java2dConverter.convert(frame);
-        } catch (Exception e) {
-            ErrorLogger.log(e, "Error converting Mat to BufferedImage");
-            return null;
-        }
-    }
-    
     // Ensure camera is stopped when controller is destroyed (e.g., view switched)
     public void shutdown() {
         stopCamera();
+        stopScannerMode();
+        if (metricsOverlayTimeline != null) {
+            metricsOverlayTimeline.stop();
+        }
     }
 }
@@ -1,14 +1,119 @@
 package com.gym.app.controller;
 
+import com.gym.app.service.DashboardStats;
+import com.gym.app.service.OccupancyTracker;
+import javafx.animation.AnimationTimer;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.application.Platform;
+import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
+import javafx.scene.control.Label;
+import javafx.scene.layout.VBox;
+import javafx.util.Duration;
 import java.net.URL;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
 import java.util.ResourceBundle;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class DashboardController implements Initializable {
 
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    @FXML
+    private Label checkInsLabel;
+    @FXML
+    private VBox occupancyCard;
+    @FXML
+    private Label onSiteLabel;
+    @FXML
+    private Label occupancyDetailLabel;
+    @FXML
+    private Label revenueLabel;
+    @FXML
+    private Label expiringLabel;
+    @FXML
+    private Label updatedLabel;
+
+    // The dashboard shown last; shut down when the layout is reloaded (e.g. on a language change)
+    private static DashboardController current;
+
+    private final DashboardStats stats = DashboardStats.getInstance();
+    private final OccupancyTracker occupancy = OccupancyTracker.getInstance();
+    private final DashboardStats.Listener statsListener = this::requestRefresh;
+    private final OccupancyTracker.Listener occupancyListener = this::requestRefresh;
+    private final AtomicBoolean refreshRequested = new AtomicBoolean();
+
+    // Runs on the next pulse after a change and stops again: a burst of check-ins between
+    // two pulses costs one repaint, and an idle dashboard costs nothing
+    private final AnimationTimer pulseRefresh = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            stop();
+            refreshRequested.set(false);
+            refresh();
+        }
+    };
+
+    // Expected departures and the day rolling over happen without any event
+    private final Timeline clock = new Timeline(new KeyFrame(Duration.seconds(30), e -> requestRefresh()));
+
     @Override
     public void initialize(URL url, ResourceBundle rb) {
-        // Initialization logic for the dashboard goes here
-        System.out.println("DashboardController initialized.");
+        if (current != null) {
+            current.shutdown();
+        }
+        current = this;
+
+        stats.start();
+        stats.addListener(statsListener);
+        occupancy.start();
+        occupancy.addListener(occupancyListener);
+        clock.setCycleCount(Timeline.INDEFINITE);
+        clock.play();
+        refresh();
+    }
+
+    /**
+     * Stops listening for changes; called when another view replaces the dashboard.
+     */
+    public void shutdown() {
+        stats.removeListener(statsListener);
+        occupancy.removeListener(occupancyListener);
+        clock.stop();
+        pulseRefresh.stop();
+        if (current == this) {
+            current = null;
+        }
+    }
+
+    private void requestRefresh() {
+        if (refreshRequested.compareAndSet(false, true)) {
+            Platform.runLater(pulseRefresh::start);
+        }
+    }
+
+    private void refresh() {
+        DashboardStats.Snapshot snapshot = stats.snapshot();
+        checkInsLabel.setText(String.valueOf(snapshot.checkInsToday()));
+        revenueLabel.setText(String.format("$%.2f", snapshot.revenueToday()));
+        expiringLabel.setText(String.valueOf(snapshot.expiringMembers()));
+
+        OccupancyTracker.Snapshot people = occupancy.snapshot();
+        onSiteLabel.setText(people.capacity() > 0 ? people.current() + " / " + people.capacity() : String.valueOf(people.current()));
+        occupancyDetailLabel.setText(people.isAtCapacity()
+                ? "AT CAPACITY - peak today " + people.peakToday()
+                : "Peak today " + people.peakToday());
+        // Red card while the fire-code limit is reached
+        occupancyCard.setStyle(people.isAtCapacity() ? "-fx-background-color: #fadbd8;" : "");
+        onSiteLabel.getStyleClass().removeAll("status-expired");
+        if (people.isAtCapacity()) {
+            onSiteLabel.getStyleClass().add("status-expired");
+        }
+
+        updatedLabel.setText(snapshot.loaded() && people.loaded()
+                ? "Live, updated " + LocalTime.now().format(TIME_FORMAT)
+                : "Loading today's figures...");
     }
 }
@@ -1,6 +1,16 @@
 package com.gym.app.controller;
 
+import com.gym.app.service.ReportJob;
+import com.gym.app.service.ReportJobScheduler;
+import com.gym.app.util.ErrorLogger;
 import com.gym.app.util.ViewManager;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
+import javafx.util.Duration;
+import java.text.MessageFormat;
+import java.util.List;
 import javafx.scene.layout.HBox;
 import javafx.scene.control.Button;
 import javafx.scene.control.Tooltip;
@@ -20,6 +30,21 @@ public class MainController implements Initializable {
     private BorderPane mainRoot;
     @FXML
     private HBox languageFlagsBox;
+    @FXML
+    private HBox jobStatusBar;
+    @FXML
+    private Label jobStatusLabel;
+    @FXML
+    private ProgressBar jobProgressBar;
+    @FXML
+    private Button cancelJobButton;
+
+    // One status bar per app; replaced when the layout is reloaded (e.g. on a language change)
+    private static ReportJobScheduler.Listener jobStatusListener;
+
+    private ResourceBundle resources;
+    // Keeps the last finished export visible for a while before the bar hides again
+    private final PauseTransition hideJobStatus = new PauseTransition(Duration.seconds(10));
 
     @Override
     public void initialize(URL url, ResourceBundle rb) {
@@ -34,6 +59,80 @@ public class MainController implements Initializable {
         
         // Handle language-specific UI setup
         setupLanguageUI(rb);
+
+        resources = rb;
+        setupJobStatusBar();
+    }
+
+    private void setupJobStatusBar() {
+        ReportJobScheduler scheduler = ReportJobScheduler.getInstance();
+        if (jobStatusListener != null) {
+            scheduler.removeListener(jobStatusListener);
+        }
+        jobStatusListener = job -> Platform.runLater(() -> showJobStatus(job));
+        scheduler.addListener(jobStatusListener);
+        hideJobStatus.setOnFinished(e -> setJobStatusVisible(false));
+
+        List<ReportJob> active = scheduler.getActiveJobs();
+        if (!active.isEmpty()) {
+            showJobStatus(active.get(0));
+        }
+    }
+
+    private void showJobStatus(ReportJob job) {
+        List<ReportJob> active = ReportJobScheduler.getInstance().getActiveJobs();
+        String name = job.getType().getDescription();
+
+        if (job.getState().isFinished()) {
+            if (job.getState() == ReportJob.State.FAILED) {
+                ErrorLogger.log(job.getError(), "Failed to export " + name + ".");
+            }
+            if (!active.isEmpty()) {
+                // Another export takes over the bar
+                showJobStatus(active.get(0));
+                return;
+            }
+            String key = switch (job.getState()) {
+                case SUCCEEDED -> "jobs.done";
+                case FAILED -> "jobs.failed";
+                default -> "jobs.cancelled";
+            };
+            jobStatusLabel.setText(MessageFormat.format(resources.getString(key), name, job.getTarget()));
+            jobProgressBar.setVisible(false);
+            cancelJobButton.setVisible(false);
+            setJobStatusVisible(true);
+            hideJobStatus.playFromStart();
+            return;
+        }
+
+        // Show the export being worked on; the others are summarised as queued
+        ReportJob current = active.stream().filter(j -> j.getState() == ReportJob.State.RUNNING).findFirst().orElse(job);
+        String text = current.getRowsTotal() < 0
+                ? MessageFormat.format(resources.getString("jobs.starting"), current.getType().getDescription())
+                : MessageFormat.format(resources.getString("jobs.running"), current.getType().getDescription(),
+                        current.getRowsDone(), current.getRowsTotal());
+        if (active.size() > 1) {
+            text += " " + MessageFormat.format(resources.getString("jobs.queued"), active.size() - 1);
+        }
+        jobStatusLabel.setText(text);
+        jobProgressBar.setProgress(current.getProgress());
+        jobProgressBar.setVisible(true);
+        cancelJobButton.setVisible(true);
+        cancelJobButton.setUserData(current);
+        hideJobStatus.stop();
+        setJobStatusVisible(true);
+    }
+
+    private void setJobStatusVisible(boolean visible) {
+        jobStatusBar.setVisible(visible);
+        jobStatusBar.setManaged(visible);
+    }
+
+    @FXML
+    private void handleCancelJobClick() {
+        if (cancelJobButton.getUserData() instanceof ReportJob job) {
+            ReportJobScheduler.getInstance().cancel(job);
+        }
     }
 
     private void setupLanguageUI(ResourceBundle rb) {
@@ -97,6 +196,8 @@ public class MainController implements Initializable {
         if (controller instanceof CheckInController checkInController) {
             checkInController.shutdown();
             System.out.println("CheckInController shut down.");
+        } else if (controller instanceof DashboardController dashboardController) {
+            dashboardController.shutdown();
         }
         // Add other controller cleanup logic here if needed
     }
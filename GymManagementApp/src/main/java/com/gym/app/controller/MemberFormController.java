@@ -1,6 +1,7 @@
 package com.gym.app.controller;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.URL;
 import java.nio.file.Path;
 import java.time.LocalDate;
@@ -9,10 +10,13 @@ import java.util.UUID;
 
 import com.gym.app.model.Member;
 import com.gym.app.service.MemberService;
+import com.gym.app.service.PhotoService;
+import com.gym.app.service.PhotoStore;
 import com.gym.app.util.AppPaths;
 import com.gym.app.util.ErrorLogger;
 import com.gym.app.util.QRGenerator;
 
+import javafx.concurrent.Task;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.scene.Scene;
@@ -48,6 +52,8 @@ public class MemberFormController implements Initializable {
     private ImageView photoView;
     @FXML
     private ImageView qrCodeView;
+    @FXML
+    private Button saveButton;
 
     private MemberService memberService = new MemberService();
     private Member member;
@@ -94,8 +100,7 @@ public class MemberFormController implements Initializable {
     private void loadPhoto(String path) {
         if (path != null && !path.isEmpty()) {
             try {
-                Image image = new Image(new File(path).toURI().toString());
-                photoView.setImage(image);
+                photoView.setImage(PhotoService.getInstance().getPhoto(path));
             } catch (Exception e) {
                 ErrorLogger.log(e, "Failed to load member photo from path: " + path);
                 // Optionally set a placeholder image
@@ -125,10 +130,25 @@ public class MemberFormController implements Initializable {
         File selectedFile = fileChooser.showOpenDialog(dialogStage);
 
         if (selectedFile != null) {
-            // In a real application, you would copy this file to a dedicated 'photos' directory
-            // and save the relative path. For simplicity, we'll save the absolute path for now.
-            currentPhotoPath = selectedFile.getAbsolutePath();
-            loadPhoto(currentPhotoPath);
+            // Copy into the managed photo store; the member keeps the store key, not the original path.
+            // Decoding and resizing a camera photo takes a while, so it runs off the FX thread and
+            // Save waits for it.
+            Task<String> task = new Task<>() {
+                @Override
+                protected String call() throws IOException {
+                    return PhotoStore.getInstance().importPhoto(selectedFile.toPath());
+                }
+            };
+            task.setOnSucceeded(e -> {
+                currentPhotoPath = task.getValue();
+                loadPhoto(currentPhotoPath);
+            });
+            task.setOnFailed(e -> ErrorLogger.log(task.getException(), "Failed to import member photo: " + selectedFile.getAbsolutePath()));
+            saveButton.disableProperty().bind(task.runningProperty());
+
+            Thread worker = new Thread(task, "photo-import");
+            worker.setDaemon(true);
+            worker.start();
         }
     }
 
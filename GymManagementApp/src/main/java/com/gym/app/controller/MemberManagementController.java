@@ -1,7 +1,12 @@
 package com.gym.app.controller;
 
 import com.gym.app.model.Member;
+import com.gym.app.service.CardBatchGenerator;
 import com.gym.app.service.MemberService;
+import com.gym.app.service.MemberTimelines;
+import com.gym.app.service.ReportJob;
+import com.gym.app.service.ReportJobScheduler;
+import com.gym.app.util.AppPaths;
 import com.gym.app.util.ErrorLogger;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -13,6 +18,8 @@ import javafx.scene.control.TextField;
 import javafx.scene.control.cell.PropertyValueFactory;
 import java.net.URL;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.ResourceBundle;
 import javafx.stage.Stage;
 import javafx.scene.Scene;
@@ -20,8 +27,20 @@ import javafx.scene.Scene;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.control.Alert;
+import javafx.scene.control.ButtonType;
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import javafx.concurrent.Task;
+import javafx.geometry.Insets;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
+import javafx.scene.control.Pagination;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.layout.VBox;
+import javafx.stage.DirectoryChooser;
 public class MemberManagementController implements Initializable {
 
     @FXML
@@ -42,12 +61,27 @@ public class MemberManagementController implements Initializable {
     private TableColumn<Member, String> statusColumn;
     @FXML
     private TableColumn<Member, String> qrValueColumn;
+    @FXML
+    private Label historyNameLabel;
+    @FXML
+    private Label visitCountLabel;
+    @FXML
+    private Label recentVisitsLabel;
+    @FXML
+    private Label lastVisitLabel;
+    @FXML
+    private Pagination historyPagination;
+
+    private static final int HISTORY_PAGE_SIZE = 20;
+    private static final DateTimeFormatter VISIT_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
 
     private MemberService memberService = new MemberService();
+    private ResourceBundle resources;
     private ObservableList<Member> memberList = FXCollections.observableArrayList();
 
     @Override
     public void initialize(URL url, ResourceBundle rb) {
+        this.resources = rb;
         // Initialize table columns
         idColumn.setCellValueFactory(new PropertyValueFactory<>("memberId"));
         nameColumn.setCellValueFactory(new PropertyValueFactory<>("fullName"));
@@ -59,10 +93,51 @@ public class MemberManagementController implements Initializable {
         // Custom cell factory for status column to apply CSS styles (will be implemented later)
         statusColumn.setCellValueFactory(new PropertyValueFactory<>("status"));
 
+        // Visit history of the selected member: the summary is precomputed, pages are decoded on demand
+        memberTable.getSelectionModel().selectedItemProperty().addListener((obs, oldMember, member) -> showHistory(member));
+        showHistory(null);
+
         // Load initial data
         loadMembers("");
     }
 
+    private void showHistory(Member member) {
+        if (member == null) {
+            historyNameLabel.setText(getText("member.history.select", "Select a member to see their visits."));
+            visitCountLabel.setText("-");
+            recentVisitsLabel.setText("-");
+            lastVisitLabel.setText("-");
+            historyPagination.setPageCount(1);
+            historyPagination.setPageFactory(page -> new ListView<String>());
+            return;
+        }
+        MemberTimelines timelines = MemberTimelines.getInstance();
+        MemberTimelines.Summary summary = timelines.getSummary(member.getMemberId());
+        historyNameLabel.setText(summary.loaded()
+                ? member.getFullName()
+                : member.getFullName() + " - " + getText("member.history.loading", "Loading visit history..."));
+        visitCountLabel.setText(String.valueOf(summary.visitCount()));
+        recentVisitsLabel.setText(String.valueOf(summary.visitsLast30Days()));
+        lastVisitLabel.setText(summary.lastVisit() == null
+                ? getText("member.history.none", "No visits yet")
+                : summary.lastVisit().format(VISIT_FORMAT));
+
+        int memberId = member.getMemberId();
+        historyPagination.setPageCount(Math.max(1, (summary.visitCount() + HISTORY_PAGE_SIZE - 1) / HISTORY_PAGE_SIZE));
+        historyPagination.setCurrentPageIndex(0);
+        historyPagination.setPageFactory(page -> {
+            ListView<String> list = new ListView<>();
+            for (LocalDateTime visit : timelines.getVisits(memberId, page, HISTORY_PAGE_SIZE)) {
+                list.getItems().add(visit.format(VISIT_FORMAT));
+            }
+            return list;
+        });
+    }
+
+    private String getText(String key, String fallback) {
+        return resources != null && resources.containsKey(key) ? resources.getString(key) : fallback;
+    }
+
     private void loadMembers(String searchTerm) {
         try {
             // The searchMembers method in MemberService will handle the actual search.
@@ -180,4 +255,97 @@ public class MemberManagementController implements Initializable {
             showAlert(Alert.AlertType.WARNING, "No Selection", "Please select a member in the table.");
         }
     }
+
+    @FXML
+    private void handleExportCsv() {
+        // The whole members table, for BI tools; runs in the background like the report exports
+        try {
+            ReportJobScheduler.getInstance().submit(ReportJob.Type.MEMBERS_CSV,
+                    AppPaths.getReportsDir().resolve(ReportJob.Type.MEMBERS_CSV.getFileName()));
+        } catch (IllegalStateException e) {
+            showAlert(Alert.AlertType.WARNING, "Export Queue Full", e.getMessage());
+        }
+    }
+
+    @FXML
+    private void handlePrintCards() {
+        // Prints what the table shows, so a search narrows the batch (e.g. one branch)
+        List<Member> members = new ArrayList<>(memberTable.getItems());
+        if (members.isEmpty()) {
+            showAlert(Alert.AlertType.WARNING, "No Members", "There are no members in the table to print.");
+            return;
+        }
+
+        DirectoryChooser chooser = new DirectoryChooser();
+        chooser.setTitle("Choose a folder for the card sheets");
+        chooser.setInitialDirectory(AppPaths.getQrCodesDir().toFile());
+        File sheetDir = chooser.showDialog(memberTable.getScene().getWindow());
+        if (sheetDir == null) {
+            return;
+        }
+
+        CardBatchGenerator generator = new CardBatchGenerator();
+        Task<CardBatchGenerator.Result> task = new Task<>() {
+            @Override
+            protected CardBatchGenerator.Result call() throws Exception {
+                return generator.generate(members, sheetDir.toPath(), this::updateProgress);
+            }
+        };
+
+        ProgressBar progressBar = new ProgressBar();
+        progressBar.setPrefWidth(320);
+        progressBar.progressProperty().bind(task.progressProperty());
+        Button cancelButton = new Button("Cancel");
+        cancelButton.setOnAction(e -> generator.cancel());
+        VBox root = new VBox(10, new Label("Generating " + members.size() + " member cards..."), progressBar, cancelButton);
+        root.setPadding(new Insets(20));
+
+        Stage progressStage = new Stage();
+        progressStage.setTitle("Print Cards");
+        progressStage.initOwner(memberTable.getScene().getWindow());
+        progressStage.setScene(new Scene(root));
+        progressStage.setOnCloseRequest(e -> generator.cancel());
+
+        task.setOnSucceeded(e -> {
+            progressStage.close();
+            CardBatchGenerator.Result result = task.getValue();
+            if (result.isCancelled()) {
+                showAlert(Alert.AlertType.INFORMATION, "Cancelled", "Card generation was cancelled. "
+                        + result.getSheets().size() + " complete sheets were written to " + sheetDir);
+            } else {
+                showAlert(Alert.AlertType.INFORMATION, "Success", result.getSheets().size()
+                        + " card sheets written to " + sheetDir);
+            }
+        });
+        task.setOnFailed(e -> {
+            progressStage.close();
+            ErrorLogger.log(task.getException(), "Failed to generate member cards.");
+        });
+
+        Thread worker = new Thread(task, "card-batch");
+        worker.setDaemon(true);
+        worker.start();
+        progressStage.show();
+    }
+
+    @FXML
+    private void handleReplaceCard() {
+        Member selectedMember = memberTable.getSelectionModel().getSelectedItem();
+        if (selectedMember == null) {
+            showAlert(Alert.AlertType.WARNING, "No Selection", "Please select a member in the table.");
+            return;
+        }
+        Alert confirm = new Alert(Alert.AlertType.CONFIRMATION);
+        confirm.setTitle(getText("member.replaceCard", "Replace Lost Card"));
+        confirm.setHeaderText(null);
+        confirm.setContentText(getText("member.replaceCard.confirm", "The member's current card will stop working. Continue?"));
+        if (confirm.showAndWait().orElse(ButtonType.CANCEL) != ButtonType.OK) {
+            return;
+        }
+        if (memberService.replaceCard(selectedMember) != null) {
+            loadMembers(searchField.getText());
+            showAlert(Alert.AlertType.INFORMATION, "Success",
+                    getText("member.replaceCard.done", "The old card has been revoked. Print the member's new card."));
+        }
+    }
 }
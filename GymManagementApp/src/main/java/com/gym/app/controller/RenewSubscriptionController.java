@@ -3,7 +3,6 @@ package com.gym.app.controller;
 import com.gym.app.model.Member;
 import com.gym.app.model.Payment;
 import com.gym.app.service.MemberService;
-import com.gym.app.service.PaymentService;
 import com.gym.app.util.ErrorLogger;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
@@ -41,12 +40,10 @@ public class RenewSubscriptionController implements Initializable {
     private Member member;
     private Stage dialogStage;
     private MemberService memberService;
-    private PaymentService paymentService;
     
     // Initialize services in the constructor or initialize method
     public RenewSubscriptionController() {
         this.memberService = new MemberService();
-        this.paymentService = new PaymentService();
     }
     private final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("dd MMMM yyyy");
 
@@ -150,28 +147,25 @@ public class RenewSubscriptionController implements Initializable {
             return;
         }
 
-        // 2. Update Expiry Date
-        LocalDate newExpiry = memberService.renewSubscription(member.getMemberId(), months);
+        // 2. Update Expiry Date and add Payment Record, together
+        Payment payment = new Payment(member.getMemberId(), amount, LocalDate.now(), months);
+        LocalDate newExpiry = memberService.renewSubscription(payment);
 
         if (newExpiry != null) {
-            // 3. Add Payment Record
-            Payment payment = new Payment(member.getMemberId(), amount, LocalDate.now(), months);
-            paymentService.addPayment(payment);
-
-            // 4. Update member object in memory
+            // 3. Update member object in memory
             member.setExpiryDate(newExpiry);
             
-            // 5. Play short beep (Placeholder)
+            // 4. Play short beep (Placeholder)
             System.out.println("ACTION: Play short beep sound.");
 
-            // 6. Send WhatsApp renewal message (Placeholder)
+            // 5. Send WhatsApp renewal message (Placeholder)
             System.out.println("ACTION: Send WhatsApp renewal message to " + member.getPhone());
 
-            // 7. Show success message
+            // 6. Show success message
             showAlert(Alert.AlertType.INFORMATION, "Renewal Successful", 
                       String.format("Subscription renewed for %s months. New expiry date: %s", months, newExpiry.format(dateFormatter)));
 
-            // 8. Close the dialog
+            // 7. Close the dialog
             dialogStage.close();
         } else {
             showAlert(Alert.AlertType.ERROR, "Renewal Failed", "Could not process subscription renewal. Check error log.");
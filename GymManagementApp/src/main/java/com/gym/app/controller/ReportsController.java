@@ -1,29 +1,59 @@
 package com.gym.app.controller;
 
+import java.io.File;
 import java.net.URL;
+import java.sql.SQLException;
 import java.nio.file.Path;
+import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.TextStyle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
 import java.util.ResourceBundle;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import com.gym.app.model.Attendance;
 import com.gym.app.model.Payment;
+import com.gym.app.service.AttendanceAnalytics;
 import com.gym.app.service.AttendanceService;
+import com.gym.app.service.BranchConsolidation;
+import com.gym.app.service.OvernightReports;
 import com.gym.app.service.PaymentService;
+import com.gym.app.service.ReportJob;
+import com.gym.app.service.ReportJobScheduler;
+import com.gym.app.service.ReportQueryCache;
+import com.gym.app.service.RetentionIndex;
 import com.gym.app.util.AppPaths;
 import com.gym.app.util.ErrorLogger;
-import com.gym.app.util.ReportExporter;
+import com.gym.app.util.TrendChart;
 
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.ReadOnlyStringWrapper;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
+import javafx.geometry.Pos;
 import javafx.scene.control.Alert;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.DatePicker;
 import javafx.scene.control.Label;
+import javafx.scene.control.Tab;
+import javafx.scene.control.TableCell;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
+import javafx.scene.control.Tooltip;
 import javafx.scene.control.cell.PropertyValueFactory;
+import javafx.scene.layout.GridPane;
+import javafx.scene.paint.Color;
 
 public class ReportsController implements Initializable {
 
@@ -32,6 +62,18 @@ public class ReportsController implements Initializable {
     @FXML
     private Label annualRevenueLabel;
     @FXML
+    private DatePicker rangeStartPicker;
+    @FXML
+    private DatePicker rangeEndPicker;
+    @FXML
+    private Label rangeRevenueLabel;
+    @FXML
+    private ComboBox<Comparison> comparisonComboBox;
+    @FXML
+    private Label comparisonLabel;
+    @FXML
+    private Label comparisonChangeLabel;
+    @FXML
     private TableView<Payment> paymentTable;
     @FXML
     private TableColumn<Payment, LocalDate> payDateColumn;
@@ -42,17 +84,172 @@ public class ReportsController implements Initializable {
     @FXML
     private TableColumn<Payment, Integer> payPeriodColumn;
     @FXML
+    private Label visitsTodayLabel;
+    @FXML
+    private Label visitsChangeLabel;
+    @FXML
+    private Label visitsPerWeekLabel;
+    @FXML
+    private Label busiestHourLabel;
+    @FXML
+    private Label uniqueWeekLabel;
+    @FXML
+    private Label uniqueMonthLabel;
+    @FXML
+    private Label heatmapTitleLabel;
+    @FXML
+    private GridPane heatmapGrid;
+    @FXML
     private TableView<Attendance> attendanceTable;
     @FXML
     private TableColumn<Attendance, LocalDateTime> attTimestampColumn;
     @FXML
     private TableColumn<Attendance, Integer> attMemberIdColumn;
+    @FXML
+    private ComboBox<RetentionMode> retentionModeComboBox;
+    @FXML
+    private ComboBox<Integer> cohortMonthsComboBox;
+    @FXML
+    private TableView<RetentionIndex.Cohort> retentionTable;
+    @FXML
+    private TableColumn<RetentionIndex.Cohort, YearMonth> cohortMonthColumn;
+    @FXML
+    private TableColumn<RetentionIndex.Cohort, Integer> cohortSizeColumn;
+    @FXML
+    private Label retentionStatusLabel;
+    @FXML
+    private Label revenuePreparedLabel;
+    @FXML
+    private Label attendancePreparedLabel;
+    @FXML
+    private TrendChart revenueTrendChart;
+    @FXML
+    private TrendChart visitsTrendChart;
+    @FXML
+    private Label trendsStatusLabel;
+    @FXML
+    private Tab branchesTab;
+    @FXML
+    private ComboBox<BranchPeriod> branchPeriodComboBox;
+    @FXML
+    private Label branchesHelpLabel;
+    @FXML
+    private TableView<BranchConsolidation.BranchResult> branchTable;
+    @FXML
+    private TableColumn<BranchConsolidation.BranchResult, String> branchNameColumn;
+    @FXML
+    private TableColumn<BranchConsolidation.BranchResult, String> branchMembersColumn;
+    @FXML
+    private TableColumn<BranchConsolidation.BranchResult, String> branchActiveColumn;
+    @FXML
+    private TableColumn<BranchConsolidation.BranchResult, String> branchRevenueColumn;
+    @FXML
+    private TableColumn<BranchConsolidation.BranchResult, String> branchVisitsColumn;
+    @FXML
+    private TableColumn<BranchConsolidation.BranchResult, String> branchStatusColumn;
+    @FXML
+    private Label branchStatusLabel;
+
+    // Cache keys of the full tables shown on this page
+    private static final String ALL_PAYMENTS = "payments:all";
+    private static final String ALL_ATTENDANCE = "attendance:all";
+
+    // Days covered by the heatmap and the visits-per-week card
+    private static final int INSIGHT_DAYS = 90;
+    // History shown by the trend charts
+    private static final int TREND_YEARS = 5;
+    private static final DateTimeFormatter PREPARED_AT_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
 
     private PaymentService paymentService = new PaymentService();
     private AttendanceService attendanceService = new AttendanceService();
+    private Task<BranchConsolidation.Result> branchTask;
     private ObservableList<Payment> paymentList = FXCollections.observableArrayList();
     private ObservableList<Attendance> attendanceList = FXCollections.observableArrayList();
 
+    // Periods offered by the comparison card; each is compared with the one before it
+    private enum Comparison {
+        MONTH_TO_DATE("Month to date vs same days last month"),
+        YEAR_TO_DATE("Year to date vs same days last year"),
+        LAST_MONTH("Last month vs the month before"),
+        LAST_YEAR("Last year vs the year before");
+
+        private final String label;
+
+        Comparison(String label) {
+            this.label = label;
+        }
+
+        // {current start, current end, previous start, previous end}
+        LocalDate[] periods(LocalDate today) {
+            return switch (this) {
+                case MONTH_TO_DATE -> new LocalDate[] {today.withDayOfMonth(1), today,
+                        today.minusMonths(1).withDayOfMonth(1), today.minusMonths(1)};
+                case YEAR_TO_DATE -> new LocalDate[] {today.withDayOfYear(1), today,
+                        today.minusYears(1).withDayOfYear(1), today.minusYears(1)};
+                case LAST_MONTH -> {
+                    YearMonth last = YearMonth.from(today).minusMonths(1);
+                    yield new LocalDate[] {last.atDay(1), last.atEndOfMonth(),
+                            last.minusMonths(1).atDay(1), last.minusMonths(1).atEndOfMonth()};
+                }
+                case LAST_YEAR -> {
+                    int last = today.getYear() - 1;
+                    yield new LocalDate[] {LocalDate.of(last, 1, 1), LocalDate.of(last, 12, 31),
+                            LocalDate.of(last - 1, 1, 1), LocalDate.of(last - 1, 12, 31)};
+                }
+            };
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    // Periods of the branch consolidation; null bounds mean no limit
+    private enum BranchPeriod {
+        THIS_MONTH("This month"),
+        THIS_YEAR("This year"),
+        LAST_12_MONTHS("Last 12 months"),
+        ALL_TIME("All time");
+
+        private final String label;
+
+        BranchPeriod(String label) {
+            this.label = label;
+        }
+
+        // {first month, last month}
+        YearMonth[] months(YearMonth current) {
+            return switch (this) {
+                case THIS_MONTH -> new YearMonth[] {current, current};
+                case THIS_YEAR -> new YearMonth[] {current.withMonth(1), current};
+                case LAST_12_MONTHS -> new YearMonth[] {current.minusMonths(11), current};
+                case ALL_TIME -> new YearMonth[] {null, null};
+            };
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    private enum RetentionMode {
+        RETENTION("Retention (% of cohort still coming)"),
+        CHURN("Churn (% of last month's visitors lost)");
+
+        private final String label;
+
+        RetentionMode(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
     @Override
     public void initialize(URL url, ResourceBundle rb) {
         // Initialize Payment Table
@@ -67,9 +264,63 @@ public class ReportsController implements Initializable {
         attMemberIdColumn.setCellValueFactory(new PropertyValueFactory<>("memberId"));
         attendanceTable.setItems(attendanceList);
 
+        // Custom range and period comparison are answered from the in-memory revenue index,
+        // so they update instantly as the dates change
+        rangeStartPicker.setValue(LocalDate.now().withDayOfMonth(1));
+        rangeEndPicker.setValue(LocalDate.now());
+        rangeStartPicker.valueProperty().addListener((obs, oldValue, newValue) -> updateRangeRevenue());
+        rangeEndPicker.valueProperty().addListener((obs, oldValue, newValue) -> updateRangeRevenue());
+        comparisonComboBox.getItems().setAll(Comparison.values());
+        comparisonComboBox.setValue(Comparison.MONTH_TO_DATE);
+        comparisonComboBox.valueProperty().addListener((obs, oldValue, newValue) -> updateComparison());
+
+        // Retention matrix: month columns are added once the cohorts are known
+        cohortMonthColumn.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().month()));
+        cohortSizeColumn.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().size()));
+        retentionModeComboBox.getItems().setAll(RetentionMode.values());
+        retentionModeComboBox.setValue(RetentionMode.RETENTION);
+        retentionModeComboBox.valueProperty().addListener((obs, oldValue, newValue) -> loadRetention());
+        cohortMonthsComboBox.getItems().setAll(6, 12, 24);
+        cohortMonthsComboBox.setValue(12);
+        cohortMonthsComboBox.valueProperty().addListener((obs, oldValue, newValue) -> loadRetention());
+
+        // Branch figures are read only when the tab is opened: the first read of a large database takes a while
+        branchNameColumn.setCellValueFactory(cell -> new ReadOnlyStringWrapper(cell.getValue().branch().name()));
+        branchMembersColumn.setCellValueFactory(cell -> branchFigure(cell.getValue(), totals -> String.valueOf(totals.getMembers())));
+        branchActiveColumn.setCellValueFactory(cell -> branchFigure(cell.getValue(), totals -> String.valueOf(totals.getActiveMembers())));
+        branchRevenueColumn.setCellValueFactory(cell -> branchFigure(cell.getValue(), totals -> {
+            YearMonth[] months = branchPeriodComboBox.getValue().months(YearMonth.now());
+            return String.format("$%,.2f", totals.getRevenue(months[0], months[1]));
+        }));
+        branchVisitsColumn.setCellValueFactory(cell -> branchFigure(cell.getValue(), totals -> {
+            YearMonth[] months = branchPeriodComboBox.getValue().months(YearMonth.now());
+            return String.format("%,d", totals.getVisits(months[0], months[1]));
+        }));
+        branchStatusColumn.setCellValueFactory(cell -> new ReadOnlyStringWrapper(branchStatus(cell.getValue())));
+        branchPeriodComboBox.getItems().setAll(BranchPeriod.values());
+        branchPeriodComboBox.setValue(BranchPeriod.THIS_MONTH);
+        branchPeriodComboBox.valueProperty().addListener((obs, oldValue, newValue) -> branchTable.refresh());
+        branchesHelpLabel.setText("To add a branch, copy its gym.db into a folder named after the branch in "
+                + AppPaths.getBranchesDir() + " (for example Downtown" + File.separator + "gym.db). "
+                + "Only branches whose database changed since the last refresh are read again.");
+        branchesTab.setOnSelectionChanged(e -> {
+            if (branchesTab.isSelected()) {
+                loadBranches();
+            }
+        });
+
+        revenueTrendChart.setTitle("Revenue");
+        revenueTrendChart.setValueFormat(value -> String.format("$%,.0f", value));
+        revenueTrendChart.setLineColor(Color.web("#27ae60"));
+        visitsTrendChart.setTitle("Visits");
+
         // Load Data
         loadRevenueData();
         loadAttendanceData();
+        loadAttendanceInsights();
+        loadRetention();
+        loadTrends();
+        showPreparedReports();
     }
 
     private void loadRevenueData() {
@@ -87,70 +338,383 @@ public class ReportsController implements Initializable {
             double annualRevenue = paymentService.getTotalRevenue(startOfYear, endOfYear);
             annualRevenueLabel.setText(String.format("$%.2f", annualRevenue));
 
+            updateRangeRevenue();
+            updateComparison();
+
             // Load all payments
-            paymentList.setAll(paymentService.getAllPayments());
-            
+            loadTable(paymentList, ReportsController::getAllPayments, "report-payments", "Failed to load revenue data.");
+
         } catch (Exception e) {
             ErrorLogger.log(e, "Failed to load revenue data.");
         }
     }
     
+    private void updateRangeRevenue() {
+        LocalDate start = rangeStartPicker.getValue();
+        LocalDate end = rangeEndPicker.getValue();
+        if (start == null || end == null) {
+            rangeRevenueLabel.setText("");
+            return;
+        }
+        rangeRevenueLabel.setText(String.format("$%.2f", paymentService.getTotalRevenue(start, end)));
+    }
+
+    private void updateComparison() {
+        Comparison comparison = comparisonComboBox.getValue();
+        if (comparison == null) {
+            return;
+        }
+        LocalDate[] periods = comparison.periods(LocalDate.now());
+        double current = paymentService.getTotalRevenue(periods[0], periods[1]);
+        double previous = paymentService.getTotalRevenue(periods[2], periods[3]);
+        comparisonLabel.setText(String.format("$%.2f vs $%.2f", current, previous));
+        if (previous == 0) {
+            comparisonChangeLabel.setText(current == 0 ? "No change" : "No revenue in the previous period");
+            comparisonChangeLabel.setStyle("");
+        } else {
+            double change = (current - previous) / previous * 100;
+            comparisonChangeLabel.setText(String.format("%+.1f%% (%s to %s vs %s to %s)", change,
+                    periods[0], periods[1], periods[2], periods[3]));
+            comparisonChangeLabel.setStyle(change >= 0 ? "-fx-text-fill: #27ae60;" : "-fx-text-fill: #c0392b;");
+        }
+    }
+
     private void loadAttendanceData() {
+        loadTable(attendanceList, ReportsController::getAllAttendance, "report-attendance", "Failed to load attendance data.");
+    }
+
+    // Whole tables can take a while to read: off the FX thread, answered from the cache when current
+    private static <T> void loadTable(ObservableList<T> target, Supplier<List<T>> loader, String threadName, String errorMessage) {
+        Task<List<T>> task = new Task<>() {
+            @Override
+            protected List<T> call() {
+                return loader.get();
+            }
+        };
+        task.setOnSucceeded(e -> target.setAll(task.getValue()));
+        task.setOnFailed(e -> ErrorLogger.log(task.getException(), errorMessage));
+
+        Thread worker = new Thread(task, threadName);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    // Answered from the in-memory columns and sketches, so years of check-ins cost milliseconds
+    private void loadAttendanceInsights() {
+        LocalDate monday = LocalDate.now().with(DayOfWeek.MONDAY);
+        uniqueWeekLabel.setText(String.valueOf(attendanceService.getUniqueVisitorCount(monday, LocalDate.now())));
+        uniqueMonthLabel.setText(String.format("This month: %d",
+                attendanceService.getUniqueVisitorCount(LocalDate.now().withDayOfMonth(1), LocalDate.now())));
+
+        AttendanceAnalytics analytics = AttendanceAnalytics.getInstance();
+        if (!analytics.isLoaded()) {
+            heatmapTitleLabel.setText("Busiest Hours (still loading attendance history, reopen Reports in a moment)");
+            return;
+        }
+        LocalDate today = LocalDate.now();
+        LocalDate from = today.minusDays(INSIGHT_DAYS - 1);
+
+        long[] daily = analytics.getDailyVisits(today.minusDays(1), today);
+        visitsTodayLabel.setText(String.valueOf(daily[1]));
+        if (daily[0] == 0) {
+            visitsChangeLabel.setText(daily[1] == 0 ? "No visits yesterday either" : "No visits yesterday");
+            visitsChangeLabel.setStyle("");
+        } else {
+            double change = (daily[1] - daily[0]) / (double) daily[0] * 100;
+            visitsChangeLabel.setText(String.format("%+.1f%% vs yesterday (%d)", change, daily[0]));
+            visitsChangeLabel.setStyle(change >= 0 ? "-fx-text-fill: #27ae60;" : "-fx-text-fill: #c0392b;");
+        }
+        visitsPerWeekLabel.setText(String.format("%.1f", analytics.getAverageVisitsPerWeek(from, today)));
+
+        long[] heatmap = analytics.getHourOfWeekHeatmap(from, today);
+        int busiest = 0;
+        for (int i = 1; i < heatmap.length; i++) {
+            if (heatmap[i] > heatmap[busiest]) {
+                busiest = i;
+            }
+        }
+        busiestHourLabel.setText(heatmap[busiest] == 0 ? "No visits yet"
+                : String.format("Busiest: %s %02d:00", dayName(busiest / 24), busiest % 24));
+        showHeatmap(heatmap, heatmap[busiest]);
+    }
+
+    private void showHeatmap(long[] counts, long max) {
+        heatmapGrid.getChildren().clear();
+        for (int hour = 0; hour < 24; hour++) {
+            Label label = new Label(hour % 3 == 0 ? String.format("%02d", hour) : "");
+            label.setStyle("-fx-font-size: 10px;");
+            heatmapGrid.add(label, hour + 1, 0);
+        }
+        for (int day = 0; day < 7; day++) {
+            Label dayLabel = new Label(dayName(day));
+            dayLabel.setStyle("-fx-font-size: 10px;");
+            heatmapGrid.add(dayLabel, 0, day + 1);
+            for (int hour = 0; hour < 24; hour++) {
+                long count = counts[day * 24 + hour];
+                Label cell = new Label();
+                cell.setMinSize(22, 14);
+                cell.setAlignment(Pos.CENTER);
+                // White to the dashboard blue, in proportion to the busiest hour
+                double share = max == 0 ? 0 : count / (double) max;
+                cell.setStyle(String.format("-fx-background-color: rgb(%d, %d, %d);",
+                        (int) (255 - share * (255 - 52)), (int) (255 - share * (255 - 152)), (int) (255 - share * (255 - 219))));
+                Tooltip.install(cell, new Tooltip(String.format("%s %02d:00 - %d visits", dayName(day), hour, count)));
+                heatmapGrid.add(cell, hour + 1, day + 1);
+            }
+        }
+    }
+
+    private void loadRetention() {
+        RetentionIndex index = RetentionIndex.getInstance();
+        if (!index.isLoaded()) {
+            retentionTable.getItems().clear();
+            retentionStatusLabel.setText("Still loading attendance history, reopen Reports in a moment.");
+            return;
+        }
         try {
-            attendanceList.setAll(attendanceService.getAllAttendance());
-        } catch (Exception e) {
-            ErrorLogger.log(e, "Failed to load attendance data.");
+            YearMonth last = YearMonth.now();
+            YearMonth first = last.minusMonths(cohortMonthsComboBox.getValue() - 1);
+            long start = System.nanoTime();
+            List<RetentionIndex.Cohort> cohorts = index.getCohorts(first, last);
+            long micros = (System.nanoTime() - start) / 1000;
+
+            boolean churn = retentionModeComboBox.getValue() == RetentionMode.CHURN;
+            retentionTable.getColumns().setAll(List.of(cohortMonthColumn, cohortSizeColumn));
+            int monthCount = cohorts.isEmpty() ? 0 : cohorts.get(0).getMonthCount();
+            for (int k = 0; k < monthCount; k++) {
+                retentionTable.getColumns().add(retentionColumn(k, churn));
+            }
+            retentionTable.getItems().setAll(cohorts);
+            retentionStatusLabel.setText(String.format("%d days of attendance indexed (%d KB), matrix computed in %d µs",
+                    index.getDayCount(), index.getSizeInBytes() / 1024, micros));
+        } catch (SQLException e) {
+            ErrorLogger.log(e, "Failed to load cohort retention.");
+        }
+    }
+
+    // Years of daily values are gathered and aggregated off the FX thread; the charts then
+    // only draw what fits their width
+    private void loadTrends() {
+        boolean visitsLoaded = AttendanceAnalytics.getInstance().isLoaded();
+        revenueTrendChart.setEmptyText("Loading...");
+        visitsTrendChart.setEmptyText(visitsLoaded ? "Loading..." : "Still loading attendance history, reopen Reports in a moment");
+        LocalDate today = LocalDate.now();
+        LocalDate from = today.minusYears(TREND_YEARS).plusDays(1);
+
+        Task<TrendChart.Series[]> task = new Task<>() {
+            @Override
+            protected TrendChart.Series[] call() {
+                double[] revenue = paymentService.getDailyRevenue(from, today);
+                TrendChart.Series[] series = {trendSeries(from, revenue), null};
+                if (visitsLoaded) {
+                    long[] counts = AttendanceAnalytics.getInstance().getDailyVisits(from, today);
+                    double[] visits = new double[counts.length];
+                    for (int i = 0; i < counts.length; i++) {
+                        visits[i] = counts[i];
+                    }
+                    series[1] = trendSeries(from, visits);
+                }
+                return series;
+            }
+        };
+        long start = System.nanoTime();
+        task.setOnSucceeded(e -> {
+            TrendChart.Series[] series = task.getValue();
+            revenueTrendChart.setEmptyText("No payments in the last " + TREND_YEARS + " years");
+            revenueTrendChart.setSeries(series[0]);
+            if (visitsLoaded) {
+                visitsTrendChart.setEmptyText("No visits in the last " + TREND_YEARS + " years");
+            }
+            visitsTrendChart.setSeries(series[1]);
+            trendsStatusLabel.setText(String.format("Series prepared in %d ms", (System.nanoTime() - start) / 1_000_000));
+        });
+        task.setOnFailed(e -> ErrorLogger.log(task.getException(), "Failed to load report trends."));
+
+        Thread worker = new Thread(task, "report-trends");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    // Each branch database is aggregated on its own thread, off the FX thread
+    private void loadBranches() {
+        if (branchTask != null && branchTask.isRunning()) {
+            return;
         }
+        branchStatusLabel.setText("Reading branch databases...");
+        long start = System.nanoTime();
+        Task<BranchConsolidation.Result> task = new Task<>() {
+            @Override
+            protected BranchConsolidation.Result call() throws Exception {
+                return BranchConsolidation.getInstance().consolidate(BranchConsolidation.findBranches());
+            }
+        };
+        task.setOnSucceeded(e -> {
+            BranchConsolidation.Result result = task.getValue();
+            List<BranchConsolidation.BranchResult> rows = new ArrayList<>(result.branches());
+            rows.add(new BranchConsolidation.BranchResult(new BranchConsolidation.Branch("All branches", null),
+                    result.combined(), false, 0, null));
+            branchTable.getItems().setAll(rows);
+            long refreshed = result.branches().stream().filter(BranchConsolidation.BranchResult::refreshed).count();
+            branchStatusLabel.setText(String.format("%d branches, %d read again, %d unchanged, in %d ms",
+                    result.branches().size(), refreshed, result.branches().size() - refreshed,
+                    (System.nanoTime() - start) / 1_000_000));
+        });
+        task.setOnFailed(e -> {
+            branchStatusLabel.setText("");
+            ErrorLogger.log(task.getException(), "Failed to consolidate the branch databases.");
+        });
+        branchTask = task;
+
+        Thread worker = new Thread(task, "branch-consolidation");
+        worker.setDaemon(true);
+        worker.start();
     }
 
     @FXML
-    private void handleExportRevenuePDF() {
-        try {
-            Path filePath = AppPaths.getReportsDir().resolve("RevenueReport.pdf");
-            ReportExporter.exportRevenueToPDF(paymentList, filePath.toString());
-            showAlert(Alert.AlertType.INFORMATION, "Export Successful", "Revenue report exported to:\n" + filePath + "\n(simulated PDF)");
-        } catch (Exception e) {
-            ErrorLogger.log(e, "Failed to export revenue report to PDF.");
-            showAlert(Alert.AlertType.ERROR, "Export Failed", "Failed to export revenue report to PDF. Check error log.");
+    private void handleRefreshBranches() {
+        loadBranches();
+    }
+
+    private static ReadOnlyStringWrapper branchFigure(BranchConsolidation.BranchResult row,
+                                                      Function<BranchConsolidation.Totals, String> figure) {
+        return new ReadOnlyStringWrapper(row.totals() == null ? "" : figure.apply(row.totals()));
+    }
+
+    private static String branchStatus(BranchConsolidation.BranchResult row) {
+        if (row.branch().database() == null) {
+            return ""; // the totals row
+        }
+        if (row.error() != null) {
+            return "Could not read: " + row.error();
+        }
+        return row.refreshed() ? String.format("Read in %d ms", row.millis()) : "Unchanged";
+    }
+
+    // Starts at the first day with a value, so a young gym's chart is not mostly empty
+    private static TrendChart.Series trendSeries(LocalDate from, double[] daily) {
+        int first = 0;
+        while (first < daily.length && daily[first] == 0) {
+            first++;
+        }
+        if (first == daily.length) {
+            return null;
         }
+        return new TrendChart.Series(from.plusDays(first), Arrays.copyOfRange(daily, first, daily.length));
+    }
+
+    private TableColumn<RetentionIndex.Cohort, String> retentionColumn(int monthsSinceJoining, boolean churn) {
+        TableColumn<RetentionIndex.Cohort, String> column = new TableColumn<>("M" + monthsSinceJoining);
+        column.setPrefWidth(50);
+        column.setSortable(false);
+        column.setCellValueFactory(cell -> {
+            RetentionIndex.Cohort cohort = cell.getValue();
+            if (monthsSinceJoining >= cohort.getMonthCount() || cohort.size() == 0 || (churn && monthsSinceJoining == 0)) {
+                return new ReadOnlyStringWrapper("");
+            }
+            double percent = churn ? cohort.churnPercent(monthsSinceJoining) : cohort.retentionPercent(monthsSinceJoining);
+            return new ReadOnlyStringWrapper(String.format("%.0f%%", percent));
+        });
+        // Shaded like a heatmap: green for retention, red for churn
+        column.setCellFactory(c -> new TableCell<>() {
+            @Override
+            protected void updateItem(String item, boolean empty) {
+                super.updateItem(item, empty);
+                if (empty || item == null || item.isEmpty()) {
+                    setText(null);
+                    setStyle("");
+                    return;
+                }
+                setText(item);
+                double share = Double.parseDouble(item.substring(0, item.length() - 1)) / 100;
+                setStyle(churn
+                        ? String.format("-fx-background-color: rgba(192, 57, 43, %.2f);", share * 0.8)
+                        : String.format("-fx-background-color: rgba(39, 174, 96, %.2f);", share * 0.8));
+            }
+        });
+        return column;
+    }
+
+    // Day 0 is Monday, as in the analytics heatmap
+    private static String dayName(int day) {
+        return DayOfWeek.of(day + 1).getDisplayName(TextStyle.SHORT, Locale.ENGLISH);
+    }
+
+    private static List<Payment> getAllPayments() {
+        return ReportQueryCache.getInstance().get(ALL_PAYMENTS, ReportsController::loadAllPayments, ReportQueryCache.PAYMENTS);
+    }
+
+    private static List<Attendance> getAllAttendance() {
+        return ReportQueryCache.getInstance().get(ALL_ATTENDANCE, ReportsController::loadAllAttendance, ReportQueryCache.ATTENDANCE);
+    }
+
+    // Cached lists are shared between visits, so they are handed out read-only
+    private static List<Payment> loadAllPayments() {
+        return Collections.unmodifiableList(new PaymentService().getAllPayments());
+    }
+
+    private static List<Attendance> loadAllAttendance() {
+        return Collections.unmodifiableList(new AttendanceService().getAllAttendance());
+    }
+
+    @FXML
+    private void handleExportRevenuePDF() {
+        queueExport(ReportJob.Type.REVENUE_PDF);
     }
 
     @FXML
     private void handleExportRevenueExcel() {
-        try {
-            Path filePath = AppPaths.getReportsDir().resolve("RevenueReport.xlsx");
-            ReportExporter.exportRevenueToExcel(paymentList, filePath.toString());
-            showAlert(Alert.AlertType.INFORMATION, "Export Successful", "Revenue report exported to:\n" + filePath);
-        } catch (Exception e) {
-            ErrorLogger.log(e, "Failed to export revenue report to Excel.");
-            showAlert(Alert.AlertType.ERROR, "Export Failed", "Failed to export revenue report to Excel. Check error log.");
-        }
+        queueExport(ReportJob.Type.REVENUE_EXCEL);
     }
 
     @FXML
     private void handleExportAttendancePDF() {
-        try {
-            Path filePath = AppPaths.getReportsDir().resolve("AttendanceReport.pdf");
-            ReportExporter.exportAttendanceToPDF(attendanceList, filePath.toString());
-            showAlert(Alert.AlertType.INFORMATION, "Export Successful", "Attendance report exported to:\n" + filePath + "\n(simulated PDF)");
-        } catch (Exception e) {
-            ErrorLogger.log(e, "Failed to export attendance report to PDF.");
-            showAlert(Alert.AlertType.ERROR, "Export Failed", "Failed to export attendance report to PDF. Check error log.");
-        }
+        queueExport(ReportJob.Type.ATTENDANCE_PDF);
     }
 
     @FXML
     private void handleExportAttendanceExcel() {
+        queueExport(ReportJob.Type.ATTENDANCE_EXCEL);
+    }
+
+    @FXML
+    private void handleExportPaymentsCsv() {
+        queueExport(ReportJob.Type.PAYMENTS_CSV);
+    }
+
+    @FXML
+    private void handleExportAttendanceCsv() {
+        queueExport(ReportJob.Type.ATTENDANCE_CSV);
+    }
+
+    // Says whether the export buttons will be served from tonight's prepared files
+    private void showPreparedReports() {
+        OvernightReports overnight = OvernightReports.getInstance();
+        LocalDateTime preparedAt = overnight.getPreparedAt();
+        for (ReportJob.Type type : new ReportJob.Type[] {ReportJob.Type.REVENUE_PDF, ReportJob.Type.ATTENDANCE_PDF}) {
+            Label label = type == ReportJob.Type.REVENUE_PDF ? revenuePreparedLabel : attendancePreparedLabel;
+            if (preparedAt == null) {
+                label.setText("PDF and Excel reports are prepared overnight (hour set in Settings).");
+            } else if (overnight.getPreparedReport(type) != null) {
+                label.setText(String.format("Prepared overnight (%s): PDF and Excel exports are instant.",
+                        preparedAt.format(PREPARED_AT_FORMAT)));
+            } else {
+                label.setText(String.format("Changed since the overnight reports (%s): exports are rendered afresh.",
+                        preparedAt.format(PREPARED_AT_FORMAT)));
+            }
+        }
+    }
+
+    // Exports stream the full tables and can take minutes, so they run as background jobs;
+    // progress, cancellation and the result are shown in the main window's status bar.
+    private void queueExport(ReportJob.Type type) {
+        Path filePath = AppPaths.getReportsDir().resolve(type.getFileName());
         try {
-            Path filePath = AppPaths.getReportsDir().resolve("AttendanceReport.xlsx");
-            ReportExporter.exportAttendanceToExcel(attendanceList, filePath.toString());
-            showAlert(Alert.AlertType.INFORMATION, "Export Successful", "Attendance report exported to:\n" + filePath);
-        } catch (Exception e) {
-            ErrorLogger.log(e, "Failed to export attendance report to Excel.");
-            showAlert(Alert.AlertType.ERROR, "Export Failed", "Failed to export attendance report to Excel. Check error log.");
+            ReportJobScheduler.getInstance().submit(type, filePath);
+        } catch (IllegalStateException e) {
+            showAlert(Alert.AlertType.WARNING, "Export Queue Full", e.getMessage());
         }
     }
-    
+
     private void showAlert(Alert.AlertType type, String title, String content) {
         Alert alert = new Alert(type);
         alert.setTitle(title);
@@ -1,26 +1,47 @@
 package com.gym.app.controller;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.URL;
 import java.nio.file.Path;
+import java.sql.SQLException;
 import java.time.LocalDate;
 import java.util.Locale;
 import java.util.Optional;
 import java.util.ResourceBundle;
+import java.util.function.IntConsumer;
 
 import com.gym.app.MainApp;
 import com.gym.app.db.DatabaseManager;
+import com.gym.app.service.AttendanceHistoryFeed;
 import com.gym.app.service.DatabaseBackupService;
+import com.gym.app.service.FrontDeskApi;
+import com.gym.app.service.MemberCache;
+import com.gym.app.service.OvernightReports;
+import com.gym.app.service.ReportQueryCache;
+import com.gym.app.service.RevenueIndex;
+import com.gym.app.service.VisitorSketches;
+import com.gym.app.service.QrSigningService;
+import com.gym.app.service.SystemInfoService;
 import com.gym.app.util.ErrorLogger;
+import com.gym.app.util.QRGenerator;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
 import com.gym.app.util.ViewManager;
 
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
+import javafx.concurrent.Task;
 import javafx.collections.ObservableList;
+import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.scene.control.Alert;
 import javafx.scene.control.ButtonType;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.ComboBox;
+import javafx.scene.control.Spinner;
+import javafx.scene.control.SpinnerValueFactory;
+import javafx.scene.control.TextField;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
@@ -28,10 +49,25 @@ public class SettingsController implements Initializable {
 
     @FXML
     private ComboBox<LanguageOption> languageComboBox;
+    @FXML
+    private CheckBox signedQrCheckBox;
+    @FXML
+    private ComboBox<ErrorCorrectionLevel> errorCorrectionComboBox;
+    @FXML
+    private Spinner<Integer> capacitySpinner;
+    @FXML
+    private Spinner<Integer> overnightHourSpinner;
+    @FXML
+    private CheckBox apiEnabledCheckBox;
+    @FXML
+    private Spinner<Integer> apiPortSpinner;
+    @FXML
+    private TextField apiTokenField;
 
     private ResourceBundle currentBundle;
 
     private final DatabaseBackupService backupService = new DatabaseBackupService();
+    private final SystemInfoService systemInfoService = new SystemInfoService();
 
     private static class LanguageOption {
         String name;
@@ -68,6 +104,82 @@ public class SettingsController implements Initializable {
                 break;
             }
         }
+
+        signedQrCheckBox.setSelected(QrSigningService.getInstance().isEnabled());
+        errorCorrectionComboBox.setItems(FXCollections.observableArrayList(ErrorCorrectionLevel.values()));
+        errorCorrectionComboBox.getSelectionModel().select(QRGenerator.getErrorCorrectionLevel());
+
+        capacitySpinner.setValueFactory(new SpinnerValueFactory.IntegerSpinnerValueFactory(0, 10_000,
+                systemInfoService.getOccupancyCapacity(), 5));
+        applyOnCommit(capacitySpinner, systemInfoService::saveOccupancyCapacity);
+
+        overnightHourSpinner.setValueFactory(new SpinnerValueFactory.IntegerSpinnerValueFactory(0, 23,
+                systemInfoService.getOvernightReportHour()));
+        applyOnCommit(overnightHourSpinner, systemInfoService::saveOvernightReportHour);
+
+        apiEnabledCheckBox.setSelected(systemInfoService.isApiEnabled());
+        apiTokenField.setText(systemInfoService.getApiToken());
+        apiPortSpinner.setValueFactory(new SpinnerValueFactory.IntegerSpinnerValueFactory(1024, 65535,
+                systemInfoService.getApiPort()));
+        applyOnCommit(apiPortSpinner, port -> {
+            systemInfoService.saveApiPort(port);
+            if (FrontDeskApi.getInstance().isRunning()) {
+                startApi();
+            }
+        });
+    }
+
+    // Stepping a spinner passes through every value on the way to the one wanted, so only the
+    // value left when the user presses Enter or moves to another control is applied
+    private static void applyOnCommit(Spinner<Integer> spinner, IntConsumer apply) {
+        int[] applied = {spinner.getValue()};
+        Runnable commit = () -> {
+            Integer value = spinner.getValue();
+            if (value != null && value != applied[0]) {
+                applied[0] = value;
+                apply.accept(value);
+            }
+        };
+        // Later, so the spinner has committed typed text to its value first
+        spinner.getEditor().addEventHandler(ActionEvent.ACTION, e -> Platform.runLater(commit));
+        spinner.focusedProperty().addListener((obs, wasFocused, focused) -> {
+            if (!focused) {
+                Platform.runLater(commit);
+            }
+        });
+    }
+
+    @FXML
+    private void handleToggleApi() {
+        systemInfoService.saveApiEnabled(apiEnabledCheckBox.isSelected());
+        if (apiEnabledCheckBox.isSelected()) {
+            startApi();
+        } else {
+            FrontDeskApi.getInstance().stop();
+        }
+    }
+
+    private void startApi() {
+        try {
+            FrontDeskApi.getInstance().start(apiPortSpinner.getValue(), systemInfoService.getApiToken());
+        } catch (IOException e) {
+            ErrorLogger.log(e, getText("settings.api.error", "Could not start the front-desk API. The port may already be in use."));
+        }
+    }
+
+    @FXML
+    private void handleErrorCorrectionChanged() {
+        ErrorCorrectionLevel selected = errorCorrectionComboBox.getValue();
+        if (selected != null && selected != QRGenerator.getErrorCorrectionLevel()) {
+            // Like signing, this only affects codes generated from now on
+            systemInfoService.saveQrErrorCorrectionLevel(selected);
+        }
+    }
+
+    @FXML
+    private void handleToggleSignedQr() {
+        // Applies to cards issued or renewed from now on; existing cards keep working as they are
+        QrSigningService.getInstance().setEnabled(signedQrCheckBox.isSelected());
     }
 
     @FXML
@@ -88,10 +200,8 @@ public class SettingsController implements Initializable {
             // Reload the main application stage to apply the new language
             Stage stage = (Stage) languageComboBox.getScene().getWindow();
             
-            // Re-run the start method logic to reload all FXML with the new bundle
-            // This is a common way to handle full UI language change in JavaFX
-            MainApp mainApp = new MainApp();
-            mainApp.start(stage);
+            // Reload all FXML with the new bundle; services started by MainApp keep running
+            MainApp.showMainWindow(stage, newBundle);
             
             // NOTE: For RTL support, we would need to apply a specific CSS class or property
             // to the root of the MainLayout.fxml based on the selected language (e.g., Arabic).
@@ -170,6 +280,11 @@ public class SettingsController implements Initializable {
 
             // Re-initialize schema in case the restored DB is older/newer.
             DatabaseManager.initializeDatabase();
+            // Cached check-in records belong to the old database
+            MemberCache.getInstance().clear();
+            ReportQueryCache.getInstance().clear();
+            OvernightReports.getInstance().discardPrepared();
+            reloadStatistics();
 
             showAlert(Alert.AlertType.INFORMATION,
                     getText("alert.success.title", "Success"),
@@ -185,6 +300,25 @@ public class SettingsController implements Initializable {
         }
     }
     
+    // Everything held in memory was built from the old database; reading the new one can
+    // take a while, so it runs in the background while the views show they are loading
+    private void reloadStatistics() {
+        Task<Void> task = new Task<>() {
+            @Override
+            protected Void call() throws SQLException {
+                AttendanceHistoryFeed.getInstance().load();
+                RevenueIndex.getInstance().load();
+                VisitorSketches.getInstance().load();
+                return null;
+            }
+        };
+        task.setOnFailed(e -> ErrorLogger.log(task.getException(), "Failed to reload statistics from the restored database."));
+
+        Thread worker = new Thread(task, "restore-reload");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
     private void showAlert(Alert.AlertType type, String title, String content) {
         Alert alert = new Alert(type);
         alert.setTitle(title);
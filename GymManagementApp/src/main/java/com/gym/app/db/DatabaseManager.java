@@ -1,10 +1,13 @@
 package com.gym.app.db;
 
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
 
+import org.sqlite.SQLiteConfig;
+
 import com.gym.app.util.AppPaths;
 import com.gym.app.util.ErrorLogger;
 
@@ -27,6 +30,28 @@ public class DatabaseManager {
         return DriverManager.getConnection(getJdbcUrl());
     }
 
+    /**
+     * Opens a connection whose transactions take the write lock as they begin, for
+     * read-then-write updates that must not interleave with the same update on another
+     * thread (such as two desks renewing one member). A second such transaction waits
+     * until the first has committed.
+     */
+    public static Connection getWriteConnection() throws SQLException {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setTransactionMode(SQLiteConfig.TransactionMode.IMMEDIATE);
+        return DriverManager.getConnection(getJdbcUrl(), config.toProperties());
+    }
+
+    /**
+     * Opens another SQLite database, such as a branch's copy of {@code gym.db}, read-only.
+     * @throws SQLException if the file does not exist or is not a database.
+     */
+    public static Connection getReadOnlyConnection(Path databaseFile) throws SQLException {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setReadOnly(true);
+        return DriverManager.getConnection("jdbc:sqlite:" + databaseFile, config.toProperties());
+    }
+
     /**
      * Initializes the database by creating all necessary tables if they do not exist.
      */
@@ -71,6 +96,41 @@ public class DatabaseManager {
                                    ");";
             stmt.execute(sqlAttendance);
 
+            // Table: checkouts (optional check-out scans, for occupancy)
+            String sqlCheckouts = "CREATE TABLE IF NOT EXISTS checkouts (" +
+                                  "checkout_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                                  "member_id INTEGER NOT NULL," +
+                                  "timestamp DATETIME NOT NULL," +
+                                  "FOREIGN KEY (member_id) REFERENCES members(member_id)" +
+                                  ");";
+            stmt.execute(sqlCheckouts);
+
+            // Indexes for the time-range reads at startup (occupancy, analytics) and for
+            // pairing a check-out with the member's last check-in
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_attendance_member_time ON attendance (member_id, timestamp)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_attendance_time ON attendance (timestamp)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_checkouts_time ON checkouts (timestamp)");
+
+            // Table: visitor_sketches (per-day unique-visitor sketches, see VisitorSketches)
+            String sqlVisitorSketches = "CREATE TABLE IF NOT EXISTS visitor_sketches (" +
+                                        "day DATE PRIMARY KEY," +
+                                        "registers BLOB NOT NULL," +
+                                        "last_attendance_id INTEGER NOT NULL" +
+                                        ");";
+            stmt.execute(sqlVisitorSketches);
+
+            // Table: overnight_runs (one row per night of report precomputation, see OvernightReports)
+            String sqlOvernightRuns = "CREATE TABLE IF NOT EXISTS overnight_runs (" +
+                                      "run_date DATE PRIMARY KEY," +
+                                      "started_at DATETIME NOT NULL," +
+                                      "finished_at DATETIME," +
+                                      "status TEXT NOT NULL," +
+                                      "payments_max_id INTEGER," +
+                                      "attendance_max_id INTEGER," +
+                                      "error TEXT" +
+                                      ");";
+            stmt.execute(sqlOvernightRuns);
+
             // Table: system_info (for license protection)
             String sqlSystemInfo = "CREATE TABLE IF NOT EXISTS system_info (" +
                                    "key TEXT PRIMARY KEY," +
@@ -78,6 +138,24 @@ public class DatabaseManager {
                                    ");";
             stmt.execute(sqlSystemInfo);
 
+            // Table: qr_denylist (members whose signed cards are always checked against the database)
+            String sqlQrDenylist = "CREATE TABLE IF NOT EXISTS qr_denylist (" +
+                                   "member_id INTEGER PRIMARY KEY," +
+                                   "reason TEXT," +
+                                   "created_at DATETIME NOT NULL" +
+                                   ");";
+            stmt.execute(sqlQrDenylist);
+
+            // Table: qr_revoked_cards (individual signed cards that must no longer be accepted)
+            String sqlQrRevokedCards = "CREATE TABLE IF NOT EXISTS qr_revoked_cards (" +
+                                       "member_id INTEGER NOT NULL," +
+                                       "card_serial INTEGER NOT NULL," +
+                                       "reason TEXT," +
+                                       "created_at DATETIME NOT NULL," +
+                                       "PRIMARY KEY (member_id, card_serial)" +
+                                       ");";
+            stmt.execute(sqlQrRevokedCards);
+
             System.out.println("Database initialized successfully at: " + AppPaths.getDatabasePath());
 
         } catch (SQLException e) {
@@ -0,0 +1,51 @@
+package com.gym.app.model;
+
+import java.time.LocalDate;
+
+public class CheckInResult {
+
+    public enum Outcome {
+        ADMITTED,
+        EXPIRED,
+        NOT_RECOGNIZED,
+        CHECKED_OUT
+    }
+
+    private final Outcome outcome;
+    private final Member member;
+    private final int memberId;
+    private final LocalDate expiryDate;
+    private final long daysRemaining;
+    private final boolean verifiedOffline;
+
+    public CheckInResult(Outcome outcome, Member member, long daysRemaining) {
+        this(outcome, member, member != null ? member.getMemberId() : 0,
+                member != null ? member.getExpiryDate() : null, daysRemaining, false);
+    }
+
+    // Constructor for decisions taken from a signed QR payload; member details may be unavailable
+    public CheckInResult(Outcome outcome, Member member, int memberId, LocalDate expiryDate, long daysRemaining, boolean verifiedOffline) {
+        this.outcome = outcome;
+        this.member = member;
+        this.memberId = memberId;
+        this.expiryDate = expiryDate;
+        this.daysRemaining = daysRemaining;
+        this.verifiedOffline = verifiedOffline;
+    }
+
+    public static CheckInResult notRecognized() {
+        return new CheckInResult(Outcome.NOT_RECOGNIZED, null, 0);
+    }
+
+    // Getters
+    public Outcome getOutcome() { return outcome; }
+    public Member getMember() { return member; }
+    public int getMemberId() { return memberId; }
+    public LocalDate getExpiryDate() { return expiryDate; }
+    public long getDaysRemaining() { return daysRemaining; }
+
+    /** True when the admission was decided from the signed QR payload without a database lookup. */
+    public boolean isVerifiedOffline() { return verifiedOffline; }
+
+    public boolean isAdmitted() { return outcome == Outcome.ADMITTED; }
+}
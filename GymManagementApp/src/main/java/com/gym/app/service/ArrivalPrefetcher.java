@@ -0,0 +1,183 @@
+package com.gym.app.service;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.gym.app.db.DatabaseManager;
+import com.gym.app.model.Member;
+
+/**
+ * Warms the check-in caches shortly before members usually arrive.
+ * <p>
+ * Once a day the last {@value #HISTORY_DAYS} days of attendance are read and, per member,
+ * the time of their first check-in of each day is counted in {@value #SLOT_MINUTES}-minute
+ * slots. Every few minutes the members who arrived in the coming
+ * {@value #LOOKAHEAD_MINUTES} minutes on at least {@value #MIN_ARRIVAL_SHARE_PERCENT}% of
+ * those days have their record put in the {@link MemberCache} and their thumbnail decoded
+ * by the {@link PhotoService}, most regular first, until the memory budget is used
+ * (default {@value #DEFAULT_BUDGET_MB} MB, or {@code -Dgym.prefetch.budgetMb}).
+ * The resulting hit rate is part of {@link CheckInMetrics#formatSummary()}.
+ * Shared instance: one prefetcher per process.
+ */
+public class ArrivalPrefetcher {
+
+    public static final String BUDGET_PROPERTY = "gym.prefetch.budgetMb";
+    private static final int DEFAULT_BUDGET_MB = 16;
+
+    private static final int HISTORY_DAYS = 28;
+    private static final int SLOT_MINUTES = 15;
+    private static final int SLOTS_PER_DAY = 24 * 60 / SLOT_MINUTES;
+    private static final int LOOKAHEAD_MINUTES = 30;
+    private static final int MIN_ARRIVAL_SHARE_PERCENT = 25;
+    private static final long TICK_MINUTES = 5;
+
+    // A decoded thumbnail (300x300 ARGB) dominates; the member record itself is small
+    private static final long BYTES_PER_MEMBER = PhotoService.THUMBNAIL_SIZE * PhotoService.THUMBNAIL_SIZE * 4L + 1024;
+
+    private static final ArrivalPrefetcher INSTANCE = new ArrivalPrefetcher();
+
+    private final MemberService memberService = new MemberService();
+    private final MemberCache memberCache = MemberCache.getInstance();
+    private final PhotoService photoService = PhotoService.getInstance();
+    private final long budgetBytes;
+
+    // Per member: on how many of the last HISTORY_DAYS days their first arrival fell in each slot
+    private Map<Integer, byte[]> arrivalsBySlot = new HashMap<>();
+    private LocalDate modelDate;
+    private ScheduledExecutorService scheduler;
+
+    private ArrivalPrefetcher() {
+        this.budgetBytes = Long.getLong(BUDGET_PROPERTY, DEFAULT_BUDGET_MB) * 1024 * 1024;
+    }
+
+    public static ArrivalPrefetcher getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Starts prefetching on a background thread (idempotent).
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "arrival-prefetch");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::tick, 0, TICK_MINUTES, TimeUnit.MINUTES);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private void tick() {
+        try {
+            LocalDate today = LocalDate.now();
+            if (!today.equals(modelDate)) {
+                arrivalsBySlot = loadArrivalModel(today);
+                modelDate = today;
+            }
+            prefetch(LocalTime.now());
+        } catch (SQLException e) {
+            System.err.println("Arrival prefetch skipped, database unavailable: " + e.getMessage());
+        } catch (RuntimeException e) {
+            // Never let an exception cancel the scheduled task silently
+            System.err.println("Arrival prefetch failed: " + e);
+        }
+    }
+
+    private void prefetch(LocalTime now) throws SQLException {
+        int firstSlot = slotOf(now);
+        int slotCount = LOOKAHEAD_MINUTES / SLOT_MINUTES + 1;
+        int minDays = Math.max(1, HISTORY_DAYS * MIN_ARRIVAL_SHARE_PERCENT / 100);
+
+        List<int[]> candidates = new ArrayList<>(); // {memberId, days}
+        for (Map.Entry<Integer, byte[]> entry : arrivalsBySlot.entrySet()) {
+            int days = 0;
+            for (int i = 0; i < slotCount; i++) {
+                days += entry.getValue()[(firstSlot + i) % SLOTS_PER_DAY];
+            }
+            if (days >= minDays) {
+                candidates.add(new int[] {entry.getKey(), days});
+            }
+        }
+        candidates.sort(Comparator.comparingInt((int[] c) -> c[1]).reversed());
+
+        long maxMembers = budgetBytes / BYTES_PER_MEMBER;
+        int warmed = 0;
+        for (int i = 0; i < candidates.size() && i < maxMembers; i++) {
+            int memberId = candidates.get(i)[0];
+            if (memberCache.contains(memberId)) {
+                continue;
+            }
+            long readStamp = memberCache.invalidationCount();
+            Member member = memberService.findMemberById(memberId);
+            // A member edited while being read is left to the next scan or run
+            if (member != null && memberCache.putPrefetched(member, readStamp)) {
+                photoService.prefetch(member.getPhotoPath());
+                warmed++;
+            }
+        }
+        if (warmed > 0) {
+            System.out.println("Prefetched " + warmed + " members expected between " + now.withSecond(0).withNano(0)
+                    + " and " + now.plusMinutes(LOOKAHEAD_MINUTES).withSecond(0).withNano(0)
+                    + " (" + memberCache.formatStats() + ")");
+        }
+    }
+
+    private Map<Integer, byte[]> loadArrivalModel(LocalDate today) throws SQLException {
+        // Earliest check-in per member and day: later ones the same day are the same visit
+        Map<Integer, Map<LocalDate, LocalTime>> firstArrivals = new HashMap<>();
+        String sql = "SELECT member_id, timestamp FROM attendance WHERE timestamp >= ?";
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            // Timestamps are ISO strings, so they compare correctly as text
+            pstmt.setString(1, today.minusDays(HISTORY_DAYS).atStartOfDay().toString());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    LocalDateTime timestamp;
+                    try {
+                        timestamp = LocalDateTime.parse(rs.getString("timestamp"));
+                    } catch (DateTimeParseException e) {
+                        continue;
+                    }
+                    firstArrivals.computeIfAbsent(rs.getInt("member_id"), id -> new HashMap<>())
+                            .merge(timestamp.toLocalDate(), timestamp.toLocalTime(),
+                                    (a, b) -> a.isBefore(b) ? a : b);
+                }
+            }
+        }
+
+        Map<Integer, byte[]> model = new HashMap<>();
+        firstArrivals.forEach((memberId, byDay) -> {
+            byte[] slots = new byte[SLOTS_PER_DAY];
+            for (LocalTime arrival : byDay.values()) {
+                slots[slotOf(arrival)]++;
+            }
+            model.put(memberId, slots);
+        });
+        return model;
+    }
+
+    private static int slotOf(LocalTime time) {
+        return time.toSecondOfDay() / 60 / SLOT_MINUTES;
+    }
+}
@@ -0,0 +1,258 @@
+package com.gym.app.service;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+
+import com.gym.app.util.AttendanceColumns;
+
+/**
+ * Attendance analytics (peak-hour heatmap, visits per member, daily trend) answered from
+ * memory instead of SQL over the string timestamps.
+ * <p>
+ * The whole attendance table is loaded once into {@link AttendanceColumns} by the
+ * {@link AttendanceHistoryFeed}, which then passes on the check-ins. Each query is a scan of the encoded blocks, split across the
+ * common fork-join pool and pruned to the blocks that overlap the requested dates; results
+ * from the parts are merged by adding them up.
+ * Shared instance: one copy of the columns per process.
+ */
+public class AttendanceAnalytics {
+
+    public static final int HOURS_PER_WEEK = 7 * 24;
+
+    // Blocks per fork-join leaf: ~64k rows, enough to outweigh the cost of forking
+    private static final int LEAF_BLOCKS = 16;
+
+    private static final AttendanceAnalytics INSTANCE = new AttendanceAnalytics();
+
+    private AttendanceColumns columns = new AttendanceColumns(); // guarded by this
+    private boolean started; // guarded by this
+    // Filled by the startup read and swapped in at the end; only touched by the feed's thread
+    private AttendanceColumns loadColumns;
+
+    /** Folds one block (rows in [from, to) only) into a partial result. */
+    private interface BlockScan<R> {
+        void scan(AttendanceColumns.Block block, int[] minutes, int fromMinute, int toMinute, R result);
+    }
+
+    private AttendanceAnalytics() {
+    }
+
+    public static AttendanceAnalytics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Registers with the {@link AttendanceHistoryFeed} to load the attendance table at startup.
+     * Later calls do nothing.
+     */
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        AttendanceHistoryFeed.getInstance().register(new AttendanceHistoryFeed.Reader() {
+            @Override
+            public long begin(Connection conn) {
+                loadColumns = new AttendanceColumns();
+                return 0;
+            }
+
+            @Override
+            public void row(long attendanceId, int memberId, int minute, String timestamp) {
+                loadColumns.append(memberId, minute);
+            }
+
+            @Override
+            public void end() {
+                if (loadColumns != null) {
+                    synchronized (AttendanceAnalytics.this) {
+                        columns = loadColumns;
+                    }
+                    loadColumns = null;
+                }
+            }
+
+            @Override
+            public void apply(GymEvent event) {
+                if (event.getType() == GymEvent.Type.CHECK_IN) {
+                    append(event.getMemberId(), AttendanceColumns.toMinute(event.getTime()));
+                }
+            }
+        });
+    }
+
+    public boolean isLoaded() {
+        return AttendanceHistoryFeed.getInstance().isLoaded();
+    }
+
+    public synchronized long getRowCount() {
+        return columns.getRowCount();
+    }
+
+    /**
+     * @return Memory used by the encoded columns, in bytes.
+     */
+    public synchronized long getEncodedBytes() {
+        return columns.getEncodedBytes();
+    }
+
+    /**
+     * Records a check-in. Public so the benchmark can generate data without a database.
+     */
+    public synchronized void append(int memberId, int minute) {
+        columns.append(memberId, minute);
+    }
+
+    /**
+     * Visits per hour of the week, Monday 00:00-00:59 first.
+     * @param from First day, inclusive.
+     * @param to Last day, inclusive.
+     * @return {@value #HOURS_PER_WEEK} counts.
+     */
+    public long[] getHourOfWeekHeatmap(LocalDate from, LocalDate to) {
+        return scan(from, to, () -> new long[HOURS_PER_WEEK], (block, minutes, lo, hi, counts) -> {
+            for (int i = 0; i < block.getRowCount(); i++) {
+                int minute = minutes[i];
+                if (minute >= lo && minute < hi) {
+                    int day = Math.floorDiv(minute, AttendanceColumns.MINUTES_PER_DAY);
+                    // 1970-01-01 was a Thursday, day 3 of a Monday-first week
+                    int dayOfWeek = Math.floorMod(day + 3, 7);
+                    int hour = Math.floorMod(minute, AttendanceColumns.MINUTES_PER_DAY) / 60;
+                    counts[dayOfWeek * 24 + hour]++;
+                }
+            }
+        }, AttendanceAnalytics::add);
+    }
+
+    /**
+     * Visits per member.
+     * @return Counts indexed by member ID (0 for members with no visits in the range).
+     */
+    public int[] getVisitsPerMember(LocalDate from, LocalDate to) {
+        int size;
+        synchronized (this) {
+            size = columns.getMaxMemberId() + 1;
+        }
+        return scan(from, to, () -> new int[size], (block, minutes, lo, hi, counts) -> {
+            int[] memberIds = block.memberIds();
+            for (int i = 0; i < block.getRowCount(); i++) {
+                if (minutes[i] >= lo && minutes[i] < hi && memberIds[i] < counts.length) {
+                    counts[memberIds[i]]++;
+                }
+            }
+        }, (a, b) -> {
+            for (int i = 0; i < a.length; i++) {
+                a[i] += b[i];
+            }
+            return a;
+        });
+    }
+
+    /**
+     * Visits per day, for day-over-day trends.
+     * @return One count per day from {@code from} to {@code to}, both inclusive.
+     */
+    public long[] getDailyVisits(LocalDate from, LocalDate to) {
+        int firstDay = (int) from.toEpochDay();
+        int days = (int) (to.toEpochDay() - from.toEpochDay() + 1);
+        return scan(from, to, () -> new long[Math.max(0, days)], (block, minutes, lo, hi, counts) -> {
+            for (int i = 0; i < block.getRowCount(); i++) {
+                if (minutes[i] >= lo && minutes[i] < hi) {
+                    counts[Math.floorDiv(minutes[i], AttendanceColumns.MINUTES_PER_DAY) - firstDay]++;
+                }
+            }
+        }, AttendanceAnalytics::add);
+    }
+
+    /**
+     * @return Average visits per week of the members who came at least once in the range.
+     */
+    public double getAverageVisitsPerWeek(LocalDate from, LocalDate to) {
+        int[] visits = getVisitsPerMember(from, to);
+        long total = 0;
+        int members = 0;
+        for (int count : visits) {
+            if (count > 0) {
+                total += count;
+                members++;
+            }
+        }
+        double weeks = (to.toEpochDay() - from.toEpochDay() + 1) / 7.0;
+        return members == 0 ? 0 : total / (double) members / weeks;
+    }
+
+    private <R> R scan(LocalDate from, LocalDate to, Supplier<R> identity, BlockScan<R> kernel, BinaryOperator<R> merge) {
+        int fromMinute = (int) (from.toEpochDay() * AttendanceColumns.MINUTES_PER_DAY);
+        int toMinute = (int) ((to.toEpochDay() + 1) * AttendanceColumns.MINUTES_PER_DAY);
+        List<AttendanceColumns.Block> blocks;
+        synchronized (this) {
+            blocks = columns.snapshot();
+        }
+        List<AttendanceColumns.Block> overlapping = new ArrayList<>(blocks.size());
+        for (AttendanceColumns.Block block : blocks) {
+            if (block.overlaps(fromMinute, toMinute)) {
+                overlapping.add(block);
+            }
+        }
+        return ForkJoinPool.commonPool().invoke(
+                new ScanTask<>(overlapping, 0, overlapping.size(), fromMinute, toMinute, identity, kernel, merge));
+    }
+
+    private static long[] add(long[] a, long[] b) {
+        for (int i = 0; i < a.length; i++) {
+            a[i] += b[i];
+        }
+        return a;
+    }
+
+    private static final class ScanTask<R> extends RecursiveTask<R> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<AttendanceColumns.Block> blocks;
+        private final int start;
+        private final int end;
+        private final int fromMinute;
+        private final int toMinute;
+        private final Supplier<R> identity;
+        private final BlockScan<R> kernel;
+        private final BinaryOperator<R> merge;
+
+        ScanTask(List<AttendanceColumns.Block> blocks, int start, int end, int fromMinute, int toMinute,
+                 Supplier<R> identity, BlockScan<R> kernel, BinaryOperator<R> merge) {
+            this.blocks = blocks;
+            this.start = start;
+            this.end = end;
+            this.fromMinute = fromMinute;
+            this.toMinute = toMinute;
+            this.identity = identity;
+            this.kernel = kernel;
+            this.merge = merge;
+        }
+
+        @Override
+        protected R compute() {
+            if (end - start <= LEAF_BLOCKS) {
+                R result = identity.get();
+                int[] minutes = new int[AttendanceColumns.BLOCK_ROWS];
+                for (int i = start; i < end; i++) {
+                    AttendanceColumns.Block block = blocks.get(i);
+                    block.decodeMinutes(minutes);
+                    kernel.scan(block, minutes, fromMinute, toMinute, result);
+                }
+                return result;
+            }
+            int middle = (start + end) >>> 1;
+            ScanTask<R> left = new ScanTask<>(blocks, start, middle, fromMinute, toMinute, identity, kernel, merge);
+            ScanTask<R> right = new ScanTask<>(blocks, middle, end, fromMinute, toMinute, identity, kernel, merge);
+            left.fork();
+            R rightResult = right.compute();
+            return merge.apply(left.join(), rightResult);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.gym.app.service;
+
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.gym.app.db.DatabaseManager;
+import com.gym.app.model.Attendance;
+
+/**
+ * Inserts check-ins with group commit, for the front-desk API where many terminals check
+ * members in at once, and for signed cards admitted without waiting on the database.
+ * <p>
+ * SQLite syncs the disk on every commit, which caps one-row transactions at a few hundred
+ * per second. Here a single writer thread takes every check-in queued so far (up to
+ * {@value #MAX_BATCH}) and inserts them in one transaction; check-ins arriving meanwhile
+ * queue for the next one. A lone check-in is written straight away, so it waits no longer
+ * than a plain insert, while a burst costs one sync per batch instead of one per row.
+ * After the commit each row is announced exactly as
+ * {@link AttendanceService#insertAttendance} does.
+ * <p>
+ * {@link #submit} does not wait: if its batch fails (database busy, locked or being
+ * restored) the rows are kept and retried every {@value #RETRY_MS} ms, oldest first.
+ * {@link #insert} waits at most {@value #INSERT_TIMEOUT_MS} ms for its batch to start, and
+ * fails without writing the row if it has not. {@link #flush} writes what is left on shutdown.
+ * Shared instance: one writer per process.
+ */
+public class AttendanceBatcher {
+
+    private static final int MAX_BATCH = 500;
+    private static final long RETRY_MS = 2000;
+    private static final long INSERT_TIMEOUT_MS = 5000;
+
+    private static final AttendanceBatcher INSTANCE = new AttendanceBatcher();
+
+    // done is null for submitted rows, which nobody waits for; attendance is null for a flush marker.
+    // claimed is set by whoever gets to it first: the writer to insert the row, or a caller
+    // that gave up waiting, so an abandoned row is never written.
+    private record Pending(Attendance attendance, CompletableFuture<Attendance> done, AtomicBoolean claimed) {
+        Pending(Attendance attendance, CompletableFuture<Attendance> done) {
+            this(attendance, done, new AtomicBoolean());
+        }
+    }
+
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    // Rows for the next batch ahead of the queue, oldest first: those whose batch failed, then
+    // the one the writer woke up for; only touched by the writer thread
+    private final Deque<Pending> retry = new ArrayDeque<>();
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong rows = new AtomicLong();
+    private boolean started; // guarded by this
+
+    private AttendanceBatcher() {
+    }
+
+    public static AttendanceBatcher getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Inserts an attendance record and waits until its transaction is committed.
+     * @throws SQLException if the batch it was written in failed, or did not start in time
+     *         (the row is then not written).
+     */
+    public Attendance insert(int memberId, LocalDateTime timestamp) throws SQLException {
+        startWriter();
+        Pending pending = new Pending(new Attendance(memberId, timestamp), new CompletableFuture<>());
+        queue.add(pending);
+        try {
+            try {
+                return pending.done().get(INSERT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (pending.claimed().compareAndSet(false, true)) {
+                    throw new SQLException("Attendance insert not started within " + INSERT_TIMEOUT_MS + " ms", e);
+                }
+                // Already in a transaction, which ends within the database's busy timeout
+                return pending.done().get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.claimed().compareAndSet(false, true); // not written, unless the writer has it already
+            throw new SQLException("Interrupted while waiting for the attendance insert", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException sqlException) {
+                throw sqlException;
+            }
+            throw new SQLException(e.getCause());
+        }
+    }
+
+    /**
+     * Queues an attendance record and returns at once; the writer commits it shortly and
+     * keeps retrying while the database is unavailable.
+     */
+    public void submit(int memberId, LocalDateTime timestamp) {
+        startWriter();
+        queue.add(new Pending(new Attendance(memberId, timestamp), null));
+    }
+
+    /**
+     * Waits until everything queued so far is committed, e.g. before the application exits.
+     * @return false if rows are still pending when the timeout expires or the database fails.
+     */
+    public boolean flush(long timeoutMs) {
+        synchronized (this) {
+            if (!started) {
+                return true; // nothing was ever queued
+            }
+        }
+        CompletableFuture<Attendance> done = new CompletableFuture<>();
+        queue.add(new Pending(null, done));
+        try {
+            done.get(timeoutMs, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException e) {
+            return false;
+        }
+    }
+
+    public long getCommitCount() {
+        return commits.get();
+    }
+
+    public long getRowCount() {
+        return rows.get();
+    }
+
+    private synchronized void startWriter() {
+        if (started) {
+            return;
+        }
+        started = true;
+        Thread writer = new Thread(() -> {
+            List<Pending> batch = new ArrayList<>(MAX_BATCH);
+            while (true) {
+                try {
+                    // With rows to retry, wake up on a timer as well as on new check-ins
+                    Pending next = retry.isEmpty() ? queue.take() : queue.poll(RETRY_MS, TimeUnit.MILLISECONDS);
+                    if (next != null) {
+                        retry.add(next);
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                while (!retry.isEmpty() && batch.size() < MAX_BATCH) {
+                    batch.add(retry.poll());
+                }
+                queue.drainTo(batch, MAX_BATCH - batch.size());
+                write(batch);
+                batch.clear();
+            }
+        }, "attendance-batcher");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private void write(List<Pending> batch) {
+        String sql = "INSERT INTO attendance (member_id, timestamp) VALUES (?, ?)";
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+
+            conn.setAutoCommit(false);
+            for (Pending pending : batch) {
+                Attendance attendance = pending.attendance();
+                if (attendance == null || (pending.done() != null && !pending.claimed().compareAndSet(false, true))) {
+                    continue; // a flush marker, or a caller that stopped waiting
+                }
+                pstmt.setInt(1, attendance.getMemberId());
+                pstmt.setString(2, attendance.getTimestamp().toString());
+                pstmt.executeUpdate();
+                try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
+                    if (generatedKeys.next()) {
+                        attendance.setAttendanceId(generatedKeys.getInt(1));
+                    }
+                }
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            // Nothing of the batch was committed: waiting callers handle it like a failed
+            // insert, submitted rows go back in line (in order, ahead of anything newer)
+            int retried = 0;
+            for (Pending pending : batch) {
+                if (pending.done() != null) {
+                    pending.done().completeExceptionally(e);
+                } else {
+                    retry.add(pending);
+                    retried++;
+                }
+            }
+            if (retried > 0) {
+                System.err.println("Attendance queued (" + retry.size() + " pending), database unavailable: " + e.getMessage());
+            }
+            return;
+        } catch (RuntimeException e) {
+            // Not a database outage, so retrying would most likely fail the same way and hold
+            // up every later check-in: nothing was committed, fail the whole batch
+            SQLException failure = new SQLException("Attendance batch failed", e);
+            for (Pending pending : batch) {
+                if (pending.done() != null) {
+                    pending.done().completeExceptionally(failure);
+                } else {
+                    System.err.println("Attendance of member " + pending.attendance().getMemberId() + " at "
+                            + pending.attendance().getTimestamp() + " not saved: " + e);
+                }
+            }
+            return;
+        }
+        commits.incrementAndGet();
+
+        int written = 0;
+        for (Pending pending : batch) {
+            if (pending.attendance() != null && pending.attendance().getAttendanceId() > 0) {
+                try {
+                    VisitorSketches.getInstance().add(pending.attendance());
+                    GymEventBus.getInstance().publish(GymEvent.checkIn(pending.attendance()));
+                } catch (RuntimeException e) {
+                    // Committed either way; the caller must still be answered
+                    System.err.println("Could not announce attendance " + pending.attendance().getAttendanceId() + ": " + e);
+                }
+                written++;
+            }
+        }
+        rows.addAndGet(written);
+        if (written > 0) {
+            ReportQueryCache.getInstance().tableChanged(ReportQueryCache.ATTENDANCE);
+        }
+        for (Pending pending : batch) {
+            if (pending.done() == null) {
+                continue;
+            }
+            if (pending.attendance() == null && !retry.isEmpty()) {
+                // A flush is only done once nothing is left to retry
+                retry.add(pending);
+            } else {
+                pending.done().complete(pending.attendance());
+            }
+        }
+    }
+}
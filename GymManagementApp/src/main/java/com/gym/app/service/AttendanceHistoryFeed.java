@@ -0,0 +1,227 @@
+package com.gym.app.service;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.gym.app.db.DatabaseManager;
+import com.gym.app.util.AttendanceColumns;
+
+/**
+ * Reads the attendance table once at startup for every in-memory view built from it
+ * ({@link MemberTimelines}, {@link AttendanceAnalytics}, {@link RetentionIndex},
+ * {@link DashboardStats}, {@link OccupancyTracker}), then hands them the {@link GymEventBus}.
+ * <p>
+ * Each view registers a {@link Reader} before {@link #start()}. The read is one transaction
+ * on a background thread: every reader first reads whatever else it needs, then a single
+ * scan by ID passes each attendance row to the readers that asked for it. Events published
+ * meanwhile are held back and replayed once the read is over, skipping check-ins the scan
+ * already saw, and from then on events are passed straight through.
+ * <p>
+ * If the read fails the readers keep what they got and follow the events from there;
+ * {@link #isLoaded()} becomes true either way, so nothing waits or piles up forever.
+ * After anything else rewrites the database, such as a restore, call {@link #load()} again.
+ * Shared instance: one read per process.
+ */
+public class AttendanceHistoryFeed {
+
+    /**
+     * A view fed from the attendance table and the event stream. All calls but
+     * {@link #apply} are made on the feed's thread.
+     */
+    public interface Reader {
+        /**
+         * Inside the read transaction, before the scan: drops what the view held from an
+         * earlier read and reads anything else it needs.
+         * Only through {@code conn}: another connection would wait for a writer that in turn
+         * waits for this transaction.
+         * @return The ID after which the reader wants attendance rows, or {@link Long#MAX_VALUE} for none.
+         */
+        long begin(Connection conn) throws SQLException;
+
+        /**
+         * One attendance row, in ID order.
+         * @param minute The timestamp as {@link AttendanceColumns} minutes.
+         */
+        void row(long attendanceId, int memberId, int minute, String timestamp);
+
+        /**
+         * After the scan, or after the read failed, before the held-back events are applied.
+         */
+        default void end() {
+        }
+
+        /**
+         * An event, on the publishing thread; or one held back during the read, on the feed's thread.
+         */
+        void apply(GymEvent event);
+
+        /**
+         * After the read, succeeded or not, once the held-back events are applied.
+         */
+        default void loaded() {
+        }
+    }
+
+    private static final int FETCH_SIZE = 10_000;
+
+    private static final AttendanceHistoryFeed INSTANCE = new AttendanceHistoryFeed();
+
+    private final List<Reader> readers = new CopyOnWriteArrayList<>();
+    private final Object readLock = new Object(); // one read at a time
+
+    // Events published while the read runs are held back and replayed after it
+    private final List<GymEvent> pending = new ArrayList<>(); // guarded by itself
+    private volatile boolean loaded;
+    private volatile long loadedMaxAttendanceId;
+    private boolean started; // guarded by this
+
+    private AttendanceHistoryFeed() {
+    }
+
+    public static AttendanceHistoryFeed getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Adds a view to the startup read. Must be called before {@link #start()}.
+     */
+    public synchronized void register(Reader reader) {
+        if (started) {
+            throw new IllegalStateException("Attendance history already started");
+        }
+        readers.add(reader);
+    }
+
+    /**
+     * Subscribes to the event stream and runs the read on a background thread.
+     * Later calls do nothing.
+     */
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        GymEventBus.getInstance().subscribe(this::onEvent);
+        Thread thread = new Thread(this::load, "attendance-history");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * (Re)reads the attendance table into the registered readers and waits until they are
+     * done, so call it off the FX thread. Called by {@link #start()}, after a restore and by
+     * the benchmark.
+     */
+    public void load() {
+        synchronized (readLock) {
+            synchronized (pending) {
+                loaded = false;
+            }
+            loadedMaxAttendanceId = 0;
+            try {
+                read();
+            } catch (SQLException | RuntimeException e) {
+                // The views then only have what was read so far, plus the check-ins since
+                System.err.println("Could not read the attendance history: " + e);
+            } finally {
+                finishLoad();
+            }
+        }
+    }
+
+    private void read() throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            // One read transaction, so the scan, the maximum ID and what the readers read agree
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT MAX(attendance_id) FROM attendance")) {
+                loadedMaxAttendanceId = rs.next() ? rs.getLong(1) : 0;
+            }
+
+            long[] from = new long[readers.size()];
+            long scanFrom = Long.MAX_VALUE;
+            for (int i = 0; i < from.length; i++) {
+                from[i] = readers.get(i).begin(conn);
+                scanFrom = Math.min(scanFrom, from[i]);
+            }
+
+            if (scanFrom < loadedMaxAttendanceId) {
+                String sql = "SELECT attendance_id, member_id, timestamp FROM attendance WHERE attendance_id > ? ORDER BY attendance_id";
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setLong(1, scanFrom);
+                    pstmt.setFetchSize(FETCH_SIZE);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            long attendanceId = rs.getLong(1);
+                            int memberId = rs.getInt(2);
+                            String timestamp = rs.getString(3);
+                            int minute = AttendanceColumns.parseMinute(timestamp);
+                            for (int i = 0; i < from.length; i++) {
+                                if (attendanceId > from[i]) {
+                                    readers.get(i).row(attendanceId, memberId, minute, timestamp);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            conn.commit();
+        }
+    }
+
+    private void finishLoad() {
+        for (Reader reader : readers) {
+            try {
+                reader.end();
+            } catch (RuntimeException e) {
+                System.err.println("Attendance history reader failed after the scan: " + e);
+            }
+        }
+        synchronized (pending) {
+            for (GymEvent event : pending) {
+                dispatch(event);
+            }
+            pending.clear();
+            loaded = true;
+        }
+        for (Reader reader : readers) {
+            try {
+                reader.loaded();
+            } catch (RuntimeException e) {
+                System.err.println("Attendance history reader failed after loading: " + e);
+            }
+        }
+    }
+
+    private void onEvent(GymEvent event) {
+        if (!loaded) {
+            synchronized (pending) {
+                if (!loaded) {
+                    pending.add(event);
+                    return;
+                }
+            }
+        }
+        dispatch(event);
+    }
+
+    private void dispatch(GymEvent event) {
+        if (event.getType() == GymEvent.Type.CHECK_IN && event.getRecordId() <= loadedMaxAttendanceId) {
+            return; // committed before the read, so already scanned
+        }
+        for (Reader reader : readers) {
+            try {
+                reader.apply(event);
+            } catch (RuntimeException e) {
+                // One broken view must not starve the others
+                System.err.println("Attendance history reader failed on " + event + ": " + e);
+            }
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.gym.app.db.DatabaseManager;
 import com.gym.app.model.Attendance;
 import com.gym.app.util.ErrorLogger;
 import java.sql.*;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
@@ -16,16 +17,29 @@ public class AttendanceService {
      * @return The newly created Attendance object with the generated ID, or null on failure.
      */
     public Attendance logAttendance(int memberId) {
+        try {
+            return insertAttendance(memberId, LocalDateTime.now());
+        } catch (SQLException e) {
+            ErrorLogger.log(e, "Failed to log attendance for member ID: " + memberId);
+        }
+        return null;
+    }
+
+    /**
+     * Inserts an attendance record without user-facing error handling, for callers that
+     * retry on their own (e.g. offline admissions while the database is locked).
+     * @throws SQLException if the insert fails.
+     */
+    public Attendance insertAttendance(int memberId, LocalDateTime timestamp) throws SQLException {
         String sql = "INSERT INTO attendance (member_id, timestamp) VALUES (?, ?)";
-        LocalDateTime now = LocalDateTime.now();
-        Attendance attendance = new Attendance(memberId, now);
+        Attendance attendance = new Attendance(memberId, timestamp);
 
         try (Connection conn = DatabaseManager.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 
             pstmt.setInt(1, memberId);
             // SQLite does not have a native DATETIME type, so we store it as a string
-            pstmt.setString(2, now.toString());
+            pstmt.setString(2, timestamp.toString());
 
             int affectedRows = pstmt.executeUpdate();
 
@@ -33,16 +47,45 @@ public class AttendanceService {
                 try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
                     if (generatedKeys.next()) {
                         attendance.setAttendanceId(generatedKeys.getInt(1));
+                        VisitorSketches.getInstance().add(attendance);
+                        ReportQueryCache.getInstance().tableChanged(ReportQueryCache.ATTENDANCE);
+                        GymEventBus.getInstance().publish(GymEvent.checkIn(attendance));
                         return attendance;
                     }
                 }
             }
-        } catch (SQLException e) {
-            ErrorLogger.log(e, "Failed to log attendance for member ID: " + memberId);
         }
         return null;
     }
 
+    /**
+     * Records a check-out scan. Check-outs are optional; they make the occupancy count exact
+     * and teach it how long this member usually stays.
+     * @return true if the check-out was saved.
+     */
+    public boolean logCheckOut(int memberId) {
+        String sql = "INSERT INTO checkouts (member_id, timestamp) VALUES (?, ?)";
+        LocalDateTime timestamp = LocalDateTime.now();
+
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+
+            pstmt.setInt(1, memberId);
+            pstmt.setString(2, timestamp.toString());
+            pstmt.executeUpdate();
+
+            try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
+                if (generatedKeys.next()) {
+                    GymEventBus.getInstance().publish(GymEvent.checkOut(memberId, generatedKeys.getInt(1), timestamp));
+                    return true;
+                }
+            }
+        } catch (SQLException e) {
+            ErrorLogger.log(e, "Failed to log check-out for member ID: " + memberId);
+        }
+        return false;
+    }
+
     /**
      * Retrieves all attendance records for a given member.
      */
@@ -121,4 +164,35 @@ public class AttendanceService {
         }
         return count;
     }
+
+    /**
+     * Number of distinct members who came in a date range (both dates inclusive).
+     * Estimated from the {@link VisitorSketches} once they are loaded (within about 1.6%,
+     * see {@link com.gym.app.util.HyperLogLog}); counted exactly by the database before that.
+     */
+    public long getUniqueVisitorCount(LocalDate startDate, LocalDate endDate) {
+        VisitorSketches sketches = VisitorSketches.getInstance();
+        if (sketches.isLoaded()) {
+            return sketches.getUniqueVisitors(startDate, endDate);
+        }
+
+        String sql = "SELECT COUNT(DISTINCT member_id) FROM attendance WHERE timestamp >= ? AND timestamp < ?";
+        long count = 0;
+
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, startDate.atStartOfDay().toString());
+            pstmt.setString(2, endDate.plusDays(1).atStartOfDay().toString());
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    count = rs.getLong(1);
+                }
+            }
+        } catch (SQLException e) {
+            ErrorLogger.log(e, "Failed to count unique visitors between " + startDate + " and " + endDate);
+        }
+        return count;
+    }
 }
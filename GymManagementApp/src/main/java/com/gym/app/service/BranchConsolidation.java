@@ -0,0 +1,293 @@
+package com.gym.app.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32C;
+
+import com.gym.app.db.DatabaseManager;
+import com.gym.app.util.AppPaths;
+
+/**
+ * Combined revenue, attendance and membership figures of several branches, each with its
+ * own {@code gym.db}, for head office.
+ * <p>
+ * Branch databases are copied into {@link AppPaths#getBranchesDir()}, one folder per
+ * branch; this installation's own database is included as {@value #LOCAL_BRANCH_NAME}.
+ * Each database is opened read-only and aggregated on its own worker thread, into monthly
+ * totals that are then summed. A branch's totals are cached against a CRC-32C checksum of
+ * its file, so a refresh only queries the branches whose database changed; files whose size
+ * and modification time are unchanged are not even read.
+ * <p>
+ * Member IDs are per branch, so members who visit several branches count once per branch.
+ * Shared instance: the cache is per process.
+ */
+public class BranchConsolidation {
+
+    public static final String LOCAL_BRANCH_NAME = "This branch";
+    private static final String DATABASE_FILE_NAME = "gym.db";
+    private static final int CHECKSUM_BUFFER_BYTES = 1 << 20;
+
+    public record Branch(String name, Path database) {
+    }
+
+    /**
+     * Figures of one branch, or the sum of several. Immutable.
+     */
+    public static final class Totals {
+        private final TreeMap<YearMonth, Long> revenueCents;
+        private final TreeMap<YearMonth, Long> visits;
+        private final int members;
+        private final int activeMembers;
+
+        Totals(TreeMap<YearMonth, Long> revenueCents, TreeMap<YearMonth, Long> visits, int members, int activeMembers) {
+            this.revenueCents = revenueCents;
+            this.visits = visits;
+            this.members = members;
+            this.activeMembers = activeMembers;
+        }
+
+        static Totals sum(List<Totals> parts) {
+            TreeMap<YearMonth, Long> revenueCents = new TreeMap<>();
+            TreeMap<YearMonth, Long> visits = new TreeMap<>();
+            int members = 0;
+            int activeMembers = 0;
+            for (Totals part : parts) {
+                part.revenueCents.forEach((month, cents) -> revenueCents.merge(month, cents, Long::sum));
+                part.visits.forEach((month, count) -> visits.merge(month, count, Long::sum));
+                members += part.members;
+                activeMembers += part.activeMembers;
+            }
+            return new Totals(revenueCents, visits, members, activeMembers);
+        }
+
+        /**
+         * @param first First month, or null for no lower bound.
+         * @param last Last month (inclusive), or null for no upper bound.
+         */
+        public double getRevenue(YearMonth first, YearMonth last) {
+            return sum(revenueCents, first, last) / 100.0;
+        }
+
+        /**
+         * @param first First month, or null for no lower bound.
+         * @param last Last month (inclusive), or null for no upper bound.
+         */
+        public long getVisits(YearMonth first, YearMonth last) {
+            return sum(visits, first, last);
+        }
+
+        public int getMembers() {
+            return members;
+        }
+
+        /**
+         * @return Members whose subscription had not expired on the day the figures were read.
+         */
+        public int getActiveMembers() {
+            return activeMembers;
+        }
+
+        private static long sum(TreeMap<YearMonth, Long> months, YearMonth first, YearMonth last) {
+            Map<YearMonth, Long> range = months;
+            if (first != null && last != null) {
+                range = months.subMap(first, true, last, true);
+            } else if (first != null) {
+                range = months.tailMap(first, true);
+            } else if (last != null) {
+                range = months.headMap(last, true);
+            }
+            long total = 0;
+            for (long value : range.values()) {
+                total += value;
+            }
+            return total;
+        }
+    }
+
+    /**
+     * One branch's part of a consolidation.
+     * @param totals Null if the branch could not be read.
+     * @param refreshed True if the database was queried, false if the cached totals were still valid.
+     * @param error Why the branch could not be read, or null.
+     */
+    public record BranchResult(Branch branch, Totals totals, boolean refreshed, long millis, String error) {
+    }
+
+    /**
+     * @param combined The sum of all branches that could be read.
+     */
+    public record Result(List<BranchResult> branches, Totals combined) {
+    }
+
+    private record CachedBranch(long size, long modified, long checksum, LocalDate readOn, Totals totals) {
+    }
+
+    private static final BranchConsolidation INSTANCE = new BranchConsolidation();
+
+    private final Map<Path, CachedBranch> cache = new HashMap<>(); // guarded by this
+
+    private BranchConsolidation() {
+    }
+
+    public static BranchConsolidation getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return This installation's database and every {@code branches/<name>/gym.db}, by name.
+     */
+    public static List<Branch> findBranches() throws IOException {
+        List<Branch> branches = new ArrayList<>();
+        try (var folders = Files.list(AppPaths.getBranchesDir())) {
+            folders.filter(folder -> Files.isRegularFile(folder.resolve(DATABASE_FILE_NAME)))
+                    .forEach(folder -> branches.add(new Branch(folder.getFileName().toString(), folder.resolve(DATABASE_FILE_NAME))));
+        }
+        branches.sort((a, b) -> a.name().compareToIgnoreCase(b.name()));
+        branches.add(0, new Branch(LOCAL_BRANCH_NAME, AppPaths.getDatabasePath()));
+        return branches;
+    }
+
+    /**
+     * Reads every branch, one worker thread each, querying only those whose database changed
+     * since it was last read. A branch that cannot be read is reported in its result and
+     * left out of the combined totals. Runs for as long as the slowest changed branch, so
+     * call it off the FX thread.
+     */
+    public Result consolidate(List<Branch> branches) throws InterruptedException {
+        if (branches.isEmpty()) {
+            return new Result(List.of(), Totals.sum(List.of()));
+        }
+        AtomicInteger counter = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(branches.size(), r -> {
+            Thread t = new Thread(r, "branch-consolidation-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Callable<BranchResult>> tasks = new ArrayList<>();
+            for (Branch branch : branches) {
+                tasks.add(() -> read(branch));
+            }
+            List<BranchResult> results = new ArrayList<>();
+            List<Totals> parts = new ArrayList<>();
+            for (Future<BranchResult> future : workers.invokeAll(tasks)) {
+                BranchResult result = future.get();
+                results.add(result);
+                if (result.totals() != null) {
+                    parts.add(result.totals());
+                }
+            }
+            return new Result(Collections.unmodifiableList(results), Totals.sum(parts));
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause()); // read() reports its own failures
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private BranchResult read(Branch branch) {
+        long start = System.nanoTime();
+        Path database = branch.database().toAbsolutePath().normalize();
+        try {
+            long size = Files.size(database);
+            long modified = Files.getLastModifiedTime(database).toMillis();
+            LocalDate today = LocalDate.now();
+            CachedBranch cached;
+            synchronized (this) {
+                cached = cache.get(database);
+            }
+            // Active members depend on the date, so cached totals only last the day
+            boolean sameDay = cached != null && cached.readOn().equals(today);
+            if (sameDay && cached.size() == size && cached.modified() == modified) {
+                return new BranchResult(branch, cached.totals(), false, elapsedMillis(start), null);
+            }
+            // Copied or touched without changes: the contents decide
+            long checksum = checksum(database);
+            if (sameDay && cached.checksum() == checksum) {
+                remember(database, new CachedBranch(size, modified, checksum, today, cached.totals()));
+                return new BranchResult(branch, cached.totals(), false, elapsedMillis(start), null);
+            }
+            Totals totals = query(database, today);
+            remember(database, new CachedBranch(size, modified, checksum, today, totals));
+            return new BranchResult(branch, totals, true, elapsedMillis(start), null);
+        } catch (IOException | SQLException | RuntimeException e) {
+            return new BranchResult(branch, null, true, elapsedMillis(start), String.valueOf(e.getMessage()));
+        }
+    }
+
+    private synchronized void remember(Path database, CachedBranch entry) {
+        cache.put(database, entry);
+    }
+
+    private static Totals query(Path database, LocalDate today) throws SQLException {
+        TreeMap<YearMonth, Long> revenueCents = new TreeMap<>();
+        TreeMap<YearMonth, Long> visits = new TreeMap<>();
+        int members;
+        int activeMembers;
+        try (Connection conn = DatabaseManager.getReadOnlyConnection(database)) {
+            String revenueSql = "SELECT payment_date, SUM(amount) FROM payments GROUP BY payment_date";
+            try (PreparedStatement pstmt = conn.prepareStatement(revenueSql);
+                 ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    YearMonth month = YearMonth.from(rs.getDate(1).toLocalDate());
+                    revenueCents.merge(month, Math.round(rs.getDouble(2) * 100), Long::sum);
+                }
+            }
+            // Timestamps are ISO text, so the month is their first seven characters
+            String visitsSql = "SELECT substr(timestamp, 1, 7), COUNT(*) FROM attendance GROUP BY 1";
+            try (PreparedStatement pstmt = conn.prepareStatement(visitsSql);
+                 ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    visits.put(YearMonth.parse(rs.getString(1)), rs.getLong(2));
+                }
+            }
+            String membersSql = "SELECT COUNT(*), SUM(expiry_date >= ?) FROM members";
+            try (PreparedStatement pstmt = conn.prepareStatement(membersSql)) {
+                pstmt.setDate(1, Date.valueOf(today));
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    rs.next();
+                    members = rs.getInt(1);
+                    activeMembers = rs.getInt(2);
+                }
+            }
+        }
+        return new Totals(revenueCents, visits, members, activeMembers);
+    }
+
+    // CRC-32C is hardware-accelerated: a few hundred MB per second, far less than re-running the queries
+    private static long checksum(Path database) throws IOException {
+        CRC32C crc = new CRC32C();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(CHECKSUM_BUFFER_BYTES);
+        try (FileChannel channel = FileChannel.open(database, StandardOpenOption.READ)) {
+            while (channel.read(buffer) > 0) {
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+            }
+        }
+        return crc.getValue();
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
@@ -0,0 +1,323 @@
+package com.gym.app.service;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import com.google.zxing.WriterException;
+import com.google.zxing.client.j2se.MatrixToImageWriter;
+import com.gym.app.model.Member;
+import com.gym.app.util.AppPaths;
+import com.gym.app.util.PhotoImages;
+import com.gym.app.util.QRGenerator;
+
+/**
+ * Renders member QR codes and printable card sheets in bulk, e.g. when a whole branch
+ * gets new cards.
+ * <p>
+ * QR images are cached on disk under {@code qrcodes/cache/}, named by a hash of the value,
+ * size and error correction level, so values already rendered are skipped on the next run.
+ * Optional A4 sheets ({@value #COLUMNS}x{@value #ROWS} cards at {@value #SHEET_DPI} dpi,
+ * PNG) show the member's name, ID, expiry date, photo and QR code. Work is split into one
+ * task per sheet on a fixed pool; {@link #cancel()} stops at the next card.
+ */
+public class CardBatchGenerator {
+
+    /**
+     * Receives progress from the worker threads (not the FX thread).
+     */
+    public interface ProgressListener {
+        void onProgress(int done, int total);
+    }
+
+    /**
+     * Outcome of a batch run.
+     */
+    public static class Result {
+        private final int rendered;
+        private final int cached;
+        private final List<Path> sheets;
+        private final boolean cancelled;
+        private final long elapsedNanos;
+
+        Result(int rendered, int cached, List<Path> sheets, boolean cancelled, long elapsedNanos) {
+            this.rendered = rendered;
+            this.cached = cached;
+            this.sheets = sheets;
+            this.cancelled = cancelled;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /** QR codes encoded in this run. */
+        public int getRendered() { return rendered; }
+        /** QR codes skipped because they were already in the cache. */
+        public int getCached() { return cached; }
+        public List<Path> getSheets() { return sheets; }
+        public boolean isCancelled() { return cancelled; }
+        public long getElapsedNanos() { return elapsedNanos; }
+    }
+
+    public static final int QR_SIZE = 300;
+    private static final String CACHE_DIR_NAME = "cache";
+
+    // A4 at 150 dpi is plenty for QR modules of this size and keeps sheets around 1 MB
+    private static final int SHEET_DPI = 150;
+    private static final int SHEET_WIDTH = 1240;
+    private static final int SHEET_HEIGHT = 1754;
+    private static final int SHEET_MARGIN = 60;
+    private static final int COLUMNS = 2;
+    private static final int ROWS = 4;
+    private static final int CARDS_PER_SHEET = COLUMNS * ROWS;
+    private static final int CARD_GAP = 20;
+    private static final int CARD_PADDING = 20;
+    private static final int PHOTO_WIDTH = 170;
+    private static final int PHOTO_HEIGHT = 210;
+    private static final Font NAME_FONT = new Font(Font.SANS_SERIF, Font.BOLD, 26);
+    private static final Font DETAIL_FONT = new Font(Font.SANS_SERIF, Font.PLAIN, 18);
+
+    private final int threads;
+    private final Path cacheDir;
+    private volatile boolean cancelled = false;
+
+    public CardBatchGenerator() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public CardBatchGenerator(int threads) {
+        this.threads = Math.max(1, threads);
+        this.cacheDir = AppPaths.getQrCodesDir().resolve(CACHE_DIR_NAME);
+    }
+
+    /**
+     * Renders QR codes (and optionally card sheets) for the given members. Blocks until done.
+     * @param members The members to print, in sheet order.
+     * @param sheetDir Where to write {@code sheet-0001.png} etc., or null to only fill the QR cache.
+     * @param listener Progress callback, may be null.
+     * @return What was done; partial if cancelled.
+     * @throws IOException if a QR code or sheet cannot be written.
+     */
+    public Result generate(List<Member> members, Path sheetDir, ProgressListener listener) throws IOException {
+        cancelled = false;
+        long start = System.nanoTime();
+        Files.createDirectories(cacheDir);
+        if (sheetDir != null) {
+            Files.createDirectories(sheetDir);
+        }
+
+        int total = members.size();
+        AtomicInteger done = new AtomicInteger();
+        AtomicInteger rendered = new AtomicInteger();
+        AtomicInteger cached = new AtomicInteger();
+
+        AtomicInteger threadCounter = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "card-batch-" + threadCounter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        List<Future<Path>> sheets = new ArrayList<>();
+        try {
+            for (int first = 0; first < total; first += CARDS_PER_SHEET) {
+                List<Member> chunk = members.subList(first, Math.min(total, first + CARDS_PER_SHEET));
+                Path sheetFile = sheetDir == null ? null
+                        : sheetDir.resolve(String.format("sheet-%04d.png", first / CARDS_PER_SHEET + 1));
+                sheets.add(pool.submit(() -> renderChunk(chunk, sheetFile, done, rendered, cached, total, listener)));
+            }
+
+            List<Path> written = new ArrayList<>();
+            for (Future<Path> sheet : sheets) {
+                Path path = sheet.get();
+                if (path != null) {
+                    written.add(path);
+                }
+            }
+            return new Result(rendered.get(), cached.get(), Collections.unmodifiableList(written),
+                    cancelled, System.nanoTime() - start);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Card generation interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException("Card generation failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Stops a running {@link #generate} after the cards currently being drawn.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return Where the QR image for a value is (or will be) cached.
+     */
+    public Path cachedQrPath(String qrCodeValue) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            String identity = qrCodeValue + "|" + QR_SIZE + "|" + QRGenerator.getErrorCorrectionLevel();
+            byte[] hash = digest.digest(identity.getBytes(StandardCharsets.UTF_8));
+            return cacheDir.resolve(HexFormat.of().formatHex(hash) + ".png");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private Path renderChunk(List<Member> chunk, Path sheetFile, AtomicInteger done, AtomicInteger rendered,
+                             AtomicInteger cached, int total, ProgressListener listener) throws IOException, WriterException {
+        BufferedImage sheet = null;
+        Graphics2D g = null;
+        if (sheetFile != null) {
+            sheet = new BufferedImage(SHEET_WIDTH, SHEET_HEIGHT, BufferedImage.TYPE_INT_RGB);
+            g = sheet.createGraphics();
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, SHEET_WIDTH, SHEET_HEIGHT);
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        }
+        try {
+            for (int i = 0; i < chunk.size(); i++) {
+                if (cancelled) {
+                    return null; // a partial sheet is worse than none
+                }
+                Member member = chunk.get(i);
+                BufferedImage qr = qrImage(member.getQrCodeValue(), rendered, cached, g != null);
+                if (g != null) {
+                    drawCard(g, member, qr, i % COLUMNS, i / COLUMNS);
+                }
+                int progress = done.incrementAndGet();
+                if (listener != null) {
+                    listener.onProgress(progress, total);
+                }
+            }
+        } finally {
+            if (g != null) {
+                g.dispose();
+            }
+        }
+        if (sheetFile == null) {
+            return null;
+        }
+        writeAtomically(sheet, sheetFile);
+        return sheetFile;
+    }
+
+    // Returns the image only when the caller needs it for a sheet; cache-only runs skip the read-back
+    private BufferedImage qrImage(String value, AtomicInteger rendered, AtomicInteger cached, boolean needImage)
+            throws IOException, WriterException {
+        Path file = cachedQrPath(value);
+        if (Files.exists(file)) {
+            cached.incrementAndGet();
+            return needImage ? ImageIO.read(file.toFile()) : null;
+        }
+        BufferedImage image = MatrixToImageWriter.toBufferedImage(QRGenerator.encode(value, QR_SIZE, QR_SIZE));
+        writeAtomically(image, file);
+        rendered.incrementAndGet();
+        return image;
+    }
+
+    private void drawCard(Graphics2D g, Member member, BufferedImage qr, int column, int row) {
+        int cellWidth = (SHEET_WIDTH - 2 * SHEET_MARGIN) / COLUMNS;
+        int cellHeight = (SHEET_HEIGHT - 2 * SHEET_MARGIN) / ROWS;
+        int x = SHEET_MARGIN + column * cellWidth + CARD_GAP / 2;
+        int y = SHEET_MARGIN + row * cellHeight + CARD_GAP / 2;
+        int width = cellWidth - CARD_GAP;
+        int height = cellHeight - CARD_GAP;
+
+        // Cut line
+        g.setColor(Color.LIGHT_GRAY);
+        g.setStroke(new BasicStroke(2));
+        g.drawRoundRect(x, y, width, height, 24, 24);
+
+        g.setColor(Color.BLACK);
+        g.setFont(NAME_FONT);
+        drawTruncated(g, member.getFullName(), x + CARD_PADDING, y + CARD_PADDING + 24, width - 2 * CARD_PADDING);
+
+        int photoX = x + CARD_PADDING;
+        int photoY = y + CARD_PADDING + 40;
+        BufferedImage photo = loadPhoto(member.getPhotoPath());
+        if (photo != null) {
+            BufferedImage scaled = PhotoImages.scaleToFit(photo, Math.max(PHOTO_WIDTH, PHOTO_HEIGHT));
+            double fit = Math.min((double) PHOTO_WIDTH / scaled.getWidth(), (double) PHOTO_HEIGHT / scaled.getHeight());
+            int w = (int) (scaled.getWidth() * Math.min(1.0, fit));
+            int h = (int) (scaled.getHeight() * Math.min(1.0, fit));
+            g.drawImage(scaled, photoX + (PHOTO_WIDTH - w) / 2, photoY + (PHOTO_HEIGHT - h) / 2, w, h, null);
+        } else {
+            g.setColor(new Color(0xEC, 0xF0, 0xF1));
+            g.fillRect(photoX, photoY, PHOTO_WIDTH, PHOTO_HEIGHT);
+            g.setColor(Color.BLACK);
+        }
+
+        g.setFont(DETAIL_FONT);
+        g.drawString("ID " + member.getMemberId(), photoX, photoY + PHOTO_HEIGHT + 30);
+        if (member.getExpiryDate() != null) {
+            g.drawString("Exp. " + member.getExpiryDate(), photoX, photoY + PHOTO_HEIGHT + 56);
+        }
+
+        int qrSize = Math.min(QR_SIZE, height - (photoY - y) - CARD_PADDING);
+        g.drawImage(qr, x + width - CARD_PADDING - qrSize, photoY, qrSize, qrSize, null);
+    }
+
+    private static void drawTruncated(Graphics2D g, String text, int x, int baseline, int maxWidth) {
+        if (text == null) {
+            return;
+        }
+        FontMetrics metrics = g.getFontMetrics();
+        String shown = text;
+        while (shown.length() > 1 && metrics.stringWidth(shown + "…") > maxWidth) {
+            shown = shown.substring(0, shown.length() - 1);
+        }
+        g.drawString(shown.equals(text) ? text : shown + "…", x, baseline);
+    }
+
+    // Medium variant for stored photos; legacy paths are decoded from the original
+    private static BufferedImage loadPhoto(String photoPath) {
+        if (photoPath == null || photoPath.isEmpty()) {
+            return null;
+        }
+        Path file = PhotoStore.isStoreKey(photoPath)
+                ? PhotoStore.getInstance().resolve(photoPath, PhotoStore.Variant.MEDIUM)
+                : Paths.get(photoPath);
+        try {
+            return Files.exists(file) ? ImageIO.read(file.toFile()) : null;
+        } catch (IOException e) {
+            System.err.println("Could not read photo for card: " + file + " (" + e.getMessage() + ")");
+            return null;
+        }
+    }
+
+    private static void writeAtomically(BufferedImage image, Path target) throws IOException {
+        Path temp = Files.createTempFile(target.getParent(), "card", ".tmp");
+        try {
+            ImageIO.write(image, "png", temp.toFile());
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
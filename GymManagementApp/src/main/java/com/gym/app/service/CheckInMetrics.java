@@ -0,0 +1,171 @@
+package com.gym.app.service;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.gym.app.util.AppPaths;
+import com.gym.app.util.LatencyHistogram;
+
+/**
+ * Per-stage latency histograms for the check-in path, shared by the camera thread,
+ * the check-in service and the FX thread.
+ * <p>
+ * Snapshots are appended to {@code logs/checkin_metrics.log} once a minute (only when
+ * new samples arrived) and tagged with the host name so terminals can be compared.
+ */
+public class CheckInMetrics {
+
+    public enum Stage {
+        GRAB("grab"),
+        CONVERT("convert"),
+        DECODE("decode"),
+        LOOKUP("lookup"),
+        EVALUATE("evaluate"),
+        ATTENDANCE("attendance"),
+        PAINT("paint"),
+        SCAN_TO_SCREEN("scan-to-screen");
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private static final String METRICS_FILE_NAME = "checkin_metrics.log";
+    private static final long SNAPSHOT_INTERVAL_SECONDS = 60;
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final CheckInMetrics INSTANCE = new CheckInMetrics();
+
+    private final Map<Stage, LatencyHistogram> histograms = new EnumMap<>(Stage.class);
+    private ScheduledExecutorService snapshotWriter;
+    private long lastWrittenCount = 0;
+
+    private CheckInMetrics() {
+        for (Stage stage : Stage.values()) {
+            histograms.put(stage, new LatencyHistogram());
+        }
+    }
+
+    public static CheckInMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    public void record(Stage stage, long nanos) {
+        histograms.get(stage).record(nanos);
+    }
+
+    public LatencyHistogram.Snapshot snapshot(Stage stage) {
+        return histograms.get(stage).snapshot();
+    }
+
+    public void reset() {
+        histograms.values().forEach(LatencyHistogram::reset);
+    }
+
+    /**
+     * Formats live p50/p99/max (milliseconds) for every stage that has samples,
+     * followed by the member cache hit rate.
+     */
+    public String formatSummary() {
+        StringBuilder sb = new StringBuilder();
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram.Snapshot s = snapshot(stage);
+            if (s.getCount() == 0) {
+                continue;
+            }
+            if (sb.length() > 0) {
+                sb.append('\n');
+            }
+            sb.append(String.format("%-14s p50 %6.1f  p99 %6.1f  max %6.1f ms",
+                    stage.getLabel(),
+                    toMillis(s.getValueAtPercentile(50)),
+                    toMillis(s.getValueAtPercentile(99)),
+                    toMillis(s.getMax())));
+        }
+        if (sb.length() == 0) {
+            return "No scans yet";
+        }
+        return sb.append('\n').append(MemberCache.getInstance().formatStats()).toString();
+    }
+
+    /**
+     * Starts the periodic snapshot writer (idempotent).
+     */
+    public synchronized void startSnapshotWriter() {
+        if (snapshotWriter != null) {
+            return;
+        }
+        snapshotWriter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "checkin-metrics-writer");
+            t.setDaemon(true);
+            return t;
+        });
+        snapshotWriter.scheduleAtFixedRate(this::writeSnapshot,
+                SNAPSHOT_INTERVAL_SECONDS, SNAPSHOT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stopSnapshotWriter() {
+        if (snapshotWriter != null) {
+            snapshotWriter.shutdownNow();
+            snapshotWriter = null;
+            writeSnapshot();
+        }
+    }
+
+    public Path getMetricsFilePath() {
+        return AppPaths.getLogsDir().resolve(METRICS_FILE_NAME);
+    }
+
+    private synchronized void writeSnapshot() {
+        long count = histograms.get(Stage.GRAB).getCount() + histograms.get(Stage.LOOKUP).getCount();
+        if (count == lastWrittenCount) {
+            return;
+        }
+        lastWrittenCount = count;
+
+        String timestamp = LocalDateTime.now().format(FORMATTER);
+        String host = hostName();
+        try (PrintWriter pw = new PrintWriter(Files.newBufferedWriter(getMetricsFilePath(),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+            for (Stage stage : Stage.values()) {
+                LatencyHistogram.Snapshot s = snapshot(stage);
+                pw.printf("%s host=%s stage=%s count=%d p50_ms=%.2f p90_ms=%.2f p99_ms=%.2f max_ms=%.2f%n",
+                        timestamp, host, stage.getLabel(), s.getCount(),
+                        toMillis(s.getValueAtPercentile(50)), toMillis(s.getValueAtPercentile(90)),
+                        toMillis(s.getValueAtPercentile(99)), toMillis(s.getMax()));
+            }
+        } catch (IOException e) {
+            // Metrics are best-effort; never interrupt check-in because the log is not writable.
+            System.err.println("Could not write check-in metrics: " + e.getMessage());
+        }
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            return "unknown";
+        }
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
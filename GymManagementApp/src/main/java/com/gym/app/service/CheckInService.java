@@ -0,0 +1,263 @@
+package com.gym.app.service;
+
+import com.gym.app.model.CheckInResult;
+import com.gym.app.model.Member;
+import com.gym.app.util.SignedQrCodec;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The admission decision behind a QR scan: member lookup, status evaluation and
+ * attendance logging. Shared by the camera check-in view and the replay benchmark
+ * so both exercise exactly the same path.
+ * <p>
+ * Signed QR payloads (see {@link QrSigningService}) are verified first: a valid,
+ * unexpired, non-revoked card is admitted from the payload alone. Its attendance row is
+ * handed to the {@link AttendanceBatcher}, which writes it in the background and retries if
+ * the database is busy, being restored or locked (a remote scan waits for the row instead,
+ * like any other remote admission); the member's name and photo come from the
+ * {@link MemberCache}, or are loaded in the background via {@link #loadMemberForDisplay}.
+ * A revoked card (see {@link QrSigningService#revokeCard}) fails verification and is never
+ * admitted. Expired signed cards, those of members flagged for a database check, and classic
+ * UUID cards go through the database as before.
+ */
+public class CheckInService {
+
+    // Display lookups for signed admissions; one thread is plenty, they are a nicety
+    private static final ExecutorService DISPLAY_LOADER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "checkin-display");
+        t.setDaemon(true);
+        return t;
+    });
+    // In-flight display lookups, so the service and the view asking for the same member share one
+    private static final Map<Integer, CompletableFuture<Member>> DISPLAY_LOADS = new ConcurrentHashMap<>();
+
+    private final MemberService memberService;
+    private final AttendanceService attendanceService;
+    private final QrSigningService qrSigningService = QrSigningService.getInstance();
+    private final MemberCache memberCache = MemberCache.getInstance();
+    private final PhotoService photoService = PhotoService.getInstance();
+    private final CheckInMetrics metrics = CheckInMetrics.getInstance();
+
+    public CheckInService() {
+        this(new MemberService(), new AttendanceService());
+    }
+
+    public CheckInService(MemberService memberService, AttendanceService attendanceService) {
+        this.memberService = memberService;
+        this.attendanceService = attendanceService;
+    }
+
+    /**
+     * Processes a decoded QR value.
+     * @param qrCodeValue The text decoded from the member's card.
+     * @return The admission decision; attendance is logged only for admitted members.
+     */
+    public CheckInResult processScan(String qrCodeValue) {
+        try {
+            return scan(qrCodeValue, false);
+        } catch (SQLException e) {
+            // Not thrown: on screen, logAttendance reports a failed insert itself
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Same decision as {@link #processScan}, for callers with nobody at this screen (the
+     * front-desk API): a failed attendance insert shows no error dialog and is thrown
+     * instead of admitting the member with no row saved. This holds for signed cards too,
+     * whose row is then written before answering rather than queued.
+     * @throws SQLException if the member was admitted but the attendance row could not be saved.
+     */
+    public CheckInResult processRemoteScan(String qrCodeValue) throws SQLException {
+        return scan(qrCodeValue, true);
+    }
+
+    private CheckInResult scan(String qrCodeValue, boolean remote) throws SQLException {
+        if (qrCodeValue == null || qrCodeValue.isEmpty()) {
+            return CheckInResult.notRecognized();
+        }
+
+        if (SignedQrCodec.isSignedFormat(qrCodeValue)) {
+            return processSignedScan(qrCodeValue, remote);
+        }
+
+        long start = System.nanoTime();
+        Member member = memberCache.getByQrCode(qrCodeValue);
+        if (member == null) {
+            member = memberService.getMemberByQrCodeValue(qrCodeValue);
+            if (member != null) {
+                memberCache.put(member);
+            }
+        }
+        long looked = System.nanoTime();
+        metrics.record(CheckInMetrics.Stage.LOOKUP, looked - start);
+        return evaluate(member, looked, remote);
+    }
+
+    /**
+     * Processes a decoded QR value scanned on the way out. Any card we issued is accepted,
+     * whatever its status, since the member is leaving.
+     * @return CHECKED_OUT, or NOT_RECOGNIZED for an unknown card.
+     */
+    public CheckInResult processCheckOut(String qrCodeValue) {
+        if (qrCodeValue == null || qrCodeValue.isEmpty()) {
+            return CheckInResult.notRecognized();
+        }
+
+        Member member;
+        int memberId;
+        if (SignedQrCodec.isSignedFormat(qrCodeValue)) {
+            SignedQrCodec.Payload payload = qrSigningService.verify(qrCodeValue);
+            if (payload == null) {
+                return CheckInResult.notRecognized();
+            }
+            memberId = payload.getMemberId();
+            member = findMemberForDisplay(memberId);
+        } else {
+            member = memberCache.getByQrCode(qrCodeValue);
+            if (member == null) {
+                member = memberService.getMemberByQrCodeValue(qrCodeValue);
+                if (member != null) {
+                    memberCache.put(member);
+                }
+            }
+            if (member == null) {
+                return CheckInResult.notRecognized();
+            }
+            memberId = member.getMemberId();
+        }
+
+        attendanceService.logCheckOut(memberId);
+        return new CheckInResult(CheckInResult.Outcome.CHECKED_OUT, member, memberId,
+                member != null ? member.getExpiryDate() : null, 0, member == null);
+    }
+
+    private CheckInResult processSignedScan(String qrCodeValue, boolean remote) throws SQLException {
+        long start = System.nanoTime();
+        SignedQrCodec.Payload payload = qrSigningService.verify(qrCodeValue);
+        if (payload == null) {
+            // Looks like one of our cards but the signature does not match, or the card was revoked: never admit
+            metrics.record(CheckInMetrics.Stage.EVALUATE, System.nanoTime() - start);
+            return CheckInResult.notRecognized();
+        }
+
+        int memberId = payload.getMemberId();
+        LocalDate expiry = payload.getExpiryDate();
+        if (!expiry.isBefore(LocalDate.now()) && !qrSigningService.isRevoked(memberId)) {
+            long evaluated = System.nanoTime();
+            metrics.record(CheckInMetrics.Stage.EVALUATE, evaluated - start);
+
+            if (remote) {
+                insertRemoteAttendance(memberId);
+            } else {
+                AttendanceBatcher.getInstance().submit(memberId, LocalDateTime.now());
+            }
+            metrics.record(CheckInMetrics.Stage.ATTENDANCE, System.nanoTime() - evaluated);
+
+            // Only what is cached: a miss is loaded in the background, never waited for here
+            Member member = memberCache.getById(memberId);
+            if (member != null) {
+                photoService.prefetch(member.getPhotoPath());
+            } else {
+                loadMemberForDisplay(memberId);
+            }
+            long daysRemaining = ChronoUnit.DAYS.between(LocalDate.now(), expiry);
+            return new CheckInResult(CheckInResult.Outcome.ADMITTED, member, memberId, expiry, daysRemaining, true);
+        }
+
+        // Expired on the card (the member may have renewed since) or flagged for a database check: the database decides
+        long lookupStart = System.nanoTime();
+        Member member = memberCache.getById(memberId);
+        if (member == null) {
+            member = memberService.getMemberById(memberId);
+            if (member != null) {
+                memberCache.put(member);
+            }
+        }
+        long looked = System.nanoTime();
+        metrics.record(CheckInMetrics.Stage.LOOKUP, looked - lookupStart);
+        return evaluate(member, looked, remote);
+    }
+
+    private CheckInResult evaluate(Member member, long lookedUpAt, boolean remote) throws SQLException {
+        if (member == null) {
+            return CheckInResult.notRecognized();
+        }
+        // Start decoding the photo now so it is ready while status and attendance are handled
+        photoService.prefetch(member.getPhotoPath());
+
+        String status = member.getStatus();
+        boolean admitted = "Active".equals(status) || "Expiring".equals(status);
+        long daysRemaining = admitted ? ChronoUnit.DAYS.between(LocalDate.now(), member.getExpiryDate()) : 0;
+        long evaluated = System.nanoTime();
+        metrics.record(CheckInMetrics.Stage.EVALUATE, evaluated - lookedUpAt);
+
+        if (admitted) {
+            if (remote) {
+                insertRemoteAttendance(member.getMemberId());
+            } else {
+                attendanceService.logAttendance(member.getMemberId());
+            }
+            metrics.record(CheckInMetrics.Stage.ATTENDANCE, System.nanoTime() - evaluated);
+            return new CheckInResult(CheckInResult.Outcome.ADMITTED, member, daysRemaining);
+        }
+        return new CheckInResult(CheckInResult.Outcome.EXPIRED, member, 0);
+    }
+
+    // No error dialog: the remote caller is told instead
+    private void insertRemoteAttendance(int memberId) throws SQLException {
+        if (attendanceService.insertAttendance(memberId, LocalDateTime.now()) == null) {
+            throw new SQLException("Attendance not saved for member ID: " + memberId);
+        }
+    }
+
+    /**
+     * Loads a member's name and photo in the background, for a signed admission whose
+     * result came without them. The member is cached for the next scan.
+     * @return Completes with the member, or null if unknown or the database is unavailable.
+     */
+    public CompletableFuture<Member> loadMemberForDisplay(int memberId) {
+        CompletableFuture<Member> load = new CompletableFuture<>();
+        CompletableFuture<Member> running = DISPLAY_LOADS.putIfAbsent(memberId, load);
+        if (running != null) {
+            return running;
+        }
+        DISPLAY_LOADER.execute(() -> {
+            try {
+                load.complete(findMemberForDisplay(memberId));
+            } catch (RuntimeException e) {
+                load.completeExceptionally(e);
+            } finally {
+                DISPLAY_LOADS.remove(memberId, load);
+            }
+        });
+        return load;
+    }
+
+    // Name and photo are a nicety for the welcome screen; admission never depends on them
+    private Member findMemberForDisplay(int memberId) {
+        try {
+            Member member = memberCache.getById(memberId);
+            if (member == null) {
+                member = memberService.findMemberById(memberId);
+                if (member != null) {
+                    memberCache.put(member);
+                }
+            }
+            if (member != null) {
+                photoService.prefetch(member.getPhotoPath());
+            }
+            return member;
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.gym.app.service;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.gym.app.db.DatabaseManager;
+import com.gym.app.util.AttendanceColumns;
+
+/**
+ * Front-desk figures for today, kept current from the {@link GymEventBus} instead of queries.
+ * <p>
+ * The database is read once at startup, as part of the {@link AttendanceHistoryFeed}'s read,
+ * and once a day for members whose expiry enters the warning window; after that every
+ * check-in, payment and member save updates the counters in place. Counters are {@link LongAdder}s and the per-member maps
+ * are concurrent, so the camera, worker and FX threads never wait on each other. The number
+ * of people on site comes from the {@link OccupancyTracker}.
+ * Shared instance: one set of counters per process.
+ */
+public class DashboardStats {
+
+    /**
+     * Told after the figures changed, on the thread that caused the change.
+     */
+    public interface Listener {
+        void statsChanged();
+    }
+
+    /**
+     * The figures at one moment.
+     * @param loaded False until the startup read has finished; the figures are incomplete until then.
+     */
+    public record Snapshot(long checkInsToday, double revenueToday, int expiringMembers, boolean loaded) {
+    }
+
+    // Same window as Member.getStatus() uses for "Expiring"
+    private static final int EXPIRING_DAYS = 7;
+
+    private static final DashboardStats INSTANCE = new DashboardStats();
+
+    private final LongAdder checkInsToday = new LongAdder();
+    private final LongAdder revenueTodayCents = new LongAdder();
+    private final Map<Integer, LocalDate> expiryDates = new ConcurrentHashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    // Day the counters belong to; written after they are reset, under the lock
+    private volatile LocalDate day = LocalDate.now();
+
+    // Payments the startup read already counted; check-ins are filtered by the feed
+    private volatile long loadedMaxPaymentId;
+    private boolean started; // guarded by this
+    private int loadFromMinute; // only touched by the feed's thread
+
+    private DashboardStats() {
+    }
+
+    public static DashboardStats getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Registers with the {@link AttendanceHistoryFeed} to read today's figures at startup.
+     * Later calls do nothing.
+     */
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        AttendanceHistoryFeed.getInstance().register(new AttendanceHistoryFeed.Reader() {
+            @Override
+            public long begin(Connection conn) throws SQLException {
+                return load(conn);
+            }
+
+            @Override
+            public void row(long attendanceId, int memberId, int minute, String timestamp) {
+                if (minute >= loadFromMinute) {
+                    checkInsToday.increment();
+                }
+            }
+
+            @Override
+            public void apply(GymEvent event) {
+                DashboardStats.this.apply(event);
+                notifyListeners();
+            }
+
+            @Override
+            public void loaded() {
+                notifyListeners();
+            }
+        });
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public Snapshot snapshot() {
+        rollOver(LocalDate.now());
+
+        LocalDate today = day;
+        LocalDate windowEnd = today.plusDays(EXPIRING_DAYS);
+        int expiring = 0;
+        for (LocalDate expiry : expiryDates.values()) {
+            if (!expiry.isBefore(today) && expiry.isBefore(windowEnd)) {
+                expiring++;
+            }
+        }
+        return new Snapshot(checkInsToday.sum(), revenueTodayCents.sum() / 100.0, expiring,
+                AttendanceHistoryFeed.getInstance().isLoaded());
+    }
+
+    private void apply(GymEvent event) {
+        LocalDate eventDay = event.getTime().toLocalDate();
+        if (eventDay.isAfter(day)) {
+            rollOver(eventDay);
+        }
+        switch (event.getType()) {
+            case CHECK_IN -> {
+                if (eventDay.equals(day)) {
+                    checkInsToday.increment();
+                }
+            }
+            case PAYMENT -> {
+                if (event.getRecordId() > loadedMaxPaymentId && eventDay.equals(day)) {
+                    revenueTodayCents.add(Math.round(event.getAmount() * 100));
+                }
+            }
+            case MEMBER_SAVED -> trackExpiry(event.getMemberId(), event.getExpiryDate(), day);
+        }
+    }
+
+    // Only members expiring within the window (from today on) are kept
+    private void trackExpiry(int memberId, LocalDate expiry, LocalDate today) {
+        if (expiry != null && !expiry.isBefore(today) && expiry.isBefore(today.plusDays(EXPIRING_DAYS))) {
+            expiryDates.put(memberId, expiry);
+        } else {
+            expiryDates.remove(memberId);
+        }
+    }
+
+    private void rollOver(LocalDate today) {
+        if (!today.isAfter(day)) {
+            return;
+        }
+        synchronized (this) {
+            if (!today.isAfter(day)) {
+                return;
+            }
+            checkInsToday.reset();
+            revenueTodayCents.reset();
+            day = today;
+        }
+        // Members whose expiry has just entered the window were never in the map
+        Thread thread = new Thread(() -> {
+            try {
+                loadExpiring(today);
+                notifyListeners();
+            } catch (SQLException e) {
+                System.err.println("Could not reload expiring members: " + e.getMessage());
+            }
+        }, "dashboard-stats");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Reads today's revenue and expiring members; today's check-ins are counted from the
+    // feed's scan, which starts at the first one (IDs are nearly in time order)
+    private long load(Connection conn) throws SQLException {
+        LocalDate today = day;
+        // Everything is counted again, e.g. after a restore
+        checkInsToday.reset();
+        revenueTodayCents.reset();
+        expiryDates.clear();
+        loadedMaxPaymentId = queryLong(conn, "SELECT MAX(payment_id) FROM payments");
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT SUM(amount) FROM payments WHERE payment_date BETWEEN ? AND ?")) {
+            pstmt.setDate(1, Date.valueOf(today));
+            pstmt.setDate(2, Date.valueOf(today));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                revenueTodayCents.add(rs.next() ? Math.round(rs.getDouble(1) * 100) : 0);
+            }
+        }
+        loadExpiring(conn, today);
+
+        loadFromMinute = AttendanceColumns.toMinute(today.atStartOfDay());
+        // Timestamps are ISO strings, so they compare correctly as text
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT MIN(attendance_id) FROM attendance WHERE timestamp >= ?")) {
+            pstmt.setString(1, today.atStartOfDay().toString());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                long first = rs.next() ? rs.getLong(1) : 0;
+                return first == 0 ? Long.MAX_VALUE : first - 1;
+            }
+        }
+    }
+
+    private void loadExpiring(LocalDate today) throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            loadExpiring(conn, today);
+        }
+    }
+
+    private void loadExpiring(Connection conn, LocalDate today) throws SQLException {
+        String sql = "SELECT member_id, expiry_date FROM members WHERE expiry_date BETWEEN ? AND ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setDate(1, Date.valueOf(today));
+            pstmt.setDate(2, Date.valueOf(today.plusDays(EXPIRING_DAYS - 1)));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    expiryDates.putIfAbsent(rs.getInt(1), rs.getDate(2).toLocalDate());
+                }
+            }
+        }
+    }
+
+    private static long queryLong(Connection conn, String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    private void notifyListeners() {
+        for (Listener listener : listeners) {
+            try {
+                listener.statsChanged();
+            } catch (RuntimeException e) {
+                System.err.println("Dashboard listener failed: " + e);
+            }
+        }
+    }
+}
@@ -0,0 +1,495 @@
+package com.gym.app.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.gym.app.model.Attendance;
+import com.gym.app.model.CheckInResult;
+import com.gym.app.model.Member;
+import com.gym.app.model.Payment;
+import com.gym.app.util.Json;
+import com.gym.app.util.LatencyHistogram;
+import com.gym.app.util.SignedQrCodec;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Optional HTTP/JSON API so a second reception desk or a tablet can look members up, check
+ * them in, search and renew against this installation's database. Off by default; enabled
+ * in the settings, on {@value #DEFAULT_PORT} unless configured otherwise.
+ * <p>
+ * Every request needs an {@code Authorization: Bearer <token>} header with the token shown
+ * in the settings. Endpoints:
+ * <ul>
+ *   <li>{@code GET /api/members/lookup?qr=} - the member on a card</li>
+ *   <li>{@code GET /api/members?search=&limit=} - members by name, phone or ID</li>
+ *   <li>{@code POST /api/checkins} - {@code {"qr": ...}}, or an array of them to send several
+ *       scans in one request; the same admission decision as the camera view. A single scan
+ *       is answered with a 500 if an admitted member's attendance could not be saved; an
+ *       array with {@code {"results": [...]}} in the same order, where such a scan is
+ *       {@code {"error": ...}} and the others stand</li>
+ *   <li>{@code POST /api/members/{id}/renew} - {@code {"months": ..., "amount": ...}}, as the
+ *       renewal dialog does</li>
+ *   <li>{@code GET /api/metrics} - latency percentiles per endpoint and attendance batching</li>
+ * </ul>
+ * Requests run on virtual threads when the JVM has them (Java 21+), else on a fixed pool.
+ * Attendance rows go through {@link AttendanceBatcher}, so check-ins arriving together from
+ * several terminals share one commit. Responses always carry a length, so terminals keep
+ * their connection open between scans.
+ * Shared instance: one server per process.
+ */
+public class FrontDeskApi {
+
+    public static final int DEFAULT_PORT = 8085;
+
+    private static final int PLATFORM_THREADS = 64;
+    private static final int BACKLOG = 256;
+    private static final int MAX_BODY_BYTES = 1 << 20;
+    private static final int MAX_CHECK_INS_PER_REQUEST = 500;
+    private static final int DEFAULT_SEARCH_LIMIT = 50;
+    private static final int MAX_SEARCH_LIMIT = 500;
+    private static final int MAX_RENEWAL_MONTHS = 120;
+    private static final double MAX_RENEWAL_AMOUNT = 1_000_000;
+    private static final Pattern RENEW_PATH = Pattern.compile("/api/members/(\\d{1,9})/renew");
+
+    private enum Endpoint {
+        LOOKUP, SEARCH, CHECK_IN, RENEW, METRICS;
+
+        String getName() {
+            return name().toLowerCase().replace("_", "");
+        }
+    }
+
+    private static final class ApiException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private static final FrontDeskApi INSTANCE = new FrontDeskApi();
+
+    private final MemberService memberService = new MemberService();
+    private final MemberCache memberCache = MemberCache.getInstance();
+    // Same decision path as the camera view, with attendance inserted in shared transactions
+    private final CheckInService checkInService = new CheckInService(memberService, new AttendanceService() {
+        @Override
+        public Attendance insertAttendance(int memberId, LocalDateTime timestamp) throws SQLException {
+            return AttendanceBatcher.getInstance().insert(memberId, timestamp);
+        }
+    });
+    private final Map<Endpoint, LatencyHistogram> latencies = new HashMap<>();
+
+    // Guarded by this; the volatile ones are also read by request threads
+    private HttpServer server;
+    private ExecutorService requestExecutor;
+    private volatile ExecutorService checkInExecutor;
+    private volatile boolean virtualThreads;
+    private volatile byte[] token;
+
+    private FrontDeskApi() {
+        for (Endpoint endpoint : Endpoint.values()) {
+            latencies.put(endpoint, new LatencyHistogram());
+        }
+    }
+
+    public static FrontDeskApi getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Starts the server on the port saved in the settings, if the API is enabled there.
+     * Does nothing while it already runs. A port already in use is reported on the console;
+     * the rest of the app is unaffected.
+     */
+    public void start() {
+        SystemInfoService settings = new SystemInfoService();
+        if (isRunning() || !settings.isApiEnabled()) {
+            return;
+        }
+        try {
+            start(settings.getApiPort(), settings.getApiToken());
+        } catch (IOException e) {
+            System.err.println("Front-desk API not started: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Starts the server, first stopping it if it already runs.
+     * @param token The bearer token every request must carry.
+     * @throws IOException if the port cannot be opened (e.g. already in use).
+     */
+    public synchronized void start(int port, String token) throws IOException {
+        stop();
+        // Headers and body are written separately; with Nagle's algorithm on, each response
+        // then waits for the terminal's delayed ACK (~40 ms). Read once, when the first server starts
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        HttpServer newServer = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        newServer.createContext("/", this::handle);
+        this.token = token.getBytes(StandardCharsets.UTF_8);
+        ExecutorService virtual = newVirtualThreadExecutor();
+        virtualThreads = virtual != null;
+        requestExecutor = virtualThreads ? virtual : newPlatformExecutor("front-desk-api");
+        // Scans of one request are checked in side by side so they share commits; a separate
+        // pool, so requests waiting on their scans never starve the scans of threads
+        checkInExecutor = virtualThreads ? newVirtualThreadExecutor() : newPlatformExecutor("front-desk-checkin");
+        newServer.setExecutor(requestExecutor);
+        newServer.start();
+        server = newServer;
+    }
+
+    /**
+     * Stops the server, letting requests in progress finish for up to a second.
+     */
+    public synchronized void stop() {
+        if (server == null) {
+            return;
+        }
+        server.stop(1);
+        requestExecutor.shutdown();
+        checkInExecutor.shutdown();
+        server = null;
+    }
+
+    public synchronized boolean isRunning() {
+        return server != null;
+    }
+
+    /**
+     * @return The port the server listens on, or -1 if it is not running.
+     */
+    public synchronized int getPort() {
+        return server != null ? server.getAddress().getPort() : -1;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        Endpoint endpoint = null;
+        int status = 200;
+        String body;
+        try {
+            // Read the whole body, even when unused, so the connection can be reused
+            InputStream in = exchange.getRequestBody();
+            byte[] request = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (request.length > MAX_BODY_BYTES) {
+                throw new ApiException(413, "Request body too large");
+            }
+            if (!isAuthorized(exchange)) {
+                throw new ApiException(401, "Missing or wrong API token");
+            }
+
+            String path = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            Matcher renew = RENEW_PATH.matcher(path);
+            if (path.equals("/api/members/lookup")) {
+                endpoint = requireMethod(method, "GET", Endpoint.LOOKUP);
+                body = lookup(query.get("qr"));
+            } else if (path.equals("/api/members")) {
+                endpoint = requireMethod(method, "GET", Endpoint.SEARCH);
+                body = search(query.getOrDefault("search", ""), query.get("limit"));
+            } else if (path.equals("/api/checkins")) {
+                endpoint = requireMethod(method, "POST", Endpoint.CHECK_IN);
+                body = checkIn(parseBody(request));
+            } else if (renew.matches()) {
+                endpoint = requireMethod(method, "POST", Endpoint.RENEW);
+                body = renew(Integer.parseInt(renew.group(1)), parseBody(request));
+            } else if (path.equals("/api/metrics")) {
+                endpoint = requireMethod(method, "GET", Endpoint.METRICS);
+                body = metrics();
+            } else {
+                throw new ApiException(404, "No such endpoint: " + method + " " + path);
+            }
+        } catch (ApiException e) {
+            status = e.status;
+            body = errorJson(e.getMessage());
+        } catch (SQLException | RuntimeException e) {
+            System.err.println("Front-desk API request failed: " + e.getMessage());
+            status = 500;
+            body = errorJson("Internal error: " + e.getMessage());
+        }
+
+        try {
+            byte[] response = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(status, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        } finally {
+            exchange.close();
+            if (endpoint != null) {
+                latencies.get(endpoint).record(System.nanoTime() - start);
+            }
+        }
+    }
+
+    private boolean isAuthorized(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        if (header == null || !header.startsWith("Bearer ")) {
+            return false;
+        }
+        // Constant time, so the token cannot be guessed from response times
+        return MessageDigest.isEqual(header.substring(7).trim().getBytes(StandardCharsets.UTF_8), token);
+    }
+
+    private String lookup(String qr) throws ApiException, SQLException {
+        if (qr == null || qr.isEmpty()) {
+            throw new ApiException(400, "Missing qr parameter");
+        }
+        Member member;
+        if (SignedQrCodec.isSignedFormat(qr)) {
+            SignedQrCodec.Payload payload = QrSigningService.getInstance().verify(qr);
+            member = payload != null ? findMember(payload.getMemberId()) : null;
+        } else {
+            member = memberCache.getByQrCode(qr);
+            if (member == null) {
+                member = memberService.getMemberByQrCodeValue(qr);
+                if (member != null) {
+                    memberCache.put(member);
+                }
+            }
+        }
+        if (member == null) {
+            throw new ApiException(404, "Card not recognized");
+        }
+        return memberJson(member);
+    }
+
+    private String search(String term, String limitParameter) throws ApiException {
+        int limit = DEFAULT_SEARCH_LIMIT;
+        if (limitParameter != null) {
+            try {
+                limit = Integer.parseInt(limitParameter);
+            } catch (NumberFormatException e) {
+                throw new ApiException(400, "limit must be a number");
+            }
+            if (limit < 1 || limit > MAX_SEARCH_LIMIT) {
+                throw new ApiException(400, "limit must be between 1 and " + MAX_SEARCH_LIMIT);
+            }
+        }
+        List<Member> members = memberService.searchMembers(term);
+        StringBuilder sb = new StringBuilder("{\"members\":[");
+        for (int i = 0; i < Math.min(limit, members.size()); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(memberJson(members.get(i)));
+        }
+        return sb.append("],\"truncated\":").append(members.size() > limit).append('}').toString();
+    }
+
+    private String checkIn(Object request) throws ApiException, SQLException {
+        if (request instanceof Map<?, ?> scan) {
+            return resultJson(checkInService.processRemoteScan(requireQr(scan)));
+        }
+        if (!(request instanceof List<?> scans)) {
+            throw new ApiException(400, "Expected {\"qr\": ...} or an array of them");
+        }
+        if (scans.size() > MAX_CHECK_INS_PER_REQUEST) {
+            throw new ApiException(400, "At most " + MAX_CHECK_INS_PER_REQUEST + " check-ins per request");
+        }
+        List<String> codes = new ArrayList<>(scans.size());
+        for (Object scan : scans) {
+            if (!(scan instanceof Map<?, ?> map)) {
+                throw new ApiException(400, "Expected {\"qr\": ...} in the array");
+            }
+            codes.add(requireQr(map));
+        }
+
+        List<Future<CheckInResult>> results = new ArrayList<>(codes.size());
+        for (String code : codes) {
+            results.add(checkInExecutor.submit(() -> checkInService.processRemoteScan(code)));
+        }
+        StringBuilder sb = new StringBuilder("{\"results\":[");
+        for (int i = 0; i < results.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            // The other scans may be saved already, so each failure is answered on its own
+            try {
+                sb.append(resultJson(results.get(i).get()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                sb.append(errorJson("Interrupted while checking in"));
+            } catch (ExecutionException e) {
+                System.err.println("Front-desk API check-in failed: " + e.getCause().getMessage());
+                sb.append(errorJson("Check-in failed: " + e.getCause().getMessage()));
+            }
+        }
+        return sb.append("]}").toString();
+    }
+
+    private String renew(int memberId, Object request) throws ApiException, SQLException {
+        if (!(request instanceof Map<?, ?> renewal)
+                || !(renewal.get("months") instanceof Double months)
+                || !(renewal.get("amount") instanceof Double amount)) {
+            throw new ApiException(400, "Expected {\"months\": ..., \"amount\": ...}");
+        }
+        // Same validation as the renewal dialog; JSON numbers may also be huge (1e999 parses as infinity)
+        if (!(months >= 1 && months <= MAX_RENEWAL_MONTHS) || months != Math.rint(months)) {
+            throw new ApiException(400, "months must be a whole number between 1 and " + MAX_RENEWAL_MONTHS);
+        }
+        if (!(amount > 0 && amount <= MAX_RENEWAL_AMOUNT)) {
+            throw new ApiException(400, "amount must be greater than zero and at most " + (long) MAX_RENEWAL_AMOUNT);
+        }
+        if (Math.abs(amount * 100 - Math.rint(amount * 100)) > 1e-6) {
+            throw new ApiException(400, "amount must have at most two decimals");
+        }
+        // Expiry and payment are saved together, serialized against other desks renewing the same member
+        Payment payment = new Payment(memberId, amount, LocalDate.now(), months.intValue());
+        LocalDate newExpiry = memberService.renew(payment);
+        if (newExpiry == null) {
+            throw new ApiException(404, "No member with ID " + memberId);
+        }
+        return "{\"memberId\":" + memberId
+                + ",\"expiryDate\":" + Json.quote(newExpiry.toString())
+                + ",\"paymentId\":" + payment.getPaymentId() + '}';
+    }
+
+    private String metrics() {
+        StringBuilder sb = new StringBuilder("{\"threads\":")
+                .append(Json.quote(virtualThreads ? "virtual" : "platform"))
+                .append(",\"endpoints\":{");
+        boolean first = true;
+        for (Endpoint endpoint : Endpoint.values()) {
+            LatencyHistogram.Snapshot snapshot = latencies.get(endpoint).snapshot();
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            sb.append(Json.quote(endpoint.getName())).append(":{\"count\":").append(snapshot.getCount())
+                    .append(",\"p50Ms\":").append(millis(snapshot.getValueAtPercentile(50)))
+                    .append(",\"p99Ms\":").append(millis(snapshot.getValueAtPercentile(99)))
+                    .append(",\"maxMs\":").append(millis(snapshot.getMax())).append('}');
+        }
+        AttendanceBatcher batcher = AttendanceBatcher.getInstance();
+        return sb.append("},\"attendance\":{\"commits\":").append(batcher.getCommitCount())
+                .append(",\"rows\":").append(batcher.getRowCount()).append("}}").toString();
+    }
+
+    private Member findMember(int memberId) throws SQLException {
+        Member member = memberCache.getById(memberId);
+        if (member == null) {
+            member = memberService.findMemberById(memberId);
+            if (member != null) {
+                memberCache.put(member);
+            }
+        }
+        return member;
+    }
+
+    // The card value and photo path stay on this PC: a card value is enough to check in
+    private static String memberJson(Member member) {
+        return "{\"memberId\":" + member.getMemberId()
+                + ",\"fullName\":" + Json.quote(member.getFullName())
+                + ",\"phone\":" + Json.quote(member.getPhone())
+                + ",\"joinDate\":" + Json.quote(String.valueOf(member.getJoinDate()))
+                + ",\"expiryDate\":" + Json.quote(String.valueOf(member.getExpiryDate()))
+                + ",\"status\":" + Json.quote(member.getStatus())
+                + ",\"notes\":" + Json.quote(member.getNotes()) + '}';
+    }
+
+    private static String resultJson(CheckInResult result) {
+        boolean known = result.getOutcome() != CheckInResult.Outcome.NOT_RECOGNIZED;
+        return "{\"outcome\":" + Json.quote(result.getOutcome().name())
+                + ",\"admitted\":" + result.isAdmitted()
+                + ",\"memberId\":" + (known ? Integer.toString(result.getMemberId()) : "null")
+                + ",\"expiryDate\":" + Json.quote(result.getExpiryDate() != null ? result.getExpiryDate().toString() : null)
+                + ",\"daysRemaining\":" + result.getDaysRemaining()
+                + ",\"verifiedOffline\":" + result.isVerifiedOffline()
+                + ",\"member\":" + (result.getMember() != null ? memberJson(result.getMember()) : "null") + '}';
+    }
+
+    private static String errorJson(String message) {
+        return "{\"error\":" + Json.quote(message) + '}';
+    }
+
+    private static Endpoint requireMethod(String method, String expected, Endpoint endpoint) throws ApiException {
+        if (!expected.equals(method)) {
+            throw new ApiException(405, endpoint.getName() + " only accepts " + expected);
+        }
+        return endpoint;
+    }
+
+    private static String requireQr(Map<?, ?> scan) throws ApiException {
+        if (!(scan.get("qr") instanceof String qr) || qr.isEmpty()) {
+            throw new ApiException(400, "Missing qr");
+        }
+        return qr;
+    }
+
+    private static Object parseBody(byte[] body) throws ApiException {
+        try {
+            return Json.parse(new String(body, StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new ApiException(400, "Invalid JSON: " + e.getMessage());
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) throws ApiException {
+        Map<String, String> parameters = new LinkedHashMap<>();
+        if (rawQuery == null) {
+            return parameters;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = equals >= 0 ? pair.substring(0, equals) : pair;
+            String value = equals >= 0 ? pair.substring(equals + 1) : "";
+            try {
+                parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+            } catch (IllegalArgumentException e) {
+                throw new ApiException(400, "Invalid query string: " + e.getMessage());
+            }
+        }
+        return parameters;
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 10_000.0) / 100.0;
+    }
+
+    // The build targets Java 17, so virtual threads are looked up at run time; null before Java 21
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService newPlatformExecutor(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(PLATFORM_THREADS, r -> {
+            Thread t = new Thread(r, name + "-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+}
@@ -0,0 +1,93 @@
+package com.gym.app.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import com.gym.app.model.Attendance;
+import com.gym.app.model.Payment;
+
+/**
+ * Something that was just written to the database, published on the {@link GymEventBus}.
+ * Events are immutable and only carry what listeners need, not the model objects.
+ */
+public final class GymEvent {
+
+    public enum Type {
+        CHECK_IN, CHECK_OUT, PAYMENT, MEMBER_SAVED
+    }
+
+    private final Type type;
+    private final int memberId;
+    private final int recordId;
+    private final LocalDateTime time;
+    private final double amount;
+    private final LocalDate expiryDate;
+
+    private GymEvent(Type type, int memberId, int recordId, LocalDateTime time, double amount, LocalDate expiryDate) {
+        this.type = type;
+        this.memberId = memberId;
+        this.recordId = recordId;
+        this.time = time;
+        this.amount = amount;
+        this.expiryDate = expiryDate;
+    }
+
+    public static GymEvent checkIn(Attendance attendance) {
+        return new GymEvent(Type.CHECK_IN, attendance.getMemberId(), attendance.getAttendanceId(),
+                attendance.getTimestamp(), 0, null);
+    }
+
+    public static GymEvent checkOut(int memberId, int checkoutId, LocalDateTime timestamp) {
+        return new GymEvent(Type.CHECK_OUT, memberId, checkoutId, timestamp, 0, null);
+    }
+
+    public static GymEvent payment(Payment payment) {
+        return new GymEvent(Type.PAYMENT, payment.getMemberId(), payment.getPaymentId(),
+                payment.getPaymentDate().atStartOfDay(), payment.getAmount(), null);
+    }
+
+    public static GymEvent memberSaved(int memberId, LocalDate expiryDate) {
+        return new GymEvent(Type.MEMBER_SAVED, memberId, memberId, LocalDateTime.now(), 0, expiryDate);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getMemberId() {
+        return memberId;
+    }
+
+    /**
+     * @return The ID of the row written: attendance, checkout, payment or member ID.
+     */
+    public int getRecordId() {
+        return recordId;
+    }
+
+    /**
+     * @return When the check-in or check-out happened, the payment date (at midnight), or when the member was saved.
+     */
+    public LocalDateTime getTime() {
+        return time;
+    }
+
+    /**
+     * @return The payment amount; 0 for other events.
+     */
+    public double getAmount() {
+        return amount;
+    }
+
+    /**
+     * @return The member's expiry date after the save; null for other events.
+     */
+    public LocalDate getExpiryDate() {
+        return expiryDate;
+    }
+
+    @Override
+    public String toString() {
+        return type + " member=" + memberId + " record=" + recordId + " at " + time;
+    }
+}
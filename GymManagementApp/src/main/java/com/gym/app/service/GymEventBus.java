@@ -0,0 +1,49 @@
+package com.gym.app.service;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-process stream of database writes, so views can stay current without querying.
+ * <p>
+ * Services publish a {@link GymEvent} after each successful write. Listeners are called
+ * on the publishing thread (camera, worker or FX thread), in subscription order, so they
+ * must be quick and must not touch the UI directly.
+ * Shared instance: one stream per process.
+ */
+public class GymEventBus {
+
+    public interface Listener {
+        void onEvent(GymEvent event);
+    }
+
+    private static final GymEventBus INSTANCE = new GymEventBus();
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private GymEventBus() {
+    }
+
+    public static GymEventBus getInstance() {
+        return INSTANCE;
+    }
+
+    public void subscribe(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void unsubscribe(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public void publish(GymEvent event) {
+        for (Listener listener : listeners) {
+            try {
+                listener.onEvent(event);
+            } catch (RuntimeException e) {
+                // A broken view must not fail the write that has already been committed
+                System.err.println("Event listener failed on " + event + ": " + e);
+            }
+        }
+    }
+}
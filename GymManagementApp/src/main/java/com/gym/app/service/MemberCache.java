@@ -0,0 +1,156 @@
+package com.gym.app.service;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.gym.app.model.Member;
+
+/**
+ * Member records used by check-in, by ID and by QR value, so a repeat or predicted
+ * visitor is admitted without a database round trip.
+ * <p>
+ * Status is derived from the expiry date when it is read, so a cached record never goes
+ * stale with the calendar; {@link MemberService} invalidates entries whenever a member is
+ * edited or renewed. Entries are evicted least recently used first.
+ * Shared instance: the cache is per process.
+ */
+public class MemberCache {
+
+    private static final int MAX_ENTRIES = 2048;
+
+    private static final MemberCache INSTANCE = new MemberCache();
+
+    // Guarded by this; access-ordered so the eldest entry is the least recently used
+    private final Map<Integer, Member> byId = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Member> eldest) {
+            if (size() > MAX_ENTRIES) {
+                forget(eldest.getValue());
+                return true;
+            }
+            return false;
+        }
+    };
+    private final Map<String, Integer> idByQrCode = new HashMap<>();
+    private final Set<Integer> prefetched = new HashSet<>();
+    private long invalidations; // guarded by this
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong prefetchHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private MemberCache() {
+    }
+
+    public static MemberCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return The cached member for a QR value, or null on a miss (counted in the hit rate).
+     */
+    public synchronized Member getByQrCode(String qrCodeValue) {
+        Integer memberId = idByQrCode.get(qrCodeValue);
+        return count(memberId != null ? byId.get(memberId) : null, memberId);
+    }
+
+    /**
+     * @return The cached member, or null on a miss (counted in the hit rate).
+     */
+    public synchronized Member getById(int memberId) {
+        return count(byId.get(memberId), memberId);
+    }
+
+    public synchronized boolean contains(int memberId) {
+        return byId.containsKey(memberId);
+    }
+
+    public synchronized void put(Member member) {
+        Member previous = byId.put(member.getMemberId(), member);
+        if (previous != null) {
+            forget(previous);
+        }
+        if (member.getQrCodeValue() != null) {
+            idByQrCode.put(member.getQrCodeValue(), member.getMemberId());
+        }
+    }
+
+    /**
+     * @return A stamp to take before reading a member for {@link #putPrefetched}.
+     */
+    public synchronized long invalidationCount() {
+        return invalidations;
+    }
+
+    /**
+     * Adds a member ahead of their expected arrival; hits on these are reported separately.
+     * Skipped if the member is cached meanwhile, or if any entry was invalidated since
+     * {@code readStamp}: the record may then predate a change just saved.
+     * @param readStamp {@link #invalidationCount()} taken before the member was read.
+     * @return false if skipped.
+     */
+    public synchronized boolean putPrefetched(Member member, long readStamp) {
+        if (invalidations != readStamp || byId.containsKey(member.getMemberId())) {
+            return false;
+        }
+        put(member);
+        prefetched.add(member.getMemberId());
+        return true;
+    }
+
+    public synchronized void invalidate(int memberId) {
+        invalidations++;
+        Member removed = byId.remove(memberId);
+        if (removed != null) {
+            forget(removed);
+        }
+    }
+
+    public synchronized void clear() {
+        invalidations++;
+        byId.clear();
+        idByQrCode.clear();
+        prefetched.clear();
+    }
+
+    public synchronized int size() {
+        return byId.size();
+    }
+
+    /**
+     * Formats the hit rate since start-up, e.g. for the metrics overlay and log.
+     */
+    public String formatStats() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        if (total == 0) {
+            return "member cache  no lookups yet";
+        }
+        return String.format("member cache  %.0f%% hits (%d/%d, %d from prefetch), %d cached",
+                100.0 * hitCount / total, hitCount, total, prefetchHits.get(), size());
+    }
+
+    private Member count(Member member, Integer memberId) {
+        if (member == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        // Only the first hit counts as a prefetch success; later ones would have been cached anyway
+        if (prefetched.remove(memberId)) {
+            prefetchHits.incrementAndGet();
+        }
+        return member;
+    }
+
+    private void forget(Member member) {
+        if (member.getQrCodeValue() != null) {
+            idByQrCode.remove(member.getQrCodeValue(), member.getMemberId());
+        }
+        prefetched.remove(member.getMemberId());
+    }
+}
@@ -2,7 +2,9 @@ package com.gym.app.service;
 
 import com.gym.app.db.DatabaseManager;
 import com.gym.app.model.Member;
+import com.gym.app.model.Payment;
 import com.gym.app.util.ErrorLogger;
+import com.gym.app.util.SignedQrCodec;
 import java.sql.*;
 import java.time.LocalDate;
 import java.util.ArrayList;
@@ -11,6 +13,10 @@ import java.util.UUID;
 
 public class MemberService {
 
+    private final QrSigningService qrSigningService = QrSigningService.getInstance();
+    private final MemberCache memberCache = MemberCache.getInstance();
+    private final PaymentService paymentService = new PaymentService();
+
     /**
      * Converts a ResultSet row to a Member object.
      */
@@ -59,6 +65,14 @@ public class MemberService {
                 try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
                     if (generatedKeys.next()) {
                         member.setMemberId(generatedKeys.getInt(1));
+                        // The signed payload embeds the member ID, so it can only be issued after the insert
+                        if (qrSigningService.isEnabled()) {
+                            String signedValue = qrSigningService.issuePayload(member);
+                            updateQrCodeValue(conn, member.getMemberId(), signedValue);
+                            member.setQrCodeValue(signedValue);
+                        }
+                        ReportQueryCache.getInstance().tableChanged(ReportQueryCache.MEMBERS);
+                        GymEventBus.getInstance().publish(GymEvent.memberSaved(member.getMemberId(), member.getExpiryDate()));
                         return member;
                     }
                 }
@@ -69,12 +83,55 @@ public class MemberService {
         return null;
     }
 
+    private void updateQrCodeValue(Connection conn, int memberId, String qrCodeValue) throws SQLException {
+        String sql = "UPDATE members SET qr_code_value = ? WHERE member_id = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, qrCodeValue);
+            pstmt.setInt(2, memberId);
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Issues a new card for a member, e.g. when theirs was lost, and revokes the old one.
+     * A signed card is revoked by its serial; a UUID card simply stops matching anyone.
+     * @return The new QR value to print, or null on failure.
+     */
+    public String replaceCard(Member member) {
+        SignedQrCodec.Payload oldCard = qrSigningService.verify(member.getQrCodeValue());
+
+        try (Connection conn = DatabaseManager.getConnection()) {
+            String newValue = oldCard != null || qrSigningService.isEnabled()
+                    ? qrSigningService.issuePayload(member)
+                    : UUID.randomUUID().toString();
+            // Revoke first: if the update then fails the member needs a retry, but the lost card is dead
+            if (oldCard != null) {
+                qrSigningService.revokeCard(oldCard, "Card replaced");
+            }
+            updateQrCodeValue(conn, member.getMemberId(), newValue);
+            memberCache.invalidate(member.getMemberId());
+            member.setQrCodeValue(newValue);
+            ReportQueryCache.getInstance().tableChanged(ReportQueryCache.MEMBERS);
+            return newValue;
+        } catch (SQLException e) {
+            ErrorLogger.log(e, "Failed to replace the card of member: " + member.getFullName());
+            return null;
+        }
+    }
+
     /**
      * Updates an existing member's details.
      */
     public boolean updateMember(Member member) {
         String sql = "UPDATE members SET full_name = ?, phone = ?, join_date = ?, expiry_date = ?, photo_path = ?, notes = ? WHERE member_id = ?";
 
+        // A signed card carries its expiry date; if the expiry was moved earlier the card would
+        // still admit offline, so send this member through the database from now on.
+        SignedQrCodec.Payload signed = qrSigningService.verify(member.getQrCodeValue());
+        if (signed != null && signed.getExpiryDate().isAfter(member.getExpiryDate())) {
+            qrSigningService.revoke(member.getMemberId(), "Expiry date shortened");
+        }
+
         try (Connection conn = DatabaseManager.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
@@ -86,7 +143,13 @@ public class MemberService {
             pstmt.setString(6, member.getNotes());
             pstmt.setInt(7, member.getMemberId());
 
-            return pstmt.executeUpdate() > 0;
+            boolean updated = pstmt.executeUpdate() > 0;
+            memberCache.invalidate(member.getMemberId());
+            if (updated) {
+                ReportQueryCache.getInstance().tableChanged(ReportQueryCache.MEMBERS);
+                GymEventBus.getInstance().publish(GymEvent.memberSaved(member.getMemberId(), member.getExpiryDate()));
+            }
+            return updated;
         } catch (SQLException e) {
             ErrorLogger.log(e, "Failed to update member: " + member.getFullName());
             return false;
@@ -97,6 +160,19 @@ public class MemberService {
      * Retrieves a member by their ID.
      */
     public Member getMemberById(int memberId) {
+        try {
+            return findMemberById(memberId);
+        } catch (SQLException e) {
+            ErrorLogger.log(e, "Failed to retrieve member with ID: " + memberId);
+        }
+        return null;
+    }
+
+    /**
+     * Retrieves a member by their ID without user-facing error handling.
+     * @throws SQLException if the database cannot be read (e.g. locked during a restore).
+     */
+    public Member findMemberById(int memberId) throws SQLException {
         String sql = "SELECT * FROM members WHERE member_id = ?";
         try (Connection conn = DatabaseManager.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
@@ -107,8 +183,6 @@ public class MemberService {
                     return extractMemberFromResultSet(rs);
                 }
             }
-        } catch (SQLException e) {
-            ErrorLogger.log(e, "Failed to retrieve member with ID: " + memberId);
         }
         return null;
     }
@@ -166,41 +240,79 @@ public class MemberService {
     }
 
     /**
-     * Renews a member's subscription by updating the expiry date.
+     * Renews a member's subscription: extends the expiry date by the months the payment
+     * covers and records the payment, in one transaction.
      * This is part of the Payment & Subscription Workflow.
-     * The actual payment record insertion is handled by PaymentService.
      *
-     * @param memberId The ID of the member to renew.
-     * @param months The number of months to extend the subscription.
+     * @param payment The renewal payment; its ID is set once it is saved.
      * @return The new expiry date, or null on failure.
      */
-    public LocalDate renewSubscription(int memberId, int months) {
-        Member member = getMemberById(memberId);
-        if (member == null) {
-            ErrorLogger.log(new Exception("Member not found"), "Attempted to renew subscription for non-existent member ID: " + memberId);
-            return null;
+    public LocalDate renewSubscription(Payment payment) {
+        try {
+            LocalDate newExpiry = renew(payment);
+            if (newExpiry == null) {
+                ErrorLogger.log(new Exception("Member not found"), "Attempted to renew subscription for non-existent member ID: " + payment.getMemberId());
+            }
+            return newExpiry;
+        } catch (SQLException e) {
+            ErrorLogger.log(e, "Failed to renew subscription for member ID: " + payment.getMemberId());
         }
+        return null;
+    }
 
-        LocalDate currentExpiry = member.getExpiryDate();
-        // If the current expiry is in the past, start the renewal from today.
-        // Otherwise, extend from the current expiry date.
-        LocalDate baseDate = currentExpiry.isBefore(LocalDate.now()) ? LocalDate.now() : currentExpiry;
-        LocalDate newExpiry = baseDate.plusMonths(months);
-
-        String sql = "UPDATE members SET expiry_date = ? WHERE member_id = ?";
-
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+    /**
+     * Renews a subscription without user-facing error handling, for the front-desk API.
+     * The expiry date is read and written under the write lock, so two desks renewing the
+     * same member at once each extend from the other's result.
+     * @return The new expiry date, or null if there is no such member.
+     * @throws SQLException if the renewal failed; neither the expiry date nor the payment is then saved.
+     */
+    public LocalDate renew(Payment payment) throws SQLException {
+        int memberId = payment.getMemberId();
+        LocalDate newExpiry;
+        try (Connection conn = DatabaseManager.getWriteConnection()) {
+            // Nothing is committed unless everything succeeds; closing the connection discards the rest
+            conn.setAutoCommit(false);
+            Member member = null;
+            try (PreparedStatement pstmt = conn.prepareStatement("SELECT * FROM members WHERE member_id = ?")) {
+                pstmt.setInt(1, memberId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs.next()) {
+                        member = extractMemberFromResultSet(rs);
+                    }
+                }
+            }
+            if (member == null) {
+                return null;
+            }
 
-            pstmt.setDate(1, Date.valueOf(newExpiry));
-            pstmt.setInt(2, memberId);
+            LocalDate currentExpiry = member.getExpiryDate();
+            // If the current expiry is in the past, start the renewal from today.
+            // Otherwise, extend from the current expiry date.
+            LocalDate baseDate = currentExpiry.isBefore(LocalDate.now()) ? LocalDate.now() : currentExpiry;
+            newExpiry = baseDate.plusMonths(payment.getPeriodMonths());
 
-            if (pstmt.executeUpdate() > 0) {
-                return newExpiry;
+            try (PreparedStatement pstmt = conn.prepareStatement("UPDATE members SET expiry_date = ? WHERE member_id = ?")) {
+                pstmt.setDate(1, Date.valueOf(newExpiry));
+                pstmt.setInt(2, memberId);
+                pstmt.executeUpdate();
             }
-        } catch (SQLException e) {
-            ErrorLogger.log(e, "Failed to renew subscription for member ID: " + memberId);
+            // Members already on signed cards get a fresh payload with the new expiry for their
+            // next printed card; the old card keeps working. UUID cards are never replaced.
+            if (SignedQrCodec.isSignedFormat(member.getQrCodeValue())) {
+                member.setExpiryDate(newExpiry);
+                updateQrCodeValue(conn, memberId, qrSigningService.issuePayload(member));
+            }
+            if (!paymentService.insertPayment(conn, payment)) {
+                throw new SQLException("Payment not saved for member ID: " + memberId);
+            }
+            conn.commit();
         }
-        return null;
+
+        memberCache.invalidate(memberId);
+        ReportQueryCache.getInstance().tableChanged(ReportQueryCache.MEMBERS);
+        GymEventBus.getInstance().publish(GymEvent.memberSaved(memberId, newExpiry));
+        paymentService.paymentSaved(payment);
+        return newExpiry;
     }
 }
@@ -0,0 +1,206 @@
+package com.gym.app.service;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.gym.app.util.AttendanceColumns;
+import com.gym.app.util.VisitTimeline;
+
+/**
+ * Every member's visit history, held compactly in memory for the member history panel.
+ * <p>
+ * Each member has a {@link VisitTimeline} (varint gaps between visit minutes) next to the
+ * figures the panel shows first: visit count, last visit and visits in the last
+ * {@value #RECENT_DAYS} days, kept up to date on each check-in so the summary never decodes
+ * the timeline. The timeline itself is decoded a page at a time.
+ * <p>
+ * The attendance table is read once at startup by the {@link AttendanceHistoryFeed}, which
+ * then passes on the check-ins. Shared instance: one store per process.
+ */
+public class MemberTimelines {
+
+    /**
+     * A member's visit figures.
+     * @param lastVisit Null if the member never came.
+     * @param loaded False until the startup read has finished (the figures are then incomplete).
+     */
+    public record Summary(int visitCount, LocalDateTime lastVisit, int visitsLast30Days, boolean loaded) {
+    }
+
+    public static final int RECENT_DAYS = 30;
+
+    private static final MemberTimelines INSTANCE = new MemberTimelines();
+
+    private final Map<Integer, History> histories = new HashMap<>(); // guarded by this
+    private boolean started; // guarded by this
+
+    // Startup read, gathered as plain minutes per member, then sorted and encoded once;
+    // only touched by the feed's thread
+    private Map<Integer, int[]> loadMinutes;
+    private Map<Integer, Integer> loadCounts;
+
+    private static final class History {
+        final VisitTimeline timeline;
+        // Denormalized from the timeline: visits in the RECENT_DAYS days up to recentAsOfDay
+        int visitsRecent;
+        long recentAsOfDay;
+
+        History(VisitTimeline timeline) {
+            this.timeline = timeline;
+        }
+    }
+
+    private MemberTimelines() {
+    }
+
+    public static MemberTimelines getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Registers with the {@link AttendanceHistoryFeed} to read all attendance at startup.
+     * Later calls do nothing.
+     */
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        AttendanceHistoryFeed.getInstance().register(new AttendanceHistoryFeed.Reader() {
+            @Override
+            public long begin(Connection conn) {
+                loadMinutes = new HashMap<>();
+                loadCounts = new HashMap<>();
+                return 0;
+            }
+
+            @Override
+            public void row(long attendanceId, int memberId, int minute, String timestamp) {
+                gather(memberId, minute);
+            }
+
+            @Override
+            public void end() {
+                finishLoad();
+            }
+
+            @Override
+            public void apply(GymEvent event) {
+                if (event.getType() == GymEvent.Type.CHECK_IN) {
+                    checkIn(event);
+                }
+            }
+        });
+    }
+
+    public boolean isLoaded() {
+        return AttendanceHistoryFeed.getInstance().isLoaded();
+    }
+
+    public synchronized Summary getSummary(int memberId) {
+        boolean loaded = isLoaded();
+        History history = histories.get(memberId);
+        if (history == null) {
+            return new Summary(0, null, 0, loaded);
+        }
+        refreshRecent(history);
+        VisitTimeline timeline = history.timeline;
+        return new Summary(timeline.getCount(), toDateTime(timeline.getLastMinute()), history.visitsRecent, loaded);
+    }
+
+    /**
+     * One page of a member's visits, newest first.
+     * @param page 0 for the most recent visits.
+     */
+    public synchronized List<LocalDateTime> getVisits(int memberId, int page, int pageSize) {
+        History history = histories.get(memberId);
+        if (history == null) {
+            return List.of();
+        }
+        int count = history.timeline.getCount();
+        int[] minutes = history.timeline.decode(count - (page + 1) * pageSize, count - page * pageSize);
+        List<LocalDateTime> visits = new ArrayList<>(minutes.length);
+        for (int i = minutes.length - 1; i >= 0; i--) {
+            visits.add(toDateTime(minutes[i]));
+        }
+        return visits;
+    }
+
+    /**
+     * @return Bytes used by all timelines.
+     */
+    public synchronized long getSizeInBytes() {
+        long bytes = 0;
+        for (History history : histories.values()) {
+            bytes += history.timeline.getSizeInBytes();
+        }
+        return bytes;
+    }
+
+    private void gather(int memberId, int minute) {
+        int count = loadCounts.getOrDefault(memberId, 0);
+        int[] values = loadMinutes.get(memberId);
+        if (values == null || count == values.length) {
+            values = values == null ? new int[8] : Arrays.copyOf(values, count * 2);
+            loadMinutes.put(memberId, values);
+        }
+        values[count] = minute;
+        loadCounts.put(memberId, count + 1);
+    }
+
+    // Before the held-back check-ins are applied, so they land on top of the encoded history
+    private void finishLoad() {
+        if (loadMinutes == null) {
+            return; // the read failed before it started
+        }
+        Map<Integer, History> loadedHistories = new HashMap<>(loadMinutes.size() * 2);
+        for (Map.Entry<Integer, int[]> entry : loadMinutes.entrySet()) {
+            int count = loadCounts.get(entry.getKey());
+            int[] values = entry.getValue();
+            Arrays.sort(values, 0, count);
+            loadedHistories.put(entry.getKey(), new History(VisitTimeline.of(values, count)));
+        }
+        loadMinutes = null;
+        loadCounts = null;
+        synchronized (this) {
+            histories.clear();
+            histories.putAll(loadedHistories);
+        }
+    }
+
+    private synchronized void checkIn(GymEvent event) {
+        History history = histories.computeIfAbsent(event.getMemberId(), id -> new History(new VisitTimeline()));
+        int minute = AttendanceColumns.toMinute(event.getTime());
+        history.timeline.add(minute);
+        if (history.recentAsOfDay == LocalDate.now().toEpochDay() && minute >= recentSince(history.recentAsOfDay)) {
+            history.visitsRecent++;
+        } else {
+            history.recentAsOfDay = Long.MIN_VALUE; // recounted on the next read
+        }
+    }
+
+    // The 30-day window moves at midnight; recounted (from the nearest checkpoint) once a day
+    private static void refreshRecent(History history) {
+        long today = LocalDate.now().toEpochDay();
+        if (history.recentAsOfDay != today) {
+            history.visitsRecent = history.timeline.countSince(recentSince(today));
+            history.recentAsOfDay = today;
+        }
+    }
+
+    // Visits on the last RECENT_DAYS days, today included
+    private static int recentSince(long today) {
+        return (int) ((today - RECENT_DAYS + 1) * AttendanceColumns.MINUTES_PER_DAY);
+    }
+
+    private static LocalDateTime toDateTime(int minute) {
+        return LocalDateTime.ofEpochSecond(minute * 60L, 0, ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,364 @@
+package com.gym.app.service;
+
+import java.sql.*;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.gym.app.util.AttendanceColumns;
+
+/**
+ * Estimates how many people are in the gym right now, for fire-code limits.
+ * <p>
+ * Each check-in adds one person and books their expected departure into a ring of
+ * per-minute buckets ({@value #RING_MINUTES} minutes, longer than the longest expected
+ * visit); as the clock passes a bucket, its leavers are subtracted. A check-out scan, when
+ * the front desk uses them, removes the person at once and teaches the tracker how long
+ * that member stays: the expected visit is the member's average over the last
+ * {@value #HISTORY_DAYS} days, or the average of all members, or {@value #DEFAULT_VISIT_MINUTES}
+ * minutes before any check-out was ever scanned.
+ * <p>
+ * The database is read once at startup, as part of the {@link AttendanceHistoryFeed}'s read;
+ * after that the tracker follows the events it passes on, and every update is O(1) (plus
+ * one step per minute that has passed).
+ * Shared instance: one count per process.
+ */
+public class OccupancyTracker {
+
+    /**
+     * Told after the count, peak or capacity changed, on the thread that caused the change.
+     */
+    public interface Listener {
+        void occupancyChanged();
+    }
+
+    /**
+     * The count at one moment.
+     * @param capacity The configured limit, or 0 for none.
+     * @param loaded False until the startup read has finished.
+     */
+    public record Snapshot(int current, int peakToday, int capacity, boolean loaded) {
+
+        public boolean isAtCapacity() {
+            return capacity > 0 && current >= capacity;
+        }
+    }
+
+    static final int DEFAULT_VISIT_MINUTES = 90;
+    private static final int MIN_VISIT_MINUTES = 15;
+    private static final int MAX_VISIT_MINUTES = 4 * 60;
+    private static final int RING_MINUTES = 256;
+    private static final int HISTORY_DAYS = 90;
+    // Check-outs further from their check-in are forgotten scans, not visits
+    private static final int MAX_LEARNED_MINUTES = 12 * 60;
+
+    private static final OccupancyTracker INSTANCE = new OccupancyTracker();
+
+    // All guarded by this
+    private final int[] departures = new int[RING_MINUTES];
+    private long clockMinute = epochMinute(LocalDateTime.now());
+    private int current;
+    private int peakToday;
+    private LocalDate peakDay;
+    private final Map<Integer, Long> departureMinutes = new HashMap<>();
+    private final Map<Integer, LocalDateTime> arrivals = new HashMap<>();
+    // Per member: {visits, total minutes}
+    private final Map<Integer, long[]> visitHistory = new HashMap<>();
+    private long learnedVisits;
+    private long learnedMinutes;
+
+    private volatile int capacity;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    // Check-outs the startup read already counted; check-ins are filtered by the feed
+    private volatile long loadedMaxCheckoutId;
+    private boolean started; // guarded by this
+
+    // Startup read: visits since the replay start, merged in time order at the end;
+    // only touched by the feed's thread
+    private record Visit(int memberId, LocalDateTime time, boolean checkOut) {
+    }
+
+    private List<Visit> loadVisits;
+    private LocalDateTime loadFrom;
+    private int loadFromMinute;
+
+    private OccupancyTracker() {
+    }
+
+    public static OccupancyTracker getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Registers with the {@link AttendanceHistoryFeed} to read recent visits at startup.
+     * Later calls do nothing.
+     */
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        AttendanceHistoryFeed.getInstance().register(new AttendanceHistoryFeed.Reader() {
+            @Override
+            public long begin(Connection conn) throws SQLException {
+                return load(conn);
+            }
+
+            @Override
+            public void row(long attendanceId, int memberId, int minute, String timestamp) {
+                if (minute >= loadFromMinute) {
+                    loadVisits.add(new Visit(memberId, LocalDateTime.parse(timestamp), false));
+                }
+            }
+
+            @Override
+            public void end() {
+                replayLoaded();
+            }
+
+            @Override
+            public void apply(GymEvent event) {
+                onEvent(event);
+            }
+
+            @Override
+            public void loaded() {
+                notifyListeners();
+            }
+        });
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Sets the limit for the capacity alarm.
+     * @param capacity The limit, or 0 for none.
+     */
+    public void setCapacity(int capacity) {
+        this.capacity = Math.max(0, capacity);
+        notifyListeners();
+    }
+
+    public synchronized Snapshot snapshot() {
+        LocalDateTime now = LocalDateTime.now();
+        advance(epochMinute(now));
+        rollPeak(now.toLocalDate());
+        return new Snapshot(current, peakToday, capacity, AttendanceHistoryFeed.getInstance().isLoaded());
+    }
+
+    /**
+     * @return The visit length currently expected for a member, in minutes.
+     */
+    public synchronized int getExpectedVisitMinutes(int memberId) {
+        long[] history = visitHistory.get(memberId);
+        long minutes;
+        if (history != null) {
+            minutes = history[1] / history[0];
+        } else if (learnedVisits > 0) {
+            minutes = learnedMinutes / learnedVisits;
+        } else {
+            minutes = DEFAULT_VISIT_MINUTES;
+        }
+        return (int) Math.max(MIN_VISIT_MINUTES, Math.min(MAX_VISIT_MINUTES, minutes));
+    }
+
+    private void onEvent(GymEvent event) {
+        GymEvent.Type type = event.getType();
+        if (type != GymEvent.Type.CHECK_IN && type != GymEvent.Type.CHECK_OUT) {
+            return;
+        }
+        apply(event);
+        notifyListeners();
+    }
+
+    private void apply(GymEvent event) {
+        if (event.getType() == GymEvent.Type.CHECK_IN) {
+            checkIn(event.getMemberId(), event.getTime());
+        } else if (event.getRecordId() > loadedMaxCheckoutId) {
+            checkOut(event.getMemberId(), event.getTime(), true);
+        }
+    }
+
+    private synchronized void checkIn(int memberId, LocalDateTime time) {
+        long minute = epochMinute(time);
+        advance(minute);
+        removeIfOnSite(memberId); // scanned in again without a check-out
+
+        long departure = minute + getExpectedVisitMinutes(memberId);
+        arrivals.put(memberId, time);
+        if (departure <= clockMinute) {
+            return; // a late, queued check-in for a visit that is already over
+        }
+        departures[(int) (departure % RING_MINUTES)]++;
+        departureMinutes.put(memberId, departure);
+        current++;
+        rollPeak(time.toLocalDate());
+        peakToday = Math.max(peakToday, current);
+    }
+
+    private synchronized void checkOut(int memberId, LocalDateTime time, boolean learn) {
+        advance(epochMinute(time));
+        removeIfOnSite(memberId);
+
+        LocalDateTime arrived = arrivals.remove(memberId);
+        if (learn && arrived != null) {
+            learn(memberId, Duration.between(arrived, time).toMinutes());
+        }
+    }
+
+    private void removeIfOnSite(int memberId) {
+        Long departure = departureMinutes.remove(memberId);
+        if (departure != null && departure > clockMinute) {
+            departures[(int) (departure % RING_MINUTES)]--;
+            current--;
+        }
+    }
+
+    private void learn(int memberId, long minutes) {
+        if (minutes <= 0 || minutes > MAX_LEARNED_MINUTES) {
+            return;
+        }
+        long[] history = visitHistory.computeIfAbsent(memberId, id -> new long[2]);
+        history[0]++;
+        history[1] += minutes;
+        learnedVisits++;
+        learnedMinutes += minutes;
+    }
+
+    // Moves the clock forward, letting everyone expected to leave by then go
+    private void advance(long minute) {
+        long steps = Math.min(minute - clockMinute, RING_MINUTES);
+        for (long m = minute - steps + 1; m <= minute; m++) {
+            int slot = (int) (m % RING_MINUTES);
+            current -= departures[slot];
+            departures[slot] = 0;
+        }
+        if (minute > clockMinute) {
+            clockMinute = minute;
+        }
+    }
+
+    private void rollPeak(LocalDate day) {
+        if (peakDay == null || day.isAfter(peakDay)) {
+            peakDay = day;
+            peakToday = current; // people still in from before midnight
+        }
+    }
+
+    // Learns visit lengths and reads the check-outs to replay; the check-ins to replay come
+    // from the feed's scan, which starts at the first one (IDs are nearly in time order)
+    private long load(Connection conn) throws SQLException {
+        LocalDateTime now = LocalDateTime.now();
+        // Start early enough that visits still running at midnight are counted
+        loadFrom = now.toLocalDate().atStartOfDay().minusMinutes(MAX_VISIT_MINUTES);
+        loadFromMinute = AttendanceColumns.toMinute(loadFrom);
+        loadVisits = new ArrayList<>();
+        loadedMaxCheckoutId = queryLong(conn, "SELECT MAX(checkout_id) FROM checkouts");
+        synchronized (this) {
+            // Everything is replayed again, e.g. after a restore
+            Arrays.fill(departures, 0);
+            current = 0;
+            peakToday = 0;
+            peakDay = null;
+            departureMinutes.clear();
+            arrivals.clear();
+            visitHistory.clear();
+            learnedVisits = 0;
+            learnedMinutes = 0;
+        }
+
+        // Each check-out is paired with the member's last check-in earlier that day;
+        // timestamps are ISO strings, so they compare correctly as text
+        String historySql = "SELECT c.member_id, c.timestamp, " +
+                "(SELECT MAX(a.timestamp) FROM attendance a WHERE a.member_id = c.member_id " +
+                "AND a.timestamp <= c.timestamp AND a.timestamp >= date(c.timestamp)) " +
+                "FROM checkouts c WHERE c.timestamp >= ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(historySql)) {
+            pstmt.setString(1, now.toLocalDate().minusDays(HISTORY_DAYS).toString());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                synchronized (this) {
+                    while (rs.next()) {
+                        String arrived = rs.getString(3);
+                        if (arrived != null) {
+                            learn(rs.getInt(1), Duration.between(LocalDateTime.parse(arrived),
+                                    LocalDateTime.parse(rs.getString(2))).toMinutes());
+                        }
+                    }
+                }
+            }
+        }
+
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT member_id, timestamp FROM checkouts WHERE timestamp >= ?")) {
+            pstmt.setString(1, loadFrom.toString());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    loadVisits.add(new Visit(rs.getInt(1), LocalDateTime.parse(rs.getString(2)), true));
+                }
+            }
+        }
+
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT MIN(attendance_id) FROM attendance WHERE timestamp >= ?")) {
+            pstmt.setString(1, loadFrom.toString());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                long first = rs.next() ? rs.getLong(1) : 0;
+                return first == 0 ? Long.MAX_VALUE : first - 1;
+            }
+        }
+    }
+
+    // Replays the visits read at startup, before the held-back events
+    private synchronized void replayLoaded() {
+        capacity = new SystemInfoService().getOccupancyCapacity();
+        if (loadVisits == null) {
+            return; // the read failed before it started
+        }
+        loadVisits.sort(Comparator.comparing(Visit::time));
+        clockMinute = epochMinute(loadFrom);
+        for (Visit visit : loadVisits) {
+            if (visit.checkOut()) {
+                checkOut(visit.memberId(), visit.time(), false); // already learned in load()
+            } else {
+                checkIn(visit.memberId(), visit.time());
+            }
+        }
+        advance(epochMinute(LocalDateTime.now()));
+        loadVisits = null;
+    }
+
+    private static long queryLong(Connection conn, String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    private static long epochMinute(LocalDateTime time) {
+        // Local wall-clock minutes: only differences and the bucket index matter
+        return time.toEpochSecond(ZoneOffset.UTC) / 60;
+    }
+
+    private void notifyListeners() {
+        for (Listener listener : listeners) {
+            try {
+                listener.occupancyChanged();
+            } catch (RuntimeException e) {
+                System.err.println("Occupancy listener failed: " + e);
+            }
+        }
+    }
+}
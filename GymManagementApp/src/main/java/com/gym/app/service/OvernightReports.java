@@ -0,0 +1,289 @@
+package com.gym.app.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.gym.app.db.DatabaseManager;
+import com.gym.app.util.AppPaths;
+
+/**
+ * Does the heavy reporting work once a night, at a configurable quiet hour, instead of when
+ * someone clicks in the Reports page.
+ * <p>
+ * A run rebuilds the revenue day totals from {@code payments}, saves the analytics indexes,
+ * renders the standard Excel and PDF reports into {@value #PREPARED_DIR_NAME} under the
+ * reports folder, and runs {@code ANALYZE} so SQLite plans with fresh statistics. Each run
+ * is recorded in the {@code overnight_runs} table; if the app was closed at the quiet hour,
+ * the missed run is done shortly after the next start.
+ * <p>
+ * While no payment or check-in has been recorded since a run, an export of the same report
+ * is a copy of the prepared file ({@link #getPreparedReport}); payments and attendance are
+ * only ever appended to, so the highest ID tells whether a table changed. Replacing the
+ * whole database (a restore) is the exception, so it discards the prepared files
+ * ({@link #discardPrepared}).
+ * Shared instance: one schedule per process.
+ */
+public class OvernightReports {
+
+    public static final int DEFAULT_HOUR = 3;
+
+    private static final String PREPARED_DIR_NAME = "overnight";
+    // A missed run waits until startup has finished loading the in-memory indexes
+    private static final long CATCH_UP_DELAY_MINUTES = 2;
+    private static final ReportJob.Type[] PREPARED_TYPES = {
+            ReportJob.Type.REVENUE_EXCEL, ReportJob.Type.REVENUE_PDF,
+            ReportJob.Type.ATTENDANCE_EXCEL, ReportJob.Type.ATTENDANCE_PDF};
+
+    private static final OvernightReports INSTANCE = new OvernightReports();
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "overnight-reports");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    // All guarded by this
+    private int hour = DEFAULT_HOUR;
+    private ScheduledFuture<?> nextRun;
+    private boolean catchUpPending;
+    private boolean started;
+
+    // The last successful run: when it finished and the highest IDs its reports include
+    private volatile LocalDateTime preparedAt;
+    private volatile long preparedPaymentId = -1;
+    private volatile long preparedAttendanceId = -1;
+
+    private OvernightReports() {
+    }
+
+    public static OvernightReports getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Schedules the nightly run at the hour saved in the settings, first catching up on a
+     * missed run. Later calls do nothing.
+     */
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        hour = new SystemInfoService().getOvernightReportHour();
+        LocalDate lastRun = null;
+        try {
+            lastRun = readLastSuccessfulRun();
+        } catch (SQLException e) {
+            System.err.println("Could not read the overnight report runs: " + e.getMessage());
+        }
+        LocalDate due = latestDueDate(LocalDateTime.now());
+        if (lastRun == null || lastRun.isBefore(due)) {
+            schedule(due, TimeUnit.MINUTES.toMillis(CATCH_UP_DELAY_MINUTES));
+            catchUpPending = true;
+        } else {
+            scheduleNext();
+        }
+    }
+
+    /**
+     * Moves the nightly run to {@code hour} (0-23) from the next night on.
+     */
+    public synchronized void setHour(int hour) {
+        this.hour = hour;
+        // A pending catch-up still runs; the new hour applies once it has
+        if (started && !catchUpPending && nextRun != null && nextRun.cancel(false)) {
+            scheduleNext();
+        }
+    }
+
+    /**
+     * @return When the prepared reports were last rendered, or null if they never were.
+     */
+    public LocalDateTime getPreparedAt() {
+        return preparedAt;
+    }
+
+    public static Path getPreparedDir() {
+        return AppPaths.getReportsDir().resolve(PREPARED_DIR_NAME);
+    }
+
+    /**
+     * @return The report prepared overnight, if it exists and its table has not changed
+     *         since; null otherwise (the report must then be exported afresh).
+     */
+    public Path getPreparedReport(ReportJob.Type type) {
+        long preparedId = switch (type.getTable()) {
+            case "payments" -> preparedPaymentId;
+            case "attendance" -> preparedAttendanceId;
+            default -> -1;
+        };
+        Path file = getPreparedDir().resolve(type.getFileName());
+        if (preparedId < 0 || !Files.isRegularFile(file)) {
+            return null;
+        }
+        try (Connection conn = DatabaseManager.getConnection()) {
+            return maxId(conn, type.getTable()) == preparedId ? file : null;
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Forgets the prepared reports and deletes their files, e.g. after a restore: they were
+     * rendered from the old database, which may well have the same highest IDs.
+     * The next run prepares them again.
+     */
+    public void discardPrepared() {
+        preparedAt = null;
+        preparedPaymentId = -1;
+        preparedAttendanceId = -1;
+        for (ReportJob.Type type : PREPARED_TYPES) {
+            try {
+                Files.deleteIfExists(getPreparedDir().resolve(type.getFileName()));
+            } catch (IOException e) {
+                System.err.println("Could not delete the prepared " + type.getDescription() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void run(LocalDate runDate) {
+        LocalDateTime startedAt = LocalDateTime.now();
+        try {
+            recordRun(runDate, startedAt, null, "RUNNING", -1, -1, null);
+
+            // The day's aggregates and the analytics indexes, so tomorrow starts from fresh state
+            RevenueIndex.getInstance().load();
+            RetentionIndex.getInstance().save();
+            VisitorSketches.getInstance().flush();
+
+            long paymentId;
+            long attendanceId;
+            // Read before rendering: rows added meanwhile make the reports look stale, never current
+            try (Connection conn = DatabaseManager.getConnection()) {
+                paymentId = maxId(conn, "payments");
+                attendanceId = maxId(conn, "attendance");
+            }
+            preparedPaymentId = -1;
+            preparedAttendanceId = -1;
+            for (ReportJob.Type type : PREPARED_TYPES) {
+                render(type);
+            }
+
+            try (Connection conn = DatabaseManager.getConnection();
+                 Statement stmt = conn.createStatement()) {
+                stmt.execute("ANALYZE");
+            }
+
+            recordRun(runDate, startedAt, LocalDateTime.now(), "SUCCEEDED", paymentId, attendanceId, null);
+            preparedAt = LocalDateTime.now();
+            preparedPaymentId = paymentId;
+            preparedAttendanceId = attendanceId;
+        } catch (SQLException | RuntimeException e) {
+            // Retried at the next start, or the next night
+            System.err.println("Overnight report run failed: " + e.getMessage());
+            try {
+                recordRun(runDate, startedAt, LocalDateTime.now(), "FAILED", -1, -1, String.valueOf(e.getMessage()));
+            } catch (SQLException ignored) {
+                // Already reported above
+            }
+        } finally {
+            synchronized (this) {
+                scheduleNext();
+            }
+        }
+    }
+
+    // Queued like any other export, so it shows in the status bar and can be cancelled
+    private static void render(ReportJob.Type type) {
+        ReportJob job = ReportJobScheduler.getInstance().submit(type, getPreparedDir().resolve(type.getFileName()));
+        try {
+            job.getFuture().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while preparing " + type.getDescription(), e);
+        } catch (ExecutionException | CancellationException e) {
+            // The job's state below says what happened
+        }
+        if (job.getState() != ReportJob.State.SUCCEEDED) {
+            Throwable error = job.getError();
+            throw new IllegalStateException(type.getDescription() + " was not prepared ("
+                    + job.getState() + (error != null ? ": " + error.getMessage() : "") + ")", error);
+        }
+    }
+
+    // Called with the lock held
+    private void scheduleNext() {
+        catchUpPending = false;
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime next = now.toLocalDate().atTime(hour, 0);
+        if (!next.isAfter(now)) {
+            next = next.plusDays(1);
+        }
+        schedule(next.toLocalDate(), Duration.between(now, next).toMillis());
+    }
+
+    // Called with the lock held
+    private void schedule(LocalDate runDate, long delayMillis) {
+        nextRun = timer.schedule(() -> run(runDate), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // The date of the most recent run that should have started by now
+    private LocalDate latestDueDate(LocalDateTime now) {
+        return now.getHour() >= hour ? now.toLocalDate() : now.toLocalDate().minusDays(1);
+    }
+
+    private LocalDate readLastSuccessfulRun() throws SQLException {
+        String sql = "SELECT run_date, finished_at, payments_max_id, attendance_max_id FROM overnight_runs "
+                + "WHERE status = 'SUCCEEDED' ORDER BY run_date DESC LIMIT 1";
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
+
+            if (!rs.next()) {
+                return null;
+            }
+            preparedAt = LocalDateTime.parse(rs.getString("finished_at"));
+            preparedPaymentId = rs.getLong("payments_max_id");
+            preparedAttendanceId = rs.getLong("attendance_max_id");
+            return rs.getDate("run_date").toLocalDate();
+        }
+    }
+
+    private static void recordRun(LocalDate runDate, LocalDateTime startedAt, LocalDateTime finishedAt, String status,
+                                  long paymentId, long attendanceId, String error) throws SQLException {
+        String sql = "INSERT OR REPLACE INTO overnight_runs "
+                + "(run_date, started_at, finished_at, status, payments_max_id, attendance_max_id, error) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setDate(1, Date.valueOf(runDate));
+            pstmt.setString(2, startedAt.toString());
+            pstmt.setString(3, finishedAt != null ? finishedAt.toString() : null);
+            pstmt.setString(4, status);
+            pstmt.setLong(5, paymentId);
+            pstmt.setLong(6, attendanceId);
+            pstmt.setString(7, error);
+            pstmt.executeUpdate();
+        }
+    }
+
+    private static long maxId(Connection conn, String table) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(rowid), 0) FROM " + table)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+}
@@ -16,30 +16,49 @@ public class PaymentService {
      * @return The newly created Payment object with the generated ID, or null on failure.
      */
     public Payment addPayment(Payment payment) {
-        String sql = "INSERT INTO payments (member_id, amount, payment_date, period_months) VALUES (?, ?, ?, ?)";
-
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            if (insertPayment(conn, payment)) {
+                paymentSaved(payment);
+                return payment;
+            }
+        } catch (SQLException e) {
+            ErrorLogger.log(e, "Failed to add new payment for member ID: " + payment.getMemberId());
+        }
+        return null;
+    }
 
+    /**
+     * Inserts a payment on the caller's connection, inside its transaction if it has one,
+     * and sets the generated ID. Call {@link #paymentSaved} once it is committed.
+     * @return true if the row was inserted.
+     */
+    boolean insertPayment(Connection conn, Payment payment) throws SQLException {
+        String sql = "INSERT INTO payments (member_id, amount, payment_date, period_months) VALUES (?, ?, ?, ?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             pstmt.setInt(1, payment.getMemberId());
             pstmt.setDouble(2, payment.getAmount());
             pstmt.setDate(3, Date.valueOf(payment.getPaymentDate()));
             pstmt.setInt(4, payment.getPeriodMonths());
 
-            int affectedRows = pstmt.executeUpdate();
-
-            if (affectedRows > 0) {
+            if (pstmt.executeUpdate() > 0) {
                 try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
                     if (generatedKeys.next()) {
                         payment.setPaymentId(generatedKeys.getInt(1));
-                        return payment;
+                        return true;
                     }
                 }
             }
-        } catch (SQLException e) {
-            ErrorLogger.log(e, "Failed to add new payment for member ID: " + payment.getMemberId());
         }
-        return null;
+        return false;
+    }
+
+    /**
+     * Brings the revenue index, report cache and views up to date with a committed payment.
+     */
+    void paymentSaved(Payment payment) {
+        RevenueIndex.getInstance().add(payment.getPaymentId(), payment.getPaymentDate(), payment.getAmount());
+        ReportQueryCache.getInstance().tableChanged(ReportQueryCache.PAYMENTS);
+        GymEventBus.getInstance().publish(GymEvent.payment(payment));
     }
 
     /**
@@ -98,9 +117,15 @@ public class PaymentService {
     }
 
     /**
-     * Retrieves total revenue for a given date range.
+     * Retrieves total revenue for a given date range (both dates inclusive).
+     * Answered from the in-memory {@link RevenueIndex} once it is loaded.
      */
     public double getTotalRevenue(LocalDate startDate, LocalDate endDate) {
+        RevenueIndex index = RevenueIndex.getInstance();
+        if (index.isLoaded()) {
+            return index.getTotal(startDate, endDate);
+        }
+
         String sql = "SELECT SUM(amount) FROM payments WHERE payment_date BETWEEN ? AND ?";
         double totalRevenue = 0.0;
 
@@ -120,4 +145,34 @@ public class PaymentService {
         }
         return totalRevenue;
     }
+
+    /**
+     * Retrieves the revenue of each day from {@code startDate} to {@code endDate}, both inclusive.
+     * Answered from the in-memory {@link RevenueIndex} once it is loaded.
+     */
+    public double[] getDailyRevenue(LocalDate startDate, LocalDate endDate) {
+        RevenueIndex index = RevenueIndex.getInstance();
+        if (index.isLoaded()) {
+            return index.getDailyTotals(startDate, endDate);
+        }
+
+        String sql = "SELECT payment_date, SUM(amount) FROM payments WHERE payment_date BETWEEN ? AND ? GROUP BY payment_date";
+        double[] totals = new double[(int) Math.max(0, endDate.toEpochDay() - startDate.toEpochDay() + 1)];
+
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setDate(1, Date.valueOf(startDate));
+            pstmt.setDate(2, Date.valueOf(endDate));
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    totals[(int) (rs.getDate(1).toLocalDate().toEpochDay() - startDate.toEpochDay())] += rs.getDouble(2);
+                }
+            }
+        } catch (SQLException e) {
+            ErrorLogger.log(e, "Failed to calculate daily revenue between " + startDate + " and " + endDate);
+        }
+        return totals;
+    }
 }
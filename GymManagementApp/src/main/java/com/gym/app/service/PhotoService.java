@@ -0,0 +1,214 @@
+package com.gym.app.service;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.imageio.ImageIO;
+
+import com.gym.app.util.AppPaths;
+import com.gym.app.util.PhotoImages;
+
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
+
+/**
+ * Member photos for the check-in and member views, served as small thumbnails.
+ * <p>
+ * Photos in the {@link PhotoStore} are served from its thumbnail variant. Photos still
+ * referenced by absolute path can be 12 MP originals, and decoding one on the FX thread
+ * stalls the welcome screen: the first time such a photo is needed, a
+ * {@value #THUMBNAIL_SIZE}px JPEG is written under {@code thumbnails/} in the app data dir
+ * (keyed by path, size and modification time, so a replaced photo gets a new thumbnail).
+ * Decoded images are kept in a small LRU and always load in the background, so
+ * {@link #getPhoto(String)} returns immediately; for a photo referenced by path even finding
+ * its thumbnail touches the disk, so it returns a blank image that is filled in once loaded.
+ * Shared instance: the cache is per process.
+ */
+public class PhotoService {
+
+    // Twice the 150px photo views so thumbnails stay sharp on HiDPI screens
+    public static final int THUMBNAIL_SIZE = 300;
+    private static final int MAX_CACHED_IMAGES = 64;
+    private static final String THUMBNAIL_FORMAT = "jpg";
+
+    private static final PhotoService INSTANCE = new PhotoService();
+
+    // Access-ordered, so iteration order is least recently used first
+    private final Map<String, Image> images = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Image> eldest) {
+            return size() > MAX_CACHED_IMAGES;
+        }
+    };
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "photo-thumbnails");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private PhotoService() {
+    }
+
+    public static PhotoService getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the member photo as a thumbnail-sized image that loads in the background.
+     * @param photoPath The path stored on the member.
+     * @return The image (possibly still loading, or blank until loaded), or null if there is no photo.
+     */
+    public Image getPhoto(String photoPath) {
+        return getPhoto(photoPath, false);
+    }
+
+    /**
+     * Warms the cache for a photo on the worker thread, e.g. as soon as a QR code decodes,
+     * so the image is ready by the time the admission decision is painted.
+     */
+    public void prefetch(String photoPath) {
+        if (photoPath == null || photoPath.isEmpty()) {
+            return;
+        }
+        worker.execute(() -> {
+            try {
+                getPhoto(photoPath, true);
+            } catch (RuntimeException | LinkageError e) {
+                // JavaFX not running (e.g. replay benchmark): the thumbnail is written, nothing to decode
+            }
+        });
+    }
+
+    private Image getPhoto(String photoPath, boolean onWorker) {
+        if (photoPath == null || photoPath.isEmpty()) {
+            return null;
+        }
+        synchronized (images) {
+            Image cached = images.get(photoPath);
+            if (cached != null && !cached.isError()) {
+                return cached;
+            }
+        }
+
+        if (!onWorker && !PhotoStore.isStoreKey(photoPath)) {
+            return loadInBackground(photoPath); // caches itself
+        }
+        Image image = PhotoStore.isStoreKey(photoPath)
+                ? loadStoredImage(photoPath)
+                : loadImage(Paths.get(photoPath));
+        if (image != null) {
+            synchronized (images) {
+                images.put(photoPath, image);
+            }
+        }
+        return image;
+    }
+
+    private Image loadStoredImage(String key) {
+        // The store already keeps a thumbnail-sized variant
+        Path thumbnail = PhotoStore.getInstance().resolve(key, PhotoStore.Variant.THUMBNAIL);
+        return Files.exists(thumbnail) ? new Image(thumbnail.toUri().toString(), true) : null;
+    }
+
+    // Blank until the worker has loaded the photo, then filled in on the FX thread
+    private Image loadInBackground(String photoPath) {
+        WritableImage placeholder = new WritableImage(THUMBNAIL_SIZE, THUMBNAIL_SIZE);
+        // Cached before the worker can fail and remove it
+        synchronized (images) {
+            images.put(photoPath, placeholder);
+        }
+        worker.execute(() -> {
+            Image loaded = loadImage(Paths.get(photoPath));
+            if (loaded == null || loaded.isError()) {
+                // Missing or unreadable: let the next call try again
+                synchronized (images) {
+                    images.remove(photoPath, placeholder);
+                }
+                return;
+            }
+            Platform.runLater(() -> fillCentered(placeholder, loaded));
+        });
+        return placeholder;
+    }
+
+    private static void fillCentered(WritableImage target, Image source) {
+        int width = (int) Math.min(source.getWidth(), target.getWidth());
+        int height = (int) Math.min(source.getHeight(), target.getHeight());
+        int x = ((int) target.getWidth() - width) / 2;
+        int y = ((int) target.getHeight() - height) / 2;
+        target.getPixelWriter().setPixels(x, y, width, height, source.getPixelReader(), 0, 0);
+    }
+
+    // Legacy photos referenced by absolute path, until they are migrated into the photo store.
+    // On the worker thread: decodes synchronously.
+    private Image loadImage(Path source) {
+        Path thumbnail = thumbnailPathFor(source);
+        if (thumbnail == null) {
+            return null;
+        }
+
+        writeThumbnail(source, thumbnail);
+        if (Files.exists(thumbnail)) {
+            return new Image(thumbnail.toUri().toString());
+        }
+        // No thumbnail (not an image ImageIO reads): decode the original, scaled down while decoding
+        return new Image(source.toUri().toString(), THUMBNAIL_SIZE, THUMBNAIL_SIZE, true, true, false);
+    }
+
+    private Path thumbnailPathFor(Path source) {
+        try {
+            String identity = source.toAbsolutePath().normalize()
+                    + "|" + Files.size(source)
+                    + "|" + Files.getLastModifiedTime(source).toMillis();
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            String key = HexFormat.of().formatHex(digest.digest(identity.getBytes(StandardCharsets.UTF_8)));
+            return AppPaths.getThumbnailsDir().resolve(key + "." + THUMBNAIL_FORMAT);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | NoSuchAlgorithmException e) {
+            System.err.println("Could not locate thumbnail for " + source + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeThumbnail(Path source, Path thumbnail) {
+        if (Files.exists(thumbnail)) {
+            return;
+        }
+        try {
+            byte[] bytes = Files.readAllBytes(source);
+            BufferedImage original = ImageIO.read(new ByteArrayInputStream(bytes));
+            if (original == null) {
+                return; // not an image ImageIO can read; the view falls back to the original
+            }
+            BufferedImage upright = PhotoImages.applyExifOrientation(original, PhotoImages.readExifOrientation(bytes));
+            BufferedImage scaled = PhotoImages.scaleToFit(upright, THUMBNAIL_SIZE);
+
+            // Write next to the target and move, so a half-written file is never picked up
+            Path temp = Files.createTempFile(thumbnail.getParent(), "thumb", ".tmp");
+            try {
+                ImageIO.write(scaled, THUMBNAIL_FORMAT, temp.toFile());
+                Files.move(temp, thumbnail, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not create thumbnail for " + source + ": " + e.getMessage());
+        }
+    }
+}
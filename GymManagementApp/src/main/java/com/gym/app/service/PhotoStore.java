@@ -0,0 +1,277 @@
+package com.gym.app.service;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import com.gym.app.db.DatabaseManager;
+import com.gym.app.util.AppPaths;
+import com.gym.app.util.PhotoImages;
+
+/**
+ * Managed store for member photos under {@code photos/} in the app data dir.
+ * <p>
+ * Photos are content-addressed: the SHA-256 of the imported file is the key saved in
+ * {@code members.photo_path}, so the same picture uploaded twice is stored once, and a
+ * member's photo no longer disappears when the original is moved or its USB stick removed.
+ * On import the picture is turned upright from its EXIF orientation and written as JPEG
+ * variants ({@link Variant}) in parallel; views read the smallest variant they need.
+ * A photo_path that is not a key is a legacy absolute path; {@link #migrateLegacyPhotos()}
+ * pulls those into the store. Shared instance: one import pool per process.
+ */
+public class PhotoStore {
+
+    public enum Variant {
+        FULL("full", 1600),
+        MEDIUM("medium", 600),
+        THUMBNAIL("thumb", PhotoService.THUMBNAIL_SIZE);
+
+        private final String suffix;
+        private final int maxSize;
+
+        Variant(String suffix, int maxSize) {
+            this.suffix = suffix;
+            this.maxSize = maxSize;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+    }
+
+    private static final int KEY_LENGTH = 64; // hex SHA-256
+    private static final String VARIANT_FORMAT = "jpg";
+    // Each import decodes one full-size photo; keep the migration from holding too many at once
+    private static final int MIGRATION_THREADS = 2;
+
+    private static final PhotoStore INSTANCE = new PhotoStore();
+
+    private final ExecutorService variantPool;
+
+    private PhotoStore() {
+        int threads = Math.max(2, Math.min(Variant.values().length, Runtime.getRuntime().availableProcessors()));
+        AtomicInteger counter = new AtomicInteger();
+        variantPool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "photo-import-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public static PhotoStore getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return true if the value stored in members.photo_path is a store key rather than a file path.
+     */
+    public static boolean isStoreKey(String photoPath) {
+        if (photoPath == null || photoPath.length() != KEY_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < KEY_LENGTH; i++) {
+            char c = photoPath.charAt(i);
+            if (!(c >= '0' && c <= '9') && !(c >= 'a' && c <= 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The file for one variant of a stored photo (it may not exist).
+     */
+    public Path resolve(String key, Variant variant) {
+        // Two-character fan-out keeps directories small on large gyms
+        return AppPaths.getPhotosDir().resolve(key.substring(0, 2)).resolve(key + "-" + variant.suffix + "." + VARIANT_FORMAT);
+    }
+
+    /**
+     * Copies a photo into the store, creating all variants.
+     * @param source The picture chosen by the user.
+     * @return The key to save in members.photo_path.
+     * @throws IOException if the file cannot be read, is not a supported image, or a variant cannot be written.
+     */
+    public String importPhoto(Path source) throws IOException {
+        byte[] bytes = Files.readAllBytes(source);
+        String key = hash(bytes);
+        if (isComplete(key)) {
+            return key; // already imported (same picture, maybe for another member)
+        }
+
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(bytes));
+        if (image == null) {
+            throw new IOException("Unsupported image format: " + source);
+        }
+        BufferedImage upright = PhotoImages.applyExifOrientation(image, PhotoImages.readExifOrientation(bytes));
+        Files.createDirectories(resolve(key, Variant.FULL).getParent());
+
+        List<Future<?>> pending = new ArrayList<>();
+        for (Variant variant : Variant.values()) {
+            pending.add(variantPool.submit(() -> {
+                writeVariant(upright, resolve(key, variant), variant.maxSize);
+                return null;
+            }));
+        }
+        try {
+            for (Future<?> future : pending) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Photo import interrupted: " + source);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to store photo variants for " + source, e.getCause());
+        }
+        return key;
+    }
+
+    /**
+     * Imports every photo still referenced by an absolute path and points the members at the
+     * new keys. Files that are missing or unreadable are left as they are and retried next start.
+     * @return The number of members migrated.
+     */
+    public int migrateLegacyPhotos() {
+        Map<Integer, String> legacyPaths = findLegacyPhotoPaths();
+        if (legacyPaths.isEmpty()) {
+            return 0;
+        }
+
+        ExecutorService importers = Executors.newFixedThreadPool(MIGRATION_THREADS, r -> {
+            Thread t = new Thread(r, "photo-migration");
+            t.setDaemon(true);
+            return t;
+        });
+        Map<Integer, CompletableFuture<String>> imports = new LinkedHashMap<>();
+        try {
+            legacyPaths.forEach((memberId, path) ->
+                    imports.put(memberId, CompletableFuture.supplyAsync(() -> importLegacyPhoto(memberId, path), importers)));
+            CompletableFuture.allOf(imports.values().toArray(new CompletableFuture<?>[0])).join();
+        } finally {
+            importers.shutdown();
+        }
+
+        // One writer, one transaction: SQLite handles that far better than concurrent updates
+        String sql = "UPDATE members SET photo_path = ? WHERE member_id = ? AND photo_path = ?";
+        int migrated = 0;
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            conn.setAutoCommit(false);
+            for (Map.Entry<Integer, CompletableFuture<String>> entry : imports.entrySet()) {
+                String key = entry.getValue().join();
+                if (key == null) {
+                    continue;
+                }
+                pstmt.setString(1, key);
+                pstmt.setInt(2, entry.getKey());
+                // Only if nobody changed the photo while we were importing
+                pstmt.setString(3, legacyPaths.get(entry.getKey()));
+                migrated += pstmt.executeUpdate();
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            System.err.println("Could not save migrated photo keys: " + e.getMessage());
+            return 0;
+        }
+        if (migrated > 0) {
+            ReportQueryCache.getInstance().tableChanged(ReportQueryCache.MEMBERS);
+        }
+        System.out.println("Migrated " + migrated + " of " + legacyPaths.size() + " member photos into the photo store.");
+        return migrated;
+    }
+
+    /**
+     * Runs {@link #migrateLegacyPhotos()} on a background thread so startup is not delayed.
+     */
+    public void startLegacyMigration() {
+        Thread thread = new Thread(this::migrateLegacyPhotos, "photo-migration");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private Map<Integer, String> findLegacyPhotoPaths() {
+        Map<Integer, String> legacyPaths = new LinkedHashMap<>();
+        String sql = "SELECT member_id, photo_path FROM members WHERE photo_path IS NOT NULL AND photo_path <> ''";
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
+
+            while (rs.next()) {
+                String path = rs.getString("photo_path");
+                if (!isStoreKey(path)) {
+                    legacyPaths.put(rs.getInt("member_id"), path);
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Could not look up legacy member photos: " + e.getMessage());
+        }
+        return legacyPaths;
+    }
+
+    private String importLegacyPhoto(int memberId, String path) {
+        Path source = Paths.get(path);
+        if (!Files.isRegularFile(source)) {
+            System.err.println("Photo for member ID " + memberId + " not found, left as is: " + path);
+            return null;
+        }
+        try {
+            return importPhoto(source);
+        } catch (IOException e) {
+            System.err.println("Could not import photo for member ID " + memberId + " (" + path + "): " + e.getMessage());
+            return null;
+        }
+    }
+
+    private boolean isComplete(String key) {
+        for (Variant variant : Variant.values()) {
+            if (!Files.exists(resolve(key, variant))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void writeVariant(BufferedImage image, Path target, int maxSize) throws IOException {
+        BufferedImage scaled = PhotoImages.scaleToFit(image, maxSize);
+        // Write next to the target and move, so a half-written file is never picked up
+        Path temp = Files.createTempFile(target.getParent(), "variant", ".tmp");
+        try {
+            if (!ImageIO.write(scaled, VARIANT_FORMAT, temp.toFile())) {
+                throw new IOException("No JPEG writer available");
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static String hash(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
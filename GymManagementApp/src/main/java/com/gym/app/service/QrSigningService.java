@@ -0,0 +1,261 @@
+package com.gym.app.service;
+
+import com.gym.app.db.DatabaseManager;
+import com.gym.app.model.Member;
+import com.gym.app.util.ErrorLogger;
+import com.gym.app.util.SignedQrCodec;
+import java.security.SecureRandom;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Issues and verifies signed QR payloads so check-in can admit a member without a
+ * database lookup.
+ * <p>
+ * The signing key is generated on first use and kept in system_info, together with its
+ * version (always 1 so far; the version byte in each card leaves room for a new key).
+ * A stored key is never replaced, even when it could not be read, since that would
+ * invalidate every card printed with it.
+ * Each issued card carries a random serial. Revoking a card puts its serial in the small
+ * qr_revoked_cards table, mirrored in memory, and that card is then rejected everywhere,
+ * while the replacement issued with it works. Separately, members in qr_denylist have
+ * their (still valid) cards checked against the database instead of the payload, e.g.
+ * after their expiry date was moved earlier than the one printed on the card.
+ * Shared instance: keys and both lists are loaded once per process.
+ */
+public class QrSigningService {
+
+    public static final String ENABLED_SETTING = "qr.signed.enabled";
+    private static final String KEY_VERSION_SETTING = "qr.signing.keyVersion";
+    private static final String KEY_SETTING_PREFIX = "qr.signing.key.";
+    private static final int KEY_LENGTH = 32;
+
+    private static final QrSigningService INSTANCE = new QrSigningService();
+
+    private final SystemInfoService systemInfoService = new SystemInfoService();
+    private final Map<Integer, byte[]> keys = new ConcurrentHashMap<>();
+    private final Set<Integer> deniedMembers = ConcurrentHashMap.newKeySet();
+    // Member ID in the high half, card serial in the low half
+    private final Set<Long> revokedCards = ConcurrentHashMap.newKeySet();
+    private final SecureRandom random = new SecureRandom();
+    private volatile boolean denyListLoaded = false;
+    private volatile int keyVersion; // 0 until read from system_info
+
+    private QrSigningService() {
+    }
+
+    public static QrSigningService getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Loads the signing keys and deny-list up front so the first scans never wait on the database.
+     */
+    public void warmUp() {
+        try {
+            int current = currentKeyVersion();
+            signingKey(current);
+            // Cards signed with earlier keys stay valid; scans only use keys loaded here
+            for (int version = 1; version < current; version++) {
+                String stored = systemInfoService.readSetting(KEY_SETTING_PREFIX + version);
+                if (stored != null) {
+                    keys.put(version, Base64.getDecoder().decode(stored));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Could not load the QR signing key: " + e.getMessage());
+        }
+        ensureDenyListLoaded();
+    }
+
+    public boolean isEnabled() {
+        return "true".equals(systemInfoService.getSetting(ENABLED_SETTING));
+    }
+
+    public void setEnabled(boolean enabled) {
+        systemInfoService.saveSetting(ENABLED_SETTING, Boolean.toString(enabled));
+    }
+
+    /**
+     * Builds the signed QR value for a new card with the member's current ID and expiry date.
+     * @throws SQLException if the signing key could not be read or stored.
+     */
+    public String issuePayload(Member member) throws SQLException {
+        int version = currentKeyVersion();
+        int cardSerial = random.nextInt();
+        return SignedQrCodec.encode(member.getMemberId(), member.getExpiryDate(), cardSerial, version, signingKey(version));
+    }
+
+    /**
+     * Verifies a scanned value.
+     * While the revocation lists cannot be loaded, the card is looked up in the database instead.
+     * @return The verified payload, or null if the value is not a (valid) signed payload
+     *         or the card was revoked, or could not be checked.
+     */
+    public SignedQrCodec.Payload verify(String qrCodeValue) {
+        SignedQrCodec.Payload payload = SignedQrCodec.decode(qrCodeValue, this::verifyingKey);
+        if (payload == null) {
+            return null;
+        }
+        ensureDenyListLoaded();
+        if (denyListLoaded) {
+            return revokedCards.contains(cardKey(payload)) ? null : payload;
+        }
+        try {
+            return isCardRevokedInDatabase(payload) ? null : payload;
+        } catch (SQLException e) {
+            System.err.println("Could not check QR card revocation: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return true if the member's cards must be checked against the database rather than
+     *         admitted from the payload; always true while the deny-list cannot be loaded.
+     */
+    public boolean isRevoked(int memberId) {
+        ensureDenyListLoaded();
+        return !denyListLoaded || deniedMembers.contains(memberId);
+    }
+
+    /**
+     * Revokes one card, e.g. a lost one, so it is no longer recognized; the member's other
+     * cards are not affected.
+     */
+    public void revokeCard(SignedQrCodec.Payload card, String reason) throws SQLException {
+        String sql = "INSERT OR REPLACE INTO qr_revoked_cards (member_id, card_serial, reason, created_at) VALUES (?, ?, ?, ?)";
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, card.getMemberId());
+            pstmt.setInt(2, card.getCardSerial());
+            pstmt.setString(3, reason);
+            pstmt.setString(4, LocalDateTime.now().toString());
+            pstmt.executeUpdate();
+            revokedCards.add(cardKey(card));
+        }
+    }
+
+    /**
+     * Adds a member to the deny-list so their signed cards are always re-checked against the database.
+     */
+    public boolean revoke(int memberId, String reason) {
+        String sql = "INSERT OR REPLACE INTO qr_denylist (member_id, reason, created_at) VALUES (?, ?, ?)";
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, memberId);
+            pstmt.setString(2, reason);
+            pstmt.setString(3, LocalDateTime.now().toString());
+            pstmt.executeUpdate();
+            deniedMembers.add(memberId);
+            return true;
+        } catch (SQLException e) {
+            ErrorLogger.log(e, "Failed to revoke QR code for member ID: " + memberId);
+            return false;
+        }
+    }
+
+    private void ensureDenyListLoaded() {
+        if (denyListLoaded) {
+            return;
+        }
+        synchronized (this) {
+            if (denyListLoaded) {
+                return;
+            }
+            try (Connection conn = DatabaseManager.getConnection();
+                 Statement stmt = conn.createStatement()) {
+
+                try (ResultSet rs = stmt.executeQuery("SELECT member_id FROM qr_denylist")) {
+                    while (rs.next()) {
+                        deniedMembers.add(rs.getInt(1));
+                    }
+                }
+                try (ResultSet rs = stmt.executeQuery("SELECT member_id, card_serial FROM qr_revoked_cards")) {
+                    while (rs.next()) {
+                        revokedCards.add(cardKey(rs.getInt(1), rs.getInt(2)));
+                    }
+                }
+                denyListLoaded = true;
+            } catch (SQLException e) {
+                // Leave unloaded so the next scan retries; until then scans go to the database
+                System.err.println("Could not load QR deny-list: " + e.getMessage());
+            }
+        }
+    }
+
+    private boolean isCardRevokedInDatabase(SignedQrCodec.Payload card) throws SQLException {
+        String sql = "SELECT 1 FROM qr_revoked_cards WHERE member_id = ? AND card_serial = ?";
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, card.getMemberId());
+            pstmt.setInt(2, card.getCardSerial());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private static long cardKey(SignedQrCodec.Payload card) {
+        return cardKey(card.getMemberId(), card.getCardSerial());
+    }
+
+    private static long cardKey(int memberId, int cardSerial) {
+        return ((long) memberId << 32) | (cardSerial & 0xFFFFFFFFL);
+    }
+
+    private synchronized int currentKeyVersion() throws SQLException {
+        if (keyVersion == 0) {
+            String stored = systemInfoService.readSetting(KEY_VERSION_SETTING);
+            if (stored == null) {
+                stored = systemInfoService.saveSettingIfAbsent(KEY_VERSION_SETTING, "1");
+            }
+            keyVersion = Integer.parseInt(stored);
+        }
+        return keyVersion;
+    }
+
+    /**
+     * The key to sign with, generated and stored if there is none yet.
+     */
+    private synchronized byte[] signingKey(int version) throws SQLException {
+        byte[] key = keys.get(version);
+        if (key != null) {
+            return key;
+        }
+        String setting = KEY_SETTING_PREFIX + version;
+        String stored = systemInfoService.readSetting(setting);
+        if (stored == null) {
+            byte[] generated = new byte[KEY_LENGTH];
+            random.nextBytes(generated);
+            // Another instance may have stored one meanwhile; theirs wins
+            stored = systemInfoService.saveSettingIfAbsent(setting, Base64.getEncoder().encodeToString(generated));
+        }
+        key = Base64.getDecoder().decode(stored);
+        keys.put(version, key);
+        return key;
+    }
+
+    /**
+     * The key to verify a scanned card with. Only the current key is ever read from the database
+     * here, and only until it is loaded, so a card with a made-up key version costs no read.
+     */
+    private byte[] verifyingKey(int version) {
+        byte[] key = keys.get(version);
+        if (key != null) {
+            return key;
+        }
+        try {
+            return version == currentKeyVersion() ? signingKey(version) : null;
+        } catch (SQLException e) {
+            System.err.println("Could not load the QR signing key: " + e.getMessage());
+            return null;
+        }
+    }
+}
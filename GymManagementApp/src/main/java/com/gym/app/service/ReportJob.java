@@ -0,0 +1,144 @@
+package com.gym.app.service;
+
+import java.nio.file.Path;
+import java.util.concurrent.Future;
+
+/**
+ * One report export queued on the {@link ReportJobScheduler}.
+ * <p>
+ * Progress and state are updated by the worker thread and may be read from any thread;
+ * listeners are told about every change.
+ */
+public class ReportJob {
+
+    public enum Type {
+        REVENUE_EXCEL("Revenue report (Excel)", "payments", "RevenueReport.xlsx"),
+        REVENUE_PDF("Revenue report (PDF)", "payments", "RevenueReport.pdf"),
+        ATTENDANCE_EXCEL("Attendance report (Excel)", "attendance", "AttendanceReport.xlsx"),
+        ATTENDANCE_PDF("Attendance report (PDF)", "attendance", "AttendanceReport.pdf"),
+        PAYMENTS_CSV("Payments (CSV)", "payments", "payments.csv"),
+        ATTENDANCE_CSV("Attendance (CSV)", "attendance", "attendance.csv"),
+        MEMBERS_CSV("Members (CSV)", "members", "members.csv");
+
+        private final String description;
+        private final String table;
+        private final String fileName;
+
+        Type(String description, String table, String fileName) {
+            this.description = description;
+            this.table = table;
+            this.fileName = fileName;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        String getTable() {
+            return table;
+        }
+    }
+
+    public enum State {
+        QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED;
+
+        public boolean isFinished() {
+            return this == SUCCEEDED || this == FAILED || this == CANCELLED;
+        }
+    }
+
+    private final int id;
+    private final Type type;
+    private final Path target;
+
+    private volatile State state = State.QUEUED;
+    private volatile long rowsDone;
+    private volatile long rowsTotal = -1;
+    private volatile Throwable error;
+    private Future<?> future; // guarded by this
+
+    ReportJob(int id, Type type, Path target) {
+        this.id = id;
+        this.type = type;
+        this.target = target;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return The file the report is written to; it only appears once the export is complete.
+     */
+    public Path getTarget() {
+        return target;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public long getRowsDone() {
+        return rowsDone;
+    }
+
+    /**
+     * @return The number of rows to export, or -1 while it is not known yet.
+     */
+    public long getRowsTotal() {
+        return rowsTotal;
+    }
+
+    /**
+     * @return Fraction done between 0 and 1, or -1 if unknown (suits {@code ProgressBar}).
+     */
+    public double getProgress() {
+        long total = rowsTotal;
+        if (state == State.SUCCEEDED) {
+            return 1;
+        }
+        if (total <= 0) {
+            return -1;
+        }
+        return Math.min(1, (double) rowsDone / total);
+    }
+
+    /**
+     * @return Why the export failed, or null.
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    void setState(State state) {
+        this.state = state;
+    }
+
+    void setRowsDone(long rowsDone) {
+        this.rowsDone = rowsDone;
+    }
+
+    void setRowsTotal(long rowsTotal) {
+        this.rowsTotal = rowsTotal;
+    }
+
+    void setError(Throwable error) {
+        this.error = error;
+    }
+
+    synchronized Future<?> getFuture() {
+        return future;
+    }
+
+    synchronized void setFuture(Future<?> future) {
+        this.future = future;
+    }
+}
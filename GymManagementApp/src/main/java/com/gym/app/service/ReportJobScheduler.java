@@ -0,0 +1,227 @@
+package com.gym.app.service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.gym.app.db.DatabaseManager;
+import com.gym.app.util.CsvExporter;
+import com.gym.app.util.ReportExporter;
+
+/**
+ * Runs report exports in the background so the front desk keeps working while they run.
+ * <p>
+ * Exports go through a small pool of low-priority workers ({@value #WORKERS}) with a queue
+ * of at most {@value #MAX_QUEUED} pending jobs; asking for a report that is already queued
+ * or running returns that job instead of starting a second one. Each export is written
+ * to a {@code .part} file next to the target and renamed over it only once complete, so
+ * a cancelled or failed export never leaves a truncated report behind. A report that
+ * {@link OvernightReports} prepared and that is still current is copied instead of exported.
+ * Shared instance: the queue is per process.
+ */
+public class ReportJobScheduler {
+
+    /**
+     * Told about every job change (state or progress), on the worker or calling thread.
+     */
+    public interface Listener {
+        void jobChanged(ReportJob job);
+    }
+
+    // Exports are disk- and database-bound; more workers would only slow check-in down
+    private static final int WORKERS = 1;
+    private static final int MAX_QUEUED = 8;
+    private static final long PROGRESS_NOTIFY_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+    private static final String PART_SUFFIX = ".part";
+
+    private static final ReportJobScheduler INSTANCE = new ReportJobScheduler();
+
+    private final ThreadPoolExecutor pool;
+    private final AtomicInteger nextId = new AtomicInteger(1);
+    private final List<ReportJob> activeJobs = new CopyOnWriteArrayList<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private ReportJobScheduler() {
+        AtomicInteger counter = new AtomicInteger();
+        pool = new ThreadPoolExecutor(WORKERS, WORKERS, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(MAX_QUEUED), r -> {
+                    Thread t = new Thread(r, "report-export-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    t.setPriority(Thread.MIN_PRIORITY);
+                    return t;
+                });
+    }
+
+    public static ReportJobScheduler getInstance() {
+        return INSTANCE;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Queues an export.
+     * @param type The report and format.
+     * @param target The file to create (replaced when the export completes).
+     * @return The new job, or the job already exporting to the same file.
+     * @throws IllegalStateException if the queue is full.
+     */
+    public synchronized ReportJob submit(ReportJob.Type type, Path target) {
+        for (ReportJob job : activeJobs) {
+            if (job.getTarget().equals(target) && !job.getFuture().isCancelled()) {
+                return job;
+            }
+        }
+        ReportJob job = new ReportJob(nextId.getAndIncrement(), type, target);
+        activeJobs.add(job);
+        try {
+            job.setFuture(pool.submit(() -> run(job)));
+        } catch (RejectedExecutionException e) {
+            activeJobs.remove(job);
+            throw new IllegalStateException("The export queue is full (" + MAX_QUEUED + " pending). Try again when an export has finished.", e);
+        }
+        notifyListeners(job);
+        return job;
+    }
+
+    /**
+     * Cancels a queued or running export; a running one stops at its next progress check.
+     */
+    public void cancel(ReportJob job) {
+        boolean wasQueued;
+        synchronized (job) {
+            wasQueued = job.getState() == ReportJob.State.QUEUED;
+            if (wasQueued) {
+                job.setState(ReportJob.State.CANCELLED);
+            }
+        }
+        job.getFuture().cancel(true);
+        if (wasQueued) {
+            pool.purge(); // free its queue slot now rather than when a worker reaches it
+            finish(job);
+        }
+    }
+
+    /**
+     * @return Queued and running jobs, oldest first.
+     */
+    public List<ReportJob> getActiveJobs() {
+        return new ArrayList<>(activeJobs);
+    }
+
+    private void run(ReportJob job) {
+        synchronized (job) {
+            if (job.getState() != ReportJob.State.QUEUED) {
+                return; // cancelled while waiting
+            }
+            job.setState(ReportJob.State.RUNNING);
+        }
+        notifyListeners(job);
+
+        Path target = job.getTarget();
+        Path part = target.resolveSibling(target.getFileName() + PART_SUFFIX);
+        try {
+            Files.createDirectories(target.toAbsolutePath().getParent());
+            Path prepared = OvernightReports.getInstance().getPreparedReport(job.getType());
+            if (prepared != null && !prepared.equals(target)) {
+                // Nothing was added since the overnight run rendered this report
+                Files.copy(prepared, part, StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                job.setRowsTotal(countRows(job.getType()));
+                notifyListeners(job);
+
+                long[] lastNotify = {System.nanoTime()};
+                ReportExporter.ExportProgress progress = rows -> {
+                    job.setRowsDone(rows);
+                    long now = System.nanoTime();
+                    if (now - lastNotify[0] >= PROGRESS_NOTIFY_NANOS) {
+                        lastNotify[0] = now;
+                        notifyListeners(job);
+                    }
+                };
+                export(job.getType(), part.toString(), progress);
+            }
+            moveIntoPlace(part, target);
+            job.setState(ReportJob.State.SUCCEEDED);
+        } catch (InterruptedIOException e) {
+            job.setState(ReportJob.State.CANCELLED);
+        } catch (IOException | SQLException | RuntimeException e) {
+            if (Thread.currentThread().isInterrupted()) {
+                // The exporter noticed the cancellation in a different way
+                job.setState(ReportJob.State.CANCELLED);
+            } else {
+                job.setError(e);
+                job.setState(ReportJob.State.FAILED);
+            }
+        } finally {
+            try {
+                Files.deleteIfExists(part);
+            } catch (IOException e) {
+                System.err.println("Could not delete partial export " + part + ": " + e.getMessage());
+            }
+            finish(job);
+        }
+    }
+
+    private static void export(ReportJob.Type type, String filePath, ReportExporter.ExportProgress progress)
+            throws IOException, SQLException {
+        switch (type) {
+            case REVENUE_EXCEL -> ReportExporter.streamRevenueToExcel(filePath, progress);
+            case REVENUE_PDF -> ReportExporter.streamRevenueToPDF(filePath, progress);
+            case ATTENDANCE_EXCEL -> ReportExporter.streamAttendanceToExcel(filePath, progress);
+            case ATTENDANCE_PDF -> ReportExporter.streamAttendanceToPDF(filePath, progress);
+            case PAYMENTS_CSV -> new CsvExporter().export(CsvExporter.Table.PAYMENTS, Path.of(filePath), false, progress);
+            case ATTENDANCE_CSV -> new CsvExporter().export(CsvExporter.Table.ATTENDANCE, Path.of(filePath), false, progress);
+            case MEMBERS_CSV -> new CsvExporter().export(CsvExporter.Table.MEMBERS, Path.of(filePath), false, progress);
+        }
+    }
+
+    private static long countRows(ReportJob.Type type) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM " + type.getTable();
+        try (Connection conn = DatabaseManager.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? rs.getLong(1) : -1;
+        }
+    }
+
+    private static void moveIntoPlace(Path part, Path target) throws IOException {
+        try {
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void finish(ReportJob job) {
+        activeJobs.remove(job);
+        notifyListeners(job);
+    }
+
+    private void notifyListeners(ReportJob job) {
+        for (Listener listener : listeners) {
+            try {
+                listener.jobChanged(job);
+            } catch (RuntimeException e) {
+                System.err.println("Report job listener failed: " + e);
+            }
+        }
+    }
+}
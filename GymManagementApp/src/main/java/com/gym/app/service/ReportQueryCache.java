@@ -0,0 +1,218 @@
+package com.gym.app.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Results of report queries, so reopening the Reports page does not re-run them.
+ * <p>
+ * Entries are keyed by query and parameters and remember the version of every table they
+ * read. Services bump a table's version on each write ({@link #tableChanged(String)}),
+ * which makes the dependent entries stale; shortly after the last write, stale entries read
+ * in the last {@value #RECENT_READ_MINUTES} minutes are re-run on a background thread, so
+ * the page being worked with stays current without waiting. Stale entries nobody has read
+ * lately are dropped instead, so a check-in never re-runs a query nobody is looking at.
+ * A stale entry is never returned: if it is asked for before the refresh has run, the
+ * query runs on the spot.
+ * <p>
+ * The cache holds at most {@value #MAX_WEIGHT} rows in total (a list counts its size,
+ * anything else counts one); the least recently used entries are evicted first, and a
+ * single result larger than that is not cached at all.
+ * Shared instance: the cache is per process.
+ */
+public class ReportQueryCache {
+
+    public static final String PAYMENTS = "payments";
+    public static final String ATTENDANCE = "attendance";
+    public static final String MEMBERS = "members";
+
+    private static final int MAX_WEIGHT = 250_000;
+    // Writes come in bursts (a renewal is a member update plus a payment); refresh once after
+    private static final long REFRESH_DELAY_MILLIS = 2000;
+    private static final long RECENT_READ_MINUTES = 10;
+
+    private static final ReportQueryCache INSTANCE = new ReportQueryCache();
+
+    private static final class Entry {
+        final Supplier<?> loader;
+        final String[] tables;
+        Object value;
+        long[] versions;
+        int weight;
+        long lastReadNanos;
+
+        Entry(Supplier<?> loader, String[] tables) {
+            this.loader = loader;
+            this.tables = tables;
+        }
+    }
+
+    private final Map<String, AtomicLong> tableVersions = new ConcurrentHashMap<>();
+    // Guarded by this; access-ordered so the eldest entry is the least recently used
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(32, 0.75f, true);
+    private int totalWeight;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "report-cache-refresh");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+    private ScheduledFuture<?> pendingRefresh; // guarded by this
+
+    private ReportQueryCache() {
+    }
+
+    public static ReportQueryCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the cached result of a query, running it if there is none or it is stale.
+     * @param key The query and its parameters, e.g. {@code "revenue:2024-01-01:2024-01-31"}.
+     * @param loader Runs the query; kept for background refreshes, so it must not capture UI state.
+     * @param tables The tables the query reads.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, Supplier<T> loader, String... tables) {
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.value != null && isCurrent(entry)) {
+                entry.lastReadNanos = System.nanoTime();
+                hits.incrementAndGet();
+                return (T) entry.value;
+            }
+        }
+        misses.incrementAndGet();
+        Entry entry = new Entry(loader, tables);
+        entry.lastReadNanos = System.nanoTime();
+        load(key, entry);
+        return (T) entry.value;
+    }
+
+    /**
+     * Called by services after writing to a table.
+     */
+    public void tableChanged(String table) {
+        version(table).incrementAndGet();
+        scheduleRefresh();
+    }
+
+    /**
+     * Drops everything, e.g. after a database restore.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        totalWeight = 0;
+        tableVersions.values().forEach(AtomicLong::incrementAndGet);
+    }
+
+    /**
+     * Formats the hit rate since start-up, for the log.
+     */
+    public synchronized String formatStats() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        return String.format("report cache  %d/%d hits, %d entries, %d rows", hitCount, total, entries.size(), totalWeight);
+    }
+
+    private void load(String key, Entry entry) {
+        // Versions are read before the query: a write during it leaves the entry stale, not wrong
+        long[] versions = currentVersions(entry.tables);
+        Object value = entry.loader.get();
+        int weight = value instanceof Collection<?> collection ? Math.max(1, collection.size()) : 1;
+
+        synchronized (this) {
+            Entry previous = entries.remove(key);
+            if (previous != null) {
+                totalWeight -= previous.weight;
+            }
+            entry.value = value;
+            entry.versions = versions;
+            entry.weight = weight;
+            if (weight > MAX_WEIGHT) {
+                return; // too big to keep; callers still get the result
+            }
+            entries.put(key, entry);
+            totalWeight += weight;
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (totalWeight > MAX_WEIGHT && eldest.hasNext()) {
+                totalWeight -= eldest.next().weight;
+                eldest.remove();
+            }
+        }
+    }
+
+    private synchronized void scheduleRefresh() {
+        if (pendingRefresh != null) {
+            pendingRefresh.cancel(false);
+        }
+        pendingRefresh = refresher.schedule(this::refreshStale, REFRESH_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private void refreshStale() {
+        List<Map.Entry<String, Entry>> stale = new ArrayList<>();
+        long recentSince = System.nanoTime() - TimeUnit.MINUTES.toNanos(RECENT_READ_MINUTES);
+        synchronized (this) {
+            // Iterating the values does not count as access, so the LRU order is kept
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, Entry> e = it.next();
+                if (isCurrent(e.getValue())) {
+                    continue;
+                }
+                if (e.getValue().lastReadNanos - recentSince >= 0) {
+                    stale.add(Map.entry(e.getKey(), e.getValue()));
+                } else {
+                    totalWeight -= e.getValue().weight;
+                    it.remove();
+                }
+            }
+        }
+        for (Map.Entry<String, Entry> e : stale) {
+            try {
+                Entry refreshed = new Entry(e.getValue().loader, e.getValue().tables);
+                refreshed.lastReadNanos = e.getValue().lastReadNanos;
+                load(e.getKey(), refreshed);
+            } catch (RuntimeException ex) {
+                // Left stale; the next get() runs the query itself
+                System.err.println("Report cache refresh failed for " + e.getKey() + ": " + ex);
+            }
+        }
+    }
+
+    private boolean isCurrent(Entry entry) {
+        for (int i = 0; i < entry.tables.length; i++) {
+            if (version(entry.tables[i]).get() != entry.versions[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long[] currentVersions(String[] tables) {
+        long[] versions = new long[tables.length];
+        for (int i = 0; i < tables.length; i++) {
+            versions[i] = version(tables[i]).get();
+        }
+        return versions;
+    }
+
+    private AtomicLong version(String table) {
+        return tableVersions.computeIfAbsent(table, t -> new AtomicLong());
+    }
+}
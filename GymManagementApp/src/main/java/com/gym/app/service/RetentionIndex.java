@@ -0,0 +1,340 @@
+package com.gym.app.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.gym.app.db.DatabaseManager;
+import com.gym.app.util.AppPaths;
+import com.gym.app.util.AttendanceColumns;
+import com.gym.app.util.MemberBitmap;
+
+/**
+ * Cohort retention and churn ("what share of January's new members still came in March?")
+ * answered with bitmap operations instead of SQL.
+ * <p>
+ * For every day with attendance the index keeps a {@link MemberBitmap} of the members who
+ * came; a month's visitors are the union of its days (cached until a check-in changes
+ * them). Cohorts are the members grouped by join month, read from {@code members.join_date}
+ * and re-read after a member is saved. A retention cell is then the size of an AND, a few
+ * microseconds each.
+ * <p>
+ * The day bitmaps are saved to {@value #FILE_NAME} in the data folder. At startup they are
+ * read back and the {@link AttendanceHistoryFeed} passes on only the attendance recorded
+ * since; the file is rebuilt from scratch if it no longer matches the attendance table
+ * (e.g. after a restore).
+ * Shared instance: one index per process.
+ */
+public class RetentionIndex {
+
+    /**
+     * One join month's members, followed month by month.
+     * @param size Members who joined that month.
+     * @param active Per month since joining (0 = the join month): members of the cohort who came at least once.
+     * @param churned Per month since joining: members who came the month before but not this month (0 for month 0).
+     */
+    public record Cohort(YearMonth month, int size, int[] active, int[] churned) {
+
+        public int getMonthCount() {
+            return active.length;
+        }
+
+        public double retentionPercent(int monthsSinceJoining) {
+            return size == 0 ? 0 : active[monthsSinceJoining] * 100.0 / size;
+        }
+
+        /**
+         * @return Share of last month's active cohort members who did not come this month.
+         */
+        public double churnPercent(int monthsSinceJoining) {
+            if (monthsSinceJoining == 0 || active[monthsSinceJoining - 1] == 0) {
+                return 0;
+            }
+            return churned[monthsSinceJoining] * 100.0 / active[monthsSinceJoining - 1];
+        }
+    }
+
+    private static final String FILE_NAME = "retention.idx";
+    private static final int FILE_MAGIC = 0x47524958; // "GRIX"
+    private static final int FILE_VERSION = 1;
+
+    private static final RetentionIndex INSTANCE = new RetentionIndex();
+
+    // All guarded by this
+    private final TreeMap<Integer, MemberBitmap> days = new TreeMap<>(); // epoch day -> members who came
+    private final Map<YearMonth, MemberBitmap> months = new HashMap<>();
+    private long lastAttendanceId;
+    private long attendanceRows;
+    private boolean dirty;
+    private TreeMap<YearMonth, MemberBitmap> cohorts;
+    private int cohortsVersion;
+    private boolean started;
+
+    private volatile int membersVersion;
+
+    private RetentionIndex() {
+    }
+
+    public static RetentionIndex getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Registers with the {@link AttendanceHistoryFeed}, which has the saved index read and
+     * brought up to date at startup. Later calls do nothing.
+     */
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        AttendanceHistoryFeed.getInstance().register(new AttendanceHistoryFeed.Reader() {
+            @Override
+            public long begin(Connection conn) throws SQLException {
+                return readSaved(conn);
+            }
+
+            @Override
+            public void row(long attendanceId, int memberId, int minute, String timestamp) {
+                addRow(attendanceId, memberId, Math.floorDiv(minute, AttendanceColumns.MINUTES_PER_DAY));
+            }
+
+            @Override
+            public void apply(GymEvent event) {
+                onEvent(event);
+            }
+
+            @Override
+            public void loaded() {
+                save();
+            }
+        });
+    }
+
+    public boolean isLoaded() {
+        return AttendanceHistoryFeed.getInstance().isLoaded();
+    }
+
+    public synchronized int getDayCount() {
+        return days.size();
+    }
+
+    /**
+     * @return Size of the day bitmaps, in bytes.
+     */
+    public synchronized long getSizeInBytes() {
+        long bytes = 0;
+        for (MemberBitmap day : days.values()) {
+            bytes += day.getSizeInBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Writes the index to disk if it changed since it was read or last written.
+     * A failed write only costs a longer catch-up at the next start. Skipped while the
+     * attendance history is being read, e.g. after a restore, when the index may still
+     * describe the previous database.
+     */
+    public synchronized void save() {
+        if (!dirty || !isLoaded()) {
+            return;
+        }
+        Path file = getFile();
+        Path part = file.resolveSibling(FILE_NAME + ".part");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(part)))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            out.writeLong(lastAttendanceId);
+            out.writeLong(attendanceRows);
+            out.writeInt(days.size());
+            for (Map.Entry<Integer, MemberBitmap> day : days.entrySet()) {
+                out.writeInt(day.getKey());
+                day.getValue().write(out);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not save the retention index: " + e.getMessage());
+            return;
+        }
+        try {
+            try {
+                Files.move(part, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(part, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            dirty = false;
+        } catch (IOException e) {
+            System.err.println("Could not save the retention index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Retention and churn of each join month from {@code first} to {@code last}, each
+     * followed up to the current month.
+     */
+    public List<Cohort> getCohorts(YearMonth first, YearMonth last) throws SQLException {
+        TreeMap<YearMonth, MemberBitmap> joined = getJoinCohorts();
+        YearMonth now = YearMonth.now();
+        List<Cohort> result = new ArrayList<>();
+        synchronized (this) {
+            for (YearMonth month = first; !month.isAfter(last) && !month.isAfter(now); month = month.plusMonths(1)) {
+                MemberBitmap cohort = joined.getOrDefault(month, new MemberBitmap());
+                int monthCount = (int) ChronoUnit.MONTHS.between(month, now) + 1;
+                int[] active = new int[monthCount];
+                int[] churned = new int[monthCount];
+                MemberBitmap previous = null;
+                for (int k = 0; k < monthCount; k++) {
+                    MemberBitmap visitors = monthVisitors(month.plusMonths(k));
+                    active[k] = cohort.andCardinality(visitors);
+                    if (previous != null) {
+                        churned[k] = active[k - 1] - cohort.and(previous).andCardinality(visitors);
+                    }
+                    previous = visitors;
+                }
+                result.add(new Cohort(month, cohort.getCardinality(), active, churned));
+            }
+        }
+        return result;
+    }
+
+    private void onEvent(GymEvent event) {
+        if (event.getType() == GymEvent.Type.MEMBER_SAVED) {
+            // The join date may have changed; cohorts are re-read on the next query
+            membersVersion++;
+        } else if (event.getType() == GymEvent.Type.CHECK_IN) {
+            addRow(event.getRecordId(), event.getMemberId(), event.getTime().toLocalDate().toEpochDay());
+        }
+    }
+
+    private synchronized void addRow(long attendanceId, int memberId, long epochDay) {
+        if (attendanceId > lastAttendanceId) {
+            lastAttendanceId = attendanceId;
+            attendanceRows++;
+            dirty = true;
+            addVisit(memberId, epochDay);
+        }
+    }
+
+    private void addVisit(int memberId, long epochDay) {
+        if (days.computeIfAbsent((int) epochDay, d -> new MemberBitmap()).add(memberId)) {
+            months.remove(YearMonth.from(LocalDate.ofEpochDay(epochDay)));
+            dirty = true;
+        }
+    }
+
+    private MemberBitmap monthVisitors(YearMonth month) {
+        MemberBitmap visitors = months.get(month);
+        if (visitors == null) {
+            visitors = new MemberBitmap();
+            int firstDay = (int) month.atDay(1).toEpochDay();
+            int lastDay = (int) month.atEndOfMonth().toEpochDay();
+            for (MemberBitmap day : days.subMap(firstDay, true, lastDay, true).values()) {
+                visitors = visitors.or(day);
+            }
+            months.put(month, visitors);
+        }
+        return visitors;
+    }
+
+    // Members are few, so cohorts are simply re-read when a member was saved since last time
+    private TreeMap<YearMonth, MemberBitmap> getJoinCohorts() throws SQLException {
+        int version = membersVersion;
+        synchronized (this) {
+            if (cohorts != null && cohortsVersion == version) {
+                return cohorts;
+            }
+        }
+        TreeMap<YearMonth, MemberBitmap> joined = new TreeMap<>();
+        String sql = "SELECT member_id, join_date FROM members";
+        try (Connection conn = DatabaseManager.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+
+            while (rs.next()) {
+                Date joinDate = rs.getDate("join_date");
+                if (joinDate != null) {
+                    joined.computeIfAbsent(YearMonth.from(joinDate.toLocalDate()), m -> new MemberBitmap())
+                            .add(rs.getInt("member_id"));
+                }
+            }
+        }
+        synchronized (this) {
+            cohorts = joined;
+            cohortsVersion = version;
+        }
+        return joined;
+    }
+
+    // Everything up to the saved ID must still be there, unchanged in number
+    private boolean matchesDatabase(Connection conn) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM attendance WHERE attendance_id <= ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setLong(1, lastAttendanceId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() && rs.getLong(1) == attendanceRows;
+            }
+        }
+    }
+
+    // Reads the saved index (or starts empty if it no longer matches the database) and
+    // returns the last attendance ID it covers
+    private synchronized long readSaved(Connection conn) throws SQLException {
+        clear();
+        if (readFile(getFile()) && matchesDatabase(conn)) {
+            dirty = false;
+        } else {
+            clear();
+        }
+        return lastAttendanceId;
+    }
+
+    // False if there is no usable file; the index is then rebuilt from the database
+    private boolean readFile(Path file) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) {
+                return false;
+            }
+            lastAttendanceId = in.readLong();
+            attendanceRows = in.readLong();
+            int dayCount = in.readInt();
+            for (int i = 0; i < dayCount; i++) {
+                int day = in.readInt();
+                days.put(day, MemberBitmap.read(in));
+            }
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable retention index " + file + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void clear() {
+        days.clear();
+        months.clear();
+        lastAttendanceId = 0;
+        attendanceRows = 0;
+        dirty = true;
+    }
+
+    private static Path getFile() {
+        return AppPaths.getIndexesDir().resolve(FILE_NAME);
+    }
+}
@@ -0,0 +1,210 @@
+package com.gym.app.service;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.gym.app.db.DatabaseManager;
+
+/**
+ * Revenue per day held in memory, so any date-range total is answered without the database.
+ * <p>
+ * Amounts are kept in cents per day in a Fenwick (binary indexed) tree, which gives range
+ * totals and running balances in O(log n) and takes a new payment in O(log n). The index is
+ * loaded from {@code payments} at startup ({@link #load()}) and kept current by
+ * {@link PaymentService#addPayment}; after anything else rewrites the table, such as a
+ * database restore, call {@link #load()} again.
+ * <p>
+ * A reload reads the table into new arrays without holding the lock, so payments and
+ * queries are never held up by it, then swaps them in. Payments recorded meanwhile are
+ * replayed onto the new arrays if their ID is above the highest one the scan read, so each
+ * payment is counted exactly once.
+ * Shared instance: one index per process.
+ */
+public class RevenueIndex {
+
+    private static final int INITIAL_DAYS = 4 * 366;
+
+    private static final RevenueIndex INSTANCE = new RevenueIndex();
+
+    private record AddedPayment(long paymentId, long epochDay, long cents) {
+    }
+
+    // All guarded by this. The tree is 1-based as usual for Fenwick trees.
+    private DailyCents days = new DailyCents(0, 0);
+    private long[] tree = new long[1];
+    private boolean loaded;
+    // Payments added while a load() is reading the table, replayed when it swaps in
+    private final List<AddedPayment> addedDuringLoad = new ArrayList<>();
+    private int loadsRunning;
+
+    private RevenueIndex() {
+    }
+
+    public static RevenueIndex getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * (Re)builds the index from the payments table. Queries keep using the previous index
+     * until the new one is complete.
+     */
+    public void load() throws SQLException {
+        synchronized (this) {
+            loadsRunning++;
+        }
+        String sql = "SELECT payment_id, payment_date, amount FROM payments";
+        DailyCents fresh = new DailyCents(LocalDate.now().toEpochDay() - INITIAL_DAYS / 2, INITIAL_DAYS);
+        long maxPaymentId = 0;
+        boolean complete = false;
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
+
+            while (rs.next()) {
+                maxPaymentId = Math.max(maxPaymentId, rs.getLong("payment_id"));
+                Date paymentDate = rs.getDate("payment_date");
+                if (paymentDate != null) {
+                    fresh.add(paymentDate.toLocalDate().toEpochDay(), toCents(rs.getDouble("amount")));
+                }
+            }
+            complete = true;
+        } finally {
+            synchronized (this) {
+                if (complete) {
+                    for (AddedPayment added : addedDuringLoad) {
+                        if (added.paymentId() > maxPaymentId) {
+                            fresh.add(added.epochDay(), added.cents());
+                        }
+                    }
+                    days = fresh;
+                    tree = fresh.buildTree();
+                }
+                // A failed reload after a restore would leave stale totals: fall back to the database
+                loaded = complete;
+                if (--loadsRunning == 0) {
+                    addedDuringLoad.clear();
+                }
+            }
+        }
+    }
+
+    public synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Records a payment that has just been saved.
+     */
+    public synchronized void add(long paymentId, LocalDate paymentDate, double amount) {
+        long cents = toCents(amount);
+        if (loadsRunning > 0) {
+            addedDuringLoad.add(new AddedPayment(paymentId, paymentDate.toEpochDay(), cents));
+        }
+        if (!loaded) {
+            return; // picked up by the next load()
+        }
+        int oldLength = days.cents.length;
+        int index = days.add(paymentDate.toEpochDay(), cents);
+        if (days.cents.length != oldLength) {
+            tree = days.buildTree();
+        } else {
+            for (int i = index + 1; i < tree.length; i += i & -i) {
+                tree[i] += cents;
+            }
+        }
+    }
+
+    /**
+     * @return Revenue from {@code start} to {@code end}, both inclusive (0 if end is before start).
+     */
+    public synchronized double getTotal(LocalDate start, LocalDate end) {
+        if (end.isBefore(start)) {
+            return 0;
+        }
+        return (prefixCents(end.toEpochDay()) - prefixCents(start.toEpochDay() - 1)) / 100.0;
+    }
+
+    /**
+     * @return Revenue of each day from {@code start} to {@code end}, both inclusive (for trend charts).
+     */
+    public synchronized double[] getDailyTotals(LocalDate start, LocalDate end) {
+        int dayCount = (int) Math.max(0, end.toEpochDay() - start.toEpochDay() + 1);
+        double[] totals = new double[dayCount];
+        for (int i = 0; i < dayCount; i++) {
+            long index = start.toEpochDay() + i - days.originDay;
+            if (index >= 0 && index < days.cents.length) {
+                totals[i] = days.cents[(int) index] / 100.0;
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * @return All revenue up to and including {@code date}.
+     */
+    public synchronized double getRunningBalance(LocalDate date) {
+        return prefixCents(date.toEpochDay()) / 100.0;
+    }
+
+    // Sum of all days up to and including epochDay
+    private long prefixCents(long epochDay) {
+        long offset = epochDay - days.originDay;
+        if (offset < 0) {
+            return 0;
+        }
+        int i = (int) Math.min(offset + 1, tree.length - 1);
+        long sum = 0;
+        for (; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    private static long toCents(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    // Cents per day; index i is day originDay + i
+    private static final class DailyCents {
+        private long originDay;
+        private long[] cents;
+
+        DailyCents(long originDay, int length) {
+            this.originDay = originDay;
+            this.cents = new long[length];
+        }
+
+        // Adds to a day, growing the array (both ways, doubling) so it fits; returns its index
+        int add(long epochDay, long amount) {
+            if (epochDay < originDay) {
+                long shift = Math.max(originDay - epochDay, cents.length);
+                long[] grown = new long[(int) (cents.length + shift)];
+                System.arraycopy(cents, 0, grown, (int) shift, cents.length);
+                cents = grown;
+                originDay -= shift;
+            }
+            long index = epochDay - originDay;
+            if (index >= cents.length) {
+                cents = Arrays.copyOf(cents, (int) Math.max(index + 1, cents.length * 2L));
+            }
+            cents[(int) index] += amount;
+            return (int) index;
+        }
+
+        // O(n) construction: each node passes its sum on to its parent
+        long[] buildTree() {
+            long[] tree = new long[cents.length + 1];
+            System.arraycopy(cents, 0, tree, 1, cents.length);
+            for (int i = 1; i < tree.length; i++) {
+                int parent = i + (i & -i);
+                if (parent < tree.length) {
+                    tree[parent] += tree[i];
+                }
+            }
+            return tree;
+        }
+    }
+}
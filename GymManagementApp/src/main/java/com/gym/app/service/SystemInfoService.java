@@ -2,15 +2,25 @@ package com.gym.app.service;
 
 import com.gym.app.db.DatabaseManager;
 import com.gym.app.util.ErrorLogger;
+import com.gym.app.util.QRGenerator;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import java.security.SecureRandom;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Base64;
 import java.util.UUID;
 
 public class SystemInfoService {
 
     private static final String LICENSE_KEY = "hardware_hash";
+    private static final String QR_ERROR_CORRECTION_KEY = "qr.errorCorrection";
+    private static final String OCCUPANCY_CAPACITY_KEY = "occupancy.capacity";
+    private static final String OVERNIGHT_REPORT_HOUR_KEY = "reports.overnightHour";
+    private static final String API_ENABLED_KEY = "api.enabled";
+    private static final String API_PORT_KEY = "api.port";
+    private static final String API_TOKEN_KEY = "api.token";
 
     /**
      * Retrieves the stored hardware hash from the system_info table.
@@ -52,6 +62,201 @@ public class SystemInfoService {
         }
     }
 
+    /**
+     * Retrieves an application setting from the system_info table.
+     * @param key The setting key.
+     * @return The stored value, or null if not set.
+     */
+    public String getSetting(String key) {
+        try {
+            return readSetting(key);
+        } catch (SQLException e) {
+            ErrorLogger.log(e, "Failed to retrieve setting: " + key);
+            return null;
+        }
+    }
+
+    /**
+     * Retrieves an application setting, telling a missing setting apart from a failed read.
+     * @return The stored value, or null if not set.
+     * @throws SQLException if the setting could not be read.
+     */
+    public String readSetting(String key) throws SQLException {
+        String sql = "SELECT value FROM system_info WHERE key = ?";
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, key);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getString("value") : null;
+            }
+        }
+    }
+
+    /**
+     * Stores a setting only if it is not set yet, e.g. a generated key that must never be replaced.
+     * @return The value now stored: the given one, or the one that was already there.
+     * @throws SQLException if the setting could not be stored or read back.
+     */
+    public String saveSettingIfAbsent(String key, String value) throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            try (PreparedStatement pstmt = conn.prepareStatement("INSERT OR IGNORE INTO system_info (key, value) VALUES (?, ?)")) {
+                pstmt.setString(1, key);
+                pstmt.setString(2, value);
+                pstmt.executeUpdate();
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement("SELECT value FROM system_info WHERE key = ?")) {
+                pstmt.setString(1, key);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (!rs.next()) {
+                        throw new SQLException("Setting not stored: " + key);
+                    }
+                    return rs.getString("value");
+                }
+            }
+        }
+    }
+
+    /**
+     * Stores an application setting in the system_info table.
+     * @return true if successful, false otherwise.
+     */
+    public boolean saveSetting(String key, String value) {
+        String sql = "INSERT OR REPLACE INTO system_info (key, value) VALUES (?, ?)";
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, key);
+            pstmt.setString(2, value);
+            return pstmt.executeUpdate() > 0;
+        } catch (SQLException e) {
+            ErrorLogger.log(e, "Failed to store setting: " + key);
+            return false;
+        }
+    }
+
+    /**
+     * Retrieves the QR error correction level for newly generated codes.
+     * @return The stored level, or H (the original default) if not set.
+     */
+    public ErrorCorrectionLevel getQrErrorCorrectionLevel() {
+        String stored = getSetting(QR_ERROR_CORRECTION_KEY);
+        try {
+            return stored != null ? ErrorCorrectionLevel.valueOf(stored) : ErrorCorrectionLevel.H;
+        } catch (IllegalArgumentException e) {
+            return ErrorCorrectionLevel.H;
+        }
+    }
+
+    /**
+     * Stores the QR error correction level and applies it to codes generated from now on.
+     * @return true if successful, false otherwise.
+     */
+    public boolean saveQrErrorCorrectionLevel(ErrorCorrectionLevel level) {
+        QRGenerator.setErrorCorrectionLevel(level);
+        return saveSetting(QR_ERROR_CORRECTION_KEY, level.name());
+    }
+
+    /**
+     * Retrieves the maximum number of people allowed on site (e.g. the fire-code limit).
+     * @return The stored capacity, or 0 if none is set.
+     */
+    public int getOccupancyCapacity() {
+        String stored = getSetting(OCCUPANCY_CAPACITY_KEY);
+        try {
+            return stored != null ? Math.max(0, Integer.parseInt(stored)) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Stores the occupancy capacity and applies it to the capacity alarm.
+     * @param capacity The limit, or 0 for none.
+     * @return true if successful, false otherwise.
+     */
+    public boolean saveOccupancyCapacity(int capacity) {
+        OccupancyTracker.getInstance().setCapacity(capacity);
+        return saveSetting(OCCUPANCY_CAPACITY_KEY, Integer.toString(capacity));
+    }
+
+    /**
+     * Retrieves the hour (0-23) at which reports are prepared overnight.
+     * @return The stored hour, or {@link OvernightReports#DEFAULT_HOUR} if not set.
+     */
+    public int getOvernightReportHour() {
+        String stored = getSetting(OVERNIGHT_REPORT_HOUR_KEY);
+        try {
+            int hour = stored != null ? Integer.parseInt(stored) : OvernightReports.DEFAULT_HOUR;
+            return hour >= 0 && hour < 24 ? hour : OvernightReports.DEFAULT_HOUR;
+        } catch (NumberFormatException e) {
+            return OvernightReports.DEFAULT_HOUR;
+        }
+    }
+
+    /**
+     * Stores the overnight report hour and reschedules the next run.
+     * @return true if successful, false otherwise.
+     */
+    public boolean saveOvernightReportHour(int hour) {
+        OvernightReports.getInstance().setHour(hour);
+        return saveSetting(OVERNIGHT_REPORT_HOUR_KEY, Integer.toString(hour));
+    }
+
+    /**
+     * @return true if the front-desk API should be started with the application.
+     */
+    public boolean isApiEnabled() {
+        return Boolean.parseBoolean(getSetting(API_ENABLED_KEY));
+    }
+
+    /**
+     * Stores whether the front-desk API is started with the application. Starting or
+     * stopping the running server is up to the caller, since opening the port may fail.
+     * @return true if successful, false otherwise.
+     */
+    public boolean saveApiEnabled(boolean enabled) {
+        return saveSetting(API_ENABLED_KEY, Boolean.toString(enabled));
+    }
+
+    /**
+     * Retrieves the port the front-desk API listens on.
+     * @return The stored port, or {@link FrontDeskApi#DEFAULT_PORT} if not set.
+     */
+    public int getApiPort() {
+        String stored = getSetting(API_PORT_KEY);
+        try {
+            int port = stored != null ? Integer.parseInt(stored) : FrontDeskApi.DEFAULT_PORT;
+            return port > 0 && port < 65536 ? port : FrontDeskApi.DEFAULT_PORT;
+        } catch (NumberFormatException e) {
+            return FrontDeskApi.DEFAULT_PORT;
+        }
+    }
+
+    /**
+     * Stores the front-desk API port, used from the next start of the server.
+     * @return true if successful, false otherwise.
+     */
+    public boolean saveApiPort(int port) {
+        return saveSetting(API_PORT_KEY, Integer.toString(port));
+    }
+
+    /**
+     * Retrieves the token terminals must send to use the front-desk API, generating a
+     * random one the first time.
+     */
+    public String getApiToken() {
+        String stored = getSetting(API_TOKEN_KEY);
+        if (stored != null && !stored.isEmpty()) {
+            return stored;
+        }
+        byte[] random = new byte[24];
+        new SecureRandom().nextBytes(random);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(random);
+        saveSetting(API_TOKEN_KEY, token);
+        return token;
+    }
+
     /**
      * Generates a pseudo-hardware ID hash.
      * NOTE: A real-world application would use platform-specific methods
@@ -0,0 +1,290 @@
+package com.gym.app.service;
+
+import java.io.ByteArrayOutputStream;
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.gym.app.db.DatabaseManager;
+import com.gym.app.model.Attendance;
+import com.gym.app.util.AttendanceColumns;
+import com.gym.app.util.HyperLogLog;
+
+/**
+ * Unique visitors for any period without {@code COUNT(DISTINCT member_id)} over attendance.
+ * <p>
+ * Each day with attendance has a {@link HyperLogLog} sketch of the members who came, and
+ * each month the merge of its days. A period's unique visitors are the merge of its whole
+ * months and at most two partial months of days, so the cost does not grow with the number
+ * of check-ins, and a year costs about as much as a week. Counts carry the sketch's error
+ * bound ({@link HyperLogLog#STANDARD_ERROR}, about 1.6%).
+ * <p>
+ * The day sketches are saved in the {@code visitor_sketches} table, compressed, a few
+ * seconds after they change. {@link #load()} reads them back and then folds in attendance
+ * recorded since; offering a visit twice changes nothing, so the overlap needs no care.
+ * Kept current by {@link AttendanceService#insertAttendance}; after anything else rewrites
+ * the database, such as a restore, call {@link #load()} again.
+ * Shared instance: one set of sketches per process.
+ */
+public class VisitorSketches {
+
+    private static final long FLUSH_DELAY_MILLIS = 5000;
+    // Check-ins saved concurrently may get IDs out of order; re-reading a few is free
+    private static final int CATCH_UP_OVERLAP = 1000;
+    private static final int FETCH_SIZE = 10_000;
+
+    private static final VisitorSketches INSTANCE = new VisitorSketches();
+
+    // All guarded by this
+    private final TreeMap<Long, HyperLogLog> days = new TreeMap<>(); // epoch day -> sketch
+    private final Map<YearMonth, HyperLogLog> months = new HashMap<>();
+    private final Set<Long> unsavedDays = new HashSet<>();
+    private long lastAttendanceId;
+    private ScheduledFuture<?> pendingFlush;
+
+    // Check-ins saved while load() runs are held back and folded in after it
+    private final List<Attendance> pending = new ArrayList<>(); // guarded by itself
+    private volatile boolean loaded;
+
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "visitor-sketch-writer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private VisitorSketches() {
+    }
+
+    public static VisitorSketches getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * (Re)loads the sketches from the database and folds in attendance recorded since they
+     * were last saved. The first load reads all attendance, so call it off the FX thread.
+     */
+    public void load() throws SQLException {
+        loaded = false;
+        synchronized (this) {
+            days.clear();
+            months.clear();
+            unsavedDays.clear();
+            lastAttendanceId = 0;
+            try (Connection conn = DatabaseManager.getConnection()) {
+                readSketches(conn);
+                catchUp(conn);
+            }
+            for (Map.Entry<Long, HyperLogLog> day : days.entrySet()) {
+                months.computeIfAbsent(YearMonth.from(LocalDate.ofEpochDay(day.getKey())), m -> new HyperLogLog())
+                        .merge(day.getValue());
+            }
+        }
+        synchronized (pending) {
+            for (Attendance attendance : pending) {
+                apply(attendance);
+            }
+            pending.clear();
+            loaded = true;
+        }
+        synchronized (this) {
+            scheduleFlush();
+        }
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Records a check-in that has just been saved. Never waits for a load in progress.
+     */
+    public void add(Attendance attendance) {
+        if (!loaded) {
+            synchronized (pending) {
+                if (!loaded) {
+                    pending.add(attendance);
+                    return;
+                }
+            }
+        }
+        apply(attendance);
+    }
+
+    /**
+     * Estimated number of distinct members who came from {@code from} to {@code to}, both
+     * inclusive; within {@link HyperLogLog#STANDARD_ERROR} of the exact count.
+     */
+    public synchronized long getUniqueVisitors(LocalDate from, LocalDate to) {
+        HyperLogLog merged = new HyperLogLog();
+        LocalDate day = from;
+        while (!day.isAfter(to)) {
+            YearMonth month = YearMonth.from(day);
+            if (day.getDayOfMonth() == 1 && !month.atEndOfMonth().isAfter(to)) {
+                HyperLogLog sketch = months.get(month);
+                if (sketch != null) {
+                    merged.merge(sketch);
+                }
+                day = month.plusMonths(1).atDay(1);
+            } else {
+                HyperLogLog sketch = days.get(day.toEpochDay());
+                if (sketch != null) {
+                    merged.merge(sketch);
+                }
+                day = day.plusDays(1);
+            }
+        }
+        return merged.estimate();
+    }
+
+    /**
+     * Saves the sketches changed since the last save. Runs a few seconds after a change;
+     * call it directly before exiting.
+     */
+    public void flush() {
+        // Copied under the lock, written without it, so check-ins never wait for the disk
+        Map<Long, byte[]> batch = new HashMap<>();
+        long savedThrough;
+        synchronized (this) {
+            if (!loaded) {
+                return;
+            }
+            for (long epochDay : unsavedDays) {
+                batch.put(epochDay, days.get(epochDay).toBytes());
+            }
+            unsavedDays.clear();
+            savedThrough = lastAttendanceId;
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        String sql = "INSERT OR REPLACE INTO visitor_sketches (day, registers, last_attendance_id) VALUES (?, ?, ?)";
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            conn.setAutoCommit(false);
+            for (Map.Entry<Long, byte[]> day : batch.entrySet()) {
+                pstmt.setDate(1, Date.valueOf(LocalDate.ofEpochDay(day.getKey())));
+                pstmt.setBytes(2, compress(day.getValue()));
+                pstmt.setLong(3, savedThrough);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+            conn.commit();
+        } catch (SQLException e) {
+            // Retried with the next change; a restart folds the attendance in again anyway
+            System.err.println("Could not save visitor sketches: " + e.getMessage());
+            synchronized (this) {
+                unsavedDays.addAll(batch.keySet());
+            }
+        }
+    }
+
+    private synchronized void apply(Attendance attendance) {
+        LocalDate day = attendance.getTimestamp().toLocalDate();
+        if (offer(day.toEpochDay(), attendance.getMemberId(), attendance.getAttendanceId())) {
+            months.computeIfAbsent(YearMonth.from(day), m -> new HyperLogLog()).offer(attendance.getMemberId());
+            scheduleFlush();
+        }
+    }
+
+    private boolean offer(long epochDay, int memberId, long attendanceId) {
+        lastAttendanceId = Math.max(lastAttendanceId, attendanceId);
+        if (days.computeIfAbsent(epochDay, d -> new HyperLogLog()).offer(memberId)) {
+            unsavedDays.add(epochDay);
+            return true;
+        }
+        return false;
+    }
+
+    private void readSketches(Connection conn) throws SQLException {
+        String sql = "SELECT day, registers, last_attendance_id FROM visitor_sketches";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
+
+            boolean damaged = false;
+            while (rs.next()) {
+                try {
+                    long epochDay = rs.getDate("day").toLocalDate().toEpochDay();
+                    days.put(epochDay, HyperLogLog.fromBytes(decompress(rs.getBytes("registers"))));
+                    lastAttendanceId = Math.max(lastAttendanceId, rs.getLong("last_attendance_id"));
+                } catch (DataFormatException | IllegalArgumentException e) {
+                    System.err.println("Ignoring unreadable visitor sketch: " + e.getMessage());
+                    damaged = true;
+                }
+            }
+            if (damaged) {
+                lastAttendanceId = 0; // all attendance is folded in again, rebuilding the lost days
+            }
+        }
+    }
+
+    private void catchUp(Connection conn) throws SQLException {
+        String sql = "SELECT attendance_id, member_id, timestamp FROM attendance WHERE attendance_id > ? ORDER BY attendance_id";
+        long after = Math.max(0, lastAttendanceId - CATCH_UP_OVERLAP);
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setLong(1, after);
+            pstmt.setFetchSize(FETCH_SIZE);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    int minute = AttendanceColumns.parseMinute(rs.getString(3));
+                    offer(Math.floorDiv(minute, AttendanceColumns.MINUTES_PER_DAY), rs.getInt(2), rs.getLong(1));
+                }
+            }
+        }
+    }
+
+    // Called with the lock held; one save for a burst of check-ins
+    private void scheduleFlush() {
+        if (!unsavedDays.isEmpty() && (pendingFlush == null || pendingFlush.isDone())) {
+            pendingFlush = writer.schedule(this::flush, FLUSH_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // A day's sketch is mostly empty registers: 4 KB compresses to a few hundred bytes
+    private static byte[] compress(byte[] registers) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        deflater.setInput(registers);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(512);
+        byte[] buffer = new byte[1024];
+        while (!deflater.finished()) {
+            out.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+        return out.toByteArray();
+    }
+
+    private static byte[] decompress(byte[] compressed) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        inflater.setInput(compressed);
+        byte[] registers = new byte[HyperLogLog.REGISTERS];
+        int length = 0;
+        while (!inflater.finished() && length < registers.length) {
+            int n = inflater.inflate(registers, length, registers.length - length);
+            if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                break;
+            }
+            length += n;
+        }
+        boolean complete = inflater.finished();
+        inflater.end();
+        if (!complete || length != registers.length) {
+            throw new DataFormatException("Truncated sketch");
+        }
+        return registers;
+    }
+}
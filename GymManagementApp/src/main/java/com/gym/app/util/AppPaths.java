@@ -17,14 +17,27 @@ public final class AppPaths {
     private static final String LOGS_DIR_NAME = "logs";
     private static final String QR_DIR_NAME = "qrcodes";
     private static final String REPORTS_DIR_NAME = "reports";
+    private static final String THUMBNAILS_DIR_NAME = "thumbnails";
+    private static final String PHOTOS_DIR_NAME = "photos";
+    private static final String INDEXES_DIR_NAME = "indexes";
+    private static final String BRANCHES_DIR_NAME = "branches";
 
     private static final String ERROR_LOG_FILE_NAME = "error_log.txt";
 
+    // Optional override (e.g. -Dgym.app.dataDir=/tmp/gym-bench) so benchmarks and
+    // replay runs never touch the real front-desk database.
+    private static final String DATA_DIR_PROPERTY = "gym.app.dataDir";
+
     private AppPaths() {
         // Utility class
     }
 
     public static Path getAppDataDir() {
+        String overrideDir = System.getProperty(DATA_DIR_PROPERTY);
+        if (overrideDir != null && !overrideDir.isBlank()) {
+            return Paths.get(overrideDir);
+        }
+
         String osName = System.getProperty("os.name", "").toLowerCase();
         String userHome = System.getProperty("user.home", ".");
 
@@ -77,6 +90,34 @@ public final class AppPaths {
         return dir;
     }
 
+    public static Path getPhotosDir() {
+        Path dir = getAppDataDir().resolve(PHOTOS_DIR_NAME);
+        ensureDirectoryExists(dir);
+        return dir;
+    }
+
+    public static Path getThumbnailsDir() {
+        Path dir = getAppDataDir().resolve(THUMBNAILS_DIR_NAME);
+        ensureDirectoryExists(dir);
+        return dir;
+    }
+
+    public static Path getIndexesDir() {
+        Path dir = getAppDataDir().resolve(INDEXES_DIR_NAME);
+        ensureDirectoryExists(dir);
+        return dir;
+    }
+
+    /**
+     * Folder holding other branches' databases for consolidated reports, one subfolder per
+     * branch (e.g. {@code branches/Downtown/gym.db}).
+     */
+    public static Path getBranchesDir() {
+        Path dir = getAppDataDir().resolve(BRANCHES_DIR_NAME);
+        ensureDirectoryExists(dir);
+        return dir;
+    }
+
     public static Path getLegacyDatabasePathInWorkingDir() {
         return Paths.get(LEGACY_DB_FILE_NAME).toAbsolutePath().normalize();
     }
@@ -0,0 +1,221 @@
+package com.gym.app.util;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Attendance held as two primitive columns, member ID and minute, for fast scans.
+ * <p>
+ * Rows are appended in time order (older rows may still arrive late) and sealed into
+ * immutable blocks of {@value #BLOCK_ROWS}. Each block is sorted by minute when it is
+ * sealed, so a late row does not cost a large backwards delta. In a block, member IDs are a
+ * plain {@code int[]} and minutes are delta-encoded as varints: check-ins come minutes
+ * apart, so most minutes take one byte instead of four. Each block also keeps its lowest
+ * and highest minute, so scans over a date range skip whole blocks. Row order within a
+ * block is therefore not insertion order; the scans only aggregate, so that does not matter.
+ * <p>
+ * Minutes are local wall-clock minutes since 1970-01-01T00:00 ({@link #toMinute}), which
+ * makes day and hour arithmetic plain integer division. Not thread-safe; the owner
+ * synchronizes appends and takes {@link #snapshot()}s for readers.
+ */
+public class AttendanceColumns {
+
+    public static final int BLOCK_ROWS = 4096;
+    public static final int MINUTES_PER_DAY = 24 * 60;
+
+    /**
+     * An immutable run of rows. Safe to scan from any number of threads.
+     */
+    public static final class Block {
+        private final int rowCount;
+        private final int firstMinute;
+        private final int minMinute;
+        private final int maxMinute;
+        private final byte[] minuteDeltas;
+        private final int[] memberIds;
+
+        private Block(int[] minutes, int[] memberIds, int rowCount) {
+            // Sort the rows by minute, keeping each member ID with its minute
+            long[] rows = new long[rowCount];
+            for (int i = 0; i < rowCount; i++) {
+                rows[i] = ((long) minutes[i] << 32) | (memberIds[i] & 0xFFFFFFFFL);
+            }
+            Arrays.sort(rows);
+
+            this.rowCount = rowCount;
+            this.memberIds = new int[rowCount];
+            byte[] buffer = new byte[rowCount * 5];
+            int length = 0;
+            int previous = (int) (rows[0] >> 32);
+            for (int i = 0; i < rowCount; i++) {
+                int minute = (int) (rows[i] >> 32);
+                this.memberIds[i] = (int) rows[i];
+                if (i > 0) {
+                    // Sorted, so deltas are never negative
+                    int delta = minute - previous;
+                    while ((delta & ~0x7F) != 0) {
+                        buffer[length++] = (byte) ((delta & 0x7F) | 0x80);
+                        delta >>>= 7;
+                    }
+                    buffer[length++] = (byte) delta;
+                }
+                previous = minute;
+            }
+            this.firstMinute = (int) (rows[0] >> 32);
+            this.minMinute = firstMinute;
+            this.maxMinute = previous;
+            this.minuteDeltas = Arrays.copyOf(buffer, length);
+        }
+
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        public int getMinMinute() {
+            return minMinute;
+        }
+
+        public int getMaxMinute() {
+            return maxMinute;
+        }
+
+        /**
+         * @return True if some row may fall in [from, to).
+         */
+        public boolean overlaps(int fromMinute, int toMinute) {
+            return maxMinute >= fromMinute && minMinute < toMinute;
+        }
+
+        /**
+         * Decodes the minute column.
+         * @param out At least {@link #getRowCount()} long; reused by callers as scratch space.
+         */
+        public void decodeMinutes(int[] out) {
+            int minute = firstMinute;
+            out[0] = minute;
+            int position = 0;
+            for (int i = 1; i < rowCount; i++) {
+                int delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = minuteDeltas[position++];
+                    delta |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                minute += delta;
+                out[i] = minute;
+            }
+        }
+
+        /**
+         * @return The member ID column; callers must not modify it.
+         */
+        public int[] memberIds() {
+            return memberIds;
+        }
+
+        long encodedBytes() {
+            return minuteDeltas.length + memberIds.length * 4L;
+        }
+    }
+
+    private final List<Block> sealed = new ArrayList<>();
+    private final int[] tailMinutes = new int[BLOCK_ROWS];
+    private final int[] tailMemberIds = new int[BLOCK_ROWS];
+    private int tailCount;
+    private long rowCount;
+    private int maxMemberId;
+
+    public void append(int memberId, int minute) {
+        tailMinutes[tailCount] = minute;
+        tailMemberIds[tailCount] = memberId;
+        tailCount++;
+        rowCount++;
+        maxMemberId = Math.max(maxMemberId, memberId);
+        if (tailCount == BLOCK_ROWS) {
+            sealed.add(new Block(tailMinutes, tailMemberIds, tailCount));
+            tailCount = 0;
+        }
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public int getMaxMemberId() {
+        return maxMemberId;
+    }
+
+    /**
+     * @return Every row as immutable blocks; the unsealed tail is encoded into a block of its own.
+     */
+    public List<Block> snapshot() {
+        List<Block> blocks = new ArrayList<>(sealed.size() + 1);
+        blocks.addAll(sealed);
+        if (tailCount > 0) {
+            blocks.add(new Block(tailMinutes, tailMemberIds, tailCount));
+        }
+        return blocks;
+    }
+
+    /**
+     * @return Bytes used by the encoded columns (sealed blocks only).
+     */
+    public long getEncodedBytes() {
+        long bytes = 0;
+        for (Block block : sealed) {
+            bytes += block.encodedBytes();
+        }
+        return bytes;
+    }
+
+    public static int toMinute(LocalDateTime time) {
+        return (int) (time.toEpochSecond(ZoneOffset.UTC) / 60);
+    }
+
+    /**
+     * Parses a stored attendance timestamp ({@code LocalDateTime.toString()} format) without
+     * creating objects, falling back to {@link LocalDateTime#parse} for anything unusual.
+     */
+    public static int parseMinute(String timestamp) {
+        if (timestamp.length() >= 16 && timestamp.charAt(4) == '-' && timestamp.charAt(7) == '-'
+                && timestamp.charAt(10) == 'T' && timestamp.charAt(13) == ':') {
+            int year = digits(timestamp, 0, 4);
+            int month = digits(timestamp, 5, 2);
+            int day = digits(timestamp, 8, 2);
+            int hour = digits(timestamp, 11, 2);
+            int minute = digits(timestamp, 14, 2);
+            if (year >= 0 && month >= 1 && month <= 12 && day >= 1 && hour >= 0 && minute >= 0) {
+                return (int) (daysFromCivil(year, month, day) * MINUTES_PER_DAY + hour * 60 + minute);
+            }
+        }
+        return toMinute(LocalDateTime.parse(timestamp));
+    }
+
+    // -1 if any character is not a digit
+    private static int digits(String s, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            int d = s.charAt(i) - '0';
+            if (d < 0 || d > 9) {
+                return -1;
+            }
+            value = value * 10 + d;
+        }
+        return value;
+    }
+
+    // Days since 1970-01-01 of a proleptic Gregorian date (H. Hinnant's days_from_civil)
+    private static long daysFromCivil(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+}
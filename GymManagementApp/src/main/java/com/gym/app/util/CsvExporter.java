@@ -0,0 +1,443 @@
+package com.gym.app.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.*;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.TimeZone;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import com.gym.app.db.DatabaseManager;
+
+/**
+ * Flat CSV dumps of whole tables for BI tools.
+ * <p>
+ * The table is split into primary-key ranges of {@value #CHUNK_IDS} IDs. Ranges are read
+ * on their own connection and encoded in parallel on a fork-join pool, each into one of a
+ * fixed set of reusable byte buffers, with numbers and dates formatted by hand rather than
+ * through {@code String.format}. The main thread writes the chunks in key order through a
+ * {@link FileChannel} and hands each buffer back for the next range, so at most a few
+ * chunks are in memory however large the table is.
+ * <p>
+ * With gzip on, every chunk is compressed on its worker as a separate gzip member; the
+ * members are simply concatenated, which {@code gunzip} and {@code GZIPInputStream} read
+ * as one file. Output is UTF-8, comma-separated with a header row (RFC 4180 quoting),
+ * dates as {@code yyyy-MM-dd} and amounts with two decimals.
+ */
+public class CsvExporter {
+
+    public enum Table {
+        PAYMENTS("payments", "payment_id", new Column[] {
+                new Column("payment_id", Kind.INTEGER), new Column("member_id", Kind.INTEGER),
+                new Column("amount", Kind.AMOUNT), new Column("payment_date", Kind.DATE),
+                new Column("period_months", Kind.INTEGER)}),
+        ATTENDANCE("attendance", "attendance_id", new Column[] {
+                new Column("attendance_id", Kind.INTEGER), new Column("member_id", Kind.INTEGER),
+                new Column("timestamp", Kind.TIMESTAMP)}),
+        MEMBERS("members", "member_id", new Column[] {
+                new Column("member_id", Kind.INTEGER), new Column("full_name", Kind.TEXT),
+                new Column("phone", Kind.TEXT), new Column("join_date", Kind.DATE),
+                new Column("expiry_date", Kind.DATE), new Column("qr_code_value", Kind.TEXT),
+                new Column("photo_path", Kind.TEXT), new Column("notes", Kind.TEXT)});
+
+        private final String table;
+        private final String keyColumn;
+        private final Column[] columns;
+
+        Table(String table, String keyColumn, Column[] columns) {
+            this.table = table;
+            this.keyColumn = keyColumn;
+            this.columns = columns;
+        }
+
+        public String getTableName() {
+            return table;
+        }
+    }
+
+    private enum Kind { INTEGER, AMOUNT, DATE, TIMESTAMP, TEXT }
+
+    private record Column(String name, Kind kind) { }
+
+    private static final int CHUNK_IDS = 50_000;
+    private static final int INITIAL_BUFFER_BYTES = 2 * 1024 * 1024;
+    private static final int FETCH_SIZE = 1000;
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    private final int threads;
+
+    public CsvExporter() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public CsvExporter(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Writes a whole table to a CSV file, replacing it.
+     * @param gzip Compress the output (use a {@code .csv.gz} name).
+     * @param progress Told the number of rows written after each chunk; the export stops
+     *                 with an {@link InterruptedIOException} if the thread is interrupted.
+     * @return The number of rows written.
+     */
+    public long export(Table table, Path target, boolean gzip, ReportExporter.ExportProgress progress)
+            throws IOException, SQLException {
+        long[] keyRange = keyRange(table);
+        long chunks = keyRange[1] < keyRange[0] ? 0 : (keyRange[1] - keyRange[0]) / CHUNK_IDS + 1;
+
+        Path parent = target.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        // Two buffers per worker: one being encoded while the other waits to be written
+        int bufferCount = threads * 2;
+        BlockingQueue<ChunkBuffer> freeBuffers = new ArrayBlockingQueue<>(bufferCount);
+        for (int i = 0; i < bufferCount; i++) {
+            freeBuffers.add(new ChunkBuffer());
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        Deque<Future<ChunkBuffer>> inFlight = new ArrayDeque<>();
+        long rows = 0;
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+            ChunkBuffer header = freeBuffers.remove();
+            header.raw.reset();
+            for (int i = 0; i < table.columns.length; i++) {
+                header.raw.text(table.columns[i].name()).put((byte) (i < table.columns.length - 1 ? ',' : '\n'));
+            }
+            write(channel, gzip ? header.gzipped() : header.raw);
+            freeBuffers.add(header);
+
+            long nextChunk = 0;
+            while (nextChunk < chunks || !inFlight.isEmpty()) {
+                // Keep every buffer busy, then write the oldest chunk to free one up
+                while (nextChunk < chunks && inFlight.size() < bufferCount) {
+                    long from = keyRange[0] + nextChunk * CHUNK_IDS;
+                    long to = Math.min(keyRange[1], from + CHUNK_IDS - 1);
+                    ChunkBuffer buffer = freeBuffers.remove();
+                    inFlight.addLast(pool.submit(() -> encodeChunk(table, from, to, gzip, buffer)));
+                    nextChunk++;
+                }
+                ChunkBuffer done = await(inFlight.removeFirst());
+                write(channel, gzip ? done.compressed : done.raw);
+                rows += done.rows;
+                freeBuffers.add(done);
+
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("CSV export cancelled after " + rows + " rows");
+                }
+                progress.rowsWritten(rows);
+            }
+        } finally {
+            pool.shutdownNow();
+            // Deflaters hold native memory; buffers still in use by a cancelled task are left to the GC
+            freeBuffers.forEach(buffer -> buffer.deflater.end());
+        }
+        System.out.println(table.table + " exported to CSV: " + target + " (" + rows + " rows)");
+        return rows;
+    }
+
+    private static long[] keyRange(Table table) throws SQLException {
+        String sql = "SELECT MIN(" + table.keyColumn + "), MAX(" + table.keyColumn + ") FROM " + table.table;
+        try (Connection conn = DatabaseManager.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+
+            rs.next();
+            long min = rs.getLong(1);
+            if (rs.wasNull()) {
+                return new long[] {1, 0}; // empty table
+            }
+            return new long[] {min, rs.getLong(2)};
+        }
+    }
+
+    private static ChunkBuffer encodeChunk(Table table, long from, long to, boolean gzip, ChunkBuffer buffer)
+            throws SQLException {
+        ByteSink out = buffer.raw;
+        out.reset();
+        buffer.rows = 0;
+
+        StringBuilder sql = new StringBuilder("SELECT ");
+        for (int i = 0; i < table.columns.length; i++) {
+            sql.append(i == 0 ? "" : ", ").append(table.columns[i].name());
+        }
+        sql.append(" FROM ").append(table.table).append(" WHERE ").append(table.keyColumn)
+                .append(" BETWEEN ? AND ? ORDER BY ").append(table.keyColumn);
+
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+
+            pstmt.setLong(1, from);
+            pstmt.setLong(2, to);
+            pstmt.setFetchSize(FETCH_SIZE);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                Column[] columns = table.columns;
+                while (rs.next()) {
+                    for (int i = 0; i < columns.length; i++) {
+                        if (i > 0) {
+                            out.put((byte) ',');
+                        }
+                        encodeValue(out, rs, i + 1, columns[i].kind());
+                    }
+                    out.put((byte) '\n');
+                    buffer.rows++;
+                }
+            }
+        }
+        if (gzip) {
+            buffer.gzipped();
+        }
+        return buffer;
+    }
+
+    private static void encodeValue(ByteSink out, ResultSet rs, int index, Kind kind) throws SQLException {
+        switch (kind) {
+            case INTEGER -> {
+                long value = rs.getLong(index);
+                if (!rs.wasNull()) {
+                    out.number(value);
+                }
+            }
+            case AMOUNT -> {
+                double value = rs.getDouble(index);
+                if (!rs.wasNull()) {
+                    out.cents(Math.round(value * 100));
+                }
+            }
+            case DATE, TIMESTAMP -> {
+                // setDate() stores epoch millis; older rows and attendance hold ISO text
+                Object value = rs.getObject(index);
+                if (value instanceof Number millis) {
+                    out.dateTime(millis.longValue(), kind == Kind.TIMESTAMP);
+                } else if (value != null) {
+                    String text = value.toString();
+                    out.text(text);
+                    // LocalDateTime.toString() drops ":00" seconds; keep the column one width
+                    if (kind == Kind.TIMESTAMP && text.length() == 16 && text.charAt(10) == 'T') {
+                        out.put((byte) ':').digits(0, 2);
+                    }
+                }
+            }
+            case TEXT -> {
+                String value = rs.getString(index);
+                if (value != null) {
+                    out.text(value);
+                }
+            }
+        }
+    }
+
+    private static void write(FileChannel channel, ByteSink sink) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(sink.bytes, 0, sink.length);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static ChunkBuffer await(Future<ChunkBuffer> chunk) throws IOException, SQLException {
+        try {
+            return chunk.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("CSV export interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException sqlException) {
+                throw sqlException;
+            }
+            throw new IOException("Failed to encode CSV chunk", e.getCause());
+        }
+    }
+
+    // Raw and compressed bytes of one chunk, plus the deflater reused for every member
+    private static final class ChunkBuffer {
+        final ByteSink raw = new ByteSink(INITIAL_BUFFER_BYTES);
+        final ByteSink compressed = new ByteSink(INITIAL_BUFFER_BYTES / 4);
+        final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        final CRC32 crc = new CRC32();
+        int rows;
+
+        // One complete gzip member (RFC 1952): header, raw deflate data, CRC-32 and size
+        ByteSink gzipped() {
+            compressed.reset();
+            compressed.put((byte) 0x1f).put((byte) 0x8b).put((byte) 8).put((byte) 0)
+                    .put((byte) 0).put((byte) 0).put((byte) 0).put((byte) 0).put((byte) 0).put((byte) 0xff);
+            deflater.reset();
+            deflater.setInput(raw.bytes, 0, raw.length);
+            deflater.finish();
+            while (!deflater.finished()) {
+                compressed.ensure(64 * 1024);
+                compressed.length += deflater.deflate(compressed.bytes, compressed.length,
+                        compressed.bytes.length - compressed.length);
+            }
+            crc.reset();
+            crc.update(raw.bytes, 0, raw.length);
+            compressed.littleEndian((int) crc.getValue()).littleEndian(raw.length);
+            return compressed;
+        }
+    }
+
+    /**
+     * Growable byte array with the encoders used for CSV fields.
+     */
+    private static final class ByteSink {
+        byte[] bytes;
+        int length;
+
+        ByteSink(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        void reset() {
+            length = 0;
+        }
+
+        void ensure(int extra) {
+            if (length + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+            }
+        }
+
+        ByteSink put(byte b) {
+            ensure(1);
+            bytes[length++] = b;
+            return this;
+        }
+
+        ByteSink littleEndian(int value) {
+            ensure(4);
+            for (int i = 0; i < 4; i++) {
+                bytes[length++] = (byte) (value >>> (8 * i));
+            }
+            return this;
+        }
+
+        void number(long value) {
+            if (value == Long.MIN_VALUE) {
+                text(Long.toString(value));
+                return;
+            }
+            ensure(20);
+            if (value < 0) {
+                bytes[length++] = '-';
+                value = -value;
+            }
+            int start = length;
+            do {
+                bytes[length++] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value != 0);
+            // Digits were written least significant first
+            for (int i = start, j = length - 1; i < j; i++, j--) {
+                byte b = bytes[i];
+                bytes[i] = bytes[j];
+                bytes[j] = b;
+            }
+        }
+
+        void cents(long cents) {
+            if (cents < 0) {
+                put((byte) '-');
+                cents = -cents;
+            }
+            number(cents / 100);
+            put((byte) '.');
+            digits(cents % 100, 2);
+        }
+
+        void digits(long value, int width) {
+            ensure(width);
+            for (int i = width - 1; i >= 0; i--) {
+                bytes[length + i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            length += width;
+        }
+
+        // Local date (and time) of an epoch-millis value, as JDBC wrote it
+        void dateTime(long millis, boolean withTime) {
+            long local = millis + TimeZone.getDefault().getOffset(millis);
+            long days = Math.floorDiv(local, MILLIS_PER_DAY);
+            long millisOfDay = Math.floorMod(local, MILLIS_PER_DAY);
+
+            // Days since 1970-01-01 to civil year/month/day (proleptic Gregorian)
+            long z = days + 719_468;
+            long era = Math.floorDiv(z, 146_097);
+            long dayOfEra = z - era * 146_097;
+            long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+            long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+            long mp = (5 * dayOfYear + 2) / 153;
+            long day = dayOfYear - (153 * mp + 2) / 5 + 1;
+            long month = mp < 10 ? mp + 3 : mp - 9;
+            long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+            digits(year, 4);
+            put((byte) '-');
+            digits(month, 2);
+            put((byte) '-');
+            digits(day, 2);
+            if (withTime) {
+                long seconds = millisOfDay / 1000;
+                put((byte) 'T');
+                digits(seconds / 3600, 2);
+                put((byte) ':');
+                digits(seconds / 60 % 60, 2);
+                put((byte) ':');
+                digits(seconds % 60, 2);
+            }
+        }
+
+        // Quoted only when needed; ASCII is copied directly, anything else is UTF-8 encoded
+        ByteSink text(String value) {
+            boolean quote = false;
+            boolean ascii = true;
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                    quote = true;
+                } else if (c >= 0x80) {
+                    ascii = false;
+                }
+            }
+            if (quote) {
+                put((byte) '"');
+            }
+            if (ascii) {
+                ensure(value.length() * 2);
+                for (int i = 0; i < value.length(); i++) {
+                    char c = value.charAt(i);
+                    if (c == '"') {
+                        bytes[length++] = '"';
+                    }
+                    bytes[length++] = (byte) c;
+                }
+            } else {
+                byte[] utf8 = (quote ? value.replace("\"", "\"\"") : value).getBytes(StandardCharsets.UTF_8);
+                ensure(utf8.length);
+                System.arraycopy(utf8, 0, bytes, length, utf8.length);
+                length += utf8.length;
+            }
+            if (quote) {
+                put((byte) '"');
+            }
+            return this;
+        }
+    }
+}
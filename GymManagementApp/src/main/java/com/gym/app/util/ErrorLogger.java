@@ -7,6 +7,7 @@ import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
+import javafx.application.Platform;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Alert.AlertType;
 import javafx.scene.control.Label;
@@ -44,7 +45,17 @@ public class ErrorLogger {
         System.err.println("-------------------------");
 
         // 3. Show friendly popup for the user
-        showErrorPopup(e, userMessage);
+        // Errors may be raised from the camera thread or from headless tools (benchmarks),
+        // so the popup is always shown on the FX thread and skipped when no toolkit is running.
+        if (Platform.isFxApplicationThread()) {
+            showErrorPopup(e, userMessage);
+        } else {
+            try {
+                Platform.runLater(() -> showErrorPopup(e, userMessage));
+            } catch (IllegalStateException toolkitNotRunning) {
+                // Headless run: file and console logging above is enough.
+            }
+        }
     }
 
     private static void showErrorPopup(Throwable e, String userMessage) {
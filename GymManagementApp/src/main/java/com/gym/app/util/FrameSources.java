@@ -0,0 +1,88 @@
+package com.gym.app.util;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.bytedeco.javacv.FFmpegFrameGrabber;
+import org.bytedeco.javacv.FrameGrabber;
+import org.bytedeco.javacv.OpenCVFrameGrabber;
+import org.bytedeco.javacv.VideoInputFrameGrabber;
+
+/**
+ * Factory for the frame sources the check-in pipeline can read from.
+ * <p>
+ * Sources are described by a short spec so they can be chosen with
+ * {@code -Dgym.checkin.source=...} without touching the UI:
+ * <ul>
+ *     <li>{@code camera:0} - live camera by index (default)</li>
+ *     <li>{@code video:/path/to/clip.avi} - recorded video file, decoded with FFmpeg</li>
+ *     <li>{@code images:/path/to/dir} - directory of still images, replayed in name order</li>
+ * </ul>
+ */
+public final class FrameSources {
+
+    public static final String SOURCE_PROPERTY = "gym.checkin.source";
+    public static final String DEFAULT_SOURCE = "camera:0";
+
+    private FrameSources() {
+        // Utility class
+    }
+
+    /**
+     * Live camera. VideoInput is only available on Windows; other platforms go through OpenCV.
+     */
+    public static FrameGrabber camera(int index) {
+        String osName = System.getProperty("os.name", "").toLowerCase();
+        if (osName.contains("win")) {
+            return new VideoInputFrameGrabber(index);
+        }
+        return new OpenCVFrameGrabber(index);
+    }
+
+    /**
+     * Recorded video file (any container/codec FFmpeg can read).
+     */
+    public static FrameGrabber videoFile(Path file) {
+        return new FFmpegFrameGrabber(file.toFile());
+    }
+
+    /**
+     * Directory of still images replayed as frames.
+     */
+    public static FrameGrabber imageDirectory(Path directory, boolean loop) {
+        return new ImageDirectoryFrameGrabber(directory, loop);
+    }
+
+    /**
+     * The source configured through the {@value #SOURCE_PROPERTY} system property, or the default camera.
+     */
+    public static FrameGrabber configuredSource() {
+        return fromSpec(System.getProperty(SOURCE_PROPERTY, DEFAULT_SOURCE));
+    }
+
+    public static boolean isCameraSpec(String spec) {
+        return spec == null || spec.isBlank() || spec.startsWith("camera:");
+    }
+
+    /**
+     * Creates a frame source from a spec such as {@code camera:1}, {@code video:clip.avi} or {@code images:frames/}.
+     * @throws IllegalArgumentException if the spec is not one of these forms.
+     */
+    public static FrameGrabber fromSpec(String spec) {
+        if (isCameraSpec(spec)) {
+            String index = spec == null || spec.isBlank() ? "0" : spec.substring("camera:".length()).trim();
+            if (!index.matches("\\d{1,3}")) {
+                throw new IllegalArgumentException("Invalid camera index in frame source: " + spec + " (expected camera:N)");
+            }
+            return camera(Integer.parseInt(index));
+        }
+        if (spec.startsWith("video:")) {
+            return videoFile(Paths.get(spec.substring("video:".length())));
+        }
+        if (spec.startsWith("images:")) {
+            // Replayed directories loop so the live view keeps running like a camera would.
+            return imageDirectory(Paths.get(spec.substring("images:".length())), true);
+        }
+        throw new IllegalArgumentException("Unknown frame source: " + spec + " (expected camera:N, video:FILE or images:DIR)");
+    }
+}
@@ -0,0 +1,105 @@
+package com.gym.app.util;
+
+/**
+ * A HyperLogLog sketch: estimates how many distinct member IDs were offered to it, in a
+ * fixed {@value #REGISTERS} bytes however many there were.
+ * <p>
+ * Sketches are mergeable: merging the sketches of several days gives exactly the sketch of
+ * all their visits together, so unique visitors of any period are a few merges away.
+ * Offering an ID twice changes nothing, so replaying visits is harmless.
+ * <p>
+ * Error bound: the standard error is 1.04 / sqrt({@value #REGISTERS}), about 1.6%, so about
+ * 95% of estimates are within 3.2% of the true count and 99.7% within 5%. Below
+ * 2.5 x {@value #REGISTERS} distinct IDs the estimate switches to linear counting, which is
+ * about as accurate there and closer still for a few hundred IDs. Not thread-safe.
+ */
+public final class HyperLogLog {
+
+    public static final int PRECISION = 12;
+    public static final int REGISTERS = 1 << PRECISION;
+    public static final double STANDARD_ERROR = 1.04 / Math.sqrt(REGISTERS);
+
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTERS);
+
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this(new byte[REGISTERS]);
+    }
+
+    private HyperLogLog(byte[] registers) {
+        this.registers = registers;
+    }
+
+    /**
+     * @return True if the sketch changed (the ID may still have been seen before).
+     */
+    public boolean offer(int memberId) {
+        long hash = mix(memberId);
+        int index = (int) (hash >>> (64 - PRECISION));
+        // Position of the first 1 bit in the remaining bits; the guard bit caps it at 64 - PRECISION + 1
+        int rank = Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Adds everything {@code other} has seen to this sketch.
+     */
+    public void merge(HyperLogLog other) {
+        byte[] theirs = other.registers;
+        for (int i = 0; i < REGISTERS; i++) {
+            if (theirs[i] > registers[i]) {
+                registers[i] = theirs[i];
+            }
+        }
+    }
+
+    /**
+     * @return Estimated number of distinct IDs offered, within {@link #STANDARD_ERROR}.
+     */
+    public long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = ALPHA * REGISTERS * REGISTERS / sum;
+        if (estimate <= 2.5 * REGISTERS && zeros > 0) {
+            estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    public HyperLogLog copy() {
+        return new HyperLogLog(registers.clone());
+    }
+
+    public byte[] toBytes() {
+        return registers.clone();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the bytes are not a sketch of this precision.
+     */
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        if (bytes.length != REGISTERS) {
+            throw new IllegalArgumentException("Expected " + REGISTERS + " registers, got " + bytes.length);
+        }
+        return new HyperLogLog(bytes.clone());
+    }
+
+    // SplitMix64 finalizer: consecutive member IDs land in unrelated registers
+    private static long mix(long z) {
+        z += 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,101 @@
+package com.gym.app.util;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+
+import org.bytedeco.javacv.Frame;
+import org.bytedeco.javacv.FrameGrabber;
+import org.bytedeco.javacv.Java2DFrameConverter;
+
+/**
+ * Replays a directory of still images (PNG/JPEG/BMP, in file-name order) as if they
+ * were camera frames. Used to reproduce check-in problems without a physical camera.
+ */
+public class ImageDirectoryFrameGrabber extends FrameGrabber {
+
+    private final Path directory;
+    private final boolean loop;
+    private final Java2DFrameConverter converter = new Java2DFrameConverter();
+    private List<Path> images = List.of();
+    private int nextIndex;
+
+    public ImageDirectoryFrameGrabber(Path directory, boolean loop) {
+        this.directory = directory;
+        this.loop = loop;
+    }
+
+    @Override
+    public void start() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            images = files.filter(ImageDirectoryFrameGrabber::isImageFile)
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new Exception("Cannot list image directory: " + directory, e);
+        }
+        if (images.isEmpty()) {
+            throw new Exception("No images found in directory: " + directory);
+        }
+        nextIndex = 0;
+        frameNumber = 0;
+    }
+
+    @Override
+    public Frame grab() throws Exception {
+        if (nextIndex >= images.size()) {
+            if (!loop) {
+                return null;
+            }
+            nextIndex = 0;
+        }
+        Path file = images.get(nextIndex++);
+        BufferedImage image;
+        try {
+            image = ImageIO.read(file.toFile());
+        } catch (IOException e) {
+            throw new Exception("Cannot read image file: " + file, e);
+        }
+        if (image == null) {
+            throw new Exception("Unsupported image file: " + file);
+        }
+        frameNumber++;
+        return converter.convert(image);
+    }
+
+    public int getImageCount() {
+        return images.size();
+    }
+
+    @Override
+    public int getLengthInFrames() {
+        return loop ? 0 : images.size();
+    }
+
+    @Override
+    public void trigger() {
+        // Images are always available, nothing to trigger.
+    }
+
+    @Override
+    public void stop() {
+        nextIndex = 0;
+    }
+
+    @Override
+    public void release() {
+        images = List.of();
+    }
+
+    private static boolean isImageFile(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".png") || name.endsWith(".jpg") || name.endsWith(".jpeg") || name.endsWith(".bmp");
+    }
+}
@@ -0,0 +1,172 @@
+package com.gym.app.util;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Recognises keyboard-wedge (USB HID) barcode scanner input in a stream of typed characters.
+ * <p>
+ * A handheld scanner "types" the whole QR value in a burst, a few milliseconds per key,
+ * followed by Enter (or Tab, depending on how the scanner is configured). People type at
+ * 80 ms+ between keys. Every key is held back until its burst is decided: a burst whose
+ * median key gap is at most {@link #DEFAULT_MAX_KEY_GAP_MS} and that ends with a terminator
+ * is a scan; anything else is typing, and the held keys are handed back in order to be
+ * replayed into the focused control, so nothing a person types is lost.
+ * <p>
+ * JavaFX key events carry no timestamp, so gaps are measured when the keys are dispatched.
+ * A stall of the FX thread shows up as one long gap followed by keys with almost none;
+ * the median ignores it, so a stall does not split a scan. Held keys with no follow-up are
+ * released by {@link #onIdle} once {@link #IDLE_MS} has passed.
+ * Not thread-safe: feed it from the FX thread only.
+ */
+public class KeyboardWedgeDetector {
+
+    public static final long DEFAULT_MAX_KEY_GAP_MS = 35;
+    public static final int DEFAULT_MIN_LENGTH = 6;
+    public static final long IDLE_MS = 150;
+    private static final int MAX_LENGTH = 512;
+    // Gaps needed before a burst can be called typing; fewer could be one stall
+    private static final int MIN_GAPS_FOR_TYPING = 3;
+
+    /**
+     * Receives complete scans.
+     */
+    public interface ScanListener {
+        /**
+         * @param value The scanned text (without the terminator).
+         * @param burstStartNanos {@link System#nanoTime()} of the first key of the burst.
+         */
+        void onScan(String value, long burstStartNanos);
+    }
+
+    private final char[] buffer = new char[MAX_LENGTH];
+    private final long[] gaps = new long[MAX_LENGTH];
+    private final long[] sortedGaps = new long[MAX_LENGTH];
+    private final long maxKeyGapNanos;
+    private final long idleNanos;
+    private final int minLength;
+    private final ScanListener listener;
+    private final Consumer<String> typingListener;
+
+    private int length = 0;
+    private long lastKeyNanos = Long.MIN_VALUE / 2;
+    private long burstStartNanos = 0;
+    // Between keys a person types, which pass straight through until the next pause
+    private boolean typing = false;
+
+    /**
+     * @param typingListener Receives held keys that turned out to be typing, to replay them.
+     */
+    public KeyboardWedgeDetector(ScanListener listener, Consumer<String> typingListener) {
+        this(listener, typingListener, DEFAULT_MAX_KEY_GAP_MS, DEFAULT_MIN_LENGTH);
+    }
+
+    public KeyboardWedgeDetector(ScanListener listener, Consumer<String> typingListener, long maxKeyGapMs, int minLength) {
+        this.listener = listener;
+        this.typingListener = typingListener;
+        this.maxKeyGapNanos = maxKeyGapMs * 1_000_000L;
+        this.idleNanos = IDLE_MS * 1_000_000L;
+        this.minLength = minLength;
+    }
+
+    /**
+     * Feeds one typed character.
+     * @param c The typed character.
+     * @param nowNanos The time the key was received ({@link System#nanoTime()}).
+     * @return true if the character was taken (held back, part of a scan, or already replayed)
+     *         and should be consumed; false if it should be delivered as it is.
+     */
+    public boolean onCharacter(char c, long nowNanos) {
+        long gap = nowNanos - lastKeyNanos;
+        lastKeyNanos = nowNanos;
+        if (gap > idleNanos) {
+            typing = false;
+            release();
+        }
+
+        if (c == '\r' || c == '\n' || c == '\t') {
+            boolean isScan = !typing && length >= minLength && medianGap(gap) <= maxKeyGapNanos;
+            if (isScan) {
+                String value = new String(buffer, 0, length);
+                length = 0;
+                listener.onScan(value, burstStartNanos);
+            } else {
+                // Held keys go first so the terminator lands after them
+                release();
+            }
+            return isScan;
+        }
+
+        if (Character.isISOControl(c)) {
+            release();
+            return false;
+        }
+        if (typing) {
+            return false;
+        }
+        if (length == MAX_LENGTH) {
+            // Longer than any card we issue: not a scan
+            typing = true;
+            release();
+            return false;
+        }
+
+        if (length == 0) {
+            burstStartNanos = nowNanos;
+        } else {
+            gaps[length - 1] = gap;
+        }
+        buffer[length++] = c;
+        if (length > MIN_GAPS_FOR_TYPING && medianGap(-1) > maxKeyGapNanos) {
+            // Too slow for a scanner: hand back what was held, including this key
+            typing = true;
+            release();
+        }
+        return true;
+    }
+
+    /**
+     * Releases held keys as typing once no key has arrived for {@link #IDLE_MS}; call it
+     * from a timer restarted after every key.
+     */
+    public void onIdle(long nowNanos) {
+        if (nowNanos - lastKeyNanos >= idleNanos) {
+            typing = false;
+            release();
+        }
+    }
+
+    /**
+     * Releases any held keys as typing, e.g. when scanner mode is switched off.
+     */
+    public void flush() {
+        release();
+    }
+
+    public void reset() {
+        length = 0;
+        typing = false;
+    }
+
+    private void release() {
+        if (length > 0) {
+            String held = new String(buffer, 0, length);
+            length = 0;
+            typingListener.accept(held);
+        }
+    }
+
+    // Upper median of the gaps between held keys, plus the terminator's gap if given
+    private long medianGap(long terminatorGap) {
+        int count = Math.max(0, length - 1);
+        System.arraycopy(gaps, 0, sortedGaps, 0, count);
+        if (terminatorGap >= 0 && length > 0) {
+            sortedGaps[count++] = terminatorGap;
+        }
+        if (count == 0) {
+            return 0;
+        }
+        Arrays.sort(sortedGaps, 0, count);
+        return sortedGaps[count / 2];
+    }
+}
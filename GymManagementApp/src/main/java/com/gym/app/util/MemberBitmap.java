@@ -0,0 +1,447 @@
+package com.gym.app.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A compressed set of member IDs, in the style of Roaring bitmaps.
+ * <p>
+ * IDs are split by their high 16 bits into chunks of 65,536. A chunk holding at most
+ * {@value #ARRAY_MAX} IDs is a sorted {@code char[]} (two bytes per ID); a fuller chunk is
+ * a plain 8 KB bit set. A gym's member IDs fit in a chunk or two, so one day's visitors take
+ * a few hundred bytes, and AND, OR and AND NOT are merges of sorted arrays or loops over
+ * words. Results are new bitmaps; the operands are never changed. Not thread-safe.
+ */
+public final class MemberBitmap {
+
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 1 << 10;
+
+    // One container per chunk, ordered by key (the high 16 bits); never empty
+    private char[] keys;
+    private Container[] containers;
+    private int size;
+
+    public MemberBitmap() {
+        this(new char[4], new Container[4], 0);
+    }
+
+    private MemberBitmap(char[] keys, Container[] containers, int size) {
+        this.keys = keys;
+        this.containers = containers;
+        this.size = size;
+    }
+
+    /**
+     * @return True if the ID was not in the set yet.
+     */
+    public boolean add(int memberId) {
+        char key = (char) (memberId >>> 16);
+        int index = Arrays.binarySearch(keys, 0, size, key);
+        if (index < 0) {
+            index = -index - 1;
+            insert(index, key, new Container(new char[8], 0));
+        }
+        return containers[index].add((char) memberId);
+    }
+
+    public boolean contains(int memberId) {
+        int index = Arrays.binarySearch(keys, 0, size, (char) (memberId >>> 16));
+        return index >= 0 && containers[index].contains((char) memberId);
+    }
+
+    public int getCardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += containers[i].cardinality;
+        }
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return Members in both sets.
+     */
+    public MemberBitmap and(MemberBitmap other) {
+        MemberBitmap result = new MemberBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                result.appendIfNotEmpty(keys[i], containers[i].and(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return Members in either set.
+     */
+    public MemberBitmap or(MemberBitmap other) {
+        MemberBitmap result = new MemberBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+                result.appendIfNotEmpty(keys[i], containers[i].copy());
+                i++;
+            } else if (i == size || keys[i] > other.keys[j]) {
+                result.appendIfNotEmpty(other.keys[j], other.containers[j].copy());
+                j++;
+            } else {
+                result.appendIfNotEmpty(keys[i], containers[i].or(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return Members in this set but not in {@code other}.
+     */
+    public MemberBitmap andNot(MemberBitmap other) {
+        MemberBitmap result = new MemberBitmap();
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            while (j < other.size && other.keys[j] < keys[i]) {
+                j++;
+            }
+            if (j < other.size && other.keys[j] == keys[i]) {
+                result.appendIfNotEmpty(keys[i], containers[i].andNot(other.containers[j]));
+            } else {
+                result.appendIfNotEmpty(keys[i], containers[i].copy());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Size of {@link #and}, without building it.
+     */
+    public int andCardinality(MemberBitmap other) {
+        int cardinality = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                cardinality += containers[i].andCardinality(other.containers[j]);
+                i++;
+                j++;
+            }
+        }
+        return cardinality;
+    }
+
+    /**
+     * @return Approximate size of the encoded set, in bytes (as written by {@link #write}).
+     */
+    public long getSizeInBytes() {
+        long bytes = 4;
+        for (int i = 0; i < size; i++) {
+            Container container = containers[i];
+            bytes += 4 + (container.bits != null ? BITMAP_WORDS * 8L : container.cardinality * 2L);
+        }
+        return bytes;
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            Container container = containers[i];
+            out.writeChar(keys[i]);
+            out.writeChar(container.cardinality - 1);
+            if (container.bits != null) {
+                for (long word : container.bits) {
+                    out.writeLong(word);
+                }
+            } else {
+                for (int k = 0; k < container.cardinality; k++) {
+                    out.writeChar(container.array[k]);
+                }
+            }
+        }
+    }
+
+    public static MemberBitmap read(DataInput in) throws IOException {
+        int size = in.readInt();
+        if (size < 0 || size > 1 << 16) {
+            throw new IOException("Corrupt bitmap: " + size + " chunks");
+        }
+        char[] keys = new char[Math.max(size, 1)];
+        Container[] containers = new Container[Math.max(size, 1)];
+        for (int i = 0; i < size; i++) {
+            keys[i] = in.readChar();
+            int cardinality = in.readChar() + 1;
+            if (cardinality > ARRAY_MAX) {
+                long[] bits = new long[BITMAP_WORDS];
+                for (int k = 0; k < BITMAP_WORDS; k++) {
+                    bits[k] = in.readLong();
+                }
+                containers[i] = new Container(bits, cardinality);
+            } else {
+                char[] array = new char[cardinality];
+                for (int k = 0; k < cardinality; k++) {
+                    array[k] = in.readChar();
+                }
+                containers[i] = new Container(array, cardinality);
+            }
+        }
+        return new MemberBitmap(keys, containers, size);
+    }
+
+    private void appendIfNotEmpty(char key, Container container) {
+        if (container.cardinality > 0) {
+            insert(size, key, container);
+        }
+    }
+
+    private void insert(int index, char key, Container container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        keys[index] = key;
+        containers[index] = container;
+        size++;
+    }
+
+    /**
+     * The low 16 bits of the IDs in one chunk: a sorted array while there are at most
+     * {@value #ARRAY_MAX} of them, a bit set above that.
+     */
+    private static final class Container {
+        private char[] array; // null when dense
+        private long[] bits;  // null when sparse
+        private int cardinality;
+
+        Container(char[] array, int cardinality) {
+            this.array = array;
+            this.cardinality = cardinality;
+        }
+
+        Container(long[] bits, int cardinality) {
+            this.bits = bits;
+            this.cardinality = cardinality;
+        }
+
+        // Switches back to an array if the bits thinned out
+        static Container ofBits(long[] bits) {
+            int cardinality = 0;
+            for (long word : bits) {
+                cardinality += Long.bitCount(word);
+            }
+            if (cardinality > ARRAY_MAX) {
+                return new Container(bits, cardinality);
+            }
+            char[] array = new char[cardinality];
+            int n = 0;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                long word = bits[w];
+                while (word != 0) {
+                    array[n++] = (char) (w * 64 + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new Container(array, cardinality);
+        }
+
+        boolean contains(char value) {
+            if (bits != null) {
+                return (bits[value >>> 6] & (1L << value)) != 0;
+            }
+            return Arrays.binarySearch(array, 0, cardinality, value) >= 0;
+        }
+
+        boolean add(char value) {
+            if (bits == null) {
+                int index = Arrays.binarySearch(array, 0, cardinality, value);
+                if (index >= 0) {
+                    return false;
+                }
+                if (cardinality < ARRAY_MAX) {
+                    index = -index - 1;
+                    if (cardinality == array.length) {
+                        array = Arrays.copyOf(array, Math.min(ARRAY_MAX, Math.max(8, cardinality * 2)));
+                    }
+                    System.arraycopy(array, index, array, index + 1, cardinality - index);
+                    array[index] = value;
+                    cardinality++;
+                    return true;
+                }
+                bits = toBits();
+                array = null;
+            }
+            long mask = 1L << value;
+            if ((bits[value >>> 6] & mask) != 0) {
+                return false;
+            }
+            bits[value >>> 6] |= mask;
+            cardinality++;
+            return true;
+        }
+
+        Container copy() {
+            return bits != null
+                    ? new Container(bits.clone(), cardinality)
+                    : new Container(Arrays.copyOf(array, cardinality), cardinality);
+        }
+
+        Container and(Container other) {
+            if (bits != null && other.bits != null) {
+                long[] result = new long[BITMAP_WORDS];
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    result[w] = bits[w] & other.bits[w];
+                }
+                return ofBits(result);
+            }
+            if (bits != null) {
+                return other.and(this);
+            }
+            char[] result = new char[Math.min(cardinality, other.cardinality)];
+            int n = 0;
+            if (other.bits != null) {
+                for (int i = 0; i < cardinality; i++) {
+                    if (other.contains(array[i])) {
+                        result[n++] = array[i];
+                    }
+                }
+            } else {
+                int i = 0;
+                int j = 0;
+                while (i < cardinality && j < other.cardinality) {
+                    if (array[i] < other.array[j]) {
+                        i++;
+                    } else if (array[i] > other.array[j]) {
+                        j++;
+                    } else {
+                        result[n++] = array[i];
+                        i++;
+                        j++;
+                    }
+                }
+            }
+            return new Container(result, n);
+        }
+
+        Container or(Container other) {
+            if (bits == null && other.bits == null && cardinality + other.cardinality <= ARRAY_MAX) {
+                char[] result = new char[cardinality + other.cardinality];
+                int n = 0;
+                int i = 0;
+                int j = 0;
+                while (i < cardinality || j < other.cardinality) {
+                    if (j == other.cardinality || (i < cardinality && array[i] < other.array[j])) {
+                        result[n++] = array[i++];
+                    } else if (i == cardinality || array[i] > other.array[j]) {
+                        result[n++] = other.array[j++];
+                    } else {
+                        result[n++] = array[i];
+                        i++;
+                        j++;
+                    }
+                }
+                return new Container(result, n);
+            }
+            long[] result = toBits();
+            if (other.bits != null) {
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    result[w] |= other.bits[w];
+                }
+            } else {
+                for (int k = 0; k < other.cardinality; k++) {
+                    result[other.array[k] >>> 6] |= 1L << other.array[k];
+                }
+            }
+            return ofBits(result);
+        }
+
+        Container andNot(Container other) {
+            if (bits == null) {
+                char[] result = new char[cardinality];
+                int n = 0;
+                for (int i = 0; i < cardinality; i++) {
+                    if (!other.contains(array[i])) {
+                        result[n++] = array[i];
+                    }
+                }
+                return new Container(result, n);
+            }
+            long[] result = bits.clone();
+            if (other.bits != null) {
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    result[w] &= ~other.bits[w];
+                }
+            } else {
+                for (int k = 0; k < other.cardinality; k++) {
+                    result[other.array[k] >>> 6] &= ~(1L << other.array[k]);
+                }
+            }
+            return ofBits(result);
+        }
+
+        int andCardinality(Container other) {
+            if (bits != null && other.bits != null) {
+                int count = 0;
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    count += Long.bitCount(bits[w] & other.bits[w]);
+                }
+                return count;
+            }
+            if (bits != null) {
+                return other.andCardinality(this);
+            }
+            int count = 0;
+            if (other.bits != null) {
+                for (int i = 0; i < cardinality; i++) {
+                    if (other.contains(array[i])) {
+                        count++;
+                    }
+                }
+                return count;
+            }
+            int i = 0;
+            int j = 0;
+            while (i < cardinality && j < other.cardinality) {
+                if (array[i] < other.array[j]) {
+                    i++;
+                } else if (array[i] > other.array[j]) {
+                    j++;
+                } else {
+                    count++;
+                    i++;
+                    j++;
+                }
+            }
+            return count;
+        }
+
+        private long[] toBits() {
+            if (bits != null) {
+                return bits.clone();
+            }
+            long[] result = new long[BITMAP_WORDS];
+            for (int k = 0; k < cardinality; k++) {
+                result[array[k] >>> 6] |= 1L << array[k];
+            }
+            return result;
+        }
+    }
+}
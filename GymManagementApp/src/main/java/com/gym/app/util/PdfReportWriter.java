@@ -0,0 +1,367 @@
+package com.gym.app.util;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleFunction;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes a tabular report as a PDF while the rows are still coming in.
+ * <p>
+ * Rows are cut into A4 pages of {@value #ROWS_PER_PAGE}; each page repeats the title and
+ * column headers and ends with its own total and the running total, and the last page
+ * carries the report total. Pages are rendered and compressed on a small pool while the
+ * caller keeps reading rows, and written to the file in order as soon as they are ready,
+ * with at most a few pages in flight. Cross-reference entries go to a temp file as each
+ * object is written, so memory does not grow with the number of pages.
+ * <p>
+ * Text uses the standard Courier and Helvetica-Bold fonts (nothing embedded) with
+ * WinAnsi encoding; characters outside Latin-1 are printed as '?'.
+ */
+public class PdfReportWriter implements Closeable {
+
+    public static final int ROWS_PER_PAGE = 55;
+
+    private static final int PAGE_WIDTH = 595; // A4 in points
+    private static final int PAGE_HEIGHT = 842;
+    private static final int MARGIN = 50;
+    private static final float ROW_FONT_SIZE = 9f;
+    private static final float ROW_HEIGHT = 12f;
+    private static final float COURIER_CHAR_WIDTH = 0.6f; // of the font size
+    private static final int LINE_CHARS = (int) ((PAGE_WIDTH - 2 * MARGIN) / (ROW_FONT_SIZE * COURIER_CHAR_WIDTH));
+    private static final DateTimeFormatter GENERATED_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    // Fixed object numbers; catalog and page tree are written last, once the page count is known
+    private static final int CATALOG_OBJECT = 1;
+    private static final int PAGES_OBJECT = 2;
+    private static final int ROW_FONT_OBJECT = 3;
+    private static final int TITLE_FONT_OBJECT = 4;
+    private static final int FIRST_PAGE_OBJECT = 5; // then page, content, page, content, ...
+
+    private final String title;
+    private final String[] headers;
+    private final int[] widths;
+    private final boolean[] rightAligned;
+    private final DoubleFunction<String> totalFormat;
+    private final String generatedOn = LocalDateTime.now().format(GENERATED_FORMAT);
+
+    private final Path xrefFile;
+    private final BufferedWriter xref;
+    private final CountingOutputStream out;
+    private final ExecutorService renderPool;
+    private final Deque<Future<byte[]>> inFlight = new ArrayDeque<>();
+    private final int maxInFlight;
+
+    private List<String> pageRows = new ArrayList<>(ROWS_PER_PAGE);
+    private double pageTotal;
+    private double runningTotal;
+    private PageJob heldPage; // the last full page is only submitted once we know whether more follow
+    private int pageCount;
+    private int pagesWritten;
+    private int objectsWritten;
+    private boolean closed;
+
+    /**
+     * @param file The PDF to create (replaced if it exists).
+     * @param title Printed at the top of every page.
+     * @param headers Column headers.
+     * @param widths Column widths in characters.
+     * @param rightAligned Which columns are right-aligned (numbers).
+     * @param totalFormat Formats page, running and report totals, e.g. a sum of amounts or a row count.
+     * @param threads Page rendering threads.
+     */
+    public PdfReportWriter(Path file, String title, String[] headers, int[] widths, boolean[] rightAligned,
+                           DoubleFunction<String> totalFormat, int threads) throws IOException {
+        this.title = title;
+        this.headers = headers;
+        this.widths = widths;
+        this.rightAligned = rightAligned;
+        this.totalFormat = totalFormat;
+
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.xrefFile = Files.createTempFile("pdf-xref", ".tmp");
+        this.xref = Files.newBufferedWriter(xrefFile, StandardCharsets.US_ASCII);
+        this.out = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024));
+
+        int poolSize = Math.max(1, threads);
+        this.maxInFlight = poolSize * 2;
+        AtomicInteger counter = new AtomicInteger();
+        this.renderPool = Executors.newFixedThreadPool(poolSize, r -> {
+            Thread t = new Thread(r, "pdf-render-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        // Header plus a binary comment so transfer tools treat the file as binary
+        write("%PDF-1.4\n%âãÏÓ\n");
+        writeObject(ROW_FONT_OBJECT, "<< /Type /Font /Subtype /Type1 /BaseFont /Courier /Encoding /WinAnsiEncoding >>");
+        writeObject(TITLE_FONT_OBJECT, "<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica-Bold /Encoding /WinAnsiEncoding >>");
+    }
+
+    /**
+     * Adds one row.
+     * @param cells One value per column.
+     * @param value Added to the page and report totals (an amount, or 1 to count rows).
+     */
+    public void addRow(String[] cells, double value) throws IOException {
+        if (pageRows.size() == ROWS_PER_PAGE) {
+            endPage();
+        }
+        pageRows.add(formatRow(cells));
+        pageTotal += value;
+        runningTotal += value;
+    }
+
+    /**
+     * @return The number of pages written so far (final once the writer is closed).
+     */
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    /**
+     * Writes the remaining pages, the page tree and the trailer.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (!pageRows.isEmpty() || heldPage == null) {
+                endPage(); // also gives an empty report its one page
+            }
+            heldPage.last = true;
+            submit(heldPage);
+            while (!inFlight.isEmpty()) {
+                writePage(inFlight.removeFirst());
+            }
+            finishDocument();
+        } finally {
+            renderPool.shutdownNow();
+            xref.close();
+            out.close();
+            Files.deleteIfExists(xrefFile);
+        }
+    }
+
+    private void endPage() throws IOException {
+        PageJob page = new PageJob(pageRows, pageTotal, runningTotal);
+        pageRows = new ArrayList<>(ROWS_PER_PAGE);
+        pageTotal = 0;
+        if (heldPage != null) {
+            submit(heldPage);
+        }
+        heldPage = page;
+    }
+
+    private void submit(PageJob page) throws IOException {
+        page.number = ++pageCount;
+        inFlight.addLast(renderPool.submit(page::render));
+        // Bounded: the reader waits for the oldest page rather than queueing the whole report
+        while (inFlight.size() > maxInFlight) {
+            writePage(inFlight.removeFirst());
+        }
+    }
+
+    private void writePage(Future<byte[]> rendered) throws IOException {
+        byte[] content;
+        try {
+            content = rendered.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("PDF rendering interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to render PDF page", e.getCause());
+        }
+        int pageObject = FIRST_PAGE_OBJECT + 2 * pagesWritten++;
+        writeObject(pageObject, "<< /Type /Page /Parent " + PAGES_OBJECT + " 0 R"
+                + " /MediaBox [0 0 " + PAGE_WIDTH + " " + PAGE_HEIGHT + "]"
+                + " /Resources << /Font << /F1 " + ROW_FONT_OBJECT + " 0 R /F2 " + TITLE_FONT_OBJECT + " 0 R >> >>"
+                + " /Contents " + (pageObject + 1) + " 0 R >>");
+        recordOffset();
+        write((pageObject + 1) + " 0 obj\n<< /Length " + content.length + " /Filter /FlateDecode >>\nstream\n");
+        out.write(content);
+        write("\nendstream\nendobj\n");
+    }
+
+    private void finishDocument() throws IOException {
+        long catalogOffset = out.count;
+        write(CATALOG_OBJECT + " 0 obj\n<< /Type /Catalog /Pages " + PAGES_OBJECT + " 0 R >>\nendobj\n");
+        long pagesOffset = out.count;
+        write(PAGES_OBJECT + " 0 obj\n<< /Type /Pages /Count " + pageCount + " /Kids [");
+        // Page objects are numbered in order, so the list is generated rather than kept
+        for (int i = 0; i < pageCount; i++) {
+            write((i % 16 == 0 ? "\n" : " ") + (FIRST_PAGE_OBJECT + 2 * i) + " 0 R");
+        }
+        write("\n] >>\nendobj\n");
+
+        xref.close();
+        long xrefOffset = out.count;
+        write("xref\n0 3\n0000000000 65535 f \n" + xrefEntry(catalogOffset) + xrefEntry(pagesOffset));
+        write(ROW_FONT_OBJECT + " " + objectsWritten + "\n");
+        try (BufferedReader reader = Files.newBufferedReader(xrefFile, StandardCharsets.US_ASCII)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                write(line + "\n");
+            }
+        }
+        write("trailer\n<< /Size " + (ROW_FONT_OBJECT + objectsWritten) + " /Root " + CATALOG_OBJECT + " 0 R >>\n"
+                + "startxref\n" + xrefOffset + "\n%%EOF\n");
+    }
+
+    private void writeObject(int number, String body) throws IOException {
+        recordOffset();
+        write(number + " 0 obj\n" + body + "\nendobj\n");
+    }
+
+    // Objects from ROW_FONT_OBJECT on are written in number order, so their entries are too
+    private void recordOffset() throws IOException {
+        xref.write(xrefEntry(out.count));
+        objectsWritten++;
+    }
+
+    private static String xrefEntry(long offset) {
+        return String.format("%010d 00000 n \n", offset); // exactly 20 bytes, as the format requires
+    }
+
+    private void write(String text) throws IOException {
+        out.write(text.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private String formatRow(String[] cells) {
+        StringBuilder line = new StringBuilder(LINE_CHARS);
+        for (int i = 0; i < widths.length; i++) {
+            String cell = i < cells.length && cells[i] != null ? cells[i] : "";
+            if (cell.length() > widths[i]) {
+                cell = cell.substring(0, widths[i]);
+            }
+            String padding = " ".repeat(widths[i] - cell.length());
+            line.append(rightAligned[i] ? padding + cell : cell + padding).append(i < widths.length - 1 ? "  " : "");
+        }
+        return line.toString();
+    }
+
+    private final class PageJob {
+        final List<String> rows;
+        final double pageTotal;
+        final double runningTotal;
+        int number;
+        boolean last;
+
+        PageJob(List<String> rows, double pageTotal, double runningTotal) {
+            this.rows = rows;
+            this.pageTotal = pageTotal;
+            this.runningTotal = runningTotal;
+        }
+
+        byte[] render() throws IOException {
+            StringBuilder c = new StringBuilder(ROWS_PER_PAGE * (LINE_CHARS + 8) + 1024);
+            float top = PAGE_HEIGHT - MARGIN;
+            text(c, "F2", 14, MARGIN, top, title);
+            text(c, "F1", 8, MARGIN, top - 14, "Generated on " + generatedOn);
+            String pageLabel = "Page " + number;
+            text(c, "F1", 8, PAGE_WIDTH - MARGIN - pageLabel.length() * 8 * COURIER_CHAR_WIDTH, top - 14, pageLabel);
+
+            float headerY = top - 36;
+            text(c, "F1", ROW_FONT_SIZE, MARGIN, headerY, formatRow(headers));
+            rule(c, headerY - 4);
+
+            if (rows.isEmpty()) {
+                text(c, "F1", ROW_FONT_SIZE, MARGIN, headerY - ROW_HEIGHT - 4, "No data.");
+            } else {
+                c.append("BT /F1 ").append(ROW_FONT_SIZE).append(" Tf ").append(ROW_HEIGHT).append(" TL ")
+                        .append(MARGIN).append(' ').append(headerY - ROW_HEIGHT - 4).append(" Td\n");
+                for (int i = 0; i < rows.size(); i++) {
+                    c.append(i == 0 ? "" : "T* ").append(literal(rows.get(i))).append(" Tj\n");
+                }
+                c.append("ET\n");
+            }
+
+            float footerY = headerY - 4 - ROW_HEIGHT * (ROWS_PER_PAGE + 1) - 8;
+            rule(c, footerY + ROW_HEIGHT);
+            text(c, "F1", ROW_FONT_SIZE, MARGIN, footerY, "Page total: " + totalFormat.apply(pageTotal)
+                    + "    Running total: " + totalFormat.apply(runningTotal));
+            if (last) {
+                text(c, "F2", 10, MARGIN, footerY - 16, "Report total: " + totalFormat.apply(runningTotal));
+            }
+
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(c.length() / 3);
+            try (DeflaterOutputStream deflater = new DeflaterOutputStream(compressed)) {
+                deflater.write(c.toString().getBytes(StandardCharsets.ISO_8859_1));
+            }
+            return compressed.toByteArray();
+        }
+
+        private void text(StringBuilder c, String font, float size, float x, float y, String value) {
+            c.append("BT /").append(font).append(' ').append(size).append(" Tf ")
+                    .append(x).append(' ').append(y).append(" Td ").append(literal(value)).append(" Tj ET\n");
+        }
+
+        private void rule(StringBuilder c, float y) {
+            c.append("0.5 w ").append(MARGIN).append(' ').append(y).append(" m ")
+                    .append(PAGE_WIDTH - MARGIN).append(' ').append(y).append(" l S\n");
+        }
+    }
+
+    // PDF string literal: escape delimiters, and keep to the Latin-1 range of WinAnsi
+    private static String literal(String value) {
+        StringBuilder s = new StringBuilder(value.length() + 2).append('(');
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch == '(' || ch == ')' || ch == '\\') {
+                s.append('\\').append(ch);
+            } else if (ch < 0x20 || ch > 0xff) {
+                s.append('?');
+            } else {
+                s.append(ch);
+            }
+        }
+        return s.append(')').toString();
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
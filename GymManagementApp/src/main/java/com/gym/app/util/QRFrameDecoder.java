@@ -0,0 +1,63 @@
+package com.gym.app.util;
+
+import java.awt.image.BufferedImage;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bytedeco.javacv.Frame;
+import org.bytedeco.javacv.Java2DFrameConverter;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.Result;
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+import com.google.zxing.common.HybridBinarizer;
+
+/**
+ * Converts grabbed frames and decodes the QR code they contain.
+ * Not thread-safe: the converter and reader are reused between frames, so each
+ * grabbing thread owns its own decoder.
+ */
+public class QRFrameDecoder {
+
+    private final Java2DFrameConverter frameConverter = new Java2DFrameConverter();
+    private final MultiFormatReader qrReader = new MultiFormatReader();
+
+    public QRFrameDecoder() {
+        Map<DecodeHintType, Object> hints = new EnumMap<>(DecodeHintType.class);
+        hints.put(DecodeHintType.POSSIBLE_FORMATS, List.of(BarcodeFormat.QR_CODE));
+        qrReader.setHints(hints);
+    }
+
+    /**
+     * Converts a grabbed frame to a BufferedImage.
+     * The returned image may be reused by the next call, so copy it before handing it to another thread.
+     */
+    public BufferedImage toBufferedImage(Frame frame) {
+        return frameConverter.convert(frame);
+    }
+
+    /**
+     * Decodes the QR code in the image.
+     * @return The decoded text, or null if no QR code was found.
+     */
+    public String decode(BufferedImage image) {
+        if (image == null) {
+            return null;
+        }
+        try {
+            BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(new BufferedImageLuminanceSource(image)));
+            Result result = qrReader.decodeWithState(bitmap);
+            return result.getText();
+        } catch (NotFoundException e) {
+            // QR code not found in this frame, this is normal
+            return null;
+        } finally {
+            qrReader.reset();
+        }
+    }
+}
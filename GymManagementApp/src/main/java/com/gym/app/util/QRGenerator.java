@@ -3,7 +3,9 @@ package com.gym.app.util;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import com.google.zxing.BarcodeFormat;
@@ -14,13 +16,45 @@ import com.google.zxing.common.BitMatrix;
 import com.google.zxing.qrcode.QRCodeWriter;
 import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
 
-import javafx.embed.swing.SwingFXUtils;
 import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
 
 public class QRGenerator {
 
+    // Hints never change per level, and writers are reused per thread so batch rendering allocates nothing extra
+    private static final Map<ErrorCorrectionLevel, Map<EncodeHintType, Object>> HINTS = createAllHints();
+    private static final ThreadLocal<QRCodeWriter> WRITER = ThreadLocal.withInitial(QRCodeWriter::new);
+    private static final int BLACK = 0xFF000000;
+    private static final int WHITE = 0xFFFFFFFF;
+    private static final int MAX_CACHED_IMAGES = 32;
+
+    // H survives the most damage but gives the densest codes, which some webcams read slowly
+    private static volatile ErrorCorrectionLevel errorCorrectionLevel = ErrorCorrectionLevel.H;
+
+    // Rendered FX images keyed by value, size and level; access-ordered for LRU eviction
+    private static final Map<String, Image> IMAGE_CACHE = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Image> eldest) {
+            return size() > MAX_CACHED_IMAGES;
+        }
+    };
+
+    public static ErrorCorrectionLevel getErrorCorrectionLevel() {
+        return errorCorrectionLevel;
+    }
+
+    /**
+     * Sets the error correction level for codes generated from now on; already printed cards are unaffected.
+     */
+    public static void setErrorCorrectionLevel(ErrorCorrectionLevel level) {
+        errorCorrectionLevel = level;
+    }
+
     /**
      * Generates a QR code image as a JavaFX Image object.
+     * The modules are written straight into a {@link WritableImage} (no AWT), and the result
+     * is cached so reopening the same member does not encode again.
      * @param text The data to encode in the QR code.
      * @param width The width of the QR code image.
      * @param height The height of the QR code image.
@@ -28,15 +62,61 @@ public class QRGenerator {
      * @throws WriterException if an error occurs during QR code generation.
      */
     public static Image generateQRImage(String text, int width, int height) throws WriterException {
-        Map<EncodeHintType, Object> hints = new HashMap<>();
-        hints.put(EncodeHintType.CHARACTER_SET, "UTF-8");
-        hints.put(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.H);
+        ErrorCorrectionLevel level = errorCorrectionLevel;
+        String key = level + "|" + width + "x" + height + "|" + text;
+        synchronized (IMAGE_CACHE) {
+            Image cached = IMAGE_CACHE.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
 
-        QRCodeWriter qrCodeWriter = new QRCodeWriter();
-        BitMatrix bitMatrix = qrCodeWriter.encode(text, BarcodeFormat.QR_CODE, width, height, hints);
+        BitMatrix matrix = encode(text, width, height, level);
+        int matrixWidth = matrix.getWidth();
+        int matrixHeight = matrix.getHeight();
+        int[] pixels = new int[matrixWidth * matrixHeight];
+        for (int y = 0; y < matrixHeight; y++) {
+            int row = y * matrixWidth;
+            for (int x = 0; x < matrixWidth; x++) {
+                pixels[row + x] = matrix.get(x, y) ? BLACK : WHITE;
+            }
+        }
+        WritableImage image = new WritableImage(matrixWidth, matrixHeight);
+        image.getPixelWriter().setPixels(0, 0, matrixWidth, matrixHeight,
+                PixelFormat.getIntArgbInstance(), pixels, 0, matrixWidth);
 
-        BufferedImage bufferedImage = MatrixToImageWriter.toBufferedImage(bitMatrix);
-        return SwingFXUtils.toFXImage(bufferedImage, null);
+        synchronized (IMAGE_CACHE) {
+            IMAGE_CACHE.put(key, image);
+        }
+        return image;
+    }
+
+    /**
+     * Generates a QR code as an AWT image (used for printing and for synthetic camera frames).
+     * @param text The data to encode in the QR code.
+     * @param width The width of the QR code image.
+     * @param height The height of the QR code image.
+     * @return A black and white BufferedImage.
+     * @throws WriterException if an error occurs during QR code generation.
+     */
+    public static BufferedImage generateQRBufferedImage(String text, int width, int height) throws WriterException {
+        return MatrixToImageWriter.toBufferedImage(encode(text, width, height));
+    }
+
+    /**
+     * Encodes text as a QR module matrix scaled to the requested size. Safe to call from many threads.
+     * @param text The data to encode in the QR code.
+     * @param width The width of the QR code image.
+     * @param height The height of the QR code image.
+     * @return The module matrix (true = black).
+     * @throws WriterException if an error occurs during QR code generation.
+     */
+    public static BitMatrix encode(String text, int width, int height) throws WriterException {
+        return encode(text, width, height, errorCorrectionLevel);
+    }
+
+    private static BitMatrix encode(String text, int width, int height, ErrorCorrectionLevel level) throws WriterException {
+        return WRITER.get().encode(text, BarcodeFormat.QR_CODE, width, height, HINTS.get(level));
     }
 
     /**
@@ -49,12 +129,7 @@ public class QRGenerator {
      * @throws IOException if an error occurs during file writing.
      */
     public static void saveQRImage(String text, int width, int height, String filePath) throws WriterException, IOException {
-        Map<EncodeHintType, Object> hints = new HashMap<>();
-        hints.put(EncodeHintType.CHARACTER_SET, "UTF-8");
-        hints.put(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.H);
-
-        QRCodeWriter qrCodeWriter = new QRCodeWriter();
-        BitMatrix bitMatrix = qrCodeWriter.encode(text, BarcodeFormat.QR_CODE, width, height, hints);
+        BitMatrix bitMatrix = encode(text, width, height);
 
         File file = new File(filePath);
         File parent = file.getParentFile();
@@ -63,4 +138,15 @@ public class QRGenerator {
         }
         MatrixToImageWriter.writeToPath(bitMatrix, "PNG", file.toPath());
     }
+
+    private static Map<ErrorCorrectionLevel, Map<EncodeHintType, Object>> createAllHints() {
+        Map<ErrorCorrectionLevel, Map<EncodeHintType, Object>> all = new EnumMap<>(ErrorCorrectionLevel.class);
+        for (ErrorCorrectionLevel level : ErrorCorrectionLevel.values()) {
+            Map<EncodeHintType, Object> hints = new EnumMap<>(EncodeHintType.class);
+            hints.put(EncodeHintType.CHARACTER_SET, "UTF-8");
+            hints.put(EncodeHintType.ERROR_CORRECTION, level);
+            all.put(level, Collections.unmodifiableMap(hints));
+        }
+        return all;
+    }
 }
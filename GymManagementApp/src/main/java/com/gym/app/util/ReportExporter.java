@@ -2,21 +2,42 @@ package com.gym.app.util;
 
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.List;
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 
-import com.gym.app.model.Attendance;
-import com.gym.app.model.Payment;
+import com.gym.app.db.DatabaseManager;
 
 public class ReportExporter {
 
+    // Rows kept in memory by the streaming export; older rows are flushed to a temp file
+    private static final int STREAM_ROW_WINDOW = 100;
+    private static final int STREAM_FETCH_SIZE = 1000;
+    // Streaming exports report progress and check for cancellation every this many rows
+    private static final int PROGRESS_INTERVAL = 1000;
+
+    /**
+     * Receives the number of rows written so far during a streaming export.
+     */
+    public interface ExportProgress {
+        ExportProgress NONE = rows -> { };
+
+        void rowsWritten(long rows);
+    }
+
     private static void ensureParentDirectory(String filePath) throws IOException {
         Path path = Paths.get(filePath);
         Path parent = path.getParent();
@@ -27,113 +48,273 @@ public class ReportExporter {
 
     // --- Excel Export using Apache POI ---
 
-    public static void exportRevenueToExcel(List<Payment> payments, String filePath) throws IOException {
-        ensureParentDirectory(filePath);
+    // --- Streaming Excel Export (SXSSF, straight from the database) ---
+    // Rows are read from a JDBC cursor and written through a small SXSSF window, so memory
+    // stays flat however large the table is. Amounts and dates are real numeric/date cells
+    // with shared styles, so they can be summed and filtered in Excel.
+    // Rows come newest first in rowid order, which SQLite reads without sorting; both tables
+    // are append-only and dated when inserted, so that is also date order.
 
-        Workbook workbook = new XSSFWorkbook();
-        Sheet sheet = workbook.createSheet("Revenue Report");
+    /**
+     * Streams the whole payments table to an Excel file.
+     * @return The number of data rows written.
+     */
+    public static long streamRevenueToExcel(String filePath) throws IOException, SQLException {
+        return streamRevenueToExcel(filePath, ExportProgress.NONE);
+    }
 
-        // Create header row
-        Row header = sheet.createRow(0);
-        header.createCell(0).setCellValue("Payment ID");
-        header.createCell(1).setCellValue("Member ID");
-        header.createCell(2).setCellValue("Amount");
-        header.createCell(3).setCellValue("Payment Date");
-        header.createCell(4).setCellValue("Period (Months)");
-
-        // Populate data rows
-        int rowNum = 1;
-        for (Payment payment : payments) {
-            Row row = sheet.createRow(rowNum++);
-            row.createCell(0).setCellValue(payment.getPaymentId());
-            row.createCell(1).setCellValue(payment.getMemberId());
-            row.createCell(2).setCellValue(payment.getAmount());
-            row.createCell(3).setCellValue(payment.getPaymentDate().toString());
-            row.createCell(4).setCellValue(payment.getPeriodMonths());
+    /**
+     * As {@link #streamRevenueToExcel(String)}, reporting progress; stops with an
+     * {@link InterruptedIOException} if the thread is interrupted.
+     */
+    public static long streamRevenueToExcel(String filePath, ExportProgress progress) throws IOException, SQLException {
+        String sql = "SELECT payment_id, member_id, amount, payment_date, period_months FROM payments ORDER BY payment_id DESC";
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setFetchSize(STREAM_FETCH_SIZE);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                long rows = streamToExcel(rs, filePath, progress, "Revenue Report",
+                        new String[] {"Payment ID", "Member ID", "Amount", "Payment Date", "Period (Months)"},
+                        (row, result, styles) -> {
+                            row.createCell(0).setCellValue(result.getInt("payment_id"));
+                            row.createCell(1).setCellValue(result.getInt("member_id"));
+                            row.createCell(2).setCellValue(result.getDouble("amount"));
+                            row.getCell(2).setCellStyle(styles.amount);
+                            Date paymentDate = result.getDate("payment_date");
+                            if (paymentDate != null) {
+                                row.createCell(3).setCellValue(paymentDate.toLocalDate());
+                                row.getCell(3).setCellStyle(styles.date);
+                            }
+                            row.createCell(4).setCellValue(result.getInt("period_months"));
+                        });
+                System.out.println("Revenue report streamed to Excel: " + filePath + " (" + rows + " rows)");
+                return rows;
+            }
         }
+    }
 
-        // Write the output to a file
-        try (FileOutputStream fileOut = new FileOutputStream(filePath)) {
-            workbook.write(fileOut);
-        } finally {
-            workbook.close();
+    /**
+     * Streams the whole attendance table to an Excel file.
+     * @return The number of data rows written.
+     */
+    public static long streamAttendanceToExcel(String filePath) throws IOException, SQLException {
+        return streamAttendanceToExcel(filePath, ExportProgress.NONE);
+    }
+
+    /**
+     * As {@link #streamAttendanceToExcel(String)}, reporting progress; stops with an
+     * {@link InterruptedIOException} if the thread is interrupted.
+     */
+    public static long streamAttendanceToExcel(String filePath, ExportProgress progress) throws IOException, SQLException {
+        String sql = "SELECT attendance_id, member_id, timestamp FROM attendance ORDER BY attendance_id DESC";
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setFetchSize(STREAM_FETCH_SIZE);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                long rows = streamToExcel(rs, filePath, progress, "Attendance Report",
+                        new String[] {"Attendance ID", "Member ID", "Timestamp"},
+                        (row, result, styles) -> {
+                            row.createCell(0).setCellValue(result.getInt("attendance_id"));
+                            row.createCell(1).setCellValue(result.getInt("member_id"));
+                            String timestamp = result.getString("timestamp");
+                            try {
+                                row.createCell(2).setCellValue(LocalDateTime.parse(timestamp));
+                                row.getCell(2).setCellStyle(styles.dateTime);
+                            } catch (DateTimeParseException | NullPointerException e) {
+                                // Keep a malformed value visible rather than dropping the row
+                                row.getCell(2).setCellValue(timestamp);
+                            }
+                        });
+                System.out.println("Attendance report streamed to Excel: " + filePath + " (" + rows + " rows)");
+                return rows;
+            }
         }
-        System.out.println("Revenue report exported to Excel: " + filePath);
     }
 
-    public static void exportAttendanceToExcel(List<Attendance> attendanceList, String filePath) throws IOException {
-        ensureParentDirectory(filePath);
+    private static void checkpoint(ExportProgress progress, long rows) throws InterruptedIOException {
+        if (rows % PROGRESS_INTERVAL == 0) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Export cancelled after " + rows + " rows");
+            }
+            progress.rowsWritten(rows);
+        }
+    }
+
+    private interface RowWriter {
+        void write(Row row, ResultSet rs, CellStyles styles) throws SQLException;
+    }
 
-        Workbook workbook = new XSSFWorkbook();
-        Sheet sheet = workbook.createSheet("Attendance Report");
+    // Created once per workbook: a style per cell would hit Excel's style limit and bloat the file
+    private static class CellStyles {
+        final CellStyle amount;
+        final CellStyle date;
+        final CellStyle dateTime;
+
+        CellStyles(Workbook workbook) {
+            short amountFormat = workbook.createDataFormat().getFormat("0.00");
+            short dateFormat = workbook.createDataFormat().getFormat("yyyy-mm-dd");
+            short dateTimeFormat = workbook.createDataFormat().getFormat("yyyy-mm-dd hh:mm:ss");
+            amount = workbook.createCellStyle();
+            amount.setDataFormat(amountFormat);
+            date = workbook.createCellStyle();
+            date.setDataFormat(dateFormat);
+            dateTime = workbook.createCellStyle();
+            dateTime.setDataFormat(dateTimeFormat);
+        }
+    }
 
-        // Create header row
+    private static SXSSFSheet createStreamSheet(SXSSFWorkbook workbook, String name, String[] headers) {
+        SXSSFSheet sheet = workbook.createSheet(name);
         Row header = sheet.createRow(0);
-        header.createCell(0).setCellValue("Attendance ID");
-        header.createCell(1).setCellValue("Member ID");
-        header.createCell(2).setCellValue("Timestamp");
-
-        // Populate data rows
-        int rowNum = 1;
-        for (Attendance attendance : attendanceList) {
-            Row row = sheet.createRow(rowNum++);
-            row.createCell(0).setCellValue(attendance.getAttendanceId());
-            row.createCell(1).setCellValue(attendance.getMemberId());
-            row.createCell(2).setCellValue(attendance.getTimestamp().toString());
+        for (int i = 0; i < headers.length; i++) {
+            header.createCell(i).setCellValue(headers[i]);
+            // Fixed widths: auto-sizing would need every row kept in memory
+            sheet.setColumnWidth(i, Math.max(14, headers[i].length() + 2) * 256);
         }
+        sheet.createFreezePane(0, 1);
+        return sheet;
+    }
+
+    private static long streamToExcel(ResultSet rs, String filePath, ExportProgress progress, String sheetName, String[] headers,
+                                      RowWriter rowWriter) throws IOException, SQLException {
+        ensureParentDirectory(filePath);
+
+        SXSSFWorkbook workbook = new SXSSFWorkbook(STREAM_ROW_WINDOW);
+        workbook.setCompressTempFiles(true);
+        try {
+            CellStyles styles = new CellStyles(workbook);
+            int lastRowIndex = SpreadsheetVersion.EXCEL2007.getLastRowIndex();
+
+            // A sheet holds at most 1,048,576 rows; larger exports continue on further sheets
+            SXSSFSheet sheet = createStreamSheet(workbook, sheetName, headers);
+            int rowNum = 1;
+            long total = 0;
+            while (rs.next()) {
+                if (rowNum > lastRowIndex) {
+                    sheet = createStreamSheet(workbook, sheetName + " (" + (workbook.getNumberOfSheets() + 1) + ")", headers);
+                    rowNum = 1;
+                }
+                rowWriter.write(sheet.createRow(rowNum++), rs, styles);
+                checkpoint(progress, ++total);
+            }
 
-        // Write the output to a file
-        try (FileOutputStream fileOut = new FileOutputStream(filePath)) {
-            workbook.write(fileOut);
+            try (FileOutputStream fileOut = new FileOutputStream(filePath)) {
+                workbook.write(fileOut);
+            }
+            progress.rowsWritten(total);
+            return total;
         } finally {
+            // Also deletes the (compressed) temp files backing the flushed rows
             workbook.close();
         }
-        System.out.println("Attendance report exported to Excel: " + filePath);
     }
 
-    // --- PDF Export (Placeholder/Simple Text File) ---
-    // Note: Implementing a full Java PDF library (like iText or Apache FOP) is complex
-    // and requires specific setup. For this project, we will create a simple text file
-    // representation as a placeholder for the PDF export. The README will explain
-    // the necessary steps for a full PDF implementation.
+    // --- PDF Export (streaming PdfReportWriter) ---
+    // Pages are rendered in parallel and written as they are ready, so a multi-thousand-page
+    // attendance report needs no more memory than a short one.
 
-    public static void exportRevenueToPDF(List<Payment> payments, String filePath) throws IOException {
-        ensureParentDirectory(filePath);
-        try (java.io.PrintWriter writer = new java.io.PrintWriter(filePath)) {
-            writer.println("--- Revenue Report ---");
-            writer.println("Generated on: " + java.time.LocalDate.now());
-            writer.println("----------------------");
-            writer.printf("%-12s %-10s %-10s %-15s %-10s\n", "Payment ID", "Member ID", "Amount", "Payment Date", "Period");
-            writer.println("----------------------------------------------------------------");
-            for (Payment payment : payments) {
-                writer.printf("%-12d %-10d %-10.2f %-15s %-10d\n",
-                        payment.getPaymentId(),
-                        payment.getMemberId(),
-                        payment.getAmount(),
-                        payment.getPaymentDate().toString(),
-                        payment.getPeriodMonths());
+    private static final String[] REVENUE_PDF_HEADERS = {"Payment ID", "Member ID", "Payment Date", "Period (Months)", "Amount"};
+    private static final int[] REVENUE_PDF_WIDTHS = {12, 10, 14, 15, 14};
+    private static final boolean[] REVENUE_PDF_RIGHT = {true, true, false, true, true};
+    private static final String[] ATTENDANCE_PDF_HEADERS = {"Attendance ID", "Member ID", "Timestamp"};
+    private static final int[] ATTENDANCE_PDF_WIDTHS = {14, 10, 20};
+    private static final boolean[] ATTENDANCE_PDF_RIGHT = {true, true, false};
+    private static final DateTimeFormatter PDF_TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /**
+     * Streams the whole payments table to a PDF, with page totals and a report total.
+     * @return The number of pages written.
+     */
+    public static int streamRevenueToPDF(String filePath) throws IOException, SQLException {
+        return streamRevenueToPDF(filePath, ExportProgress.NONE);
+    }
+
+    /**
+     * As {@link #streamRevenueToPDF(String)}, reporting progress; stops with an
+     * {@link InterruptedIOException} if the thread is interrupted.
+     */
+    public static int streamRevenueToPDF(String filePath, ExportProgress progress) throws IOException, SQLException {
+        String sql = "SELECT payment_id, member_id, amount, payment_date, period_months FROM payments ORDER BY payment_id DESC";
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setFetchSize(STREAM_FETCH_SIZE);
+            PdfReportWriter writer = newRevenuePdf(filePath);
+            long rows = 0;
+            try (writer; ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    Date paymentDate = rs.getDate("payment_date");
+                    addRevenueRow(writer, rs.getInt("payment_id"), rs.getInt("member_id"),
+                            paymentDate != null ? paymentDate.toLocalDate() : null,
+                            rs.getInt("period_months"), rs.getDouble("amount"));
+                    checkpoint(progress, ++rows);
+                }
             }
-            writer.println("----------------------------------------------------------------");
+            progress.rowsWritten(rows);
+            System.out.println("Revenue report exported to PDF: " + filePath + " (" + writer.getPageCount() + " pages)");
+            return writer.getPageCount();
         }
-        System.out.println("Revenue report exported to (simulated) PDF: " + filePath);
     }
 
-    public static void exportAttendanceToPDF(List<Attendance> attendanceList, String filePath) throws IOException {
-        ensureParentDirectory(filePath);
-        try (java.io.PrintWriter writer = new java.io.PrintWriter(filePath)) {
-            writer.println("--- Attendance Report ---");
-            writer.println("Generated on: " + java.time.LocalDate.now());
-            writer.println("-------------------------");
-            writer.printf("%-15s %-10s %-25s\n", "Attendance ID", "Member ID", "Timestamp");
-            writer.println("----------------------------------------------------------------");
-            for (Attendance attendance : attendanceList) {
-                writer.printf("%-15d %-10d %-25s\n",
-                        attendance.getAttendanceId(),
-                        attendance.getMemberId(),
-                        attendance.getTimestamp().toString());
+    /**
+     * Streams the whole attendance table to a PDF, with visit counts per page and in total.
+     * @return The number of pages written.
+     */
+    public static int streamAttendanceToPDF(String filePath) throws IOException, SQLException {
+        return streamAttendanceToPDF(filePath, ExportProgress.NONE);
+    }
+
+    /**
+     * As {@link #streamAttendanceToPDF(String)}, reporting progress; stops with an
+     * {@link InterruptedIOException} if the thread is interrupted.
+     */
+    public static int streamAttendanceToPDF(String filePath, ExportProgress progress) throws IOException, SQLException {
+        String sql = "SELECT attendance_id, member_id, timestamp FROM attendance ORDER BY attendance_id DESC";
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setFetchSize(STREAM_FETCH_SIZE);
+            PdfReportWriter writer = newAttendancePdf(filePath);
+            long rows = 0;
+            try (writer; ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    String timestamp = rs.getString("timestamp");
+                    try {
+                        timestamp = LocalDateTime.parse(timestamp).format(PDF_TIMESTAMP_FORMAT);
+                    } catch (DateTimeParseException | NullPointerException e) {
+                        // Print a malformed value as stored rather than dropping the row
+                    }
+                    addAttendanceRow(writer, rs.getInt("attendance_id"), rs.getInt("member_id"), timestamp);
+                    checkpoint(progress, ++rows);
+                }
             }
-            writer.println("----------------------------------------------------------------");
+            progress.rowsWritten(rows);
+            System.out.println("Attendance report exported to PDF: " + filePath + " (" + writer.getPageCount() + " pages)");
+            return writer.getPageCount();
         }
-        System.out.println("Attendance report exported to (simulated) PDF: " + filePath);
+    }
+
+    private static PdfReportWriter newRevenuePdf(String filePath) throws IOException {
+        return new PdfReportWriter(Paths.get(filePath), "Revenue Report", REVENUE_PDF_HEADERS, REVENUE_PDF_WIDTHS,
+                REVENUE_PDF_RIGHT, total -> String.format("%.2f", total), Runtime.getRuntime().availableProcessors());
+    }
+
+    private static PdfReportWriter newAttendancePdf(String filePath) throws IOException {
+        return new PdfReportWriter(Paths.get(filePath), "Attendance Report", ATTENDANCE_PDF_HEADERS, ATTENDANCE_PDF_WIDTHS,
+                ATTENDANCE_PDF_RIGHT, total -> String.format("%.0f visits", total), Runtime.getRuntime().availableProcessors());
+    }
+
+    private static void addRevenueRow(PdfReportWriter writer, int paymentId, int memberId, LocalDate paymentDate,
+                                      int periodMonths, double amount) throws IOException {
+        writer.addRow(new String[] {String.valueOf(paymentId), String.valueOf(memberId),
+                paymentDate != null ? paymentDate.toString() : "", String.valueOf(periodMonths),
+                String.format("%.2f", amount)}, amount);
+    }
+
+    private static void addAttendanceRow(PdfReportWriter writer, int attendanceId, int memberId, String timestamp)
+            throws IOException {
+        writer.addRow(new String[] {String.valueOf(attendanceId), String.valueOf(memberId), timestamp}, 1);
     }
 }
@@ -0,0 +1,467 @@
+package com.gym.app.util;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.DoubleFunction;
+
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.TextAlignment;
+
+/**
+ * A line chart for long daily series (years of revenue or visits), drawn on a {@link Canvas}.
+ * <p>
+ * {@code LineChart} creates a scene-graph node per point and stalls with thousands of days.
+ * This chart draws one polyline instead: the visible part of the series is taken from the
+ * finest pre-aggregated level (day, week or month) with at most two points per pixel, then
+ * reduced to one point per pixel with Largest-Triangle-Three-Buckets, which keeps the peaks
+ * and dips that averaging would flatten. A redraw costs in proportion to the chart's width,
+ * not the length of the series.
+ * <p>
+ * Scroll to zoom around the pointer, drag to pan, double-click to show everything; hovering
+ * shows the value under the pointer. Build the {@link Series} off the FX thread and hand it
+ * over with {@link #setSeries}.
+ */
+public class TrendChart extends Region {
+
+    public enum Level {
+        DAY("per day", 1),
+        WEEK("per week", 7),
+        MONTH("per month", 30.44);
+
+        private final String label;
+        private final double days;
+
+        Level(String label, double days) {
+            this.label = label;
+            this.days = days;
+        }
+    }
+
+    /**
+     * A daily series with its weekly (Monday-first) and monthly totals. Immutable, so it can
+     * be built on any thread.
+     */
+    public static final class Series {
+        private final double[][] starts = new double[Level.values().length][]; // epoch day each point starts on
+        private final double[][] values = new double[Level.values().length][];
+        private final long firstDay;
+        private final long endDay; // exclusive
+
+        public Series(LocalDate firstDay, double[] dailyValues) {
+            this.firstDay = firstDay.toEpochDay();
+            this.endDay = this.firstDay + dailyValues.length;
+            int days = dailyValues.length;
+            double[] dayStarts = new double[days];
+            for (int i = 0; i < days; i++) {
+                dayStarts[i] = this.firstDay + i;
+            }
+            starts[Level.DAY.ordinal()] = dayStarts;
+            values[Level.DAY.ordinal()] = dailyValues.clone();
+            aggregate(Level.WEEK, dailyValues, day -> day - Math.floorMod(day + 3, 7)); // 1970-01-01 was a Thursday
+            aggregate(Level.MONTH, dailyValues, day -> LocalDate.ofEpochDay(day).withDayOfMonth(1).toEpochDay());
+        }
+
+        private interface BucketStart {
+            long of(long epochDay);
+        }
+
+        private void aggregate(Level level, double[] dailyValues, BucketStart bucketStart) {
+            double[] bucketStarts = new double[dailyValues.length];
+            double[] totals = new double[dailyValues.length];
+            int count = 0;
+            long current = Long.MIN_VALUE;
+            for (int i = 0; i < dailyValues.length; i++) {
+                long start = bucketStart.of(firstDay + i);
+                if (start != current) {
+                    current = start;
+                    bucketStarts[count++] = start;
+                }
+                totals[count - 1] += dailyValues[i];
+            }
+            starts[level.ordinal()] = Arrays.copyOf(bucketStarts, count);
+            values[level.ordinal()] = Arrays.copyOf(totals, count);
+        }
+
+        public int getDayCount() {
+            return (int) (endDay - firstDay);
+        }
+    }
+
+    private static final double LEFT = 70;
+    private static final double RIGHT = 14;
+    private static final double TOP = 26;
+    private static final double BOTTOM = 22;
+    private static final double MIN_SPAN_DAYS = 14;
+    private static final double MIN_LABEL_SPACING = 90;
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("MMM d", Locale.ENGLISH);
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("MMM yyyy", Locale.ENGLISH);
+    private static final DateTimeFormatter YEAR_FORMAT = DateTimeFormatter.ofPattern("yyyy", Locale.ENGLISH);
+    private static final Font FONT = Font.font(11);
+
+    private final Canvas canvas = new Canvas();
+    private Series series;
+    private String title = "";
+    private String emptyText = "No data";
+    private DoubleFunction<String> valueFormat = value -> String.format("%,.0f", value);
+    private Color lineColor = Color.web("#3498db");
+
+    // Visible range in epoch days, end exclusive
+    private double viewStart;
+    private double viewEnd;
+    private double dragX;
+    private double dragViewStart;
+    private double hoverX = -1;
+
+    // Reused between redraws
+    private double[] pointX = new double[0];
+    private double[] pointY = new double[0];
+
+    public TrendChart() {
+        getChildren().add(canvas);
+        setMinSize(200, 120);
+
+        setOnScroll(e -> {
+            if (series == null || e.getDeltaY() == 0) {
+                return;
+            }
+            double span = viewEnd - viewStart;
+            double newSpan = Math.max(MIN_SPAN_DAYS, Math.min(series.getDayCount(), span * Math.pow(0.998, e.getDeltaY())));
+            double pivot = dayAt(e.getX());
+            viewStart = pivot - (pivot - viewStart) * newSpan / span;
+            viewEnd = viewStart + newSpan;
+            clampView();
+            draw();
+        });
+        setOnMousePressed(e -> {
+            dragX = e.getX();
+            dragViewStart = viewStart;
+        });
+        setOnMouseDragged(e -> {
+            if (series == null) {
+                return;
+            }
+            double span = viewEnd - viewStart;
+            viewStart = dragViewStart - (e.getX() - dragX) / plotWidth() * span;
+            viewEnd = viewStart + span;
+            clampView();
+            hoverX = e.getX();
+            draw();
+        });
+        setOnMouseClicked(e -> {
+            if (e.getClickCount() == 2) {
+                resetView();
+                draw();
+            }
+        });
+        setOnMouseMoved(e -> {
+            hoverX = e.getX();
+            draw();
+        });
+        setOnMouseExited(e -> {
+            hoverX = -1;
+            draw();
+        });
+    }
+
+    /**
+     * Shows a new series, zoomed out to all of it. Call on the FX thread.
+     */
+    public void setSeries(Series series) {
+        this.series = series != null && series.getDayCount() > 0 ? series : null;
+        resetView();
+        draw();
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+        draw();
+    }
+
+    /**
+     * Text shown instead of the chart when there is no series (e.g. while it is computed).
+     */
+    public void setEmptyText(String emptyText) {
+        this.emptyText = emptyText;
+        draw();
+    }
+
+    public void setValueFormat(DoubleFunction<String> valueFormat) {
+        this.valueFormat = valueFormat;
+        draw();
+    }
+
+    public void setLineColor(Color lineColor) {
+        this.lineColor = lineColor;
+        draw();
+    }
+
+    @Override
+    protected void layoutChildren() {
+        double width = snapSizeX(getWidth());
+        double height = snapSizeY(getHeight());
+        if (canvas.getWidth() != width || canvas.getHeight() != height) {
+            canvas.setWidth(width);
+            canvas.setHeight(height);
+            draw();
+        }
+    }
+
+    @Override
+    protected double computePrefWidth(double height) {
+        return 600;
+    }
+
+    @Override
+    protected double computePrefHeight(double width) {
+        return 240;
+    }
+
+    /**
+     * Reduces points {@code from} (inclusive) to {@code to} (exclusive) to at most
+     * {@code threshold} with Largest-Triangle-Three-Buckets: the first and last points are
+     * kept, and from each of the buckets in between the point forming the largest triangle
+     * with the point kept before it and the average of the next bucket.
+     * @return The number of points written to {@code outX} and {@code outY}.
+     */
+    public static int downsample(double[] xs, double[] ys, int from, int to, int threshold, double[] outX, double[] outY) {
+        int n = to - from;
+        if (threshold >= n || threshold < 3) {
+            System.arraycopy(xs, from, outX, 0, n);
+            System.arraycopy(ys, from, outY, 0, n);
+            return n;
+        }
+        double bucketSize = (double) (n - 2) / (threshold - 2);
+        int kept = from;
+        int count = 0;
+        outX[count] = xs[kept];
+        outY[count++] = ys[kept];
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            int nextStart = from + (int) ((bucket + 1) * bucketSize) + 1;
+            int nextEnd = Math.min(from + (int) ((bucket + 2) * bucketSize) + 1, to);
+            double averageX = 0;
+            double averageY = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                averageX += xs[i];
+                averageY += ys[i];
+            }
+            int nextLength = Math.max(1, nextEnd - nextStart);
+            averageX /= nextLength;
+            averageY /= nextLength;
+
+            int start = from + (int) (bucket * bucketSize) + 1;
+            int end = from + (int) ((bucket + 1) * bucketSize) + 1;
+            double maxArea = -1;
+            int chosen = start;
+            for (int i = start; i < end; i++) {
+                double area = Math.abs((xs[kept] - averageX) * (ys[i] - ys[kept]) - (xs[kept] - xs[i]) * (averageY - ys[kept]));
+                if (area > maxArea) {
+                    maxArea = area;
+                    chosen = i;
+                }
+            }
+            outX[count] = xs[chosen];
+            outY[count++] = ys[chosen];
+            kept = chosen;
+        }
+        outX[count] = xs[to - 1];
+        outY[count++] = ys[to - 1];
+        return count;
+    }
+
+    /**
+     * The finest level with at most two points per pixel across {@code spanDays}.
+     */
+    static Level levelFor(double spanDays, double plotWidth) {
+        for (Level level : Level.values()) {
+            if (spanDays / level.days <= plotWidth * 2) {
+                return level;
+            }
+        }
+        return Level.MONTH;
+    }
+
+    private void resetView() {
+        if (series != null) {
+            viewStart = series.firstDay;
+            viewEnd = series.endDay;
+        }
+    }
+
+    private void clampView() {
+        double span = viewEnd - viewStart;
+        if (viewStart < series.firstDay) {
+            viewStart = series.firstDay;
+        }
+        if (viewStart + span > series.endDay) {
+            viewStart = series.endDay - span;
+        }
+        viewEnd = viewStart + span;
+    }
+
+    private double plotWidth() {
+        return Math.max(1, canvas.getWidth() - LEFT - RIGHT);
+    }
+
+    private double dayAt(double x) {
+        return viewStart + (x - LEFT) / plotWidth() * (viewEnd - viewStart);
+    }
+
+    private void draw() {
+        double width = canvas.getWidth();
+        double height = canvas.getHeight();
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        gc.clearRect(0, 0, width, height);
+        double plotWidth = width - LEFT - RIGHT;
+        double plotHeight = height - TOP - BOTTOM;
+        if (plotWidth < 10 || plotHeight < 10) {
+            return;
+        }
+        gc.setFont(FONT);
+        gc.setTextBaseline(VPos.CENTER);
+        if (series == null) {
+            gc.setFill(Color.GRAY);
+            gc.setTextAlign(TextAlignment.CENTER);
+            gc.fillText(emptyText, width / 2, height / 2);
+            return;
+        }
+
+        double span = viewEnd - viewStart;
+        Level level = levelFor(span, plotWidth);
+        double[] starts = series.starts[level.ordinal()];
+        double[] values = series.values[level.ordinal()];
+        // One point either side of the view, so the line runs to the edges
+        int from = Math.max(0, indexAtOrBefore(starts, viewStart));
+        int to = Math.min(starts.length, indexAtOrBefore(starts, viewEnd) + 2);
+
+        double max = 0;
+        for (int i = from; i < to; i++) {
+            max = Math.max(max, values[i]);
+        }
+        double[] grid = niceScale(max);
+        double top = grid[grid.length - 1];
+
+        // Grid and value labels
+        gc.setTextAlign(TextAlignment.RIGHT);
+        gc.setLineWidth(1);
+        for (double value : grid) {
+            double y = Math.round(TOP + plotHeight - value / top * plotHeight) + 0.5;
+            gc.setStroke(Color.web("#e5e5e5"));
+            gc.strokeLine(LEFT, y, LEFT + plotWidth, y);
+            gc.setFill(Color.web("#7f8c8d"));
+            gc.fillText(valueFormat.apply(value), LEFT - 6, y);
+        }
+        drawDateLabels(gc, plotWidth, plotHeight, span);
+
+        // The series
+        int threshold = (int) Math.max(3, plotWidth);
+        if (pointX.length < Math.min(to - from, threshold)) {
+            pointX = new double[threshold];
+            pointY = new double[threshold];
+        }
+        int count = downsample(starts, values, from, to, threshold, pointX, pointY);
+        for (int i = 0; i < count; i++) {
+            pointX[i] = LEFT + (pointX[i] - viewStart) / span * plotWidth;
+            pointY[i] = TOP + plotHeight - pointY[i] / top * plotHeight;
+        }
+        gc.save();
+        gc.beginPath();
+        gc.rect(LEFT, TOP, plotWidth, plotHeight);
+        gc.clip();
+        gc.setStroke(lineColor);
+        gc.setLineWidth(1.5);
+        gc.strokePolyline(pointX, pointY, count);
+        gc.restore();
+
+        // Title, or the value under the pointer
+        gc.setTextAlign(TextAlignment.LEFT);
+        gc.setFill(Color.web("#333333"));
+        String heading = title + " (" + level.label + ")";
+        if (hoverX >= LEFT && hoverX <= LEFT + plotWidth && to > from) {
+            int index = Math.max(from, Math.min(to - 1, indexAtOrBefore(starts, dayAt(hoverX))));
+            double x = LEFT + (starts[index] - viewStart) / span * plotWidth;
+            gc.setStroke(Color.web("#bdc3c7"));
+            gc.strokeLine(Math.round(x) + 0.5, TOP, Math.round(x) + 0.5, TOP + plotHeight);
+            heading += "   " + describe(level, (long) starts[index]) + ": " + valueFormat.apply(values[index]);
+        }
+        gc.fillText(heading, LEFT, TOP / 2);
+    }
+
+    private void drawDateLabels(GraphicsContext gc, double plotWidth, double plotHeight, double span) {
+        gc.setTextAlign(TextAlignment.CENTER);
+        gc.setFill(Color.web("#7f8c8d"));
+        double y = TOP + plotHeight + BOTTOM / 2;
+        double pixelsPerDay = plotWidth / span;
+        long firstVisible = (long) Math.ceil(viewStart);
+        long lastVisible = (long) Math.floor(viewEnd - 1e-9);
+        for (int step : new int[] {1, 2, 7, 14}) {
+            if (step * pixelsPerDay >= MIN_LABEL_SPACING) {
+                // Weekly steps start on Mondays
+                long day = step >= 7 ? firstVisible + Math.floorMod(-(firstVisible + 3), 7) : firstVisible;
+                for (; day <= lastVisible; day += step) {
+                    gc.fillText(LocalDate.ofEpochDay(day).format(DAY_FORMAT), LEFT + (day - viewStart) * pixelsPerDay, y);
+                }
+                return;
+            }
+        }
+        int months = 12;
+        for (int candidate : new int[] {1, 2, 3, 6, 12}) {
+            if (candidate * 30.44 * pixelsPerDay >= MIN_LABEL_SPACING) {
+                months = candidate;
+                break;
+            }
+        }
+        int years = months < 12 ? 1 : (int) Math.ceil(MIN_LABEL_SPACING / (365.25 * pixelsPerDay));
+        YearMonth month = YearMonth.from(LocalDate.ofEpochDay(firstVisible));
+        if (month.atDay(1).toEpochDay() < firstVisible) {
+            month = month.plusMonths(1);
+        }
+        for (; month.atDay(1).toEpochDay() <= lastVisible; month = month.plusMonths(1)) {
+            boolean labelled = months < 12
+                    ? (month.getMonthValue() - 1) % months == 0
+                    : month.getMonthValue() == 1 && month.getYear() % years == 0;
+            if (labelled) {
+                String text = months < 12 ? month.format(MONTH_FORMAT) : month.format(YEAR_FORMAT);
+                gc.fillText(text, LEFT + (month.atDay(1).toEpochDay() - viewStart) * pixelsPerDay, y);
+            }
+        }
+    }
+
+    private static String describe(Level level, long epochDay) {
+        LocalDate day = LocalDate.ofEpochDay(epochDay);
+        return switch (level) {
+            case DAY -> day.toString();
+            case WEEK -> "Week of " + day;
+            case MONTH -> day.format(MONTH_FORMAT);
+        };
+    }
+
+    // Index of the last start at or before day; -1 if there is none
+    private static int indexAtOrBefore(double[] starts, double day) {
+        int index = Arrays.binarySearch(starts, day);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    // Gridline values from 0 to a round number at or above max: 1, 2 or 5 times a power of ten per step
+    private static double[] niceScale(double max) {
+        if (max <= 0) {
+            return new double[] {0, 1};
+        }
+        double rough = max / 4;
+        double magnitude = Math.pow(10, Math.floor(Math.log10(rough)));
+        double step = rough <= magnitude ? magnitude : rough <= 2 * magnitude ? 2 * magnitude : rough <= 5 * magnitude ? 5 * magnitude : 10 * magnitude;
+        int lines = (int) Math.ceil(max / step);
+        double[] grid = new double[lines + 1];
+        for (int i = 0; i <= lines; i++) {
+            grid[i] = i * step;
+        }
+        return grid;
+    }
+}
@@ -0,0 +1,178 @@
+package com.gym.app.util;
+
+import java.util.Arrays;
+
+/**
+ * One member's visits as a compact, sorted list of minutes ({@link AttendanceColumns#toMinute}).
+ * <p>
+ * Each visit is stored as the gap to the one before it, as an unsigned varint: a day or a
+ * week between visits takes two or three bytes instead of a 40-byte {@code Attendance}
+ * object. Every {@value #CHECKPOINT_INTERVAL}th visit is also kept as a checkpoint (its
+ * minute and byte offset), so a page of the timeline is decoded from the nearest
+ * checkpoint rather than from the first visit. Not thread-safe.
+ */
+public final class VisitTimeline {
+
+    private static final int CHECKPOINT_INTERVAL = 64;
+
+    private byte[] deltas = new byte[16];
+    private int length;
+    private int count;
+    private int lastMinute;
+    // Visit i * CHECKPOINT_INTERVAL starts at byte checkpointOffsets[i] and is at checkpointMinutes[i]
+    private int[] checkpointOffsets = new int[1];
+    private int[] checkpointMinutes = new int[1];
+
+    /**
+     * @param sortedMinutes Visits in ascending order.
+     */
+    public static VisitTimeline of(int[] sortedMinutes, int count) {
+        VisitTimeline timeline = new VisitTimeline();
+        for (int i = 0; i < count; i++) {
+            timeline.append(sortedMinutes[i]);
+        }
+        return timeline;
+    }
+
+    /**
+     * Adds a visit. Visits normally arrive in time order; an older one (e.g. an offline
+     * admission saved late) re-encodes the timeline.
+     */
+    public void add(int minute) {
+        if (count == 0 || minute >= lastMinute) {
+            append(minute);
+            return;
+        }
+        int[] minutes = decode(0, count);
+        int index = Arrays.binarySearch(minutes, minute);
+        int[] merged = new int[count + 1];
+        int at = index >= 0 ? index : -index - 1;
+        System.arraycopy(minutes, 0, merged, 0, at);
+        merged[at] = minute;
+        System.arraycopy(minutes, at, merged, at + 1, count - at);
+        reset();
+        for (int value : merged) {
+            append(value);
+        }
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return The latest visit's minute; undefined when there are no visits.
+     */
+    public int getLastMinute() {
+        return lastMinute;
+    }
+
+    /**
+     * @return Visits at or after {@code minute}.
+     */
+    public int countSince(int minute) {
+        if (count == 0 || lastMinute < minute) {
+            return 0;
+        }
+        // Decoded from the last checkpoint before the cutoff, so recent counts stay cheap
+        int checkpoint = 0;
+        while (checkpoint + 1 < checkpointCount() && checkpointMinutes[checkpoint + 1] < minute) {
+            checkpoint++;
+        }
+        int start = checkpoint * CHECKPOINT_INTERVAL;
+        int[] minutes = decode(start, count);
+        int before = 0;
+        while (before < minutes.length && minutes[before] < minute) {
+            before++;
+        }
+        return count - start - before;
+    }
+
+    /**
+     * Decodes visits {@code from} (inclusive) to {@code to} (exclusive), oldest first.
+     */
+    public int[] decode(int from, int to) {
+        from = Math.max(0, from);
+        to = Math.min(count, to);
+        if (from >= to) {
+            return new int[0];
+        }
+        int checkpoint = from / CHECKPOINT_INTERVAL;
+        int index = checkpoint * CHECKPOINT_INTERVAL;
+        int position = checkpointOffsets[checkpoint];
+        int minute = checkpointMinutes[checkpoint];
+        int[] result = new int[to - from];
+        // The checkpoint's own bytes encode its gap from the visit before it, already applied
+        position = skipVarint(position);
+        while (true) {
+            if (index >= from) {
+                result[index - from] = minute;
+            }
+            index++;
+            if (index >= to) {
+                return result;
+            }
+            int gap = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = deltas[position++];
+                gap |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            minute += gap;
+        }
+    }
+
+    /**
+     * @return Bytes used, including the checkpoints.
+     */
+    public long getSizeInBytes() {
+        return length + checkpointCount() * 8L;
+    }
+
+    private void append(int minute) {
+        int gap = count == 0 ? minute : minute - lastMinute;
+        if (count % CHECKPOINT_INTERVAL == 0) {
+            int checkpoint = count / CHECKPOINT_INTERVAL;
+            if (checkpoint == checkpointOffsets.length) {
+                checkpointOffsets = Arrays.copyOf(checkpointOffsets, checkpoint * 2);
+                checkpointMinutes = Arrays.copyOf(checkpointMinutes, checkpoint * 2);
+            }
+            checkpointOffsets[checkpoint] = length;
+            checkpointMinutes[checkpoint] = minute;
+        }
+        if (length + 5 > deltas.length) {
+            deltas = Arrays.copyOf(deltas, deltas.length * 2);
+        }
+        // The first visit's "gap" is its minute, which is never negative for dates after 1970
+        int value = gap;
+        while ((value & ~0x7F) != 0) {
+            deltas[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        deltas[length++] = (byte) value;
+        lastMinute = minute;
+        count++;
+    }
+
+    private int skipVarint(int position) {
+        while (deltas[position++] < 0) {
+            // continuation bytes
+        }
+        return position;
+    }
+
+    private int checkpointCount() {
+        return (count + CHECKPOINT_INTERVAL - 1) / CHECKPOINT_INTERVAL;
+    }
+
+    private void reset() {
+        deltas = new byte[Math.max(16, length)];
+        length = 0;
+        count = 0;
+        lastMinute = 0;
+        checkpointOffsets = new int[1];
+        checkpointMinutes = new int[1];
+    }
+}
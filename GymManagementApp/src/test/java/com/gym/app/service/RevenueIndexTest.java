@@ -0,0 +1,127 @@
+package com.gym.app.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.gym.app.db.DatabaseManager;
+
+class RevenueIndexTest {
+
+    private static final LocalDate TODAY = LocalDate.now();
+
+    @TempDir
+    static Path dataDir;
+
+    // The expected cents per day, summed by brute force
+    private static final Map<LocalDate, Long> expected = new TreeMap<>();
+    private static long nextPaymentId = 1;
+
+    @BeforeAll
+    static void createDatabase() {
+        System.setProperty("gym.app.dataDir", dataDir.toString());
+        DatabaseManager.initializeDatabase();
+    }
+
+    @AfterAll
+    static void clearDataDir() {
+        System.clearProperty("gym.app.dataDir");
+    }
+
+    @Test
+    void totalsMatchAfterBuildAndGrowthInBothDirections() throws SQLException {
+        Random random = new Random(42);
+        // Within the initial window, and years outside it on both sides
+        for (int i = 0; i < 500; i++) {
+            insert(TODAY.plusDays(random.nextInt(1200) - 600), 10 + random.nextInt(9000) / 100.0);
+        }
+        insert(TODAY.minusYears(9), 25.50);
+        insert(TODAY.plusYears(6), 40.25);
+        RevenueIndex index = RevenueIndex.getInstance();
+        index.load();
+        assertTrue(index.isLoaded());
+        assertMatches(index);
+
+        // Added after the build: further out still, so the arrays grow again both ways
+        add(index, TODAY.minusYears(30), 12.34);
+        add(index, TODAY.plusYears(25), 56.78);
+        add(index, TODAY, 0.01);
+        assertMatches(index);
+
+        // A rebuild reads the same totals back from the table
+        index.load();
+        assertMatches(index);
+    }
+
+    private static void assertMatches(RevenueIndex index) {
+        LocalDate first = TODAY.minusYears(31);
+        LocalDate last = TODAY.plusYears(26);
+        assertEquals(0, index.getRunningBalance(first.minusDays(1)), 1e-9);
+        long running = 0;
+        for (Map.Entry<LocalDate, Long> day : expected.entrySet()) {
+            running += day.getValue();
+            assertEquals(running / 100.0, index.getRunningBalance(day.getKey()), 1e-6, day.getKey().toString());
+        }
+        assertEquals(running / 100.0, index.getTotal(first, last), 1e-6);
+        assertEquals(0, index.getTotal(last, first), 1e-9);
+
+        Random random = new Random(7);
+        for (int i = 0; i < 200; i++) {
+            LocalDate start = TODAY.plusDays(random.nextInt(24_000) - 12_000);
+            LocalDate end = start.plusDays(random.nextInt(3_000));
+            assertEquals(bruteForceCents(start, end) / 100.0, index.getTotal(start, end), 1e-6, start + ".." + end);
+        }
+
+        LocalDate start = TODAY.minusDays(30);
+        double[] daily = index.getDailyTotals(start, TODAY);
+        double[] expectedDaily = new double[daily.length];
+        for (int i = 0; i < expectedDaily.length; i++) {
+            expectedDaily[i] = expected.getOrDefault(start.plusDays(i), 0L) / 100.0;
+        }
+        assertArrayEquals(expectedDaily, daily, 1e-9);
+    }
+
+    private static long bruteForceCents(LocalDate start, LocalDate end) {
+        long cents = 0;
+        for (Map.Entry<LocalDate, Long> day : expected.entrySet()) {
+            if (!day.getKey().isBefore(start) && !day.getKey().isAfter(end)) {
+                cents += day.getValue();
+            }
+        }
+        return cents;
+    }
+
+    private static void insert(LocalDate date, double amount) throws SQLException {
+        String sql = "INSERT INTO payments (member_id, amount, payment_date, period_months) VALUES (1, ?, ?, 1)";
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setDouble(1, amount);
+            pstmt.setDate(2, Date.valueOf(date));
+            pstmt.executeUpdate();
+        }
+        expected.merge(date, Math.round(amount * 100), Long::sum);
+        nextPaymentId++;
+    }
+
+    // As PaymentService does after saving a payment
+    private static void add(RevenueIndex index, LocalDate date, double amount) throws SQLException {
+        long paymentId = nextPaymentId;
+        insert(date, amount);
+        index.add(paymentId, date, amount);
+    }
+}
@@ -0,0 +1,113 @@
+package com.gym.app.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class AttendanceColumnsTest {
+
+    @Test
+    void blocksAreSealedSortedAndKeepEveryRow() {
+        Random random = new Random(8);
+        AttendanceColumns columns = new AttendanceColumns();
+        List<Long> rows = new ArrayList<>();
+        int minute = AttendanceColumns.toMinute(LocalDateTime.of(2024, 1, 1, 6, 0));
+        for (int i = 0; i < 2 * AttendanceColumns.BLOCK_ROWS + 1_000; i++) {
+            minute += random.nextInt(20);
+            // Every so often an offline admission arrives a few hours late
+            int rowMinute = random.nextInt(50) == 0 ? minute - random.nextInt(600) : minute;
+            int memberId = 1 + random.nextInt(2_000);
+            columns.append(memberId, rowMinute);
+            rows.add(row(memberId, rowMinute));
+        }
+
+        List<AttendanceColumns.Block> blocks = columns.snapshot();
+        assertEquals(rows.size(), columns.getRowCount());
+        assertEquals(3, blocks.size());
+        assertEquals(AttendanceColumns.BLOCK_ROWS, blocks.get(0).getRowCount());
+        assertEquals(1_000, blocks.get(2).getRowCount());
+
+        List<Long> decoded = new ArrayList<>();
+        int[] minutes = new int[AttendanceColumns.BLOCK_ROWS];
+        for (AttendanceColumns.Block block : blocks) {
+            block.decodeMinutes(minutes);
+            int[] memberIds = block.memberIds();
+            for (int i = 0; i < block.getRowCount(); i++) {
+                if (i > 0) {
+                    assertTrue(minutes[i] >= minutes[i - 1], "rows sorted by minute");
+                }
+                decoded.add(row(memberIds[i], minutes[i]));
+            }
+            assertEquals(minutes[0], block.getMinMinute());
+            assertEquals(minutes[block.getRowCount() - 1], block.getMaxMinute());
+        }
+        // The same rows, each member ID still paired with its own minute
+        assertEquals(sorted(rows), sorted(decoded));
+    }
+
+    @Test
+    void snapshotLeavesTheTailOpen() {
+        AttendanceColumns columns = new AttendanceColumns();
+        columns.append(7, 100);
+        columns.append(9, 90);
+        assertEquals(1, columns.snapshot().size());
+        assertEquals(0, columns.getEncodedBytes());
+
+        columns.append(8, 95);
+        AttendanceColumns.Block block = columns.snapshot().get(0);
+        int[] minutes = new int[block.getRowCount()];
+        block.decodeMinutes(minutes);
+        assertEquals(3, block.getRowCount());
+        assertEquals(9, columns.getMaxMemberId());
+        assertEquals("[90, 95, 100]", Arrays.toString(minutes));
+        assertEquals("[9, 8, 7]", Arrays.toString(block.memberIds()));
+    }
+
+    @Test
+    void overlapsIsHalfOpen() {
+        AttendanceColumns columns = new AttendanceColumns();
+        columns.append(1, 100);
+        columns.append(1, 200);
+        AttendanceColumns.Block block = columns.snapshot().get(0);
+
+        assertTrue(block.overlaps(200, 201));
+        assertTrue(block.overlaps(0, 101));
+        assertFalse(block.overlaps(0, 100));
+        assertFalse(block.overlaps(201, 300));
+    }
+
+    @Test
+    void parseMinuteMatchesToMinute() {
+        Random random = new Random(9);
+        for (int i = 0; i < 5_000; i++) {
+            LocalDateTime time = LocalDateTime.of(1990 + random.nextInt(80), 1 + random.nextInt(12), 1, 0, 0)
+                    .plusDays(random.nextInt(31))
+                    .plusMinutes(random.nextInt(AttendanceColumns.MINUTES_PER_DAY))
+                    .plusSeconds(random.nextInt(60))
+                    .plusNanos(random.nextInt(3) * 250_000_000L);
+            assertEquals(AttendanceColumns.toMinute(time), AttendanceColumns.parseMinute(time.toString()), time.toString());
+        }
+        assertEquals(0, AttendanceColumns.parseMinute("1970-01-01T00:00"));
+        assertEquals(-1, AttendanceColumns.parseMinute("1969-12-31T23:59:59"));
+        assertEquals(AttendanceColumns.toMinute(LocalDateTime.of(2024, 2, 29, 23, 59)),
+                AttendanceColumns.parseMinute("2024-02-29T23:59:00.5"));
+    }
+
+    private static long row(int memberId, int minute) {
+        return ((long) minute << 32) | memberId;
+    }
+
+    private static List<Long> sorted(List<Long> rows) {
+        List<Long> copy = new ArrayList<>(rows);
+        copy.sort(null);
+        return copy;
+    }
+}
@@ -0,0 +1,88 @@
+package com.gym.app.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class HyperLogLogTest {
+
+    @Test
+    void estimatesStayWithinTheErrorBound() {
+        // Member IDs are consecutive in practice, which the hash has to spread
+        for (int count : new int[] {1_000, 10_000, 100_000, 1_000_000}) {
+            HyperLogLog sketch = new HyperLogLog();
+            for (int id = 1; id <= count; id++) {
+                sketch.offer(id);
+            }
+            assertWithinBound(count, sketch.estimate());
+        }
+    }
+
+    @Test
+    void smallCountsAreNearlyExact() {
+        assertEquals(0, new HyperLogLog().estimate());
+        HyperLogLog sketch = new HyperLogLog();
+        for (int id = 1; id <= 200; id++) {
+            sketch.offer(id * 7919);
+        }
+        assertEquals(200, sketch.estimate(), 4);
+    }
+
+    @Test
+    void offeringAnIdAgainChangesNothing() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int id = 0; id < 5_000; id++) {
+            sketch.offer(id);
+        }
+        byte[] before = sketch.toBytes();
+        for (int id = 0; id < 5_000; id++) {
+            assertFalse(sketch.offer(id));
+        }
+        assertArrayEquals(before, sketch.toBytes());
+    }
+
+    @Test
+    void mergeEqualsTheSketchOfTheUnion() {
+        HyperLogLog monday = new HyperLogLog();
+        HyperLogLog tuesday = new HyperLogLog();
+        HyperLogLog both = new HyperLogLog();
+        for (int id = 0; id < 30_000; id++) {
+            monday.offer(id);
+            both.offer(id);
+        }
+        for (int id = 20_000; id < 60_000; id++) {
+            tuesday.offer(id);
+            both.offer(id);
+        }
+
+        HyperLogLog merged = monday.copy();
+        merged.merge(tuesday);
+        assertArrayEquals(both.toBytes(), merged.toBytes());
+        assertWithinBound(60_000, merged.estimate());
+        // The copy left the original alone
+        assertWithinBound(30_000, monday.estimate());
+    }
+
+    @Test
+    void bytesRoundTrip() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int id = 0; id < 12_345; id++) {
+            sketch.offer(id);
+        }
+        HyperLogLog restored = HyperLogLog.fromBytes(sketch.toBytes());
+        assertArrayEquals(sketch.toBytes(), restored.toBytes());
+        assertEquals(sketch.estimate(), restored.estimate());
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromBytes(new byte[HyperLogLog.REGISTERS - 1]));
+    }
+
+    // Three standard errors: the documented 99.7% bound
+    private static void assertWithinBound(long actual, long estimate) {
+        double error = Math.abs(estimate - actual) / (double) actual;
+        assertTrue(error <= 3 * HyperLogLog.STANDARD_ERROR,
+                "estimate " + estimate + " for " + actual + " is off by " + error);
+    }
+}
@@ -0,0 +1,69 @@
+package com.gym.app.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class JsonTest {
+
+    @Test
+    void parsesNestedValues() {
+        Object parsed = Json.parse(" {\"qr\": \"GM2.abc\", \"n\": -1.5e2, \"ok\": true, \"none\": null,"
+                + " \"list\": [1, {\"a\": []}, \"x\"], \"empty\": {}} ");
+
+        Map<?, ?> map = (Map<?, ?>) parsed;
+        assertEquals("GM2.abc", map.get("qr"));
+        assertEquals(-150.0, map.get("n"));
+        assertEquals(Boolean.TRUE, map.get("ok"));
+        assertNull(map.get("none"));
+        List<?> list = (List<?>) map.get("list");
+        assertEquals(3, list.size());
+        assertEquals(1.0, list.get(0));
+        assertEquals(List.of(), ((Map<?, ?>) list.get(1)).get("a"));
+        assertEquals(Map.of(), map.get("empty"));
+    }
+
+    @Test
+    void decodesEscapes() {
+        assertEquals("a\"b\\c/d\n\t\u00e9", Json.parse("\"a\\\"b\\\\c\\/d\\n\\t\\u00e9\""));
+    }
+
+    @Test
+    void quoteRoundTrips() {
+        String value = "line\nbreak \"quoted\" \\ tab\t bell\u0007";
+        assertEquals(value, Json.parse(Json.quote(value)));
+        assertEquals("null", Json.quote(null));
+    }
+
+    @Test
+    void rejectsInvalidJson() {
+        for (String text : List.of("", "{", "[1,", "{\"a\" 1}", "{a: 1}", "\"open", "\"\\x\"", "\"\\u12\"",
+                "tru", "1 2", "[1]]", "NaN", "-")) {
+            assertThrows(IllegalArgumentException.class, () -> Json.parse(text), text);
+        }
+    }
+
+    @Test
+    void limitsNesting() {
+        assertEquals(List.of(List.of()), Json.parse("[[]]"));
+        Json.parse(nested(32));
+        assertThrows(IllegalArgumentException.class, () -> Json.parse(nested(33)));
+        // Deep enough to overflow the stack without the limit
+        assertThrows(IllegalArgumentException.class, () -> Json.parse(nested(100_000)));
+    }
+
+    // Arrays nested depth levels deep, the innermost holding a number
+    private static String nested(int depth) {
+        char[] open = new char[depth];
+        char[] close = new char[depth];
+        Arrays.fill(open, '[');
+        Arrays.fill(close, ']');
+        return new String(open) + "1" + new String(close);
+    }
+}
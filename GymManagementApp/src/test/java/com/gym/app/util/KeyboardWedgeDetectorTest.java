@@ -0,0 +1,101 @@
+package com.gym.app.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class KeyboardWedgeDetectorTest {
+
+    private static final long MS = 1_000_000L;
+    private static final long START = 1_000 * MS;
+
+    private final List<String> scans = new ArrayList<>();
+    private final List<Long> scanStarts = new ArrayList<>();
+    // What reaches the focused control: replayed keys and keys the detector did not take
+    private final StringBuilder typed = new StringBuilder();
+    private KeyboardWedgeDetector detector;
+    private long now;
+
+    @BeforeEach
+    void createDetector() {
+        detector = new KeyboardWedgeDetector((value, burstStartNanos) -> {
+            scans.add(value);
+            scanStarts.add(burstStartNanos);
+        }, typed::append);
+        now = START;
+    }
+
+    @Test
+    void fastBurstEndingInEnterIsAScan() {
+        type("GM2.AbCdEf-_12", 4);
+        assertTrue(detector.onCharacter('\r', now + 4 * MS));
+
+        assertEquals(List.of("GM2.AbCdEf-_12"), scans);
+        assertEquals(List.of(START + 4 * MS), scanStarts);
+        assertEquals("", typed.toString());
+    }
+
+    @Test
+    void tabAlsoEndsAScan() {
+        type("3f2504e0-4f89", 2);
+        assertTrue(detector.onCharacter('\t', now + 2 * MS));
+        assertEquals(List.of("3f2504e0-4f89"), scans);
+    }
+
+    @Test
+    void oneStallDoesNotSplitAScan() {
+        type("GM2.Ab", 3);
+        now += 120 * MS;
+        type("CdEfGh", 3);
+        assertTrue(detector.onCharacter('\n', now + 3 * MS));
+        assertEquals(List.of("GM2.AbCdEfGh"), scans);
+    }
+
+    @Test
+    void slowTypingIsHandedBackInOrder() {
+        type("john smith", 90);
+        assertFalse(detector.onCharacter('\r', now + 90 * MS));
+
+        assertTrue(scans.isEmpty());
+        assertEquals("john smith", typed.toString());
+    }
+
+    @Test
+    void shortBurstIsTyping() {
+        type("abc", 4);
+        assertFalse(detector.onCharacter('\r', now + 4 * MS));
+        assertTrue(scans.isEmpty());
+        assertEquals("abc", typed.toString());
+    }
+
+    @Test
+    void idleReleasesHeldKeys() {
+        type("GM2.A", 4);
+        detector.onIdle(now + 100 * MS);
+        assertEquals("", typed.toString());
+        detector.onIdle(now + KeyboardWedgeDetector.IDLE_MS * MS);
+        assertEquals("GM2.A", typed.toString());
+
+        // A later key starts a fresh burst after the pause
+        type("x", 200);
+        detector.flush();
+        assertEquals("GM2.Ax", typed.toString());
+        assertTrue(scans.isEmpty());
+    }
+
+    // Types each character gapMs after the previous one, delivering the keys not taken
+    private void type(String text, long gapMs) {
+        for (char c : text.toCharArray()) {
+            now += gapMs * MS;
+            if (!detector.onCharacter(c, now)) {
+                typed.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.gym.app.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class MemberBitmapTest {
+
+    @Test
+    void addAndContainsAcrossArrayAndBitSetChunks() {
+        MemberBitmap bitmap = new MemberBitmap();
+        assertTrue(bitmap.isEmpty());
+        // Chunk 0 stays an array, chunk 1 passes 4096 IDs and becomes a bit set
+        for (int id = 0; id < 100; id++) {
+            assertTrue(bitmap.add(id * 3));
+        }
+        for (int id = 65_536; id < 65_536 + 10_000; id++) {
+            assertTrue(bitmap.add(id));
+        }
+        assertFalse(bitmap.add(3));
+        assertFalse(bitmap.add(70_000));
+        assertEquals(10_100, bitmap.getCardinality());
+        assertTrue(bitmap.contains(297));
+        assertFalse(bitmap.contains(298));
+        assertTrue(bitmap.contains(65_536 + 9_999));
+        assertFalse(bitmap.contains(65_536 + 10_000));
+        assertFalse(bitmap.contains(-1));
+    }
+
+    @Test
+    void setOperationsMatchHashSets() {
+        Random random = new Random(11);
+        for (int round = 0; round < 20; round++) {
+            Set<Integer> left = new HashSet<>();
+            Set<Integer> right = new HashSet<>();
+            MemberBitmap a = fill(random, left);
+            MemberBitmap b = fill(random, right);
+
+            Set<Integer> and = new HashSet<>(left);
+            and.retainAll(right);
+            Set<Integer> or = new HashSet<>(left);
+            or.addAll(right);
+            Set<Integer> andNot = new HashSet<>(left);
+            andNot.removeAll(right);
+
+            assertHolds(and, a.and(b));
+            assertHolds(or, a.or(b));
+            assertHolds(andNot, a.andNot(b));
+            assertEquals(and.size(), a.andCardinality(b));
+            // The operands are left alone
+            assertHolds(left, a);
+            assertHolds(right, b);
+        }
+    }
+
+    @Test
+    void writeAndReadRoundTrip() throws IOException {
+        Set<Integer> ids = new HashSet<>();
+        MemberBitmap bitmap = fill(new Random(5), ids);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bitmap.write(new DataOutputStream(bytes));
+        assertEquals(bitmap.getSizeInBytes(), bytes.size());
+        MemberBitmap restored = MemberBitmap.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertHolds(ids, restored);
+
+        ByteArrayOutputStream empty = new ByteArrayOutputStream();
+        new MemberBitmap().write(new DataOutputStream(empty));
+        assertTrue(MemberBitmap.read(new DataInputStream(new ByteArrayInputStream(empty.toByteArray()))).isEmpty());
+    }
+
+    // A sparse chunk, a dense chunk that may or may not pass the array limit, and a few far IDs
+    private static MemberBitmap fill(Random random, Set<Integer> ids) {
+        MemberBitmap bitmap = new MemberBitmap();
+        int dense = random.nextInt(9_000);
+        for (int i = 0; i < 300; i++) {
+            add(bitmap, ids, random.nextInt(65_536));
+        }
+        for (int i = 0; i < dense; i++) {
+            add(bitmap, ids, 65_536 + random.nextInt(8_192));
+        }
+        for (int i = 0; i < 5; i++) {
+            add(bitmap, ids, random.nextInt(Integer.MAX_VALUE));
+        }
+        return bitmap;
+    }
+
+    private static void add(MemberBitmap bitmap, Set<Integer> ids, int id) {
+        assertEquals(ids.add(id), bitmap.add(id));
+    }
+
+    private static void assertHolds(Set<Integer> expected, MemberBitmap actual) {
+        assertEquals(expected.size(), actual.getCardinality());
+        for (int id : expected) {
+            assertTrue(actual.contains(id), "missing " + id);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.gym.app.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Base64;
+
+import org.junit.jupiter.api.Test;
+
+class SignedQrCodecTest {
+
+    private static final byte[] KEY = key(7);
+    private static final byte[] OTHER_KEY = key(8);
+    private static final SignedQrCodec.KeyLookup KEYS = version -> version == 1 ? KEY : null;
+
+    @Test
+    void roundTripKeepsEveryField() {
+        LocalDate expiry = LocalDate.of(2031, 2, 28);
+        String value = SignedQrCodec.encode(123456, expiry, -42, 1, KEY);
+
+        assertTrue(value.startsWith(SignedQrCodec.PREFIX));
+        assertTrue(SignedQrCodec.isSignedFormat(value));
+        SignedQrCodec.Payload payload = SignedQrCodec.decode(value, KEYS);
+        assertNotNull(payload);
+        assertEquals(1, payload.getKeyVersion());
+        assertEquals(123456, payload.getMemberId());
+        assertEquals(expiry, payload.getExpiryDate());
+        assertEquals(-42, payload.getCardSerial());
+    }
+
+    @Test
+    void everyChangedByteIsRejected() {
+        String value = SignedQrCodec.encode(99, LocalDate.of(2030, 1, 1), 5, 1, KEY);
+        byte[] bytes = Base64.getUrlDecoder().decode(value.substring(SignedQrCodec.PREFIX.length()));
+        for (int i = 0; i < bytes.length; i++) {
+            byte[] tampered = bytes.clone();
+            tampered[i] ^= 1;
+            String forged = SignedQrCodec.PREFIX + Base64.getUrlEncoder().withoutPadding().encodeToString(tampered);
+            assertNull(SignedQrCodec.decode(forged, KEYS), "byte " + i);
+        }
+    }
+
+    @Test
+    void wrongKeyOrUnknownVersionIsRejected() {
+        String value = SignedQrCodec.encode(99, LocalDate.of(2030, 1, 1), 5, 1, OTHER_KEY);
+        assertNull(SignedQrCodec.decode(value, KEYS));
+
+        String otherVersion = SignedQrCodec.encode(99, LocalDate.of(2030, 1, 1), 5, 2, KEY);
+        assertNull(SignedQrCodec.decode(otherVersion, KEYS));
+    }
+
+    @Test
+    void truncatedOrMalformedValuesAreRejected() {
+        String value = SignedQrCodec.encode(99, LocalDate.of(2030, 1, 1), 5, 1, KEY);
+        for (int length = SignedQrCodec.PREFIX.length(); length < value.length(); length++) {
+            assertNull(SignedQrCodec.decode(value.substring(0, length), KEYS), "length " + length);
+        }
+        assertNull(SignedQrCodec.decode(value + "AA", KEYS));
+        assertNull(SignedQrCodec.decode(SignedQrCodec.PREFIX + "not base64!", KEYS));
+        assertNull(SignedQrCodec.decode(null, KEYS));
+    }
+
+    @Test
+    void uuidCardsAreNotSignedFormat() {
+        assertFalse(SignedQrCodec.isSignedFormat("3f2504e0-4f89-11d3-9a0c-0305e82c3301"));
+        assertFalse(SignedQrCodec.isSignedFormat("GM1.AAAA"));
+        assertNull(SignedQrCodec.decode("3f2504e0-4f89-11d3-9a0c-0305e82c3301", KEYS));
+    }
+
+    private static byte[] key(int fill) {
+        byte[] key = new byte[32];
+        Arrays.fill(key, (byte) fill);
+        return key;
+    }
+}
@@ -0,0 +1,86 @@
+package com.gym.app.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class TrendChartTest {
+
+    @Test
+    void shortRangesAreCopiedAsTheyAre() {
+        double[] xs = {1, 2, 3, 4, 5};
+        double[] ys = {5, 3, 9, 1, 4};
+        double[] outX = new double[5];
+        double[] outY = new double[5];
+
+        assertEquals(3, TrendChart.downsample(xs, ys, 1, 4, 10, outX, outY));
+        assertArrayEquals(new double[] {2, 3, 4}, Arrays.copyOf(outX, 3));
+        assertArrayEquals(new double[] {3, 9, 1}, Arrays.copyOf(outY, 3));
+    }
+
+    @Test
+    void keepsTheEndpointsAndReducesToTheThreshold() {
+        Random random = new Random(12);
+        int n = 10_000;
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = 19_000 + i;
+            ys[i] = 100 + random.nextGaussian() * 10;
+        }
+        double[] outX = new double[n];
+        double[] outY = new double[n];
+
+        int count = TrendChart.downsample(xs, ys, 0, n, 500, outX, outY);
+        assertEquals(500, count);
+        assertEquals(xs[0], outX[0]);
+        assertEquals(xs[n - 1], outX[count - 1]);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                assertTrue(outX[i] > outX[i - 1], "points stay in order");
+            }
+            // Every point kept is one of the originals
+            assertEquals(ys[(int) (outX[i] - 19_000)], outY[i]);
+        }
+
+        // The same on a sub-range
+        count = TrendChart.downsample(xs, ys, 2_000, 3_000, 100, outX, outY);
+        assertEquals(100, count);
+        assertEquals(xs[2_000], outX[0]);
+        assertEquals(xs[2_999], outX[count - 1]);
+    }
+
+    @Test
+    void keepsASpikeAndADip() {
+        int n = 5_000;
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = i;
+            ys[i] = 50 + Math.sin(i / 40.0);
+        }
+        ys[1_234] = 400;
+        ys[3_210] = -300;
+        double[] outX = new double[n];
+        double[] outY = new double[n];
+
+        int count = TrendChart.downsample(xs, ys, 0, n, 200, outX, outY);
+        double[] kept = Arrays.copyOf(outY, count);
+        assertEquals(400, Arrays.stream(kept).max().getAsDouble());
+        assertEquals(-300, Arrays.stream(kept).min().getAsDouble());
+    }
+
+    @Test
+    void levelHasAtMostTwoPointsPerPixel() {
+        assertEquals(TrendChart.Level.DAY, TrendChart.levelFor(365, 800));
+        assertEquals(TrendChart.Level.DAY, TrendChart.levelFor(1_600, 800));
+        assertEquals(TrendChart.Level.WEEK, TrendChart.levelFor(3_650, 800));
+        assertEquals(TrendChart.Level.MONTH, TrendChart.levelFor(36_500, 800));
+        assertEquals(TrendChart.Level.MONTH, TrendChart.levelFor(1_000_000, 100));
+    }
+}
@@ -0,0 +1,86 @@
+package com.gym.app.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class VisitTimelineTest {
+
+    @Test
+    void decodesAnyRangeAcrossCheckpoints() {
+        int[] minutes = visits(new Random(3), 1_000);
+        VisitTimeline timeline = VisitTimeline.of(minutes, minutes.length);
+
+        assertEquals(minutes.length, timeline.getCount());
+        assertEquals(minutes[minutes.length - 1], timeline.getLastMinute());
+        assertArrayEquals(minutes, timeline.decode(0, minutes.length));
+        for (int[] range : new int[][] {{0, 1}, {63, 65}, {64, 128}, {100, 700}, {999, 1_000}, {950, 5_000}}) {
+            int to = Math.min(range[1], minutes.length);
+            assertArrayEquals(Arrays.copyOfRange(minutes, range[0], to), timeline.decode(range[0], range[1]),
+                    range[0] + ".." + range[1]);
+        }
+        assertArrayEquals(new int[0], timeline.decode(500, 500));
+        assertArrayEquals(new int[0], new VisitTimeline().decode(0, 10));
+    }
+
+    @Test
+    void countsVisitsSinceAMinute() {
+        int[] minutes = visits(new Random(4), 700);
+        VisitTimeline timeline = VisitTimeline.of(minutes, minutes.length);
+
+        assertEquals(minutes.length, timeline.countSince(Integer.MIN_VALUE));
+        assertEquals(0, timeline.countSince(minutes[minutes.length - 1] + 1));
+        assertEquals(0, new VisitTimeline().countSince(0));
+        for (int i = 0; i < minutes.length; i += 13) {
+            assertEquals(bruteForceSince(minutes, minutes[i]), timeline.countSince(minutes[i]));
+            assertEquals(bruteForceSince(minutes, minutes[i] + 1), timeline.countSince(minutes[i] + 1));
+        }
+    }
+
+    @Test
+    void lateVisitsAreInsertedInOrder() {
+        Random random = new Random(5);
+        int[] sorted = visits(random, 300);
+        int[] shuffled = sorted.clone();
+        for (int i = shuffled.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = shuffled[i];
+            shuffled[i] = shuffled[j];
+            shuffled[j] = swap;
+        }
+
+        VisitTimeline timeline = new VisitTimeline();
+        for (int minute : shuffled) {
+            timeline.add(minute);
+        }
+        assertEquals(sorted.length, timeline.getCount());
+        assertEquals(sorted[sorted.length - 1], timeline.getLastMinute());
+        assertArrayEquals(sorted, timeline.decode(0, sorted.length));
+        assertEquals(bruteForceSince(sorted, sorted[150]), timeline.countSince(sorted[150]));
+    }
+
+    // Ascending minutes a few hours to a few weeks apart, with the odd same-minute repeat
+    private static int[] visits(Random random, int count) {
+        int[] minutes = new int[count];
+        int minute = 20_000_000;
+        for (int i = 0; i < count; i++) {
+            minute += random.nextInt(10) == 0 ? 0 : 60 + random.nextInt(30_000);
+            minutes[i] = minute;
+        }
+        return minutes;
+    }
+
+    private static int bruteForceSince(int[] minutes, int since) {
+        int count = 0;
+        for (int minute : minutes) {
+            if (minute >= since) {
+                count++;
+            }
+        }
+        return count;
+    }
+}